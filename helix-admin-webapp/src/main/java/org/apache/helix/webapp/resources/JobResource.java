@@ -125,6 +125,8 @@ public class JobResource extends ServerResource {
       hostedEntitiesRecord.merge(jobConfig.getRecord());
     }
     if (ctx != null) {
+      // report one map field per partition regardless of how the context is stored
+      ctx.setColumnarFormat(false);
       hostedEntitiesRecord.merge(ctx.getRecord());
     }
 
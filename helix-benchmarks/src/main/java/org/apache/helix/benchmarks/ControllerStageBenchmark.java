@@ -0,0 +1,153 @@
+package org.apache.helix.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.helix.controller.pipeline.Stage;
+import org.apache.helix.controller.pipeline.StageContext;
+import org.apache.helix.controller.stages.AttributeName;
+import org.apache.helix.controller.stages.BestPossibleStateCalcStage;
+import org.apache.helix.controller.stages.ClusterEvent;
+import org.apache.helix.controller.stages.CurrentStateComputationStage;
+import org.apache.helix.controller.stages.IntermediateStateCalcStage;
+import org.apache.helix.controller.stages.MessageGenerationPhase;
+import org.apache.helix.controller.stages.MessageSelectionStage;
+import org.apache.helix.controller.stages.MessageThrottleStage;
+import org.apache.helix.controller.stages.ResourceComputationStage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the rebalance stages of the controller pipeline against a {@link SyntheticCluster}.
+ * The pipeline runs once during setup so every stage finds the output of the stages before it on
+ * the event, and each benchmark then re-runs a single stage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ControllerStageBenchmark {
+  @Param({
+      "10", "100"
+  })
+  public int numInstances;
+
+  @Param({
+      "100"
+  })
+  public int numResources;
+
+  @Param({
+      "64"
+  })
+  public int numPartitions;
+
+  @Param({
+      "3"
+  })
+  public int numReplicas;
+
+  private SyntheticCluster _cluster;
+  private ClusterEvent _event;
+  private BestPossibleStateCalcStage _bestPossibleStateCalcStage;
+  private IntermediateStateCalcStage _intermediateStateCalcStage;
+  private MessageGenerationPhase _messageGenerationPhase;
+  private MessageSelectionStage _messageSelectionStage;
+  private MessageThrottleStage _messageThrottleStage;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    _cluster = new SyntheticCluster(numInstances, numResources, numPartitions, numReplicas);
+    _event = _cluster.newEvent();
+    _bestPossibleStateCalcStage = init(new BestPossibleStateCalcStage());
+    _intermediateStateCalcStage = init(new IntermediateStateCalcStage());
+    _messageGenerationPhase = init(new MessageGenerationPhase());
+    _messageSelectionStage = init(new MessageSelectionStage());
+    _messageThrottleStage = init(new MessageThrottleStage());
+
+    run(init(new ResourceComputationStage()));
+    run(init(new CurrentStateComputationStage()));
+    run(_bestPossibleStateCalcStage);
+    run(_intermediateStateCalcStage);
+    run(_messageGenerationPhase);
+    run(_messageSelectionStage);
+    run(_messageThrottleStage);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    _bestPossibleStateCalcStage.release();
+  }
+
+  @Benchmark
+  public Object bestPossibleStateCalc() throws Exception {
+    run(_bestPossibleStateCalcStage);
+    return _event.getAttribute(AttributeName.BEST_POSSIBLE_STATE.name());
+  }
+
+  @Benchmark
+  public Object intermediateStateCalc() throws Exception {
+    run(_intermediateStateCalcStage);
+    return _event.getAttribute(AttributeName.INTERMEDIATE_STATE.name());
+  }
+
+  @Benchmark
+  public Object messageGeneration() throws Exception {
+    run(_messageGenerationPhase);
+    return _event.getAttribute(AttributeName.MESSAGES_ALL.name());
+  }
+
+  @Benchmark
+  public Object messageSelection() throws Exception {
+    run(_messageSelectionStage);
+    return _event.getAttribute(AttributeName.MESSAGES_SELECTED.name());
+  }
+
+  @Benchmark
+  public Object messageThrottle() throws Exception {
+    run(_messageThrottleStage);
+    return _event.getAttribute(AttributeName.MESSAGES_THROTTLE.name());
+  }
+
+  static <T extends Stage> T init(T stage) {
+    stage.init(new StageContext());
+    return stage;
+  }
+
+  private void run(Stage stage) throws Exception {
+    stage.preProcess();
+    stage.process(_event);
+    stage.postProcess();
+  }
+}
@@ -0,0 +1,105 @@
+package org.apache.helix.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.helix.HelixConstants.ChangeType;
+import org.apache.helix.controller.pipeline.Stage;
+import org.apache.helix.controller.stages.ClusterEvent;
+import org.apache.helix.controller.stages.CurrentStateComputationStage;
+import org.apache.helix.controller.stages.ExternalViewComputeStage;
+import org.apache.helix.controller.stages.ResourceComputationStage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link ExternalViewComputeStage} against a {@link SyntheticCluster}. The stage only
+ * recomputes the views of resources that changed, so each invocation first marks all views
+ * outdated, and the external views are written to the in-memory accessor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ExternalViewComputeBenchmark {
+  @Param({
+      "10", "100"
+  })
+  public int numInstances;
+
+  @Param({
+      "100"
+  })
+  public int numResources;
+
+  @Param({
+      "64"
+  })
+  public int numPartitions;
+
+  @Param({
+      "3"
+  })
+  public int numReplicas;
+
+  private SyntheticCluster _cluster;
+  private ClusterEvent _event;
+  private ExternalViewComputeStage _externalViewComputeStage;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    _cluster = new SyntheticCluster(numInstances, numResources, numPartitions, numReplicas);
+    _event = _cluster.newEvent();
+    _externalViewComputeStage = ControllerStageBenchmark.init(new ExternalViewComputeStage());
+    run(ControllerStageBenchmark.init(new ResourceComputationStage()));
+    run(ControllerStageBenchmark.init(new CurrentStateComputationStage()));
+  }
+
+  @Setup(Level.Invocation)
+  public void invalidateExternalViews() {
+    _cluster.getCache().notifyDataChange(ChangeType.IDEAL_STATE);
+    _cluster.getCache().refresh(_cluster.getAccessor());
+  }
+
+  @Benchmark
+  public Object externalViewCompute() throws Exception {
+    run(_externalViewComputeStage);
+    return _cluster.getCache().getExternalViews();
+  }
+
+  private void run(Stage stage) throws Exception {
+    stage.preProcess();
+    stage.process(_event);
+    stage.postProcess();
+  }
+}
@@ -0,0 +1,177 @@
+package org.apache.helix.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.helix.HelixConstants.ChangeType;
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.controller.pipeline.Stage;
+import org.apache.helix.controller.stages.AttributeName;
+import org.apache.helix.controller.stages.BestPossibleStateCalcStage;
+import org.apache.helix.controller.stages.ClusterEvent;
+import org.apache.helix.controller.stages.CurrentStateComputationStage;
+import org.apache.helix.controller.stages.IntermediateStateCalcStage;
+import org.apache.helix.controller.stages.MessageGenerationPhase;
+import org.apache.helix.controller.stages.MessageSelectionStage;
+import org.apache.helix.controller.stages.MessageThrottleStage;
+import org.apache.helix.controller.stages.ResourceComputationStage;
+import org.apache.helix.model.ClusterConstraints;
+import org.apache.helix.model.ClusterConstraints.ConstraintAttribute;
+import org.apache.helix.model.ClusterConstraints.ConstraintType;
+import org.apache.helix.model.ConstraintItem;
+import org.apache.helix.model.Message.MessageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link MessageThrottleStage} against a {@link SyntheticCluster} with message
+ * constraints on transitions, resources, instances and partitions, with and without the compiled
+ * constraint index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MessageThrottleBenchmark {
+  @Param({
+      "10", "100", "1000"
+  })
+  public int numConstraints;
+
+  @Param({
+      "false", "true"
+  })
+  public boolean useConstraintIndex;
+
+  @Param({
+      "100"
+  })
+  public int numInstances;
+
+  @Param({
+      "100"
+  })
+  public int numResources;
+
+  @Param({
+      "64"
+  })
+  public int numPartitions;
+
+  private ClusterEvent _event;
+  private BestPossibleStateCalcStage _bestPossibleStateCalcStage;
+  private MessageThrottleStage _messageThrottleStage;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    SyntheticCluster cluster = new SyntheticCluster(numInstances, numResources, numPartitions, 3);
+    HelixDataAccessor accessor = cluster.getAccessor();
+    accessor.setProperty(
+        accessor.keyBuilder().constraint(ConstraintType.MESSAGE_CONSTRAINT.toString()),
+        createConstraints());
+    cluster.getCache().notifyDataChange(ChangeType.CONFIG);
+    cluster.getCache().refresh(accessor);
+
+    _event = cluster.newEvent();
+    _bestPossibleStateCalcStage = ControllerStageBenchmark.init(new BestPossibleStateCalcStage());
+    _messageThrottleStage =
+        ControllerStageBenchmark.init(new MessageThrottleStage(useConstraintIndex));
+
+    run(ControllerStageBenchmark.init(new ResourceComputationStage()));
+    run(ControllerStageBenchmark.init(new CurrentStateComputationStage()));
+    run(_bestPossibleStateCalcStage);
+    run(ControllerStageBenchmark.init(new IntermediateStateCalcStage()));
+    run(ControllerStageBenchmark.init(new MessageGenerationPhase()));
+    run(ControllerStageBenchmark.init(new MessageSelectionStage()));
+    run(_messageThrottleStage);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    _bestPossibleStateCalcStage.release();
+  }
+
+  @Benchmark
+  public Object messageThrottle() throws Exception {
+    run(_messageThrottleStage);
+    return _event.getAttribute(AttributeName.MESSAGES_THROTTLE.name());
+  }
+
+  private ClusterConstraints createConstraints() {
+    ClusterConstraints constraints = new ClusterConstraints(ConstraintType.MESSAGE_CONSTRAINT);
+    constraints.addConstraintItem("constraint_instance",
+        createItem("100", ConstraintAttribute.INSTANCE, ".*"));
+    for (int k = 0; k < numConstraints; k++) {
+      String resourceName = "TestDB_" + (k / 4 % numResources);
+      ConstraintItem item;
+      switch (k % 4) {
+      case 0:
+        item = createItem("10", ConstraintAttribute.TRANSITION, "OFFLINE-SLAVE",
+            ConstraintAttribute.RESOURCE, resourceName);
+        break;
+      case 1:
+        item = createItem("20", ConstraintAttribute.RESOURCE, resourceName,
+            ConstraintAttribute.INSTANCE, SyntheticCluster.instanceName(k / 4 % numInstances));
+        break;
+      case 2:
+        item = createItem("1", ConstraintAttribute.PARTITION,
+            resourceName + "_" + (k / 4 % numPartitions));
+        break;
+      default:
+        item = createItem("50", ConstraintAttribute.RESOURCE, resourceName + ".*",
+            ConstraintAttribute.INSTANCE, ".*");
+        break;
+      }
+      constraints.addConstraintItem("constraint_" + k, item);
+    }
+    return constraints;
+  }
+
+  private static ConstraintItem createItem(String value, Object... attributes) {
+    Map<ConstraintAttribute, String> attributeMap = new HashMap<ConstraintAttribute, String>();
+    attributeMap.put(ConstraintAttribute.MESSAGE_TYPE, MessageType.STATE_TRANSITION.name());
+    for (int i = 0; i < attributes.length; i += 2) {
+      attributeMap.put((ConstraintAttribute) attributes[i], (String) attributes[i + 1]);
+    }
+    return new ConstraintItem(attributeMap, value);
+  }
+
+  private void run(Stage stage) throws Exception {
+    stage.preProcess();
+    stage.process(_event);
+    stage.postProcess();
+  }
+}
@@ -0,0 +1,136 @@
+package org.apache.helix.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.Mocks.MockManager;
+import org.apache.helix.NotificationContext;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.spectator.RoutingTableProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@link RoutingTableProvider#getInstancesForResource(String, String,
+ * String)} with and without the routing index, on a routing table of resources with 3 replicas
+ * per partition.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RoutingTableLookupBenchmark {
+  private static final int NUM_LOOKUPS = 4096;
+
+  @Param({
+      "false", "true"
+  })
+  public boolean routingIndexEnabled;
+
+  @Param({
+      "100", "1000"
+  })
+  public int numResources;
+
+  @Param({
+      "64"
+  })
+  public int numPartitions;
+
+  @Param({
+      "20"
+  })
+  public int numInstances;
+
+  private RoutingTableProvider _provider;
+  private String[] _resources;
+  private String[] _partitions;
+  private String[] _states;
+  private int _next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    MockManager manager = new MockManager("cluster");
+    HelixDataAccessor accessor = manager.getHelixDataAccessor();
+    List<InstanceConfig> configs = new ArrayList<InstanceConfig>();
+    for (int i = 0; i < numInstances; i++) {
+      InstanceConfig config = new InstanceConfig("localhost_" + (12000 + i));
+      config.setHostName("localhost");
+      config.setPort(Integer.toString(12000 + i));
+      accessor.setProperty(accessor.keyBuilder().instanceConfig(config.getId()), config);
+      configs.add(config);
+    }
+    List<ExternalView> externalViews = new ArrayList<ExternalView>();
+    for (int r = 0; r < numResources; r++) {
+      ZNRecord record = new ZNRecord("TestDB" + r);
+      for (int p = 0; p < numPartitions; p++) {
+        Map<String, String> stateMap = new HashMap<String, String>();
+        for (int i = 0; i < 3; i++) {
+          stateMap.put(configs.get((r + p + i) % numInstances).getId(), i == 0 ? "MASTER"
+              : "SLAVE");
+        }
+        record.setMapField(record.getId() + "_" + p, stateMap);
+      }
+      externalViews.add(new ExternalView(record));
+    }
+
+    _provider = new RoutingTableProvider(routingIndexEnabled);
+    _provider.onExternalViewChange(externalViews, new NotificationContext(manager));
+
+    // build the lookup keys the way a router would, from a request
+    Random random = new Random(0);
+    _resources = new String[NUM_LOOKUPS];
+    _partitions = new String[NUM_LOOKUPS];
+    _states = new String[NUM_LOOKUPS];
+    for (int i = 0; i < NUM_LOOKUPS; i++) {
+      String resource = "TestDB" + random.nextInt(numResources);
+      _resources[i] = resource;
+      _partitions[i] = resource + "_" + random.nextInt(numPartitions);
+      _states[i] = random.nextBoolean() ? "MASTER" : "SLAVE";
+    }
+  }
+
+  @Benchmark
+  public List<InstanceConfig> getInstancesForResource() {
+    int i = _next++ & (NUM_LOOKUPS - 1);
+    return _provider.getInstancesForResource(_resources[i], _partitions[i], _states[i]);
+  }
+}
@@ -0,0 +1,149 @@
+package org.apache.helix.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.HelixManager;
+import org.apache.helix.Mocks;
+import org.apache.helix.PropertyKey.Builder;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.controller.stages.ClusterDataCache;
+import org.apache.helix.controller.stages.ClusterEvent;
+import org.apache.helix.model.CurrentState;
+import org.apache.helix.model.IdealState;
+import org.apache.helix.model.IdealState.RebalanceMode;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.model.LiveInstance;
+import org.apache.helix.model.StateModelDefinition;
+import org.apache.helix.tools.StateModelConfigGenerator;
+
+/**
+ * An in-memory cluster of N instances and M MasterSlave resources with P partitions each. The
+ * first replica in the preference list of a partition is the master and the others are slaves,
+ * except for every fourth partition which has no current state yet, so the rebalance pipeline
+ * always has transitions to compute.
+ */
+public class SyntheticCluster {
+  public static final String STATE_MODEL = "MasterSlave";
+
+  private final HelixManager _manager;
+  private final HelixDataAccessor _accessor;
+  private final ClusterDataCache _cache;
+
+  public SyntheticCluster(int numInstances, int numResources, int numPartitions, int numReplicas) {
+    _manager = new Mocks.MockManager("SyntheticCluster_" + UUID.randomUUID());
+    _accessor = _manager.getHelixDataAccessor();
+    Builder keyBuilder = _accessor.keyBuilder();
+
+    ZNRecord masterSlave = new StateModelConfigGenerator().generateConfigForMasterSlave();
+    _accessor.setProperty(keyBuilder.stateModelDef(STATE_MODEL), new StateModelDefinition(
+        masterSlave));
+
+    for (int i = 0; i < numInstances; i++) {
+      String instanceName = instanceName(i);
+      InstanceConfig instanceConfig = new InstanceConfig(instanceName);
+      instanceConfig.setHostName("localhost");
+      instanceConfig.setPort(Integer.toString(12000 + i));
+      _accessor.setProperty(keyBuilder.instanceConfig(instanceName), instanceConfig);
+
+      LiveInstance liveInstance = new LiveInstance(instanceName);
+      liveInstance.setSessionId(sessionId(i));
+      liveInstance.setHelixVersion("0.6.x");
+      _accessor.setProperty(keyBuilder.liveInstance(instanceName), liveInstance);
+    }
+
+    for (int r = 0; r < numResources; r++) {
+      String resourceName = "TestDB_" + r;
+      IdealState idealState = new IdealState(resourceName);
+      idealState.setStateModelDefRef(STATE_MODEL);
+      idealState.setRebalanceMode(RebalanceMode.SEMI_AUTO);
+      idealState.setNumPartitions(numPartitions);
+      idealState.setReplicas(Integer.toString(numReplicas));
+
+      CurrentState[] instanceCurrentStates = new CurrentState[numInstances];
+      for (int p = 0; p < numPartitions; p++) {
+        String partitionName = resourceName + "_" + p;
+        List<String> preferenceList = new ArrayList<String>();
+        for (int k = 0; k < numReplicas; k++) {
+          int instance = (r + p + k) % numInstances;
+          preferenceList.add(instanceName(instance));
+          if (p % 4 == 0) {
+            continue;
+          }
+          if (instanceCurrentStates[instance] == null) {
+            CurrentState currentState = new CurrentState(resourceName);
+            currentState.setSessionId(sessionId(instance));
+            currentState.setStateModelDefRef(STATE_MODEL);
+            instanceCurrentStates[instance] = currentState;
+          }
+          instanceCurrentStates[instance].setState(partitionName, k == 0 ? "MASTER" : "SLAVE");
+        }
+        idealState.getRecord().setListField(partitionName, preferenceList);
+      }
+      _accessor.setProperty(keyBuilder.idealStates(resourceName), idealState);
+
+      for (int i = 0; i < numInstances; i++) {
+        CurrentState currentState = instanceCurrentStates[i];
+        if (currentState != null) {
+          _accessor.setProperty(
+              keyBuilder.currentState(instanceName(i), sessionId(i), resourceName), currentState);
+        }
+      }
+    }
+
+    _cache = new ClusterDataCache();
+    _cache.refresh(_accessor);
+  }
+
+  public HelixManager getManager() {
+    return _manager;
+  }
+
+  public HelixDataAccessor getAccessor() {
+    return _accessor;
+  }
+
+  public ClusterDataCache getCache() {
+    return _cache;
+  }
+
+  /**
+   * Create an event that carries the manager and the cache, as the controller would
+   * @return ClusterEvent
+   */
+  public ClusterEvent newEvent() {
+    ClusterEvent event = new ClusterEvent("benchmarkEvent");
+    event.addAttribute("helixmanager", _manager);
+    event.addAttribute("ClusterDataCache", _cache);
+    return event;
+  }
+
+  static String instanceName(int i) {
+    return "localhost_" + (12000 + i);
+  }
+
+  private static String sessionId(int i) {
+    return "session_" + i;
+  }
+}
@@ -0,0 +1,106 @@
+package org.apache.helix.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.I0Itec.zkclient.serialize.ZkSerializer;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.manager.zk.ZNRecordBinarySerializer;
+import org.apache.helix.manager.zk.ZNRecordSerializer;
+import org.apache.helix.manager.zk.ZNRecordStreamingSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link ZNRecordSerializer}, {@link ZNRecordStreamingSerializer} and
+ * {@link ZNRecordBinarySerializer} on records shaped like the current state or external view of a
+ * resource, with one map field per partition.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ZNRecordSerializerBenchmark {
+  @Param({
+      "10", "100", "1000"
+  })
+  public int numPartitions;
+
+  @Param({
+      "jackson", "streaming", "binary"
+  })
+  public String serializerType;
+
+  @Param({
+      "false", "true"
+  })
+  public boolean compressed;
+
+  private ZkSerializer _serializer;
+  private ZNRecord _record;
+  private byte[] _bytes;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    if ("streaming".equals(serializerType)) {
+      _serializer = new ZNRecordStreamingSerializer();
+    } else if ("binary".equals(serializerType)) {
+      _serializer = new ZNRecordBinarySerializer();
+    } else {
+      _serializer = new ZNRecordSerializer();
+    }
+    _record = new ZNRecord("TestDB");
+    _record.setSimpleField("STATE_MODEL_DEF", "MasterSlave");
+    _record.setSimpleField("enableCompression", Boolean.toString(compressed));
+    for (int p = 0; p < numPartitions; p++) {
+      Map<String, String> stateMap = new HashMap<String, String>();
+      for (int r = 0; r < 3; r++) {
+        stateMap.put("localhost_" + (12000 + (p + r) % 100), r == 0 ? "MASTER" : "SLAVE");
+      }
+      _record.setMapField("TestDB_" + p, stateMap);
+    }
+    _bytes = _serializer.serialize(_record);
+  }
+
+  @Benchmark
+  public byte[] serialize() {
+    return _serializer.serialize(_record);
+  }
+
+  @Benchmark
+  public Object deserialize() {
+    return _serializer.deserialize(_bytes);
+  }
+}
@@ -0,0 +1,51 @@
+package org.apache.helix;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Configure batching of change notifications for a listener class. In batch mode, change
+ * notifications that arrive while a callback is pending are merged into that callback, since the
+ * listener always reads the latest data. Listeners without this annotation follow the
+ * helix.callbackHandler.asyncBatchModeEnabled system property.
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface BatchMode {
+  /**
+   * @return true to merge pending change notifications into one callback
+   */
+  boolean enabled() default true;
+
+  /**
+   * @return time to wait after the first change notification of a batch before invoking the
+   *         callback, or a negative value to use the helix.callbackHandler.batchWindowMs system
+   *         property
+   */
+  long windowMs() default -1;
+}
@@ -20,51 +20,79 @@ package org.apache.helix;
  */
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 
 import org.I0Itec.zkclient.exception.ZkNoNodeException;
+import org.apache.helix.manager.zk.HelixGroupCommit;
 import org.apache.log4j.Logger;
 
+import com.google.common.util.concurrent.SettableFuture;
+
 // TODO: move to mananger.zk
 /**
- * Support committing updates to data such that they are ordered for each key
+ * Support committing updates to data such that they are ordered for each key. Keys are hashed into
+ * stripes; the first thread that finds pending updates in a stripe becomes its leader and commits
+ * all of them, merging the updates of the same key into one write. Other threads wait on a future
+ * instead of polling. See {@link HelixGroupCommit#NUM_STRIPES} for the number of stripes.
  */
 public class GroupCommit {
   private static Logger LOG = Logger.getLogger(GroupCommit.class);
 
-  private static class Queue {
-    final AtomicReference<Thread> _running = new AtomicReference<Thread>();
+  private static class Stripe {
+    final AtomicBoolean _leading = new AtomicBoolean(false);
     final ConcurrentLinkedQueue<Entry> _pending = new ConcurrentLinkedQueue<Entry>();
   }
 
   private static class Entry {
+    final BaseDataAccessor<ZNRecord> _accessor;
+    final int _options;
     final String _key;
     final ZNRecord _record;
-    AtomicBoolean _sent = new AtomicBoolean(false);
+    final boolean _removeIfEmpty;
+    final SettableFuture<Boolean> _future;
 
-    Entry(String key, ZNRecord record) {
+    Entry(BaseDataAccessor<ZNRecord> accessor, int options, String key, ZNRecord record,
+        boolean removeIfEmpty) {
+      _accessor = accessor;
+      _options = options;
       _key = key;
       _record = record;
+      _removeIfEmpty = removeIfEmpty;
+      _future = SettableFuture.create();
     }
   }
 
-  private final Queue[] _queues = new Queue[100];
+  private final Stripe[] _stripes;
 
   /**
    * Set up a group committer and its associated queues
    */
   public GroupCommit() {
+    this(Integer.getInteger(HelixGroupCommit.NUM_STRIPES, HelixGroupCommit.DEFAULT_NUM_STRIPES));
+  }
+
+  /**
+   * Set up a group committer with a given number of stripes
+   * @param numStripes number of stripes keys are hashed into
+   */
+  public GroupCommit(int numStripes) {
+    if (numStripes <= 0) {
+      throw new IllegalArgumentException("numStripes should be positive, was: " + numStripes);
+    }
+    _stripes = new Stripe[numStripes];
     // Don't use Arrays.fill();
-    for (int i = 0; i < _queues.length; ++i) {
-      _queues[i] = new Queue();
+    for (int i = 0; i < _stripes.length; ++i) {
+      _stripes[i] = new Stripe();
     }
   }
 
-  private Queue getQueue(String key) {
-    return _queues[(key.hashCode() & Integer.MAX_VALUE) % _queues.length];
+  private Stripe getStripe(String key) {
+    return _stripes[(key.hashCode() & Integer.MAX_VALUE) % _stripes.length];
   }
 
   /**
@@ -80,82 +108,123 @@ public class GroupCommit {
     return commit(accessor, options, key, record, false);
   }
 
+  /**
+   * Do a group update for data associated with a given key
+   * @param accessor accessor with the ability to pull from the current data
+   * @param options see {@link AccessOption}
+   * @param key the data identifier
+   * @param record the data to be merged in
+   * @param removeIfEmpty remove the data instead of writing it if it has no map fields after the
+   *          merge
+   * @return true if successful, false otherwise
+   */
   public boolean commit(BaseDataAccessor<ZNRecord> accessor, int options, String key,
       ZNRecord record, boolean removeIfEmpty) {
-    Queue queue = getQueue(key);
-    Entry entry = new Entry(key, record);
-
-    queue._pending.add(entry);
-
-    while (!entry._sent.get()) {
-      if (queue._running.compareAndSet(null, Thread.currentThread())) {
-        ArrayList<Entry> processed = new ArrayList<Entry>();
-        try {
-          if (queue._pending.peek() == null)
-            return true;
-
-          // remove from queue
-          Entry first = queue._pending.poll();
-          processed.add(first);
-
-          String mergedKey = first._key;
-          ZNRecord merged = null;
-
-          try {
-            // accessor will fallback to zk if not found in cache
-            merged = accessor.get(mergedKey, null, options);
-          } catch (ZkNoNodeException e) {
-            // OK.
-          }
+    Stripe stripe = getStripe(key);
+    Entry entry = new Entry(accessor, options, key, record, removeIfEmpty);
+    stripe._pending.add(entry);
+    drain(stripe);
+
+    try {
+      return entry._future.get();
+    } catch (InterruptedException e) {
+      LOG.error("Interrupted while committing change, key: " + key + ", record: " + record, e);
+      // Restore interrupt status
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      LOG.error("Fail to commit change, key: " + key + ", record: " + record, e.getCause());
+    }
+    return false;
+  }
 
-          /**
-           * If the local cache does not contain a value, need to check if there is a
-           * value in ZK; use it as initial value if exists
-           */
-          if (merged == null) {
-            merged = new ZNRecord(first._record);
-          } else {
-            merged.merge(first._record);
-          }
-          Iterator<Entry> it = queue._pending.iterator();
-          while (it.hasNext()) {
-            Entry ent = it.next();
-            if (!ent._key.equals(mergedKey))
-              continue;
-            processed.add(ent);
-            merged.merge(ent._record);
-            // System.out.println("After merging:" + merged);
-            it.remove();
-          }
-          // System.out.println("size:"+ processed.size());
-          if (removeIfEmpty && merged.getMapFields().isEmpty()) {
-            accessor.remove(mergedKey, options);
-          } else {
-            accessor.set(mergedKey, merged, options);
-          }
-        } finally {
-          queue._running.set(null);
-          for (Entry e : processed) {
-            synchronized (e) {
-              e._sent.set(true);
-              e.notify();
-            }
+  private void drain(Stripe stripe) {
+    // an entry added while the leader is committing is picked up by the leader after it
+    // gives up the leadership, so a thread that fails to lead can wait on its future
+    while (!stripe._pending.isEmpty() && stripe._leading.compareAndSet(false, true)) {
+      try {
+        // entries of the same key are merged in order; keys are written in order of arrival
+        Map<String, List<Entry>> batch = new LinkedHashMap<String, List<Entry>>();
+        Entry entry;
+        while ((entry = stripe._pending.poll()) != null) {
+          List<Entry> entries = batch.get(entry._key);
+          if (entries == null) {
+            entries = new ArrayList<Entry>();
+            batch.put(entry._key, entries);
           }
+          entries.add(entry);
         }
+        for (List<Entry> entries : batch.values()) {
+          commitKey(entries);
+        }
+      } finally {
+        stripe._leading.set(false);
+      }
+    }
+  }
+
+  /**
+   * Merge the entries of a key into the current data and write it. Entries with a different
+   * accessor or options than the first one of the key are committed separately
+   */
+  private void commitKey(List<Entry> entries) {
+    Entry first = entries.get(0);
+    List<Entry> processed = new ArrayList<Entry>();
+    List<Entry> others = new ArrayList<Entry>();
+    for (Entry entry : entries) {
+      if (entry._accessor == first._accessor && entry._options == first._options) {
+        processed.add(entry);
       } else {
-        synchronized (entry) {
-          try {
-            entry.wait(10);
-          } catch (InterruptedException e) {
-            LOG.error("Interrupted while committing change, key: " + key + ", record: " + record, e);
-            // Restore interrupt status
-            Thread.currentThread().interrupt();
-            return false;
+        others.add(entry);
+      }
+    }
+
+    boolean success = false;
+    Exception error = null;
+    try {
+      ZNRecord merged = null;
+      try {
+        // accessor will fallback to zk if not found in cache
+        merged = first._accessor.get(first._key, null, first._options);
+      } catch (ZkNoNodeException e) {
+        // OK.
+      }
+
+      /**
+       * If the local cache does not contain a value, need to check if there is a
+       * value in ZK; use it as initial value if exists
+       */
+      for (Entry entry : processed) {
+        if (merged == null && entry._record.getDeltaList().isEmpty()) {
+          merged = new ZNRecord(entry._record);
+        } else {
+          if (merged == null) {
+            // a delta is applied to an empty record, so a subtract leaves nothing behind
+            merged = new ZNRecord(entry._record.getId());
           }
+          merged.merge(entry._record);
         }
       }
+      if (processed.get(processed.size() - 1)._removeIfEmpty
+          && merged.getMapFields().isEmpty()) {
+        first._accessor.remove(first._key, first._options);
+        success = true;
+      } else {
+        success = first._accessor.set(first._key, merged, first._options);
+      }
+    } catch (Exception e) {
+      LOG.error("Fail to commit change, key: " + first._key, e);
+      error = e;
     }
-    return true;
-  }
 
+    for (Entry entry : processed) {
+      if (error != null) {
+        entry._future.setException(error);
+      } else {
+        entry._future.set(success);
+      }
+    }
+    if (!others.isEmpty()) {
+      commitKey(others);
+    }
+  }
 }
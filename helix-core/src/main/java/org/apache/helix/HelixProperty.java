@@ -42,6 +42,57 @@ public class HelixProperty {
 
   protected final ZNRecord _record;
 
+  /**
+   * Metadata of a HelixProperty znode, used to detect whether a cached property is stale
+   */
+  public static class Stat {
+    private final int _version;
+    private final long _creationTime;
+    private final long _modifiedTime;
+
+    public Stat(int version, long creationTime, long modifiedTime) {
+      _version = version;
+      _creationTime = creationTime;
+      _modifiedTime = modifiedTime;
+    }
+
+    public int getVersion() {
+      return _version;
+    }
+
+    public long getCreationTime() {
+      return _creationTime;
+    }
+
+    public long getModifiedTime() {
+      return _modifiedTime;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Stat)) {
+        return false;
+      }
+      Stat that = (Stat) obj;
+      return _version == that._version && _creationTime == that._creationTime
+          && _modifiedTime == that._modifiedTime;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = _version;
+      result = 31 * result + (int) (_creationTime ^ (_creationTime >>> 32));
+      result = 31 * result + (int) (_modifiedTime ^ (_modifiedTime >>> 32));
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "Stat {_version=" + _version + ", _creationTime=" + _creationTime
+          + ", _modifiedTime=" + _modifiedTime + "}";
+    }
+  }
+
   /**
    * Initialize the property with an identifier
    * @param id
@@ -76,10 +127,10 @@ public class HelixProperty {
   }
 
   /**
-   * Get the backing ZNRecord
+   * Get the backing ZNRecord. Subclasses that keep state outside the record sync it here.
    * @return ZNRecord object associated with this property
    */
-  public final ZNRecord getRecord() {
+  public ZNRecord getRecord() {
     return _record;
   }
 
@@ -21,6 +21,7 @@ package org.apache.helix;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -33,6 +34,7 @@ public class NotificationContext {
   public enum MapKey {
     TASK_EXECUTOR,
     CURRENT_STATE_UPDATE,
+    CURRENT_STATE_WRITER,
     HELIX_TASK_RESULT
   }
 
@@ -41,6 +43,7 @@ public class NotificationContext {
   private HelixManager _manager;
   private Type _type;
   private String _pathChanged;
+  private Set<String> _changedChildren;
   private String _eventName;
 
   /**
@@ -158,4 +161,22 @@ public class NotificationContext {
   public void setPathChanged(String pathChanged) {
     this._pathChanged = pathChanged;
   }
+
+  /**
+   * Get the names of the children that were added, updated or removed since the previous
+   * callback. Only set by handlers that cache child values
+   * @return names of the changed children, or null if unknown, in which case any child may have
+   *         changed
+   */
+  public Set<String> getChangedChildren() {
+    return _changedChildren;
+  }
+
+  /**
+   * Set the names of the children that were added, updated or removed since the previous callback
+   * @param changedChildren names of the changed children, or null if unknown
+   */
+  public void setChangedChildren(Set<String> changedChildren) {
+    this._changedChildren = changedChildren;
+  }
 }
@@ -31,6 +31,7 @@ import static org.apache.helix.PropertyType.STATEMODELDEFS;
 import static org.apache.helix.PropertyType.STATUSUPDATES;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -187,6 +188,23 @@ public class PropertyPathBuilder {
     return result;
   }
 
+  /**
+   * Get the path of the topmost node of a property type, with a * in place of every parameter
+   * other than the cluster name, so that the pattern covers the nodes of that type under all
+   * instances
+   * @param type the property type
+   * @param clusterName the cluster
+   * @return path pattern, or null if the type has no path
+   */
+  public static String getPathPattern(PropertyType type, String clusterName) {
+    Map<Integer, String> templates = templateMap.get(type);
+    if (templates == null || templates.isEmpty()) {
+      return null;
+    }
+    String template = templates.get(Collections.min(templates.keySet()));
+    return template.replace("{clusterName}", clusterName).replaceAll("\\{.+?\\}", "*");
+  }
+
   /**
    * Given a path, find the name of an instance at that path
    * @param path
@@ -19,11 +19,13 @@ package org.apache.helix.controller;
  * under the License.
  */
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicReference;
@@ -32,6 +34,7 @@ import org.I0Itec.zkclient.exception.ZkInterruptedException;
 import org.apache.helix.ConfigChangeListener;
 import org.apache.helix.ControllerChangeListener;
 import org.apache.helix.CurrentStateChangeListener;
+import org.apache.helix.HelixConstants.ChangeType;
 import org.apache.helix.HelixDataAccessor;
 import org.apache.helix.HelixManager;
 import org.apache.helix.IdealStateChangeListener;
@@ -43,6 +46,7 @@ import org.apache.helix.NotificationContext.Type;
 import org.apache.helix.PropertyKey.Builder;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.controller.pipeline.Pipeline;
+import org.apache.helix.controller.pipeline.PipelineProfiler;
 import org.apache.helix.controller.pipeline.PipelineRegistry;
 import org.apache.helix.controller.stages.BestPossibleStateCalcStage;
 import org.apache.helix.controller.stages.ClusterDataCache;
@@ -60,16 +64,21 @@ import org.apache.helix.controller.stages.ReadClusterDataStage;
 import org.apache.helix.controller.stages.ResourceComputationStage;
 import org.apache.helix.controller.stages.ResourceValidationStage;
 import org.apache.helix.controller.stages.TaskAssignmentStage;
+import org.apache.helix.manager.zk.ZkIoStats;
 import org.apache.helix.model.CurrentState;
 import org.apache.helix.model.IdealState;
 import org.apache.helix.model.InstanceConfig;
 import org.apache.helix.model.LiveInstance;
 import org.apache.helix.model.Message;
 import org.apache.helix.model.PauseSignal;
+import org.apache.helix.monitoring.mbeans.ClusterEventQueueMonitor;
 import org.apache.helix.monitoring.mbeans.ClusterStatusMonitor;
 import org.apache.helix.task.TaskDriver;
 import org.apache.log4j.Logger;
 
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
 /**
  * Cluster Controllers main goal is to keep the cluster state as close as possible to Ideal State.
  * It does this by listening to changes in cluster state and scheduling new tasks to get cluster
@@ -88,6 +97,44 @@ public class GenericHelixController implements ConfigChangeListener, IdealStateC
     ControllerChangeListener, InstanceConfigChangeListener {
   private static final Logger logger = Logger.getLogger(GenericHelixController.class.getName());
   private static final long EVENT_THREAD_JOIN_TIMEOUT = 1000;
+
+  /**
+   * How long the event thread holds a queued event so that a burst of callbacks is handled by a
+   * single pipeline run, 0 (the default) disables batching
+   */
+  public static final String EVENT_BATCH_WINDOW_MS = "helix.controller.eventBatchWindowMs";
+
+  /**
+   * If true, a queued event absorbs the other queued events whose pipelines it already runs
+   */
+  public static final String EVENT_COALESCING_ENABLED = "helix.controller.eventCoalescingEnabled";
+
+  /**
+   * Directory to periodically dump the pipeline profiles to as CSV, no dumps if not set
+   */
+  public static final String PROFILER_DUMP_DIR = "helix.controller.profilerDumpDir";
+  public static final String PROFILER_DUMP_INTERVAL_MS = "helix.controller.profilerDumpIntervalMs";
+  public static final String PROFILER_MAX_DUMP_FILES = "helix.controller.profilerMaxDumpFiles";
+  private static final long DEFAULT_PROFILER_DUMP_INTERVAL_MS = 60 * 1000L;
+  private static final int DEFAULT_PROFILER_MAX_DUMP_FILES = 10;
+
+  /**
+   * Priorities of the default events, higher priorities are processed first. Instances going away
+   * need to be noticed before anything else, and periodic rebalancing can always wait.
+   */
+  private static final Map<String, Integer> DEFAULT_EVENT_PRIORITIES;
+  static {
+    DEFAULT_EVENT_PRIORITIES = Maps.newHashMap();
+    DEFAULT_EVENT_PRIORITIES.put("liveInstanceChange", 3);
+    DEFAULT_EVENT_PRIORITIES.put("resume", 2);
+    DEFAULT_EVENT_PRIORITIES.put("idealStateChange", 1);
+    DEFAULT_EVENT_PRIORITIES.put("configChange", 1);
+    DEFAULT_EVENT_PRIORITIES.put("currentStateChange", 0);
+    DEFAULT_EVENT_PRIORITIES.put("messageChange", 0);
+    DEFAULT_EVENT_PRIORITIES.put("externalView", -1);
+    DEFAULT_EVENT_PRIORITIES.put("periodicalRebalance", -1);
+  }
+
   volatile boolean init = false;
   private final PipelineRegistry _registry;
 
@@ -95,6 +142,8 @@ public class GenericHelixController implements ConfigChangeListener, IdealStateC
   final AtomicReference<Map<String, LiveInstance>> _lastSeenSessions;
 
   ClusterStatusMonitor _clusterStatusMonitor;
+  ClusterEventQueueMonitor _eventQueueMonitor;
+  PipelineProfiler _pipelineProfiler;
 
   /**
    * A queue for controller events and a thread that will consume it
@@ -231,13 +280,55 @@ public class GenericHelixController implements ConfigChangeListener, IdealStateC
     _registry = registry;
     _lastSeenInstances = new AtomicReference<Map<String, LiveInstance>>();
     _lastSeenSessions = new AtomicReference<Map<String, LiveInstance>>();
-    _eventQueue = new ClusterEventBlockingQueue();
+    _eventQueue =
+        new ClusterEventBlockingQueue(Long.getLong(EVENT_BATCH_WINDOW_MS, 0L),
+            DEFAULT_EVENT_PRIORITIES);
+    if (Boolean.getBoolean(EVENT_COALESCING_ENABLED)) {
+      _eventQueue.setCoalescingRules(computeCoalescingRules(registry));
+    }
     _eventThread = new ClusterEventProcessor();
     _eventThread.setDaemon(true);
     _eventThread.start();
     _cache = new ClusterDataCache();
   }
 
+  /**
+   * An event can absorb another queued event if it runs all the pipelines of the other event. The
+   * data cache keeps track of what changed, so the single pipeline run picks up the changes of the
+   * absorbed events as well.
+   * @param registry the pipelines for each event
+   * @return map of event name to the names of events it absorbs
+   */
+  static Map<String, Set<String>> computeCoalescingRules(PipelineRegistry registry) {
+    Map<String, Set<String>> rules = Maps.newHashMap();
+    for (String eventName : registry.getEventNames()) {
+      List<Pipeline> pipelines = registry.getPipelinesForEvent(eventName);
+      Set<String> absorbed = Sets.newHashSet();
+      for (String otherName : registry.getEventNames()) {
+        List<Pipeline> otherPipelines = registry.getPipelinesForEvent(otherName);
+        if (!otherName.equals(eventName) && !otherPipelines.isEmpty()
+            && pipelines.containsAll(otherPipelines)) {
+          absorbed.add(otherName);
+        }
+      }
+      if (!absorbed.isEmpty()) {
+        rules.put(eventName, absorbed);
+      }
+    }
+    return rules;
+  }
+
+  private static PipelineProfiler createPipelineProfiler(String clusterName) {
+    PipelineProfiler profiler = new PipelineProfiler(clusterName);
+    String dumpDir = System.getProperty(PROFILER_DUMP_DIR);
+    if (dumpDir != null) {
+      long interval = Long.getLong(PROFILER_DUMP_INTERVAL_MS, DEFAULT_PROFILER_DUMP_INTERVAL_MS);
+      int maxFiles = Integer.getInteger(PROFILER_MAX_DUMP_FILES, DEFAULT_PROFILER_MAX_DUMP_FILES);
+      profiler.startDump(new File(dumpDir), Math.max(interval, 1), Math.max(maxFiles, 1));
+    }
+    return profiler;
+  }
+
   /**
    * lock-always: caller always needs to obtain an external lock before call, calls to handleEvent()
    * should be serialized
@@ -276,10 +367,19 @@ public class GenericHelixController implements ConfigChangeListener, IdealStateC
         if (_clusterStatusMonitor == null) {
           _clusterStatusMonitor = new ClusterStatusMonitor(manager.getClusterName());
         }
+        if (_eventQueueMonitor == null) {
+          _eventQueueMonitor = new ClusterEventQueueMonitor(manager.getClusterName());
+          _eventQueueMonitor.init();
+          _eventQueue.setMonitor(_eventQueueMonitor);
+        }
+        if (_pipelineProfiler == null) {
+          _pipelineProfiler = createPipelineProfiler(manager.getClusterName());
+        }
         TaskDriver driver = new TaskDriver(manager);
         _clusterStatusMonitor.refreshWorkflowsStatus(driver);
         _clusterStatusMonitor.refreshJobsStatus(driver);
         event.addAttribute("clusterStatusMonitor", _clusterStatusMonitor);
+        event.addAttribute("PipelineProfiler", _pipelineProfiler);
       }
     }
 
@@ -294,6 +394,8 @@ public class GenericHelixController implements ConfigChangeListener, IdealStateC
 
     logger.info("START: Invoking controller pipeline for event: " + event.getName());
     long startTime = System.currentTimeMillis();
+    long startNs = System.nanoTime();
+    ZkIoStats startIo = ZkIoStats.snapshot();
     for (Pipeline pipeline : pipelines) {
       try {
         pipeline.handle(event);
@@ -305,6 +407,11 @@ public class GenericHelixController implements ConfigChangeListener, IdealStateC
       }
     }
     long endTime = System.currentTimeMillis();
+    PipelineProfiler profiler = event.getAttribute("PipelineProfiler");
+    if (profiler != null) {
+      profiler.recordEvent(event.getName(), System.nanoTime() - startNs, ZkIoStats.snapshot()
+          .minus(startIo));
+    }
     logger.info("END: Invoking controller pipeline for event: " + event.getName() + ", took "
         + (endTime - startTime) + " ms");
   }
@@ -319,6 +426,7 @@ public class GenericHelixController implements ConfigChangeListener, IdealStateC
     if (changeContext == null || changeContext.getType() != Type.CALLBACK) {
       _cache.requireFullRefresh();
     }
+    _cache.notifyDataChange(ChangeType.CURRENT_STATE);
     ClusterEvent event = new ClusterEvent("currentStateChange");
     event.addAttribute("helixmanager", changeContext.getManager());
     event.addAttribute("instanceName", instanceName);
@@ -335,6 +443,7 @@ public class GenericHelixController implements ConfigChangeListener, IdealStateC
     if (changeContext == null || changeContext.getType() != Type.CALLBACK) {
       _cache.requireFullRefresh();
     }
+    _cache.notifyDataChange(ChangeType.MESSAGE);
 
     ClusterEvent event = new ClusterEvent("messageChange");
     event.addAttribute("helixmanager", changeContext.getManager());
@@ -362,6 +471,7 @@ public class GenericHelixController implements ConfigChangeListener, IdealStateC
       liveInstances = Collections.emptyList();
     }
     _cache.setLiveInstances(liveInstances);
+    _cache.notifyDataChange(ChangeType.LIVE_INSTANCE);
 
     // Go though the live instance list and make sure that we are observing them
     // accordingly. The action is done regardless of the paused flag.
@@ -410,6 +520,7 @@ public class GenericHelixController implements ConfigChangeListener, IdealStateC
       idealStates = Collections.emptyList();
     }
     _cache.setIdealStates(idealStates);
+    _cache.notifyDataChange(ChangeType.IDEAL_STATE);
     ClusterEvent event = new ClusterEvent("idealStateChange");
     event.addAttribute("helixmanager", changeContext.getManager());
     event.addAttribute("changeContext", changeContext);
@@ -434,6 +545,7 @@ public class GenericHelixController implements ConfigChangeListener, IdealStateC
       configs = Collections.emptyList();
     }
     _cache.setInstanceConfigs(configs);
+    _cache.notifyDataChange(ChangeType.INSTANCE_CONFIG);
 
     ClusterEvent event = new ClusterEvent("configChange");
     event.addAttribute("changeContext", changeContext);
@@ -579,6 +691,15 @@ public class GenericHelixController implements ConfigChangeListener, IdealStateC
       _clusterStatusMonitor.reset();
       _clusterStatusMonitor = null;
     }
+    if (_eventQueueMonitor != null) {
+      _eventQueue.setMonitor(null);
+      _eventQueueMonitor.reset();
+      _eventQueueMonitor = null;
+    }
+    if (_pipelineProfiler != null) {
+      _pipelineProfiler.reset();
+      _pipelineProfiler = null;
+    }
   }
 
   public void shutdown() throws InterruptedException {
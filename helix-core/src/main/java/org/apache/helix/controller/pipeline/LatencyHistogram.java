@@ -0,0 +1,129 @@
+package org.apache.helix.controller.pipeline;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * A latency histogram with log-linear buckets in the style of HdrHistogram. Values below 32 get a
+ * bucket each, and every power-of-two range above that is split into 32 equal buckets, so a
+ * reported percentile is within about 3% of the recorded value no matter how large it is. Unlike
+ * a sample window, the histogram keeps every recorded value until it is reset.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKET_COUNT =
+      SUB_BUCKET_COUNT + (63 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+  private final long[] _counts;
+  private long _totalCount;
+  private long _sum;
+  private long _min;
+  private long _max;
+
+  public LatencyHistogram() {
+    _counts = new long[BUCKET_COUNT];
+    reset();
+  }
+
+  /**
+   * Record a value
+   * @param value a non-negative value, negative values are recorded as 0
+   */
+  public synchronized void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    _counts[bucketIndex(value)]++;
+    _totalCount++;
+    _sum += value;
+    _min = Math.min(_min, value);
+    _max = Math.max(_max, value);
+  }
+
+  public synchronized long getCount() {
+    return _totalCount;
+  }
+
+  public synchronized long getSum() {
+    return _sum;
+  }
+
+  public synchronized double getMean() {
+    return _totalCount == 0 ? 0 : (double) _sum / _totalCount;
+  }
+
+  public synchronized long getMin() {
+    return _totalCount == 0 ? 0 : _min;
+  }
+
+  public synchronized long getMax() {
+    return _totalCount == 0 ? 0 : _max;
+  }
+
+  /**
+   * Get the value at a percentile
+   * @param percentile a percentile in [0, 100]
+   * @return the upper bound of the bucket that holds the percentile, capped at the max value, or 0
+   *         if nothing was recorded
+   */
+  public synchronized long getValueAtPercentile(double percentile) {
+    if (_totalCount == 0) {
+      return 0;
+    }
+    double p = Math.min(Math.max(percentile, 0.0), 100.0);
+    long rank = Math.max(1, (long) Math.ceil(p / 100.0 * _totalCount));
+    long seen = 0;
+    for (int i = 0; i < _counts.length; i++) {
+      seen += _counts[i];
+      if (seen >= rank) {
+        return Math.min(bucketUpperBound(i), _max);
+      }
+    }
+    return _max;
+  }
+
+  public synchronized void reset() {
+    Arrays.fill(_counts, 0);
+    _totalCount = 0;
+    _sum = 0;
+    _min = Long.MAX_VALUE;
+    _max = 0;
+  }
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  static long bucketUpperBound(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+    long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
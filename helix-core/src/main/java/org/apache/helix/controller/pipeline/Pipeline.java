@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.helix.controller.stages.ClusterEvent;
+import org.apache.helix.manager.zk.ZkIoStats;
 import org.apache.log4j.Logger;
 
 public class Pipeline {
@@ -43,10 +44,17 @@ public class Pipeline {
     if (_stages == null) {
       return;
     }
+    PipelineProfiler profiler = event.getAttribute("PipelineProfiler");
     for (Stage stage : _stages) {
+      long startTime = System.nanoTime();
+      ZkIoStats startIo = profiler != null ? ZkIoStats.snapshot() : null;
       stage.preProcess();
       stage.process(event);
       stage.postProcess();
+      if (profiler != null) {
+        profiler.recordStage(stage.getStageName(), System.nanoTime() - startTime, ZkIoStats
+            .snapshot().minus(startIo));
+      }
     }
   }
 
@@ -0,0 +1,125 @@
+package org.apache.helix.controller.pipeline;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.helix.manager.zk.ZkIoStats;
+
+public class PipelineProfile implements PipelineProfileMBean {
+  private final String _type;
+  private final String _name;
+  private final LatencyHistogram _latencyUs;
+  private final AtomicLong _zkReadCount;
+  private final AtomicLong _zkReadBytes;
+  private final AtomicLong _zkWriteCount;
+  private final AtomicLong _zkWriteBytes;
+
+  /**
+   * @param type what is profiled, e.g. stage or event
+   * @param name name of the stage or event
+   */
+  public PipelineProfile(String type, String name) {
+    _type = type;
+    _name = name;
+    _latencyUs = new LatencyHistogram();
+    _zkReadCount = new AtomicLong(0);
+    _zkReadBytes = new AtomicLong(0);
+    _zkWriteCount = new AtomicLong(0);
+    _zkWriteBytes = new AtomicLong(0);
+  }
+
+  /**
+   * Record a single run
+   * @param latencyNs how long the run took in nanoseconds
+   * @param zkIo zookeeper operations done by the run, may be null
+   */
+  public void record(long latencyNs, ZkIoStats zkIo) {
+    _latencyUs.record(latencyNs / 1000);
+    if (zkIo != null) {
+      _zkReadCount.addAndGet(zkIo.getReadCount());
+      _zkReadBytes.addAndGet(zkIo.getReadBytes());
+      _zkWriteCount.addAndGet(zkIo.getWriteCount());
+      _zkWriteBytes.addAndGet(zkIo.getWriteBytes());
+    }
+  }
+
+  public String getType() {
+    return _type;
+  }
+
+  public String getName() {
+    return _name;
+  }
+
+  public LatencyHistogram getLatencyHistogram() {
+    return _latencyUs;
+  }
+
+  @Override
+  public long getCount() {
+    return _latencyUs.getCount();
+  }
+
+  @Override
+  public long getMeanLatencyUs() {
+    return (long) _latencyUs.getMean();
+  }
+
+  @Override
+  public long get50LatencyUs() {
+    return _latencyUs.getValueAtPercentile(50);
+  }
+
+  @Override
+  public long get95LatencyUs() {
+    return _latencyUs.getValueAtPercentile(95);
+  }
+
+  @Override
+  public long get99LatencyUs() {
+    return _latencyUs.getValueAtPercentile(99);
+  }
+
+  @Override
+  public long getMaxLatencyUs() {
+    return _latencyUs.getMax();
+  }
+
+  @Override
+  public long getZkReadCount() {
+    return _zkReadCount.get();
+  }
+
+  @Override
+  public long getZkReadBytes() {
+    return _zkReadBytes.get();
+  }
+
+  @Override
+  public long getZkWriteCount() {
+    return _zkWriteCount.get();
+  }
+
+  @Override
+  public long getZkWriteBytes() {
+    return _zkWriteBytes.get();
+  }
+}
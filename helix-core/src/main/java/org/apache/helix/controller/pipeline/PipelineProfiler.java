@@ -0,0 +1,243 @@
+package org.apache.helix.controller.pipeline;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.helix.manager.zk.ZkIoStats;
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Collects latency histograms and zookeeper traffic for every pipeline stage and every event type
+ * of a cluster. Each profile is exposed as an MBean, and the profiler can periodically dump all
+ * profiles to a CSV file, keeping a number of older dumps around.
+ */
+public class PipelineProfiler {
+  private static final Logger LOG = Logger.getLogger(PipelineProfiler.class);
+  public static final String PROFILER_DOMAIN = "PipelineProfiler";
+  static final String STAGE_TYPE = "stage";
+  static final String EVENT_TYPE = "event";
+
+  private final String _clusterName;
+  private final MBeanServer _beanServer;
+  private final Map<String, PipelineProfile> _stageProfiles;
+  private final Map<String, PipelineProfile> _eventProfiles;
+  private ScheduledExecutorService _dumpExecutor;
+
+  public PipelineProfiler(String clusterName) {
+    _clusterName = clusterName;
+    _beanServer = ManagementFactory.getPlatformMBeanServer();
+    _stageProfiles = new ConcurrentHashMap<String, PipelineProfile>();
+    _eventProfiles = new ConcurrentHashMap<String, PipelineProfile>();
+  }
+
+  /**
+   * Record a run of a stage
+   * @param stageName the stage
+   * @param latencyNs how long the stage took in nanoseconds
+   * @param zkIo zookeeper operations done by the stage
+   */
+  public void recordStage(String stageName, long latencyNs, ZkIoStats zkIo) {
+    getOrCreateProfile(_stageProfiles, STAGE_TYPE, stageName).record(latencyNs, zkIo);
+  }
+
+  /**
+   * Record all pipelines run for an event
+   * @param eventName the event type
+   * @param latencyNs how long the pipelines took in nanoseconds
+   * @param zkIo zookeeper operations done by the pipelines
+   */
+  public void recordEvent(String eventName, long latencyNs, ZkIoStats zkIo) {
+    getOrCreateProfile(_eventProfiles, EVENT_TYPE, eventName).record(latencyNs, zkIo);
+  }
+
+  public Map<String, PipelineProfile> getStageProfiles() {
+    return _stageProfiles;
+  }
+
+  public Map<String, PipelineProfile> getEventProfiles() {
+    return _eventProfiles;
+  }
+
+  /**
+   * Write all profiles as CSV, one line per stage or event type
+   * @param writer the output
+   */
+  public void writeCsv(Writer writer) {
+    PrintWriter out = new PrintWriter(writer);
+    out.println("timestamp,cluster,type,name,count,meanUs,p50Us,p95Us,p99Us,maxUs,"
+        + "zkReads,zkReadBytes,zkWrites,zkWriteBytes");
+    long timestamp = System.currentTimeMillis();
+    List<PipelineProfile> profiles = Lists.newArrayList(_stageProfiles.values());
+    profiles.addAll(_eventProfiles.values());
+    for (PipelineProfile profile : profiles) {
+      out.println(timestamp + "," + _clusterName + "," + profile.getType() + ","
+          + profile.getName() + "," + profile.getCount() + "," + profile.getMeanLatencyUs() + ","
+          + profile.get50LatencyUs() + "," + profile.get95LatencyUs() + ","
+          + profile.get99LatencyUs() + "," + profile.getMaxLatencyUs() + ","
+          + profile.getZkReadCount() + "," + profile.getZkReadBytes() + ","
+          + profile.getZkWriteCount() + "," + profile.getZkWriteBytes());
+    }
+    out.flush();
+  }
+
+  /**
+   * Dump all profiles to a CSV file, moving earlier dumps to file.1, file.2 and so on
+   * @param file the dump file
+   * @param maxFiles how many dumps to keep, including the new one
+   * @throws IOException if the dump cannot be written
+   */
+  public void dump(File file, int maxFiles) throws IOException {
+    for (int i = maxFiles - 1; i > 0; i--) {
+      File older = new File(file.getPath() + (i > 1 ? "." + (i - 1) : ""));
+      if (older.exists()) {
+        File rolled = new File(file.getPath() + "." + i);
+        if (rolled.exists() && !rolled.delete()) {
+          LOG.warn("Fail to delete old pipeline profile dump " + rolled);
+        }
+        if (!older.renameTo(rolled)) {
+          LOG.warn("Fail to roll pipeline profile dump " + older + " to " + rolled);
+        }
+      }
+    }
+    Writer writer = new FileWriter(file);
+    try {
+      writeCsv(writer);
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Start dumping the profiles periodically to pipeline-profile-[cluster].csv
+   * @param dir the directory to dump to
+   * @param intervalMs time between two dumps
+   * @param maxFiles how many dumps to keep
+   */
+  public synchronized void startDump(File dir, long intervalMs, final int maxFiles) {
+    if (_dumpExecutor != null) {
+      return;
+    }
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      LOG.error("Fail to create pipeline profile dump directory " + dir);
+      return;
+    }
+    final File file = new File(dir, "pipeline-profile-" + _clusterName + ".csv");
+    _dumpExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "PipelineProfilerDump-" + _clusterName);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    _dumpExecutor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          dump(file, maxFiles);
+        } catch (Exception e) {
+          LOG.warn("Fail to dump pipeline profiles to " + file, e);
+        }
+      }
+    }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    LOG.info("Dump pipeline profiles of cluster " + _clusterName + " to " + file + " every "
+        + intervalMs + " ms");
+  }
+
+  /**
+   * Stop dumping, and remove all profiles and their MBeans
+   */
+  public synchronized void reset() {
+    if (_dumpExecutor != null) {
+      _dumpExecutor.shutdownNow();
+      _dumpExecutor = null;
+    }
+    for (PipelineProfile profile : _stageProfiles.values()) {
+      unregister(profile);
+    }
+    for (PipelineProfile profile : _eventProfiles.values()) {
+      unregister(profile);
+    }
+    _stageProfiles.clear();
+    _eventProfiles.clear();
+  }
+
+  private PipelineProfile getOrCreateProfile(Map<String, PipelineProfile> profiles, String type,
+      String name) {
+    PipelineProfile profile = profiles.get(name);
+    if (profile == null) {
+      synchronized (this) {
+        profile = profiles.get(name);
+        if (profile == null) {
+          profile = new PipelineProfile(type, name);
+          profiles.put(name, profile);
+          register(profile);
+        }
+      }
+    }
+    return profile;
+  }
+
+  private ObjectName getObjectName(PipelineProfile profile) throws Exception {
+    return new ObjectName(String.format("%s: cluster=%s,%s=%s", PROFILER_DOMAIN, _clusterName,
+        profile.getType(), profile.getName()));
+  }
+
+  private void register(PipelineProfile profile) {
+    try {
+      ObjectName name = getObjectName(profile);
+      if (_beanServer.isRegistered(name)) {
+        _beanServer.unregisterMBean(name);
+      }
+      _beanServer.registerMBean(profile, name);
+    } catch (Exception e) {
+      LOG.warn("Could not register MBean for " + profile.getType() + " " + profile.getName(), e);
+    }
+  }
+
+  private void unregister(PipelineProfile profile) {
+    try {
+      ObjectName name = getObjectName(profile);
+      if (_beanServer.isRegistered(name)) {
+        _beanServer.unregisterMBean(name);
+      }
+    } catch (Exception e) {
+      LOG.warn("Could not unregister MBean for " + profile.getType() + " " + profile.getName(), e);
+    }
+  }
+}
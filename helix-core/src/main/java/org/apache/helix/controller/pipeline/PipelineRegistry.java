@@ -24,6 +24,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class PipelineRegistry {
   Map<String, List<Pipeline>> _map;
@@ -48,4 +49,8 @@ public class PipelineRegistry {
     }
     return Collections.emptyList();
   }
+
+  public Set<String> getEventNames() {
+    return Collections.unmodifiableSet(_map.keySet());
+  }
 }
@@ -19,10 +19,15 @@ package org.apache.helix.controller.stages;
  * under the License.
  */
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-
 import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
 import org.apache.helix.HelixManager;
 import org.apache.helix.controller.pipeline.AbstractBaseStage;
 import org.apache.helix.controller.pipeline.StageException;
@@ -31,6 +36,7 @@ import org.apache.helix.controller.rebalancer.CustomRebalancer;
 import org.apache.helix.controller.rebalancer.Rebalancer;
 import org.apache.helix.controller.rebalancer.SemiAutoRebalancer;
 import org.apache.helix.controller.rebalancer.internal.MappingCalculator;
+import org.apache.helix.model.ClusterConfig;
 import org.apache.helix.model.IdealState;
 import org.apache.helix.model.Partition;
 import org.apache.helix.model.Resource;
@@ -51,6 +57,8 @@ import org.apache.log4j.Logger;
 public class BestPossibleStateCalcStage extends AbstractBaseStage {
   private static final Logger logger = Logger.getLogger(BestPossibleStateCalcStage.class.getName());
 
+  private ForkJoinPool _forkJoinPool;
+
   @Override
   public void process(ClusterEvent event) throws Exception {
     long startTime = System.currentTimeMillis();
@@ -89,7 +97,7 @@ public class BestPossibleStateCalcStage extends AbstractBaseStage {
   }
 
   private BestPossibleStateOutput compute(ClusterEvent event, Map<String, Resource> resourceMap,
-      CurrentStateOutput currentStateOutput) {
+      CurrentStateOutput currentStateOutput) throws InterruptedException {
     ClusterDataCache cache = event.getAttribute("ClusterDataCache");
 
     BestPossibleStateOutput output = new BestPossibleStateOutput();
@@ -105,14 +113,115 @@ public class BestPossibleStateCalcStage extends AbstractBaseStage {
           taskDriver));
     }
 
-    Iterator<ResourcePriority> itr = resourcePriorityQueue.iterator();
-    while (itr.hasNext()) {
-      computeResourceBestPossibleState(event, cache, currentStateOutput, itr.next().getResource(), output);
+    int threads = 1;
+    ClusterConfig clusterConfig = cache.getClusterConfig();
+    if (clusterConfig != null) {
+      threads = clusterConfig.getBestPossibleCalculationThreads();
+    }
+
+    if (threads <= 1) {
+      while (!resourcePriorityQueue.isEmpty()) {
+        computeResourceBestPossibleState(event, cache, currentStateOutput,
+            resourcePriorityQueue.poll().getResource(), output);
+      }
+      return output;
+    }
+
+    // Resources using the built-in rebalancers are computed concurrently. Task and user-defined
+    // rebalancers may share state across resources (e.g. the active task count of participants),
+    // so those are computed on this thread in priority order while the others are running.
+    ForkJoinPool pool = getForkJoinPool(threads);
+    List<Future<BestPossibleStateOutput>> futures =
+        new ArrayList<Future<BestPossibleStateOutput>>();
+    List<Resource> serialResources = new ArrayList<Resource>();
+    while (!resourcePriorityQueue.isEmpty()) {
+      Resource resource = resourcePriorityQueue.poll().getResource();
+      if (isConcurrentComputable(cache.getIdealState(resource.getResourceName()))) {
+        futures.add(pool.submit(
+            new ResourceBestPossibleStateCalculator(event, cache, currentStateOutput, resource)));
+      } else {
+        serialResources.add(resource);
+      }
+    }
+
+    for (Resource resource : serialResources) {
+      computeResourceBestPossibleState(event, cache, currentStateOutput, resource, output);
+    }
+
+    for (Future<BestPossibleStateOutput> future : futures) {
+      try {
+        output.merge(future.get());
+      } catch (ExecutionException e) {
+        logger.error("Error computing best possible state concurrently", e.getCause());
+      }
     }
 
+    logger.info("Computed best possible states of " + futures.size()
+        + " resources concurrently with " + threads + " threads, and " + serialResources.size()
+        + " resources serially");
     return output;
   }
 
+  private boolean isConcurrentComputable(IdealState idealState) {
+    if (idealState == null || idealState.getRebalancerClassName() != null) {
+      return false;
+    }
+    switch (idealState.getRebalanceMode()) {
+    case FULL_AUTO:
+    case SEMI_AUTO:
+    case CUSTOMIZED:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  private synchronized ForkJoinPool getForkJoinPool(int parallelism) {
+    if (_forkJoinPool == null || _forkJoinPool.getParallelism() != parallelism) {
+      if (_forkJoinPool != null) {
+        _forkJoinPool.shutdown();
+      }
+      logger.info("Create fork-join pool with parallelism " + parallelism
+          + " for best possible state calculation");
+      _forkJoinPool = new ForkJoinPool(parallelism);
+    }
+    return _forkJoinPool;
+  }
+
+  @Override
+  public synchronized void release() {
+    if (_forkJoinPool != null) {
+      _forkJoinPool.shutdown();
+      _forkJoinPool = null;
+    }
+  }
+
+  /**
+   * Computes the best possible state of a single resource into its own output, so that
+   * resources can be computed concurrently and merged afterwards.
+   */
+  private class ResourceBestPossibleStateCalculator implements Callable<BestPossibleStateOutput> {
+    private final ClusterEvent _event;
+    private final ClusterDataCache _cache;
+    private final CurrentStateOutput _currentStateOutput;
+    private final Resource _resource;
+
+    ResourceBestPossibleStateCalculator(ClusterEvent event, ClusterDataCache cache,
+        CurrentStateOutput currentStateOutput, Resource resource) {
+      _event = event;
+      _cache = cache;
+      _currentStateOutput = currentStateOutput;
+      _resource = resource;
+    }
+
+    @Override
+    public BestPossibleStateOutput call() {
+      BestPossibleStateOutput output = new BestPossibleStateOutput();
+      computeResourceBestPossibleState(_event, _cache, _currentStateOutput, _resource, output);
+      return output;
+    }
+  }
+
   private void computeResourceBestPossibleState(ClusterEvent event, ClusterDataCache cache,
       CurrentStateOutput currentStateOutput, Resource resource, BestPossibleStateOutput output) {
     // for each ideal state
@@ -102,4 +102,22 @@ public class BestPossibleStateOutput extends ResourcesStateMap {
     }
     _preferenceLists.put(resource, resourcePreferenceLists);
   }
+
+  /**
+   * Add the states and preference lists of all resources in another output to this one,
+   * replacing those of resources present in both.
+   *
+   * @param other
+   */
+  public void merge(BestPossibleStateOutput other) {
+    for (Map.Entry<String, PartitionStateMap> e : other.getResourceStatesMap().entrySet()) {
+      setState(e.getKey(), e.getValue());
+    }
+    if (other.getPreferenceLists() != null) {
+      for (Map.Entry<String, Map<String, List<String>>> e : other.getPreferenceLists()
+          .entrySet()) {
+        setPreferenceLists(e.getKey(), e.getValue());
+      }
+    }
+  }
 }
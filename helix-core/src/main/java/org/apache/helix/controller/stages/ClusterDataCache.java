@@ -29,13 +29,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.helix.HelixConstants.ChangeType;
 import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.HelixProperty;
 import org.apache.helix.PropertyKey;
 import org.apache.helix.PropertyKey.Builder;
+import org.apache.helix.manager.zk.ZKHelixDataAccessor;
 import org.apache.helix.model.ClusterConfig;
 import org.apache.helix.model.ClusterConstraints;
 import org.apache.helix.model.ClusterConstraints.ConstraintType;
 import org.apache.helix.model.CurrentState;
+import org.apache.helix.model.ExternalView;
 import org.apache.helix.model.IdealState;
 import org.apache.helix.model.InstanceConfig;
 import org.apache.helix.model.LiveInstance;
@@ -77,14 +81,44 @@ public class ClusterDataCache {
   // maintain a cache of participant messages across pipeline runs
   Map<String, Map<String, Message>> _messageCache = Maps.newHashMap();
 
+  // maintain a cache of current states and their znode stats across pipeline runs, keyed by path
+  Map<String, CurrentState> _currentStateCache = Maps.newHashMap();
+  Map<String, HelixProperty.Stat> _currentStateStatCache = Maps.newHashMap();
+
+  // external views last written by the controller, and the resources whose external views may
+  // be outdated since they were last computed
+  Map<String, ExternalView> _externalViewMap = Maps.newHashMap();
+  Set<String> _externalViewDirtyResources = Sets.newHashSet();
+  boolean _externalViewFullRecompute = true;
+
   Map<String, Integer> _participantActiveTaskCount = new HashMap<String, Integer>();
 
+  // properties the controller does not watch, checked by their stats on every refresh
+  final PolledProperties<ResourceConfig> _resourceConfigs = new PolledProperties<ResourceConfig>();
+  final PolledProperties<StateModelDefinition> _stateModelDefs =
+      new PolledProperties<StateModelDefinition>();
+  final PolledProperties<ClusterConstraints> _constraints =
+      new PolledProperties<ClusterConstraints>();
+  final PolledProperties<ClusterConfig> _clusterConfigs = new PolledProperties<ClusterConfig>();
+
+  // task framework configs and contexts across pipeline runs
+  final TaskDataCache _taskDataCache = new TaskDataCache();
+
+  // whether each type of cluster data has changed since the last refresh
+  Map<ChangeType, Boolean> _propertyDataChangedMap = Maps.newHashMap();
+
   boolean _init = true;
 
   boolean _updateInstanceOfflineTime = true;
 
   private static final Logger LOG = Logger.getLogger(ClusterDataCache.class.getName());
 
+  public ClusterDataCache() {
+    for (ChangeType changeType : ChangeType.values()) {
+      _propertyDataChangedMap.put(changeType, true);
+    }
+  }
+
   /**
    * This refreshes the cluster data by re-fetching the data from zookeeper in
    * an efficient way
@@ -96,22 +130,45 @@ public class ClusterDataCache {
     long startTime = System.currentTimeMillis();
 
     Builder keyBuilder = accessor.keyBuilder();
+    int numPathsRead = 0;
 
     if (_init) {
+      _taskDataCache.clear();
+      _resourceConfigs.clear();
+      _stateModelDefs.clear();
+      _constraints.clear();
+      _clusterConfigs.clear();
       _idealStateCacheMap = accessor.getChildValuesMap(keyBuilder.idealStates());
       _liveInstanceCacheMap = accessor.getChildValuesMap(keyBuilder.liveInstances());
       _instanceConfigCacheMap = accessor.getChildValuesMap(keyBuilder.instanceConfigs());
+      _externalViewMap = accessor.getChildValuesMap(keyBuilder.externalViews());
+      numPathsRead += _idealStateCacheMap.size() + _liveInstanceCacheMap.size()
+          + _instanceConfigCacheMap.size() + _externalViewMap.size();
     }
     _idealStateMap = Maps.newHashMap(_idealStateCacheMap);
     _liveInstanceMap = Maps.newHashMap(_liveInstanceCacheMap);
     _instanceConfigMap = Maps.newHashMap(_instanceConfigCacheMap);
 
-    // TODO: We should listen on resource config change instead of fetching every time
-    //       And add back resourceConfigCacheMap
-    _resourceConfigMap = accessor.getChildValuesMap(keyBuilder.resourceConfigs());
-
-    _stateModelDefMap = accessor.getChildValuesMap(keyBuilder.stateModelDefs());
-    _constraintMap = accessor.getChildValuesMap(keyBuilder.constraints());
+    // simple fields of ideal states are copied to external views
+    if (_init || isDataChanged(ChangeType.IDEAL_STATE)) {
+      _externalViewFullRecompute = true;
+    }
+    // resource configs, state model definitions, constraints and cluster config are not watched
+    // by the controller, so their stats are checked on every refresh and changes re-read
+    boolean resourceConfigsChanged =
+        _resourceConfigs.refreshChildren(accessor, keyBuilder.resourceConfigs());
+    _resourceConfigMap = Maps.newHashMap(_resourceConfigs.getValueMap());
+    _taskDataCache.refresh(resourceConfigsChanged || _init ? _resourceConfigMap : null);
+    _stateModelDefs.refreshChildren(accessor, keyBuilder.stateModelDefs());
+    _stateModelDefMap = Maps.newHashMap(_stateModelDefs.getValueMap());
+    _constraints.refreshChildren(accessor, keyBuilder.constraints());
+    _constraintMap = Maps.newHashMap(_constraints.getValueMap());
+    if (_clusterConfigs.refresh(accessor, Collections.singletonList(keyBuilder.clusterConfig()))
+        || _init) {
+      refreshClusterConfig();
+    }
+    numPathsRead += _resourceConfigs.getNumRead() + _stateModelDefs.getNumRead()
+        + _constraints.getNumRead() + _clusterConfigs.getNumRead();
 
     if (_init || _updateInstanceOfflineTime) {
       updateOfflineInstanceHistory(accessor);
@@ -123,9 +180,61 @@ public class ClusterDataCache {
       }
     }
 
+    // message names are listed on every refresh, so the messages sent in the previous run are
+    // seen before their change notification arrives. only new messages are read
+    int numMessageChanges = refreshMessages(accessor);
+
+    // a participant updates its current state before it removes the message, and the two
+    // notifications may arrive in either order, so current states are re-read when messages
+    // change. otherwise a removed message next to a stale current state would have the
+    // transition sent again
+    if (_init || numMessageChanges > 0 || isDataChanged(ChangeType.CURRENT_STATE)
+        || isDataChanged(ChangeType.LIVE_INSTANCE)) {
+      numPathsRead += refreshCurrentStates(accessor);
+    }
+
+    long endTime = System.currentTimeMillis();
+    LOG.info("END: ClusterDataCache.refresh(), took " + (endTime - startTime) + " ms");
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Paths read: " + numPathsRead + ", changed data: " + _propertyDataChangedMap);
+    }
+
+    for (ChangeType changeType : ChangeType.values()) {
+      _propertyDataChangedMap.put(changeType, false);
+    }
+    _init = false;
+    return true;
+  }
+
+  private boolean isDataChanged(ChangeType changeType) {
+    return _propertyDataChangedMap.get(changeType);
+  }
+
+  /**
+   * Read the stats of the given properties. Stats are only available from a zookeeper-backed
+   * accessor; for any other accessor all stats are null, so the properties are always re-read.
+   */
+  static List<HelixProperty.Stat> getPropertyStats(HelixDataAccessor accessor,
+      List<PropertyKey> keys) {
+    if (accessor instanceof ZKHelixDataAccessor) {
+      return ((ZKHelixDataAccessor) accessor).getPropertyStats(keys);
+    }
+    return Collections.<HelixProperty.Stat> nCopies(keys.size(), null);
+  }
+
+  /**
+   * Refresh the messages of all live instances. Only messages that are not cached yet are read.
+   * @param accessor
+   * @return the number of messages added or removed since the last refresh
+   */
+  private int refreshMessages(HelixDataAccessor accessor) {
+    Builder keyBuilder = accessor.keyBuilder();
+
     Map<String, Map<String, Message>> msgMap = new HashMap<String, Map<String, Message>>();
     List<PropertyKey> newMessageKeys = Lists.newLinkedList();
     long purgeSum = 0;
+    int numRemoved = 0;
     for (String instanceName : _liveInstanceMap.keySet()) {
       // get the cache
       Map<String, Message> cachedMap = _messageCache.get(instanceName);
@@ -146,6 +255,7 @@ public class ClusterDataCache {
         String messageName = cachedNamesIter.next();
         if (!messageNames.contains(messageName)) {
           cachedNamesIter.remove();
+          numRemoved++;
         }
       }
       long purgeEnd = System.currentTimeMillis();
@@ -172,7 +282,48 @@ public class ClusterDataCache {
     _messageMap = Collections.unmodifiableMap(msgMap);
     LOG.debug("Purge took: " + purgeSum);
 
-    List<PropertyKey> currentStateKeys = Lists.newLinkedList();
+    return newMessageKeys.size() + numRemoved;
+  }
+
+  private void refreshClusterConfig() {
+    _idealStateRuleMap = Maps.newHashMap();
+    Iterator<ClusterConfig> clusterConfigIter =
+        _clusterConfigs.getValueMap().values().iterator();
+    _clusterConfig = clusterConfigIter.hasNext() ? clusterConfigIter.next() : null;
+    if (_clusterConfig != null) {
+      for (String simpleKey : _clusterConfig.getRecord().getSimpleFields().keySet()) {
+        if (simpleKey.startsWith(IDEAL_STATE_RULE_PREFIX)) {
+          String simpleValue = _clusterConfig.getRecord().getSimpleField(simpleKey);
+          String[] rules = simpleValue.split("(?<!\\\\),");
+          Map<String, String> singleRule = Maps.newHashMap();
+          for (String rule : rules) {
+            String[] keyValue = rule.split("(?<!\\\\)=");
+            if (keyValue.length >= 2) {
+              singleRule.put(keyValue[0], keyValue[1]);
+            }
+          }
+          _idealStateRuleMap.put(simpleKey, singleRule);
+        }
+      }
+    }
+  }
+
+  /**
+   * Refresh the current states of all live instances. Only the current states whose znode stat
+   * has changed since the last refresh are re-read; the rest are served from the cache. A full
+   * re-read is done after {@link #requireFullRefresh()}.
+   * @param accessor
+   * @return the number of current states read from zookeeper
+   */
+  private int refreshCurrentStates(HelixDataAccessor accessor) {
+    Builder keyBuilder = accessor.keyBuilder();
+
+    if (_init) {
+      _currentStateCache.clear();
+      _currentStateStatCache.clear();
+    }
+
+    List<PropertyKey> currentStateKeys = Lists.newArrayList();
     Map<String, Map<String, Map<String, CurrentState>>> allCurStateMap =
         new HashMap<String, Map<String, Map<String, CurrentState>>>();
     for (String instanceName : _liveInstanceMap.keySet()) {
@@ -196,10 +347,62 @@ public class ClusterDataCache {
         instanceCurStateMap.put(sessionId, sessionCurStateMap);
       }
     }
-    List<CurrentState> currentStates = accessor.getProperty(currentStateKeys);
-    Iterator<PropertyKey> csKeyIter = currentStateKeys.iterator();
-    for (CurrentState currentState : currentStates) {
-      PropertyKey key = csKeyIter.next();
+
+    // purge current states of expired sessions and dropped resources
+    Set<String> currentStatePaths = Sets.newHashSet();
+    for (PropertyKey key : currentStateKeys) {
+      currentStatePaths.add(key.getPath());
+    }
+    Iterator<Map.Entry<String, CurrentState>> cachedCurStateIter =
+        _currentStateCache.entrySet().iterator();
+    while (cachedCurStateIter.hasNext()) {
+      Map.Entry<String, CurrentState> entry = cachedCurStateIter.next();
+      if (!currentStatePaths.contains(entry.getKey())) {
+        _externalViewDirtyResources.add(entry.getValue().getResourceName());
+        cachedCurStateIter.remove();
+      }
+    }
+    _currentStateStatCache.keySet().retainAll(currentStatePaths);
+
+    // only re-read current states that are new or whose stat changed. bucketized current states
+    // are always re-read since a change to a bucket does not change the stat of the parent
+    List<HelixProperty.Stat> stats = getPropertyStats(accessor, currentStateKeys);
+    List<PropertyKey> reloadKeys = Lists.newArrayList();
+    List<HelixProperty.Stat> reloadStats = Lists.newArrayList();
+    for (int i = 0; i < currentStateKeys.size(); i++) {
+      PropertyKey key = currentStateKeys.get(i);
+      HelixProperty.Stat stat = stats.get(i);
+      String path = key.getPath();
+      CurrentState cachedCurState = _currentStateCache.get(path);
+      if (stat == null || cachedCurState == null || cachedCurState.getBucketSize() > 0
+          || !stat.equals(_currentStateStatCache.get(path))) {
+        reloadKeys.add(key);
+        _externalViewDirtyResources.add(key.getParams()[3]);
+        reloadStats.add(stat);
+      }
+    }
+
+    List<CurrentState> reloadedCurStates = accessor.getProperty(reloadKeys);
+    Iterator<HelixProperty.Stat> reloadStatIter = reloadStats.iterator();
+    for (int i = 0; i < reloadKeys.size(); i++) {
+      String path = reloadKeys.get(i).getPath();
+      CurrentState currentState = reloadedCurStates.get(i);
+      HelixProperty.Stat stat = reloadStatIter.next();
+      if (currentState != null && stat != null) {
+        _currentStateCache.put(path, currentState);
+        _currentStateStatCache.put(path, stat);
+      } else if (currentState != null) {
+        // the stat read raced with a removal/re-creation, don't trust it on the next refresh
+        _currentStateCache.put(path, currentState);
+        _currentStateStatCache.remove(path);
+      } else {
+        _currentStateCache.remove(path);
+        _currentStateStatCache.remove(path);
+      }
+    }
+
+    for (PropertyKey key : currentStateKeys) {
+      CurrentState currentState = _currentStateCache.get(key.getPath());
       String[] params = key.getParams();
       if (currentState != null && params.length >= 4) {
         Map<String, Map<String, CurrentState>> instanceCurStateMap = allCurStateMap.get(params[1]);
@@ -213,37 +416,11 @@ public class ClusterDataCache {
     }
     _currentStateMap = Collections.unmodifiableMap(allCurStateMap);
 
-    _idealStateRuleMap = Maps.newHashMap();
-    _clusterConfig = accessor.getProperty(keyBuilder.clusterConfig());
-    if (_clusterConfig != null) {
-      for (String simpleKey : _clusterConfig.getRecord().getSimpleFields().keySet()) {
-        if (simpleKey.startsWith(IDEAL_STATE_RULE_PREFIX)) {
-          String simpleValue = _clusterConfig.getRecord().getSimpleField(simpleKey);
-          String[] rules = simpleValue.split("(?<!\\\\),");
-          Map<String, String> singleRule = Maps.newHashMap();
-          for (String rule : rules) {
-            String[] keyValue = rule.split("(?<!\\\\)=");
-            if (keyValue.length >= 2) {
-              singleRule.put(keyValue[0], keyValue[1]);
-            }
-          }
-          _idealStateRuleMap.put(simpleKey, singleRule);
-        }
-      }
-    }
-
-    long endTime = System.currentTimeMillis();
-    LOG.info("END: ClusterDataCache.refresh(), took " + (endTime - startTime) + " ms");
-
     if (LOG.isDebugEnabled()) {
-      int numPaths = _liveInstanceMap.size() + _idealStateMap.size() + _stateModelDefMap.size()
-          + _instanceConfigMap.size() + _resourceConfigMap.size() + _constraintMap.size()
-          + newMessageKeys.size() + currentStateKeys.size();
-      LOG.debug("Paths read: " + numPaths);
+      LOG.debug("Current states re-read: " + reloadKeys.size() + " out of "
+          + currentStateKeys.size());
     }
-
-    _init = false;
-    return true;
+    return reloadKeys.size();
   }
 
   public ClusterConfig getClusterConfig() {
@@ -595,6 +772,67 @@ public class ClusterDataCache {
     }
   }
 
+  /**
+   * Returns the cache of task framework configs and contexts
+   * @return TaskDataCache
+   */
+  public TaskDataCache getTaskDataCache() {
+    return _taskDataCache;
+  }
+
+  /**
+   * Returns the external views last written by the controller
+   * @return resource name to external view map
+   */
+  public synchronized Map<String, ExternalView> getExternalViews() {
+    return Collections.unmodifiableMap(Maps.newHashMap(_externalViewMap));
+  }
+
+  /**
+   * Record external views written by the controller
+   * @param externalViews
+   */
+  public synchronized void updateExternalViews(List<ExternalView> externalViews) {
+    for (ExternalView externalView : externalViews) {
+      _externalViewMap.put(externalView.getResourceName(), externalView);
+    }
+  }
+
+  /**
+   * Record an external view removed by the controller
+   * @param resourceName
+   */
+  public synchronized void removeExternalView(String resourceName) {
+    _externalViewMap.remove(resourceName);
+  }
+
+  /**
+   * Whether the external view of a resource may be outdated, i.e. its current states or ideal
+   * state have changed since the external views were last computed
+   * @param resourceName
+   * @return
+   */
+  public synchronized boolean isExternalViewOutdated(String resourceName) {
+    return _externalViewFullRecompute || _externalViewDirtyResources.contains(resourceName);
+  }
+
+  /**
+   * Indicate that the external views of all resources have been computed
+   */
+  public synchronized void markExternalViewsUpToDate() {
+    _externalViewFullRecompute = false;
+    _externalViewDirtyResources.clear();
+  }
+
+  /**
+   * Notify the cache that some type of cluster data has changed. Only the data affected by the
+   * changes notified since the last refresh is re-read on the next refresh.
+   * @param changeType
+   */
+  public synchronized void notifyDataChange(ChangeType changeType) {
+    _propertyDataChangedMap.put(changeType, true);
+  }
+
   /**
    * Indicate that a full read should be done on the next refresh
    */
@@ -19,10 +19,16 @@ package org.apache.helix.controller.stages;
  * under the License.
  */
 
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 
+import org.apache.helix.NotificationContext;
+import org.apache.helix.monitoring.mbeans.ClusterEventQueueMonitor;
 import org.apache.log4j.Logger;
 
 import com.google.common.collect.Lists;
@@ -32,19 +38,64 @@ import com.google.common.collect.Maps;
  * A blocking queue of ClusterEvent objects to be used by the controller pipeline. This prevents
  * multiple events of the same type from flooding the controller and preventing progress from being
  * made. This queue has no capacity. This class is meant to be a limited implementation of the
- * {@link BlockingQueue} interface.
+ * {@link BlockingQueue} interface.<br/>
+ * <br/>
+ * Optionally, the queue can hold events for a batch window so that a burst of callbacks collapses
+ * into a single take(), hand out events by priority instead of in FIFO order, and let an event
+ * absorb other queued events whose pipelines it already covers.
  */
 public class ClusterEventBlockingQueue {
   private static final Logger LOG = Logger.getLogger(ClusterEventBlockingQueue.class);
   private final Map<String, ClusterEvent> _eventMap;
+  private final Map<String, Long> _enqueueTimeMap;
   private final Queue<ClusterEvent> _eventQueue;
+  private final long _batchWindowMs;
+  private final Map<String, Integer> _eventPriorities;
+  private Map<String, Set<String>> _coalescingRules;
+  private ClusterEventQueueMonitor _monitor;
 
   /**
    * Instantiate the queue
    */
   public ClusterEventBlockingQueue() {
+    this(0, Collections.<String, Integer> emptyMap());
+  }
+
+  /**
+   * Instantiate the queue with batching and priorities
+   * @param batchWindowMs how long to hold the oldest queued event before handing it out, so that
+   *          events arriving in the meantime are coalesced with it; 0 to disable batching
+   * @param eventPriorities map of event name to priority, higher priorities are taken first and
+   *          events with equal priority are taken in FIFO order; unlisted events have priority 0
+   */
+  public ClusterEventBlockingQueue(long batchWindowMs, Map<String, Integer> eventPriorities) {
     _eventMap = Maps.newHashMap();
+    _enqueueTimeMap = Maps.newHashMap();
     _eventQueue = Lists.newLinkedList();
+    _batchWindowMs = Math.max(0, batchWindowMs);
+    _eventPriorities = Maps.newHashMap(eventPriorities);
+    _coalescingRules = Collections.emptyMap();
+  }
+
+  /**
+   * Set the events that each event absorbs when it is taken. Absorbed events are removed from the
+   * queue and their names are recorded in the {@link AttributeName#COALESCED_EVENTS} attribute of
+   * the taken event.
+   * @param coalescingRules map of event name to the names of events it absorbs
+   */
+  public synchronized void setCoalescingRules(Map<String, Set<String>> coalescingRules) {
+    _coalescingRules = Maps.newHashMap(coalescingRules);
+  }
+
+  /**
+   * Set the monitor that is updated with the queue depth, wait time and coalesced events
+   * @param monitor ClusterEventQueueMonitor, or null to stop reporting
+   */
+  public synchronized void setMonitor(ClusterEventQueueMonitor monitor) {
+    _monitor = monitor;
+    if (_monitor != null) {
+      _monitor.setQueueSize(_eventQueue.size());
+    }
   }
 
   /**
@@ -52,7 +103,11 @@ public class ClusterEventBlockingQueue {
    */
   public synchronized void clear() {
     _eventMap.clear();
+    _enqueueTimeMap.clear();
     _eventQueue.clear();
+    if (_monitor != null) {
+      _monitor.setQueueSize(0);
+    }
   }
 
   /**
@@ -66,31 +121,63 @@ public class ClusterEventBlockingQueue {
       if (!result) {
         return;
       }
+      _enqueueTimeMap.put(event.getName(), System.currentTimeMillis());
+    } else if (_monitor != null) {
+      _monitor.increaseCoalescedEventCount(1);
     }
     // always overwrite in case this is a FINALIZE
     _eventMap.put(event.getName(), event);
     LOG.debug("Putting event " + event.getName());
     LOG.debug("Event queue size: " + _eventQueue.size());
+    if (_monitor != null) {
+      _monitor.setQueueSize(_eventQueue.size());
+    }
     notify();
   }
 
   /**
    * Remove an element from the front of the queue, blocking if none is available. This method
-   * will return the most recent event seen with the oldest enqueued event name.
+   * will return the most recent event seen with the oldest enqueued event name of the highest
+   * priority. If a batch window is configured, this waits until the oldest queued event has been
+   * queued for the whole window.
    * @return ClusterEvent at the front of the queue
    * @throws InterruptedException if the wait for elements was interrupted
    */
   public synchronized ClusterEvent take() throws InterruptedException {
-    while (_eventQueue.isEmpty()) {
-      wait();
+    while (true) {
+      while (_eventQueue.isEmpty()) {
+        wait();
+      }
+      if (_batchWindowMs <= 0) {
+        break;
+      }
+      long remaining =
+          _enqueueTimeMap.get(_eventQueue.peek().getName()) + _batchWindowMs
+              - System.currentTimeMillis();
+      if (remaining <= 0) {
+        break;
+      }
+      wait(remaining);
+    }
+
+    ClusterEvent queuedEvent = selectHead();
+    _eventQueue.remove(queuedEvent);
+    LOG.debug("Taking event " + queuedEvent.getName());
+    ClusterEvent event = _eventMap.remove(queuedEvent.getName());
+    long now = System.currentTimeMillis();
+    long waitTime = now - _enqueueTimeMap.remove(queuedEvent.getName());
+    List<String> coalescedEvents = coalesce(event);
+    if (!coalescedEvents.isEmpty()) {
+      event.addAttribute(AttributeName.COALESCED_EVENTS.toString(), coalescedEvents);
+      LOG.debug("Event " + event.getName() + " coalesced events " + coalescedEvents);
     }
-    ClusterEvent queuedEvent = _eventQueue.poll();
-    if (queuedEvent != null) {
-      LOG.debug("Taking event " + queuedEvent.getName());
-      LOG.debug("Event queue size: " + _eventQueue.size());
-      return _eventMap.remove(queuedEvent.getName());
+    LOG.debug("Event queue size: " + _eventQueue.size());
+    if (_monitor != null) {
+      _monitor.setQueueSize(_eventQueue.size());
+      _monitor.addEventWaitTime(waitTime);
+      _monitor.increaseCoalescedEventCount(coalescedEvents.size());
     }
-    return null;
+    return event;
   }
 
   /**
@@ -98,11 +185,10 @@ public class ClusterEventBlockingQueue {
    * @return ClusterEvent at the front of the queue, or null if none available
    */
   public synchronized ClusterEvent peek() {
-    ClusterEvent queuedEvent = _eventQueue.peek();
-    if (queuedEvent != null) {
-      return _eventMap.get(queuedEvent.getName());
+    if (_eventQueue.isEmpty()) {
+      return null;
     }
-    return queuedEvent;
+    return _eventMap.get(selectHead().getName());
   }
 
   /**
@@ -120,4 +206,54 @@ public class ClusterEventBlockingQueue {
   public boolean isEmpty() {
     return _eventQueue.isEmpty();
   }
+
+  /**
+   * Find the oldest queued event with the highest priority. The queue must not be empty.
+   */
+  private ClusterEvent selectHead() {
+    ClusterEvent head = null;
+    int headPriority = Integer.MIN_VALUE;
+    for (ClusterEvent queuedEvent : _eventQueue) {
+      int priority = getPriority(queuedEvent.getName());
+      if (head == null || priority > headPriority) {
+        head = queuedEvent;
+        headPriority = priority;
+      }
+    }
+    return head;
+  }
+
+  private int getPriority(String eventName) {
+    Integer priority = _eventPriorities.get(eventName);
+    return priority != null ? priority : 0;
+  }
+
+  /**
+   * Remove the queued events that the given event absorbs
+   * @return names of the removed events
+   */
+  private List<String> coalesce(ClusterEvent event) {
+    Set<String> absorbedNames = _coalescingRules.get(event.getName());
+    if (absorbedNames == null || absorbedNames.isEmpty() || isFinalize(event)) {
+      return Collections.emptyList();
+    }
+    List<String> coalescedEvents = Lists.newArrayList();
+    Iterator<ClusterEvent> iter = _eventQueue.iterator();
+    while (iter.hasNext()) {
+      String name = iter.next().getName();
+      // never swallow a FINALIZE, the controller needs to see it to clean up
+      if (absorbedNames.contains(name) && !isFinalize(_eventMap.get(name))) {
+        iter.remove();
+        _eventMap.remove(name);
+        _enqueueTimeMap.remove(name);
+        coalescedEvents.add(name);
+      }
+    }
+    return coalescedEvents;
+  }
+
+  private static boolean isFinalize(ClusterEvent event) {
+    NotificationContext context = event.getAttribute("changeContext");
+    return context != null && context.getType() == NotificationContext.Type.FINALIZE;
+  }
 }
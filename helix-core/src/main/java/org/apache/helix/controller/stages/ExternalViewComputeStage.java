@@ -75,10 +75,19 @@ public class ExternalViewComputeStage extends AbstractBaseStage {
 
     List<ExternalView> newExtViews = new ArrayList<ExternalView>();
 
-    Map<String, ExternalView> curExtViews =
-        dataAccessor.getChildValuesMap(keyBuilder.externalViews());
+    // external views last written by the controller. Only resources whose current states or
+    // ideal states changed since then are recomputed
+    Map<String, ExternalView> curExtViews = cache.getExternalViews();
 
+    int numRecomputed = 0;
     for (String resourceName : resourceMap.keySet()) {
+      ExternalView curExtView = curExtViews.get(resourceName);
+      if (curExtView != null && !cache.isExternalViewOutdated(resourceName)) {
+        updateResourceStatus(event, cache, curExtView);
+        continue;
+      }
+      numRecomputed++;
+
       ExternalView view = new ExternalView(resourceName);
       // view.setBucketSize(currentStateOutput.getBucketSize(resourceName));
       // if resource ideal state has bucket size, set it
@@ -105,25 +114,9 @@ public class ExternalViewComputeStage extends AbstractBaseStage {
         }
       }
       // Update cluster status monitor mbean
-      ClusterStatusMonitor clusterStatusMonitor = event.getAttribute("clusterStatusMonitor");
-      IdealState idealState = cache._idealStateMap.get(resourceName);
-      ResourceConfig resourceConfig = cache.getResourceConfig(resourceName);
-      if (idealState != null && (resourceConfig == null || !resourceConfig
-          .isMonitoringDisabled())) {
-        if (clusterStatusMonitor != null && !idealState.getStateModelDefRef()
-            .equalsIgnoreCase(DefaultSchedulerMessageHandlerFactory.SCHEDULER_TASK_QUEUE)) {
-          StateModelDefinition stateModelDef =
-              cache.getStateModelDef(idealState.getStateModelDefRef());
-          clusterStatusMonitor
-              .setResourceStatus(view, cache._idealStateMap.get(view.getResourceName()),
-                  stateModelDef);
-        }
-      } else {
-        // Drop the metrics if the resource is dropped, or the MonitorDisabled is changed to true.
-        clusterStatusMonitor.unregisterResource(view.getResourceName());
-      }
+      updateResourceStatus(event, cache, view);
 
-      ExternalView curExtView = curExtViews.get(resourceName);
+      IdealState idealState = cache._idealStateMap.get(resourceName);
       // copy simplefields from IS, in cases where IS is deleted copy it from existing ExternalView
       if (idealState != null) {
         view.getRecord().getSimpleFields().putAll(idealState.getRecord().getSimpleFields());
@@ -162,6 +155,7 @@ public class ExternalViewComputeStage extends AbstractBaseStage {
         if (curExtViews.containsKey(resourceName)) {
           LOG.info("Remove externalView for resource: " + resourceName);
           dataAccessor.removeProperty(keyBuilder.externalView(resourceName));
+          cache.removeExternalView(resourceName);
         }
       } else {
         keys.add(keyBuilder.externalView(resourceName));
@@ -170,7 +164,17 @@ public class ExternalViewComputeStage extends AbstractBaseStage {
 
     // add/update external-views
     if (newExtViews.size() > 0) {
-      dataAccessor.setChildren(keys, newExtViews);
+      boolean[] success = dataAccessor.setChildren(keys, newExtViews);
+      List<ExternalView> writtenExtViews = new ArrayList<ExternalView>();
+      for (int i = 0; i < newExtViews.size(); i++) {
+        if (success[i]) {
+          writtenExtViews.add(newExtViews.get(i));
+        } else {
+          // make sure a failed write is retried on the next run
+          cache.removeExternalView(newExtViews.get(i).getResourceName());
+        }
+      }
+      cache.updateExternalViews(writtenExtViews);
     }
 
     // remove dead external-views
@@ -178,11 +182,34 @@ public class ExternalViewComputeStage extends AbstractBaseStage {
       if (!resourceMap.keySet().contains(resourceName)) {
         LOG.info("Remove externalView for resource: " + resourceName);
         dataAccessor.removeProperty(keyBuilder.externalView(resourceName));
+        cache.removeExternalView(resourceName);
       }
     }
+    cache.markExternalViewsUpToDate();
 
     long endTime = System.currentTimeMillis();
-    LOG.info("END ExternalViewComputeStage.process(). took: " + (endTime - startTime) + " ms");
+    LOG.info("END ExternalViewComputeStage.process(). recomputed " + numRecomputed + " out of "
+        + resourceMap.size() + " external views, wrote " + newExtViews.size() + ". took: "
+        + (endTime - startTime) + " ms");
+  }
+
+  private void updateResourceStatus(ClusterEvent event, ClusterDataCache cache,
+      ExternalView view) {
+    ClusterStatusMonitor clusterStatusMonitor = event.getAttribute("clusterStatusMonitor");
+    IdealState idealState = cache._idealStateMap.get(view.getResourceName());
+    ResourceConfig resourceConfig = cache.getResourceConfig(view.getResourceName());
+    if (idealState != null && (resourceConfig == null || !resourceConfig
+        .isMonitoringDisabled())) {
+      if (clusterStatusMonitor != null && !idealState.getStateModelDefRef()
+          .equalsIgnoreCase(DefaultSchedulerMessageHandlerFactory.SCHEDULER_TASK_QUEUE)) {
+        StateModelDefinition stateModelDef =
+            cache.getStateModelDef(idealState.getStateModelDefRef());
+        clusterStatusMonitor.setResourceStatus(view, idealState, stateModelDef);
+      }
+    } else if (clusterStatusMonitor != null) {
+      // Drop the metrics if the resource is dropped, or the MonitorDisabled is changed to true.
+      clusterStatusMonitor.unregisterResource(view.getResourceName());
+    }
   }
 
   private void updateScheduledTaskStatus(ExternalView ev, HelixManager manager,
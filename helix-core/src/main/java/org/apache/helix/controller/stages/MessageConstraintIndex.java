@@ -0,0 +1,399 @@
+package org.apache.helix.controller.stages;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.helix.model.ClusterConstraints;
+import org.apache.helix.model.ClusterConstraints.ConstraintAttribute;
+import org.apache.helix.model.ClusterConstraints.ConstraintValue;
+import org.apache.helix.model.ConstraintItem;
+import org.apache.helix.model.Message;
+import org.apache.helix.model.Message.MessageType;
+
+/**
+ * Message constraints compiled for throttling. Attribute values are interned to ints, every
+ * constraint item is put in the bucket of its most selective attribute with a literal value, and
+ * throttle counters are kept in an int array. Selection follows
+ * {@link MessageThrottleStage#selectConstraints}, with the specificity of items compared once at
+ * compile time.
+ */
+class MessageConstraintIndex {
+  private static final int NUM_ATTRIBUTES = ConstraintAttribute.values().length;
+
+  /**
+   * Message attributes in the order they are used for bucketing, most selective first
+   */
+  private static final ConstraintAttribute[] BUCKET_ORDER = new ConstraintAttribute[] {
+      ConstraintAttribute.PARTITION, ConstraintAttribute.INSTANCE, ConstraintAttribute.RESOURCE,
+      ConstraintAttribute.TRANSITION, ConstraintAttribute.MESSAGE_TYPE, ConstraintAttribute.STATE
+  };
+
+  private static final String MATCH_ALL = ".*";
+  private static final String REGEX_META_CHARS = "\\^$.|?*+()[]{}";
+
+  private static class CompiledItem {
+    final ConstraintItem _item;
+    final int _index;
+    final int _mask;
+    final int[] _attributes;
+    // interned literal per attribute, -1 if the attribute is a pattern
+    final int[] _literals;
+    // pattern per attribute, null if the attribute is a literal or matches everything
+    final Pattern[] _patterns;
+    final int _value;
+    // items with the same attributes that this item is at least as specific as
+    boolean[] _coveredBy;
+
+    CompiledItem(ConstraintItem item, int index, int[] attributes, int[] literals,
+        Pattern[] patterns, int value) {
+      _item = item;
+      _index = index;
+      _attributes = attributes;
+      _literals = literals;
+      _patterns = patterns;
+      _value = value;
+      int mask = 0;
+      for (int attribute : attributes) {
+        mask |= 1 << attribute;
+      }
+      _mask = mask;
+    }
+
+    boolean matches(int[] ids, String[] values) {
+      for (int i = 0; i < _attributes.length; i++) {
+        int attribute = _attributes[i];
+        int id = ids[attribute];
+        if (id < 0) {
+          return false;
+        }
+        if (_literals[i] >= 0) {
+          if (_literals[i] != id) {
+            return false;
+          }
+        } else if (_patterns[i] != null && !_patterns[i].matcher(values[attribute]).matches()) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private final List<Map<String, Integer>> _literalIds;
+  // attribute -> literal id -> items bucketed on the literal
+  private final CompiledItem[][][] _buckets;
+  // items without any literal attribute
+  private final CompiledItem[] _unbucketed;
+
+  MessageConstraintIndex(ClusterConstraints constraints, MessageThrottleStage stage) {
+    _literalIds = new ArrayList<Map<String, Integer>>();
+    for (int i = 0; i < NUM_ATTRIBUTES; i++) {
+      _literalIds.add(new HashMap<String, Integer>());
+    }
+
+    // sort items by their string form so that ties are broken in alphabetic order
+    List<ConstraintItem> items = new ArrayList<ConstraintItem>();
+    for (ConstraintItem item : constraints.getConstraintItems()) {
+      // don't select constraints with CONSTRAINT_VALUE=ANY
+      if (!ConstraintValue.ANY.toString().equals(item.getConstraintValue())) {
+        items.add(item);
+      }
+    }
+    Collections.sort(items, new Comparator<ConstraintItem>() {
+      @Override
+      public int compare(ConstraintItem o1, ConstraintItem o2) {
+        return o1.toString().compareTo(o2.toString());
+      }
+    });
+
+    List<CompiledItem> compiled = new ArrayList<CompiledItem>();
+    for (ConstraintItem item : items) {
+      compiled.add(compile(item, compiled.size(), stage));
+    }
+
+    for (CompiledItem item : compiled) {
+      item._coveredBy = new boolean[compiled.size()];
+      for (CompiledItem other : compiled) {
+        if (other._mask == item._mask && other != item) {
+          item._coveredBy[other._index] = other._item.match(item._item.getAttributes());
+        }
+      }
+    }
+
+    List<List<List<CompiledItem>>> buckets = new ArrayList<List<List<CompiledItem>>>();
+    for (int i = 0; i < NUM_ATTRIBUTES; i++) {
+      List<List<CompiledItem>> attributeBuckets = new ArrayList<List<CompiledItem>>();
+      for (int j = 0; j < _literalIds.get(i).size(); j++) {
+        attributeBuckets.add(new ArrayList<CompiledItem>());
+      }
+      buckets.add(attributeBuckets);
+    }
+    List<CompiledItem> unbucketed = new ArrayList<CompiledItem>();
+    for (CompiledItem item : compiled) {
+      int bucketAttribute = -1;
+      int bucketLiteral = -1;
+      for (ConstraintAttribute attribute : BUCKET_ORDER) {
+        int pos = Arrays.binarySearch(item._attributes, attribute.ordinal());
+        if (pos >= 0 && item._literals[pos] >= 0) {
+          bucketAttribute = attribute.ordinal();
+          bucketLiteral = item._literals[pos];
+          break;
+        }
+      }
+      if (bucketAttribute < 0) {
+        unbucketed.add(item);
+      } else {
+        buckets.get(bucketAttribute).get(bucketLiteral).add(item);
+      }
+    }
+
+    _buckets = new CompiledItem[NUM_ATTRIBUTES][][];
+    for (int i = 0; i < NUM_ATTRIBUTES; i++) {
+      List<List<CompiledItem>> attributeBuckets = buckets.get(i);
+      _buckets[i] = new CompiledItem[attributeBuckets.size()][];
+      for (int j = 0; j < attributeBuckets.size(); j++) {
+        _buckets[i][j] = attributeBuckets.get(j).toArray(new CompiledItem[0]);
+      }
+    }
+    _unbucketed = unbucketed.toArray(new CompiledItem[0]);
+  }
+
+  private CompiledItem compile(ConstraintItem item, int index, MessageThrottleStage stage) {
+    List<ConstraintAttribute> attributes =
+        new ArrayList<ConstraintAttribute>(item.getAttributes().keySet());
+    Collections.sort(attributes);
+    int[] ordinals = new int[attributes.size()];
+    int[] literals = new int[attributes.size()];
+    Pattern[] patterns = new Pattern[attributes.size()];
+    for (int i = 0; i < attributes.size(); i++) {
+      ConstraintAttribute attribute = attributes.get(i);
+      String value = item.getAttributeValue(attribute);
+      ordinals[i] = attribute.ordinal();
+      literals[i] = -1;
+      if (isLiteral(value)) {
+        Map<String, Integer> ids = _literalIds.get(attribute.ordinal());
+        Integer id = ids.get(value);
+        if (id == null) {
+          id = ids.size();
+          ids.put(value, id);
+        }
+        literals[i] = id;
+      } else if (!MATCH_ALL.equals(value)) {
+        patterns[i] = Pattern.compile(value);
+      }
+    }
+    return new CompiledItem(item, index, ordinals, literals, patterns,
+        stage.valueOf(item.getConstraintValue()));
+  }
+
+  private static boolean isLiteral(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      if (REGEX_META_CHARS.indexOf(value.charAt(i)) >= 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Create throttle counters for one run of the stage
+   */
+  Counters newCounters() {
+    return new Counters();
+  }
+
+  /**
+   * Counters of the constraints selected for messages, keyed by the constraint attributes and the
+   * message values of these attributes
+   */
+  class Counters {
+    private final List<Map<String, Integer>> _otherIds;
+    private final Map<CounterKey, Integer> _slots;
+    private final CounterKey _probe;
+    private final int[] _ids;
+    private final String[] _values;
+    private final List<CompiledItem> _selected;
+    private int[] _remaining;
+
+    Counters() {
+      _otherIds = new ArrayList<Map<String, Integer>>();
+      for (int i = 0; i < NUM_ATTRIBUTES; i++) {
+        _otherIds.add(new HashMap<String, Integer>());
+      }
+      _slots = new HashMap<CounterKey, Integer>();
+      _probe = new CounterKey();
+      _ids = new int[NUM_ATTRIBUTES];
+      _values = new String[NUM_ATTRIBUTES];
+      _selected = new ArrayList<CompiledItem>();
+      _remaining = new int[16];
+    }
+
+    /**
+     * Count a message against the constraints selected for it
+     * @param message
+     * @return true if any selected constraint is exceeded
+     */
+    boolean count(Message message) {
+      setAttributes(message);
+      _selected.clear();
+      for (int attribute = 0; attribute < NUM_ATTRIBUTES; attribute++) {
+        int id = _ids[attribute];
+        if (id >= 0 && id < _buckets[attribute].length) {
+          select(_buckets[attribute][id]);
+        }
+      }
+      select(_unbucketed);
+
+      boolean exceeded = false;
+      for (CompiledItem item : _selected) {
+        int slot = getSlot(item);
+        if (--_remaining[slot] < 0) {
+          exceeded = true;
+        }
+      }
+      return exceeded;
+    }
+
+    private void select(CompiledItem[] candidates) {
+      for (CompiledItem item : candidates) {
+        if (!item.matches(_ids, _values)) {
+          continue;
+        }
+        // items with the same attributes share a counter, keep the one selectConstraints would
+        int existingPos = -1;
+        for (int i = 0; i < _selected.size(); i++) {
+          if (_selected.get(i)._mask == item._mask) {
+            existingPos = i;
+            break;
+          }
+        }
+        if (existingPos < 0) {
+          _selected.add(item);
+          continue;
+        }
+        CompiledItem existing = _selected.get(existingPos);
+        CompiledItem first = existing._index < item._index ? existing : item;
+        CompiledItem second = first == item ? existing : item;
+        boolean secondMoreSpecific = second._coveredBy[first._index];
+        boolean firstMoreSpecific = first._coveredBy[second._index];
+        if (secondMoreSpecific && !firstMoreSpecific) {
+          _selected.set(existingPos, second);
+        } else if (firstMoreSpecific && !secondMoreSpecific) {
+          _selected.set(existingPos, first);
+        } else {
+          // incomparable specificity, select the minimum value, then the first in alphabetic order
+          _selected.set(existingPos, second._value < first._value ? second : first);
+        }
+      }
+    }
+
+    private int getSlot(CompiledItem item) {
+      _probe.set(item._mask, _ids);
+      Integer slot = _slots.get(_probe);
+      if (slot == null) {
+        slot = _slots.size();
+        _slots.put(_probe.copy(), slot);
+        if (slot >= _remaining.length) {
+          _remaining = Arrays.copyOf(_remaining, _remaining.length * 2);
+        }
+        _remaining[slot] = item._value;
+      }
+      return slot;
+    }
+
+    // the same attributes as ClusterConstraints.toConstraintAttributes()
+    private void setAttributes(Message message) {
+      Arrays.fill(_values, null);
+      String msgType = message.getMsgType();
+      _values[ConstraintAttribute.MESSAGE_TYPE.ordinal()] = msgType;
+      if (MessageType.STATE_TRANSITION.name().equals(msgType)) {
+        if (message.getFromState() != null && message.getToState() != null) {
+          _values[ConstraintAttribute.TRANSITION.ordinal()] =
+              message.getFromState() + "-" + message.getToState();
+        }
+        _values[ConstraintAttribute.RESOURCE.ordinal()] = message.getResourceName();
+        _values[ConstraintAttribute.INSTANCE.ordinal()] = message.getTgtName();
+        _values[ConstraintAttribute.PARTITION.ordinal()] = message.getPartitionName();
+      }
+      for (int i = 0; i < NUM_ATTRIBUTES; i++) {
+        _ids[i] = _values[i] == null ? -1 : intern(i, _values[i]);
+      }
+    }
+
+    private int intern(int attribute, String value) {
+      Integer id = _literalIds.get(attribute).get(value);
+      if (id != null) {
+        return id;
+      }
+      Map<String, Integer> otherIds = _otherIds.get(attribute);
+      id = otherIds.get(value);
+      if (id == null) {
+        id = _literalIds.get(attribute).size() + otherIds.size();
+        otherIds.put(value, id);
+      }
+      return id;
+    }
+  }
+
+  private static class CounterKey {
+    int _mask;
+    final int[] _ids = new int[NUM_ATTRIBUTES];
+    int _hash;
+
+    void set(int mask, int[] ids) {
+      _mask = mask;
+      int hash = mask;
+      for (int i = 0; i < NUM_ATTRIBUTES; i++) {
+        _ids[i] = (mask & (1 << i)) != 0 ? ids[i] : 0;
+        hash = 31 * hash + _ids[i];
+      }
+      _hash = hash;
+    }
+
+    CounterKey copy() {
+      CounterKey key = new CounterKey();
+      key._mask = _mask;
+      System.arraycopy(_ids, 0, key._ids, 0, NUM_ATTRIBUTES);
+      key._hash = _hash;
+      return key;
+    }
+
+    @Override
+    public int hashCode() {
+      return _hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof CounterKey)) {
+        return false;
+      }
+      CounterKey other = (CounterKey) obj;
+      return _mask == other._mask && Arrays.equals(_ids, other._ids);
+    }
+  }
+}
@@ -41,6 +41,24 @@ import org.apache.log4j.Logger;
 public class MessageThrottleStage extends AbstractBaseStage {
   private static final Logger LOG = Logger.getLogger(MessageThrottleStage.class.getName());
 
+  private final boolean _useConstraintIndex;
+
+  // the index compiled for the last seen message constraints
+  private ClusterConstraints _indexedConstraint;
+  private MessageConstraintIndex _constraintIndex;
+
+  public MessageThrottleStage() {
+    this(true);
+  }
+
+  /**
+   * @param useConstraintIndex true to match messages against compiled constraints, false to
+   *          match every message against every constraint item
+   */
+  public MessageThrottleStage(boolean useConstraintIndex) {
+    _useConstraintIndex = useConstraintIndex;
+  }
+
   int valueOf(String valueStr) {
     int value = Integer.MAX_VALUE;
 
@@ -127,11 +145,21 @@ public class MessageThrottleStage extends AbstractBaseStage {
     ClusterConstraints constraint = cache.getConstraint(ConstraintType.MESSAGE_CONSTRAINT);
     Map<String, Integer> throttleCounterMap = new HashMap<String, Integer>();
 
+    MessageConstraintIndex.Counters counters = null;
+    if (constraint != null && _useConstraintIndex) {
+      counters = getConstraintIndex(constraint).newCounters();
+    }
+
     if (constraint != null) {
       // go through all pending messages, they should be counted but not throttled
       for (String instance : cache.getLiveInstances().keySet()) {
-        throttle(throttleCounterMap, constraint, new ArrayList<Message>(cache.getMessages(instance)
-            .values()), false);
+        List<Message> pendingMessages =
+            new ArrayList<Message>(cache.getMessages(instance).values());
+        if (counters != null) {
+          throttle(counters, pendingMessages, false);
+        } else {
+          throttle(throttleCounterMap, constraint, pendingMessages, false);
+        }
       }
     }
 
@@ -142,7 +170,11 @@ public class MessageThrottleStage extends AbstractBaseStage {
       for (Partition partition : resource.getPartitions()) {
         List<Message> messages = msgSelectionOutput.getMessages(resourceName, partition);
         if (constraint != null && messages != null && messages.size() > 0) {
-          messages = throttle(throttleCounterMap, constraint, messages, true);
+          if (counters != null) {
+            messages = throttle(counters, messages, true);
+          } else {
+            messages = throttle(throttleCounterMap, constraint, messages, true);
+          }
         }
         output.addMessages(resourceName, partition, messages);
       }
@@ -151,7 +183,33 @@ public class MessageThrottleStage extends AbstractBaseStage {
     event.addAttribute(AttributeName.MESSAGES_THROTTLE.name(), output);
   }
 
-  private List<Message> throttle(Map<String, Integer> throttleMap, ClusterConstraints constraint,
+  /**
+   * Get the compiled index of message constraints, recompiling only if the constraints changed
+   */
+  synchronized MessageConstraintIndex getConstraintIndex(ClusterConstraints constraint) {
+    if (constraint != _indexedConstraint) {
+      _constraintIndex = new MessageConstraintIndex(constraint, this);
+      _indexedConstraint = constraint;
+    }
+    return _constraintIndex;
+  }
+
+  List<Message> throttle(MessageConstraintIndex.Counters counters, List<Message> messages,
+      final boolean needThrottle) {
+    List<Message> throttleOutputMsgs = new ArrayList<Message>();
+    for (Message message : messages) {
+      if (counters.count(message) && needThrottle) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("message: " + message + " is throttled by message constraints");
+        }
+      } else {
+        throttleOutputMsgs.add(message);
+      }
+    }
+    return throttleOutputMsgs;
+  }
+
+  List<Message> throttle(Map<String, Integer> throttleMap, ClusterConstraints constraint,
       List<Message> messages, final boolean needThrottle) {
 
     List<Message> throttleOutputMsgs = new ArrayList<Message>();
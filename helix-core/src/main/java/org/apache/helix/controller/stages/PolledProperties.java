@@ -0,0 +1,143 @@
+package org.apache.helix.controller.stages;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.HelixProperty;
+import org.apache.helix.PropertyKey;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Cache of properties the controller does not watch, such as resource configs and constraints.
+ * Instead of a callback, their znode stats are read on every refresh, and only the properties
+ * that are new or whose stat changed are re-read.
+ */
+class PolledProperties<T extends HelixProperty> {
+  // values and their znode stats as of the last read, keyed by path
+  private final Map<String, T> _valueCache = Maps.newHashMap();
+  private final Map<String, HelixProperty.Stat> _statCache = Maps.newHashMap();
+  private Map<String, T> _valueMap = Collections.emptyMap();
+  private int _numRead;
+
+  /**
+   * Refresh all the children of a path
+   * @param accessor
+   * @param parentKey
+   * @return true if any child was added, changed or removed
+   */
+  boolean refreshChildren(HelixDataAccessor accessor, PropertyKey parentKey) {
+    String[] parentParams = parentKey.getParams();
+    List<PropertyKey> keys = Lists.newArrayList();
+    for (String childName : accessor.getChildNames(parentKey)) {
+      String[] params = new String[parentParams.length + 1];
+      System.arraycopy(parentParams, 0, params, 0, parentParams.length);
+      params[parentParams.length] = childName;
+      keys.add(new PropertyKey(parentKey.getType(), parentKey.getConfigScope(),
+          parentKey.getTypeClass(), params));
+    }
+    return refresh(accessor, keys);
+  }
+
+  /**
+   * Refresh the given properties; cached properties not among them are dropped
+   * @param accessor
+   * @param keys
+   * @return true if any property was added, changed or removed
+   */
+  boolean refresh(HelixDataAccessor accessor, List<PropertyKey> keys) {
+    Set<String> paths = Sets.newHashSet();
+    for (PropertyKey key : keys) {
+      paths.add(key.getPath());
+    }
+    boolean changed = _valueCache.keySet().retainAll(paths);
+    _statCache.keySet().retainAll(paths);
+
+    List<HelixProperty.Stat> stats = ClusterDataCache.getPropertyStats(accessor, keys);
+    List<PropertyKey> reloadKeys = Lists.newArrayList();
+    List<HelixProperty.Stat> reloadStats = Lists.newArrayList();
+    for (int i = 0; i < keys.size(); i++) {
+      String path = keys.get(i).getPath();
+      HelixProperty.Stat stat = stats.get(i);
+      if (stat == null || !_valueCache.containsKey(path) || !stat.equals(_statCache.get(path))) {
+        reloadKeys.add(keys.get(i));
+        reloadStats.add(stat);
+      }
+    }
+
+    _numRead = reloadKeys.size();
+    if (!reloadKeys.isEmpty()) {
+      List<T> values = accessor.getProperty(reloadKeys);
+      for (int i = 0; i < reloadKeys.size(); i++) {
+        String path = reloadKeys.get(i).getPath();
+        T value = values.get(i);
+        HelixProperty.Stat stat = reloadStats.get(i);
+        if (value != null) {
+          changed = true;
+          _valueCache.put(path, value);
+        } else {
+          changed |= _valueCache.remove(path) != null;
+        }
+        // without a stat the property can't be checked, so it is re-read next time
+        if (value != null && stat != null) {
+          _statCache.put(path, stat);
+        } else {
+          _statCache.remove(path);
+        }
+      }
+    }
+
+    if (changed) {
+      Map<String, T> valueMap = Maps.newHashMap();
+      for (T value : _valueCache.values()) {
+        valueMap.put(value.getId(), value);
+      }
+      _valueMap = valueMap;
+    }
+    return changed;
+  }
+
+  /**
+   * @return the cached properties, keyed by id
+   */
+  Map<String, T> getValueMap() {
+    return _valueMap;
+  }
+
+  /**
+   * @return the number of properties read from zookeeper by the last refresh
+   */
+  int getNumRead() {
+    return _numRead;
+  }
+
+  void clear() {
+    _valueCache.clear();
+    _statCache.clear();
+    _valueMap = Collections.emptyMap();
+  }
+}
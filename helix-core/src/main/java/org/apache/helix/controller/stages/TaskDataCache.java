@@ -0,0 +1,364 @@
+package org.apache.helix.controller.stages;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.I0Itec.zkclient.exception.ZkBadVersionException;
+import org.apache.helix.AccessOption;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.model.ResourceAssignment;
+import org.apache.helix.model.ResourceConfig;
+import org.apache.helix.store.HelixPropertyStore;
+import org.apache.helix.task.JobConfig;
+import org.apache.helix.task.JobContext;
+import org.apache.helix.task.TaskConstants;
+import org.apache.helix.task.TaskUtil;
+import org.apache.helix.task.WorkflowConfig;
+import org.apache.helix.task.WorkflowContext;
+import org.apache.log4j.Logger;
+import org.apache.zookeeper.data.Stat;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Maps;
+
+/**
+ * Cache of task framework data across pipeline runs. Job and workflow configs are built from the
+ * resource configs read by {@link ClusterDataCache}. Contexts and previous assignments are read
+ * from the property store on first use, and kept along with their znode version; on the first
+ * use after a refresh, the versions of all cached records are checked in one batch and only the
+ * records modified by others are read again. Records are only written if they changed.
+ */
+public class TaskDataCache {
+  private static final Logger LOG = Logger.getLogger(TaskDataCache.class);
+
+  private static final String PREV_RA_NODE = "PreviousResourceAssignment";
+  private static final int UNKNOWN_VERSION = -1;
+
+  private Map<String, ResourceConfig> _resourceConfigMap = Collections.emptyMap();
+  private final Map<String, JobConfig> _jobConfigMap = Maps.newHashMap();
+  private final Map<String, WorkflowConfig> _workflowConfigMap = Maps.newHashMap();
+  // configs removed by the controller since the resource configs were read
+  private final Set<String> _removedConfigs = new HashSet<String>();
+
+  // records read or written by the controller, keyed by property store path
+  private final Map<String, CachedRecord> _recordMap = Maps.newHashMap();
+  private boolean _recordsValidated = false;
+
+  private static class CachedRecord {
+    final ZNRecord _record;
+    final int _version;
+
+    CachedRecord(ZNRecord record, int version) {
+      _record = record;
+      _version = version;
+    }
+  }
+
+  /**
+   * Called on every refresh of the cluster data
+   * @param resourceConfigMap the resource configs, if they were re-read, or null
+   */
+  synchronized void refresh(Map<String, ResourceConfig> resourceConfigMap) {
+    if (resourceConfigMap != null) {
+      _resourceConfigMap = resourceConfigMap;
+      _jobConfigMap.clear();
+      _workflowConfigMap.clear();
+      _removedConfigs.clear();
+    }
+    _recordsValidated = false;
+  }
+
+  /**
+   * Drop all cached data
+   */
+  synchronized void clear() {
+    _resourceConfigMap = Collections.emptyMap();
+    _jobConfigMap.clear();
+    _workflowConfigMap.clear();
+    _removedConfigs.clear();
+    _recordMap.clear();
+    _recordsValidated = false;
+  }
+
+  /**
+   * Get the config of a job
+   * @param job the name of the job resource
+   * @return the job config, or null if none exists
+   */
+  public synchronized JobConfig getJobConfig(String job) {
+    JobConfig jobConfig = _jobConfigMap.get(job);
+    if (jobConfig == null) {
+      ResourceConfig resourceConfig = getResourceConfig(job);
+      if (resourceConfig != null) {
+        jobConfig = new JobConfig(resourceConfig);
+        _jobConfigMap.put(job, jobConfig);
+      }
+    }
+    return jobConfig;
+  }
+
+  /**
+   * Get the config of a workflow
+   * @param workflow the name of the workflow resource
+   * @return the workflow config, or null if none exists
+   */
+  public synchronized WorkflowConfig getWorkflowConfig(String workflow) {
+    WorkflowConfig workflowConfig = _workflowConfigMap.get(workflow);
+    if (workflowConfig == null) {
+      ResourceConfig resourceConfig = getResourceConfig(workflow);
+      if (resourceConfig != null) {
+        workflowConfig = new WorkflowConfig(resourceConfig);
+        _workflowConfigMap.put(workflow, workflowConfig);
+      }
+    }
+    return workflowConfig;
+  }
+
+  /**
+   * Record a job config written by the controller
+   * @param job the name of the job resource
+   * @param jobConfig the config written
+   */
+  public synchronized void updateJobConfig(String job, JobConfig jobConfig) {
+    _removedConfigs.remove(job);
+    _jobConfigMap.put(job, jobConfig);
+  }
+
+  /**
+   * Record a workflow config written by the controller
+   * @param workflow the name of the workflow resource
+   * @param workflowConfig the config written
+   */
+  public synchronized void updateWorkflowConfig(String workflow, WorkflowConfig workflowConfig) {
+    _removedConfigs.remove(workflow);
+    _workflowConfigMap.put(workflow, workflowConfig);
+  }
+
+  /**
+   * Record a job or workflow config removed by the controller
+   * @param resource the name of the job or workflow resource
+   */
+  public synchronized void removeConfig(String resource) {
+    _removedConfigs.add(resource);
+    _jobConfigMap.remove(resource);
+    _workflowConfigMap.remove(resource);
+  }
+
+  /**
+   * Get the runtime context of a job. The context returned is a copy that the caller may modify
+   * @param job the name of the job resource
+   * @param propertyStore the property store of the cluster
+   * @return the job context, or null if none exists
+   */
+  public synchronized JobContext getJobContext(String job,
+      HelixPropertyStore<ZNRecord> propertyStore) {
+    ZNRecord record = getRecord(contextPath(job), propertyStore);
+    return record != null ? new JobContext(record) : null;
+  }
+
+  /**
+   * Persist the runtime context of a job if it changed
+   * @param job the name of the job resource
+   * @param jobContext the up-to-date job context
+   * @param propertyStore the property store of the cluster
+   */
+  public synchronized void updateJobContext(String job, JobContext jobContext,
+      HelixPropertyStore<ZNRecord> propertyStore) {
+    updateRecord(contextPath(job), jobContext.getRecord(), propertyStore);
+  }
+
+  /**
+   * Get the runtime context of a workflow. The context returned is a copy that the caller may
+   * modify
+   * @param workflow the name of the workflow resource
+   * @param propertyStore the property store of the cluster
+   * @return the workflow context, or null if none exists
+   */
+  public synchronized WorkflowContext getWorkflowContext(String workflow,
+      HelixPropertyStore<ZNRecord> propertyStore) {
+    ZNRecord record = getRecord(contextPath(workflow), propertyStore);
+    return record != null ? new WorkflowContext(record) : null;
+  }
+
+  /**
+   * Persist the runtime context of a workflow if it changed
+   * @param workflow the name of the workflow resource
+   * @param workflowContext the up-to-date workflow context
+   * @param propertyStore the property store of the cluster
+   */
+  public synchronized void updateWorkflowContext(String workflow,
+      WorkflowContext workflowContext, HelixPropertyStore<ZNRecord> propertyStore) {
+    updateRecord(contextPath(workflow), workflowContext.getRecord(), propertyStore);
+  }
+
+  /**
+   * Get the last task assignment of a job
+   * @param job the name of the job resource
+   * @param propertyStore the property store of the cluster
+   * @return the assignment, or null if none exists
+   */
+  public synchronized ResourceAssignment getPrevResourceAssignment(String job,
+      HelixPropertyStore<ZNRecord> propertyStore) {
+    ZNRecord record = getRecord(prevAssignmentPath(job), propertyStore);
+    return record != null ? new ResourceAssignment(record) : null;
+  }
+
+  /**
+   * Persist the last task assignment of a job if it changed
+   * @param job the name of the job resource
+   * @param assignment the assignment
+   * @param propertyStore the property store of the cluster
+   */
+  public synchronized void updatePrevResourceAssignment(String job,
+      ResourceAssignment assignment, HelixPropertyStore<ZNRecord> propertyStore) {
+    updateRecord(prevAssignmentPath(job), assignment.getRecord(), propertyStore);
+  }
+
+  /**
+   * Record the runtime data of a job or workflow removed by the controller
+   * @param resource the name of the job or workflow resource
+   */
+  public synchronized void removeContext(String resource) {
+    String prefix = Joiner.on("/").join(TaskConstants.REBALANCER_CONTEXT_ROOT, resource) + "/";
+    Iterator<String> pathIter = _recordMap.keySet().iterator();
+    while (pathIter.hasNext()) {
+      if (pathIter.next().startsWith(prefix)) {
+        pathIter.remove();
+      }
+    }
+  }
+
+  private ResourceConfig getResourceConfig(String resource) {
+    if (_removedConfigs.contains(resource)) {
+      return null;
+    }
+    return _resourceConfigMap.get(resource);
+  }
+
+  private ZNRecord getRecord(String path, HelixPropertyStore<ZNRecord> propertyStore) {
+    validateRecords(propertyStore);
+    CachedRecord cached = _recordMap.get(path);
+    if (cached == null) {
+      Stat stat = new Stat();
+      ZNRecord record = propertyStore.get(path, stat, AccessOption.PERSISTENT);
+      if (record == null) {
+        return null;
+      }
+      cached = new CachedRecord(record, stat.getVersion());
+      _recordMap.put(path, cached);
+    }
+    return copy(cached._record);
+  }
+
+  private void updateRecord(String path, ZNRecord record,
+      HelixPropertyStore<ZNRecord> propertyStore) {
+    CachedRecord cached = _recordMap.get(path);
+    if (cached != null && cached._record.equals(record)) {
+      return;
+    }
+
+    int version = UNKNOWN_VERSION;
+    if (cached != null && cached._version != UNKNOWN_VERSION) {
+      try {
+        if (propertyStore.set(path, record, cached._version, AccessOption.PERSISTENT)) {
+          version = cached._version + 1;
+        }
+      } catch (ZkBadVersionException e) {
+        LOG.info(path + " was modified since it was read, overwrite it");
+      }
+    }
+    if (version == UNKNOWN_VERSION) {
+      // the next validation reads it back to learn its version
+      propertyStore.set(path, record, AccessOption.PERSISTENT);
+    }
+    _recordMap.put(path, new CachedRecord(copy(record), version));
+  }
+
+  /**
+   * Drop the cached records that were modified by others since they were cached
+   */
+  private void validateRecords(HelixPropertyStore<ZNRecord> propertyStore) {
+    if (_recordsValidated) {
+      return;
+    }
+    _recordsValidated = true;
+
+    List<String> paths = new ArrayList<String>();
+    Iterator<Map.Entry<String, CachedRecord>> entryIter = _recordMap.entrySet().iterator();
+    while (entryIter.hasNext()) {
+      Map.Entry<String, CachedRecord> entry = entryIter.next();
+      if (entry.getValue()._version == UNKNOWN_VERSION) {
+        entryIter.remove();
+      } else {
+        paths.add(entry.getKey());
+      }
+    }
+    if (paths.isEmpty()) {
+      return;
+    }
+
+    Stat[] stats = propertyStore.getStats(paths, AccessOption.PERSISTENT);
+    int numDropped = 0;
+    for (int i = 0; i < paths.size(); i++) {
+      String path = paths.get(i);
+      if (stats[i] == null || stats[i].getVersion() != _recordMap.get(path)._version) {
+        _recordMap.remove(path);
+        numDropped++;
+      }
+    }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Task records modified by others: " + numDropped + " out of " + paths.size());
+    }
+  }
+
+  private static String contextPath(String resource) {
+    return Joiner.on("/").join(TaskConstants.REBALANCER_CONTEXT_ROOT, resource,
+        TaskUtil.CONTEXT_NODE);
+  }
+
+  private static String prevAssignmentPath(String resource) {
+    return Joiner.on("/").join(TaskConstants.REBALANCER_CONTEXT_ROOT, resource, PREV_RA_NODE);
+  }
+
+  /**
+   * Copy a record deep enough that modifying the fields of the copy leaves the original intact
+   */
+  private static ZNRecord copy(ZNRecord record) {
+    ZNRecord copy = new ZNRecord(record.getId());
+    copy.getSimpleFields().putAll(record.getSimpleFields());
+    for (Map.Entry<String, Map<String, String>> entry : record.getMapFields().entrySet()) {
+      Map<String, String> value = entry.getValue();
+      copy.setMapField(entry.getKey(), value != null ? new TreeMap<String, String>(value) : null);
+    }
+    for (Map.Entry<String, List<String>> entry : record.getListFields().entrySet()) {
+      List<String> value = entry.getValue();
+      copy.setListField(entry.getKey(), value != null ? new ArrayList<String>(value) : null);
+    }
+    return copy;
+  }
+}
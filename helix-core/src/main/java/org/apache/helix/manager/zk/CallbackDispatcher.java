@@ -0,0 +1,382 @@
+package org.apache.helix.manager.zk;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.helix.monitoring.mbeans.CallbackMonitor;
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Dispatches callbacks to listeners on a pool of threads shared by all handlers in the process.
+ * Callbacks of one listener run one at a time and in the order they are submitted, across all the
+ * paths it listens on, while callbacks of different listeners run concurrently. A slow listener
+ * therefore only delays its own callbacks, instead of every listener of the same manager.
+ */
+class CallbackDispatcher {
+  private static Logger LOG = Logger.getLogger(CallbackDispatcher.class);
+
+  /**
+   * System property for the number of dispatcher threads. 0 invokes callbacks on the ZooKeeper
+   * event thread
+   */
+  public static final String NUM_THREADS = "helix.callbackDispatcher.threads";
+
+  // max callbacks run for one listener before yielding the thread to other listeners
+  private static final int MAX_CALLBACKS_PER_RUN = 16;
+
+  private static final int NUM_DISPATCHER_THREADS = Integer.getInteger(NUM_THREADS,
+      Math.max(4, Runtime.getRuntime().availableProcessors()));
+
+  private static final ConcurrentMap<Object, ListenerQueue> QUEUES = new MapMaker().weakKeys()
+      .makeMap();
+
+  private static volatile ExecutorService _pool;
+  private static volatile ScheduledExecutorService _timer;
+
+  private CallbackDispatcher() {
+  }
+
+  /**
+   * Check if callbacks are dispatched to the pool
+   * @return true if the pool has threads, false if callbacks run on the caller thread
+   */
+  static boolean isEnabled() {
+    return NUM_DISPATCHER_THREADS > 0;
+  }
+
+  /**
+   * Get the queue of a listener, shared by all the handlers of the listener
+   * @param listener
+   * @return ListenerQueue
+   */
+  static ListenerQueue getQueue(Object listener) {
+    ListenerQueue queue = QUEUES.get(listener);
+    if (queue == null) {
+      queue = new ListenerQueue(listener);
+      ListenerQueue existing = QUEUES.putIfAbsent(listener, queue);
+      if (existing != null) {
+        queue = existing;
+      }
+    }
+    return queue;
+  }
+
+  private static ExecutorService getPool() {
+    if (_pool == null) {
+      synchronized (CallbackDispatcher.class) {
+        if (_pool == null) {
+          // the work queue holds at most one entry per listener. Without dispatcher threads, the
+          // pool only runs callbacks that found their listener busy
+          int numThreads = Math.max(1, NUM_DISPATCHER_THREADS);
+          _pool = new ThreadPoolExecutor(numThreads, numThreads, 0L,
+              TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger _threadId = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                  Thread thread =
+                      new DispatcherThread(r, "CallbackDispatcher-" + _threadId.incrementAndGet());
+                  thread.setDaemon(true);
+                  return thread;
+                }
+              });
+          LOG.info("Start callback dispatcher with " + numThreads + " threads");
+        }
+      }
+    }
+    return _pool;
+  }
+
+  /**
+   * Check if the caller thread is a dispatcher pool thread, running callbacks of any listener
+   * @return true if called from a dispatcher thread
+   */
+  static boolean isDispatcherThread() {
+    return Thread.currentThread() instanceof DispatcherThread;
+  }
+
+  private static class DispatcherThread extends Thread {
+    DispatcherThread(Runnable target, String name) {
+      super(target, name);
+    }
+  }
+
+  /**
+   * Run a task on the shared timer thread after a delay. The task should only hand work over to a
+   * listener queue
+   * @param task
+   * @param delayMs
+   */
+  static void schedule(Runnable task, long delayMs) {
+    if (_timer == null) {
+      synchronized (CallbackDispatcher.class) {
+        if (_timer == null) {
+          _timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+              Thread thread = new Thread(r, "CallbackDispatcher-timer");
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+        }
+      }
+    }
+    _timer.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Callbacks of one listener. A callback either runs on the caller thread when the listener is
+   * idle, or waits until the callbacks before it have run. The queue never blocks the caller, so
+   * handlers may be added or removed while holding the manager lock from inside a callback.
+   */
+  static class ListenerQueue implements Runnable {
+    private final String _listenerName;
+    private final Queue<Task> _tasks = new ArrayDeque<Task>();
+    // guarded by _tasks
+    private boolean _active = false;
+    private Thread _activeThread = null;
+    private boolean _scheduled = false;
+    private int _numHandlers = 0;
+    private CallbackMonitor _monitor;
+
+    private ListenerQueue(Object listener) {
+      _listenerName =
+          listener.getClass().getName() + "@"
+              + Integer.toHexString(System.identityHashCode(listener));
+    }
+
+    /**
+     * Run a callback on a dispatcher thread, after the callbacks submitted before it
+     * @param callback
+     */
+    void submit(Runnable callback) {
+      Task task = new Task(callback);
+      synchronized (_tasks) {
+        enqueue(task);
+        if (_active || _scheduled) {
+          return;
+        }
+        _scheduled = true;
+      }
+      getPool().execute(this);
+    }
+
+    /**
+     * Run a callback on the caller thread if the listener is idle, otherwise queue it after the
+     * callbacks before it
+     * @param callback
+     */
+    void runOrSubmit(Runnable callback) {
+      Task task = new Task(callback);
+      synchronized (_tasks) {
+        if (_active || !_tasks.isEmpty()) {
+          enqueue(task);
+          if (!_active && !_scheduled) {
+            _scheduled = true;
+            getPool().execute(this);
+          }
+          return;
+        }
+        _active = true;
+        _activeThread = Thread.currentThread();
+      }
+      try {
+        task.run();
+      } finally {
+        boolean schedule = false;
+        synchronized (_tasks) {
+          _active = false;
+          _activeThread = null;
+          if (!_tasks.isEmpty() && !_scheduled) {
+            _scheduled = true;
+            schedule = true;
+          }
+        }
+        if (schedule) {
+          getPool().execute(this);
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      for (int i = 0; i < MAX_CALLBACKS_PER_RUN; i++) {
+        Task task;
+        synchronized (_tasks) {
+          task = _active ? null : _tasks.poll();
+          if (task == null) {
+            // a caller thread that is running a callback reschedules when it's done
+            _scheduled = false;
+            return;
+          }
+          _active = true;
+          _activeThread = Thread.currentThread();
+          if (_monitor != null) {
+            _monitor.decreaseQueueLength();
+          }
+        }
+        try {
+          task.run();
+        } finally {
+          synchronized (_tasks) {
+            _active = false;
+            _activeThread = null;
+          }
+        }
+      }
+
+      synchronized (_tasks) {
+        if (_tasks.isEmpty()) {
+          _scheduled = false;
+          return;
+        }
+      }
+      // yield to other listeners
+      getPool().execute(this);
+    }
+
+    /**
+     * Number of callbacks waiting for the listener
+     * @return
+     */
+    int size() {
+      synchronized (_tasks) {
+        return _tasks.size();
+      }
+    }
+
+    /**
+     * Check if the caller thread is running a callback of the listener
+     * @return true if called from inside a callback of the listener
+     */
+    boolean isCallbackThread() {
+      synchronized (_tasks) {
+        return _activeThread == Thread.currentThread();
+      }
+    }
+
+    /**
+     * Record a change notification received for the listener
+     */
+    void recordReceived() {
+      synchronized (_tasks) {
+        if (_monitor != null) {
+          _monitor.increaseReceivedCounter();
+        }
+      }
+    }
+
+    /**
+     * Record a change notification merged into a pending callback
+     */
+    void recordMerged() {
+      synchronized (_tasks) {
+        if (_monitor != null) {
+          _monitor.increaseMergedCounter();
+        }
+      }
+    }
+
+    /**
+     * Called when a handler of the listener is initialized. Registers the listener monitor when
+     * the first handler is initialized
+     * @param clusterName
+     */
+    void addHandler(String clusterName) {
+      synchronized (_tasks) {
+        if (_numHandlers++ > 0) {
+          return;
+        }
+        _monitor = new CallbackMonitor(clusterName, _listenerName);
+        for (int i = 0; i < _tasks.size(); i++) {
+          _monitor.increaseQueueLength();
+        }
+      }
+      _monitor.init();
+    }
+
+    /**
+     * Called when a handler of the listener is finalized. Unregisters the listener monitor when
+     * the last handler is finalized
+     */
+    void removeHandler() {
+      CallbackMonitor monitor;
+      synchronized (_tasks) {
+        if (_numHandlers == 0 || --_numHandlers > 0) {
+          return;
+        }
+        monitor = _monitor;
+        _monitor = null;
+      }
+      monitor.reset();
+    }
+
+    // guarded by _tasks
+    private void enqueue(Task task) {
+      _tasks.add(task);
+      if (_monitor != null) {
+        _monitor.increaseQueueLength();
+      }
+    }
+
+    private class Task implements Runnable {
+      private final Runnable _callback;
+      private final long _submitTime;
+
+      Task(Runnable callback) {
+        _callback = callback;
+        _submitTime = System.currentTimeMillis();
+      }
+
+      @Override
+      public void run() {
+        long start = System.currentTimeMillis();
+        try {
+          _callback.run();
+        } catch (Exception e) {
+          ZKExceptionHandler.getInstance().handle(
+              "exception in callback of listener: " + _listenerName, e);
+        } finally {
+          CallbackMonitor monitor;
+          synchronized (_tasks) {
+            monitor = _monitor;
+          }
+          if (monitor != null) {
+            monitor.addCallback(start - _submitTime, System.currentTimeMillis() - start);
+          }
+        }
+      }
+    }
+  }
+}
@@ -29,16 +29,20 @@ import static org.apache.helix.HelixConstants.ChangeType.MESSAGES_CONTROLLER;
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.I0Itec.zkclient.IZkChildListener;
 import org.I0Itec.zkclient.IZkDataListener;
 import org.I0Itec.zkclient.exception.ZkNoNodeException;
 import org.apache.helix.BaseDataAccessor;
+import org.apache.helix.BatchMode;
 import org.apache.helix.ConfigChangeListener;
 import org.apache.helix.ControllerChangeListener;
 import org.apache.helix.CurrentStateChangeListener;
@@ -91,11 +95,44 @@ public class CallbackHandler implements IZkChildListener, IZkDataListener
   private final AtomicLong _lastNotificationTimeStamp;
   private final HelixManager _manager;
   private final PropertyKey _propertyKey;
-  BlockingQueue<NotificationContext> _queue = new LinkedBlockingQueue<NotificationContext>(1000);
-  private static boolean asyncBatchModeEnabled = false;
+  private final CallbackDispatcher.ListenerQueue _listenerQueue;
+  // null unless child values are cached, see DELTA_MODE_ENABLED
+  private volatile ChildValueCache _childValueCache;
+  private final boolean _batchModeEnabled;
+  private final long _batchWindowMs;
+  // true from the first change notification of a batch until its callback starts
+  private final AtomicBoolean _batchPending = new AtomicBoolean(false);
+  // released when the first INIT callback has run
+  private final CountDownLatch _initDone = new CountDownLatch(1);
+  // max time adding a listener waits for its INIT callback
+  private static final long INIT_TIMEOUT_MS = 30 * 1000L;
+  /**
+   * System property to cache the child values of handlers that watch child data, and only read
+   * the children reported changed on a callback
+   */
+  public static final String DELTA_MODE_ENABLED = "helix.callbackHandler.deltaModeEnabled";
+  private static final boolean deltaModeEnabled = Boolean.getBoolean(DELTA_MODE_ENABLED);
+
+  /**
+   * System property to merge change notifications that arrive while a callback is pending, for
+   * listeners without a {@link BatchMode} annotation
+   */
+  public static final String ASYNC_BATCH_MODE_ENABLED =
+      "helix.callbackHandler.asyncBatchModeEnabled";
+  /**
+   * System property for the time to wait after the first change notification of a batch before
+   * invoking the callback, for listeners that don't set {@link BatchMode#windowMs()}
+   */
+  public static final String BATCH_WINDOW_MS = "helix.callbackHandler.batchWindowMs";
+  // former name of ASYNC_BATCH_MODE_ENABLED
+  private static final String LEGACY_ASYNC_BATCH_MODE_ENABLED = "isAsyncBatchModeEnabled";
+
+  private static final boolean asyncBatchModeEnabled = Boolean
+      .getBoolean(ASYNC_BATCH_MODE_ENABLED) || Boolean.getBoolean(LEGACY_ASYNC_BATCH_MODE_ENABLED);
+  private static final long batchWindowMs = Long.getLong(BATCH_WINDOW_MS, 0L);
   static {
-    asyncBatchModeEnabled = Boolean.parseBoolean(System.getProperty("isAsyncBatchModeEnabled"));
-    logger.info("isAsyncBatchModeEnabled: " + asyncBatchModeEnabled);
+    logger.info("asyncBatchModeEnabled: " + asyncBatchModeEnabled + ", batchWindowMs: "
+        + batchWindowMs);
   }
   /**
    * maintain the expected notification types
@@ -117,9 +154,30 @@ public class CallbackHandler implements IZkChildListener, IZkDataListener
     this._eventTypes = eventTypes;
     this._changeType = changeType;
     this._lastNotificationTimeStamp = new AtomicLong(System.nanoTime());
-    this._queue = new LinkedBlockingQueue<NotificationContext>(1000);
-    if (asyncBatchModeEnabled) {
-      new Thread(new CallbackInvoker(this)).start();
+    this._listenerQueue = CallbackDispatcher.getQueue(listener);
+    if (deltaModeEnabled) {
+      switch (changeType) {
+      case IDEAL_STATE:
+      case INSTANCE_CONFIG:
+      case CONFIG:
+      case LIVE_INSTANCE:
+      case CURRENT_STATE:
+      case EXTERNAL_VIEW:
+        _childValueCache =
+            new ChildValueCache(client, _path, propertyKey.getTypeClass(), this);
+        break;
+      default:
+        // messages and controller are not watched on child data
+        break;
+      }
+    }
+    BatchMode batchMode = listener.getClass().getAnnotation(BatchMode.class);
+    if (batchMode != null) {
+      _batchModeEnabled = batchMode.enabled();
+      _batchWindowMs = batchMode.windowMs() < 0 ? batchWindowMs : batchMode.windowMs();
+    } else {
+      _batchModeEnabled = asyncBatchModeEnabled;
+      _batchWindowMs = batchWindowMs;
     }
     init();
   }
@@ -132,61 +190,92 @@ public class CallbackHandler implements IZkChildListener, IZkDataListener
     return _path;
   }
 
-  class CallbackInvoker implements Runnable {
-    private CallbackHandler handler;
-
-    CallbackInvoker(CallbackHandler handler) {
-      this.handler = handler;
+  public void enqueueTask(NotificationContext changeContext) throws Exception {
+    if (changeContext.getType() != NotificationContext.Type.CALLBACK) {
+      // INIT and FINALIZE are never merged, and run on the caller thread if the listener is idle
+      _listenerQueue.runOrSubmit(newCallback(changeContext));
+      return;
     }
 
-    public void run() {
-      while (true) {
-        try {
-          NotificationContext notificationToProcess = _queue.take();
-          int mergedCallbacks = 0;
-          // remove all elements in the queue that have the same type
-          while (true) {
-            NotificationContext nextItem = _queue.peek();
-            if (nextItem != null && notificationToProcess.getType() == nextItem.getType()) {
-              notificationToProcess = _queue.take();
-              mergedCallbacks++;
-            } else {
-              break;
-            }
-          }
-          try {
-            logger.info("Num callbacks merged for path:" + handler.getPath() + " : " + mergedCallbacks);
-            handler.invoke(notificationToProcess);
-          } catch (Exception e) {
-            logger.warn("Exception in callback processing thread. Skipping callback", e);
-          }
-        } catch (InterruptedException e) {
-          logger.warn("Interrupted exception in callback processing thread. Exiting thread, new callbacks will not be processed", e);
-          break;
+    _listenerQueue.recordReceived();
+    if (!_batchModeEnabled) {
+      dispatch(newCallback(changeContext));
+      return;
+    }
+    if (!_batchPending.compareAndSet(false, true)) {
+      // the pending callback has not read the data yet, so it covers this change too
+      _listenerQueue.recordMerged();
+      return;
+    }
+    final Runnable batchCallback = newBatchCallback();
+    if (_batchWindowMs > 0) {
+      CallbackDispatcher.schedule(new Runnable() {
+        @Override
+        public void run() {
+          dispatch(batchCallback);
         }
-      }
+      }, _batchWindowMs);
+    } else {
+      dispatch(batchCallback);
     }
   }
 
-  public void enqueueTask(NotificationContext changeContext) throws Exception {
-    //async mode only applicable to CALLBACK from ZK, During INIT and FINALIZE invoke the callback's immediately.
-    if (asyncBatchModeEnabled && changeContext.getType() == NotificationContext.Type.CALLBACK) {
-      logger.info("Enqueuing callback");
-      _queue.put(changeContext);
+  private void dispatch(Runnable callback) {
+    if (CallbackDispatcher.isEnabled()) {
+      // don't hold up the zk event thread, and so the other listeners, with this listener
+      _listenerQueue.submit(callback);
     } else {
-      invoke(changeContext);
+      _listenerQueue.runOrSubmit(callback);
     }
   }
 
+  private Runnable newBatchCallback() {
+    return new Runnable() {
+      @Override
+      public void run() {
+        // changes from now on may not be read by this callback, so they start a new batch
+        _batchPending.set(false);
+        NotificationContext changeContext = new NotificationContext(_manager);
+        changeContext.setType(NotificationContext.Type.CALLBACK);
+        newCallback(changeContext).run();
+      }
+    };
+  }
+
+  private Runnable newCallback(final NotificationContext changeContext) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        try {
+          invoke(changeContext);
+        } catch (Exception e) {
+          String msg = "exception in " + changeContext.getType() + " callback. path: " + _path
+              + ", listener: " + _listener;
+          ZKExceptionHandler.getInstance().handle(msg, e);
+        } finally {
+          if (changeContext.getType() == NotificationContext.Type.INIT) {
+            _initDone.countDown();
+          }
+        }
+      }
+    };
+  }
+
   public void invoke(NotificationContext changeContext) throws Exception {
-    // This allows the listener to work with one change at a time
-    synchronized (_manager) {
+    // Callbacks of a listener are serialized by its CallbackDispatcher.ListenerQueue, this only
+    // guards the expected types against direct callers
+    synchronized (this) {
       Type type = changeContext.getType();
       if (!_expectTypes.contains(type)) {
         logger.warn("Skip processing callbacks for listener: " + _listener + ", path: " + _path + ", expected types: " + _expectTypes + " but was " + type);
         return;
       }
       _expectTypes = nextNotificationType.get(type);
+      if (type == Type.INIT) {
+        _listenerQueue.addHandler(_manager.getClusterName());
+      } else if (type == Type.FINALIZE) {
+        _listenerQueue.removeHandler();
+      }
 
       // Builder keyBuilder = _accessor.keyBuilder();
       long start = System.currentTimeMillis();
@@ -197,40 +286,34 @@ public class CallbackHandler implements IZkChildListener, IZkDataListener
       if (_changeType == IDEAL_STATE) {
 
         IdealStateChangeListener idealStateChangeListener = (IdealStateChangeListener) _listener;
-        subscribeForChanges(changeContext, _path, true, true);
-        List<IdealState> idealStates = _accessor.getChildValues(_propertyKey);
+        List<IdealState> idealStates = readChildValues(changeContext);
 
         idealStateChangeListener.onIdealStateChange(idealStates, changeContext);
 
       } else if (_changeType == ChangeType.INSTANCE_CONFIG) {
-        subscribeForChanges(changeContext, _path, true, true);
+        List<InstanceConfig> configs = readChildValues(changeContext);
         if (_listener instanceof ConfigChangeListener) {
           ConfigChangeListener configChangeListener = (ConfigChangeListener) _listener;
-          List<InstanceConfig> configs = _accessor.getChildValues(_propertyKey);
           configChangeListener.onConfigChange(configs, changeContext);
         } else if (_listener instanceof InstanceConfigChangeListener) {
           InstanceConfigChangeListener listener = (InstanceConfigChangeListener) _listener;
-          List<InstanceConfig> configs = _accessor.getChildValues(_propertyKey);
           listener.onInstanceConfigChange(configs, changeContext);
         }
       } else if (_changeType == CONFIG) {
-        subscribeForChanges(changeContext, _path, true, true);
         ScopedConfigChangeListener listener = (ScopedConfigChangeListener) _listener;
-        List<HelixProperty> configs = _accessor.getChildValues(_propertyKey);
+        List<HelixProperty> configs = readChildValues(changeContext);
         listener.onConfigChange(configs, changeContext);
       } else if (_changeType == LIVE_INSTANCE) {
         LiveInstanceChangeListener liveInstanceChangeListener = (LiveInstanceChangeListener) _listener;
-        subscribeForChanges(changeContext, _path, true, true);
-        List<LiveInstance> liveInstances = _accessor.getChildValues(_propertyKey);
+        List<LiveInstance> liveInstances = readChildValues(changeContext);
 
         liveInstanceChangeListener.onLiveInstanceChange(liveInstances, changeContext);
 
       } else if (_changeType == CURRENT_STATE) {
         CurrentStateChangeListener currentStateChangeListener = (CurrentStateChangeListener) _listener;
-        subscribeForChanges(changeContext, _path, true, true);
         String instanceName = PropertyPathConfig.getInstanceNameFromPath(_path);
 
-        List<CurrentState> currentStates = _accessor.getChildValues(_propertyKey);
+        List<CurrentState> currentStates = readChildValues(changeContext);
 
         currentStateChangeListener.onStateChange(instanceName, currentStates, changeContext);
 
@@ -251,8 +334,7 @@ public class CallbackHandler implements IZkChildListener, IZkDataListener
 
       } else if (_changeType == EXTERNAL_VIEW) {
         ExternalViewChangeListener externalViewListener = (ExternalViewChangeListener) _listener;
-        subscribeForChanges(changeContext, _path, true, true);
-        List<ExternalView> externalViewList = _accessor.getChildValues(_propertyKey);
+        List<ExternalView> externalViewList = readChildValues(changeContext);
 
         externalViewListener.onExternalViewChange(externalViewList, changeContext);
       } else if (_changeType == ChangeType.CONTROLLER) {
@@ -269,6 +351,39 @@ public class CallbackHandler implements IZkChildListener, IZkDataListener
     }
   }
 
+  /**
+   * Subscribe to the changes of the children of the path and read their values. When child values
+   * are cached, only the children reported changed are read, and the context tells which ones
+   * changed
+   */
+  @SuppressWarnings("unchecked")
+  private <T extends HelixProperty> List<T> readChildValues(NotificationContext changeContext) {
+    ChildValueCache childValueCache = _childValueCache;
+    if (childValueCache != null) {
+      if (changeContext.getType() != Type.FINALIZE) {
+        subscribeChildChange(_path, changeContext);
+        List<HelixProperty> values;
+        if (changeContext.getType() == Type.INIT) {
+          values = childValueCache.load();
+        } else {
+          Set<String> changedChildren = new HashSet<String>();
+          values = childValueCache.refresh(changedChildren);
+          changeContext.setChangedChildren(changedChildren);
+        }
+        if (values != null) {
+          return (List<T>) values;
+        }
+        // bucketized children are only read as a whole
+        _childValueCache = null;
+        changeContext.setChangedChildren(null);
+      } else {
+        childValueCache.clear();
+      }
+    }
+    subscribeForChanges(changeContext, _path, true, true);
+    return _accessor.getChildValues(_propertyKey);
+  }
+
   private void subscribeChildChange(String path, NotificationContext context) {
     NotificationContext.Type type = context.getType();
     if (type == NotificationContext.Type.INIT || type == NotificationContext.Type.CALLBACK) {
@@ -361,6 +476,21 @@ public class CallbackHandler implements IZkChildListener, IZkDataListener
     return _eventTypes;
   }
 
+  /**
+   * Wait until the INIT callback has run. An INIT queued behind a busy listener runs after the
+   * caller returns if the caller is a callback of the same listener, and may need a dispatcher
+   * thread held by the caller, so neither is waited for. Must not be called while holding the
+   * manager lock
+   * @return false if the INIT callback has not run within the timeout, true otherwise
+   * @throws InterruptedException
+   */
+  boolean awaitInit() throws InterruptedException {
+    if (_listenerQueue.isCallbackThread() || CallbackDispatcher.isDispatcherThread()) {
+      return true;
+    }
+    return _initDone.await(INIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+  }
+
   /**
    * Invoke the listener so that it sets up the initial values from the zookeeper if any
    * exists
@@ -382,6 +512,10 @@ public class CallbackHandler implements IZkChildListener, IZkDataListener
     try {
       updateNotificationTime(System.nanoTime());
       if (dataPath != null && dataPath.startsWith(_path)) {
+        ChildValueCache childValueCache = _childValueCache;
+        if (childValueCache != null) {
+          childValueCache.onDataChange(dataPath);
+        }
         NotificationContext changeContext = new NotificationContext(_manager);
         changeContext.setType(NotificationContext.Type.CALLBACK);
         enqueueTask(changeContext);
@@ -404,6 +538,10 @@ public class CallbackHandler implements IZkChildListener, IZkDataListener
         // watch on the bucketized parent path
         logger.info(_manager.getInstanceName() + " unsubscribe child-change. path: " + dataPath + ", listener: " + _listener);
         _zkClient.unsubscribeChildChanges(dataPath, this);
+        ChildValueCache childValueCache = _childValueCache;
+        if (childValueCache != null) {
+          childValueCache.onDataChange(dataPath);
+        }
         // No need to invoke() since this event will handled by child-change on parent-node
         // NotificationContext changeContext = new NotificationContext(_manager);
         // changeContext.setType(NotificationContext.Type.CALLBACK);
@@ -427,6 +565,10 @@ public class CallbackHandler implements IZkChildListener, IZkDataListener
           // removeListener will call handler.reset(), which in turn call invoke() on FINALIZE type
           _manager.removeListener(_propertyKey, _listener);
         } else {
+          ChildValueCache childValueCache = _childValueCache;
+          if (childValueCache != null && parentPath.equals(_path)) {
+            childValueCache.onChildChange(currentChilds);
+          }
           changeContext.setType(NotificationContext.Type.CALLBACK);
           enqueueTask(changeContext);
         }
@@ -27,6 +27,7 @@ import org.I0Itec.zkclient.exception.ZkMarshallingError;
 import org.I0Itec.zkclient.serialize.ZkSerializer;
 
 public class ChainedPathZkSerializer implements PathBasedZkSerializer {
+  private static final String WILDCARD = "*";
 
   public static class Builder {
     private final ZkSerializer _defaultSerializer;
@@ -40,6 +41,8 @@ public class ChainedPathZkSerializer implements PathBasedZkSerializer {
      * Add a serializing strategy for the given path prefix
      * The most specific path will triumph over a more generic (shorter)
      * one regardless of the ordering of the calls.
+     * A path segment of * matches any single segment, so one prefix can cover e.g. the current
+     * states of all instances.
      */
     public Builder serialize(String path, ZkSerializer withSerializer) {
       _items.add(new ChainItem(normalize(path), withSerializer));
@@ -95,13 +98,35 @@ public class ChainedPathZkSerializer implements PathBasedZkSerializer {
   private static class ChainItem implements Comparable<ChainItem> {
     final String _path;
     final ZkSerializer _serializer;
+    final String[] _segments;
+    final int _numWildcards;
 
     ChainItem(String path, ZkSerializer serializer) {
       _path = path;
       _serializer = serializer;
+      _segments = path.split("/");
+      int numWildcards = 0;
+      for (String segment : _segments) {
+        if (WILDCARD.equals(segment)) {
+          numWildcards++;
+        }
+      }
+      _numWildcards = numWildcards;
     }
 
     boolean matches(String path) {
+      if (_numWildcards > 0) {
+        String[] segments = path.split("/");
+        if (segments.length < _segments.length) {
+          return false;
+        }
+        for (int i = 0; i < _segments.length; i++) {
+          if (!WILDCARD.equals(_segments[i]) && !_segments[i].equals(segments[i])) {
+            return false;
+          }
+        }
+        return true;
+      }
       if (_path.equals(path)) {
         return true;
       } else if (path.length() > _path.length()) {
@@ -114,6 +139,13 @@ public class ChainedPathZkSerializer implements PathBasedZkSerializer {
 
     @Override
     public int compareTo(ChainItem o) {
+      // more segments is more specific, and so are fewer wildcards for the same depth
+      if (o._segments.length != _segments.length) {
+        return o._segments.length - _segments.length;
+      }
+      if (_numWildcards != o._numWildcards) {
+        return _numWildcards - o._numWildcards;
+      }
       return o._path.length() - _path.length();
     }
   }
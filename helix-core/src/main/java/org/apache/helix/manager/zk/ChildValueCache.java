@@ -0,0 +1,238 @@
+package org.apache.helix.manager.zk;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.I0Itec.zkclient.IZkDataListener;
+import org.apache.helix.HelixProperty;
+import org.apache.helix.ZNRecord;
+import org.apache.log4j.Logger;
+import org.apache.zookeeper.data.Stat;
+
+/**
+ * Child values of a path kept with their znode versions, so that a callback only reads the
+ * children that were reported changed since the previous one, instead of every child. Data
+ * watches are added and removed as children come and go, instead of being re-subscribed on every
+ * child on every callback. Bucketized children are not supported: when one is seen, the values
+ * are not returned and the caller reads all children itself.
+ */
+class ChildValueCache {
+  private static Logger LOG = Logger.getLogger(ChildValueCache.class);
+
+  private static class Entry {
+    // a child deleted and created again between two reads has the same version but a new czxid
+    final long _czxid;
+    final int _version;
+    final HelixProperty _value;
+
+    Entry(Stat stat, HelixProperty value) {
+      _czxid = stat.getCzxid();
+      _version = stat.getVersion();
+      _value = value;
+    }
+  }
+
+  private final ZkClient _zkClient;
+  private final ZkBaseDataAccessor<ZNRecord> _baseAccessor;
+  private final String _path;
+  private final Class<? extends HelixProperty> _typeClass;
+  private final IZkDataListener _dataListener;
+
+  // changes reported by zookeeper events, since the last read
+  private final Set<String> _changedChildNames =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private final AtomicReference<List<String>> _currentChildNames =
+      new AtomicReference<List<String>>();
+
+  // only accessed by the callback of the handler
+  private final Map<String, Entry> _entries = new TreeMap<String, Entry>();
+  private boolean _loaded = false;
+
+  ChildValueCache(ZkClient zkClient, String path, Class<? extends HelixProperty> typeClass,
+      IZkDataListener dataListener) {
+    _zkClient = zkClient;
+    _baseAccessor = new ZkBaseDataAccessor<ZNRecord>(zkClient);
+    _path = path;
+    _typeClass = typeClass;
+    _dataListener = dataListener;
+  }
+
+  /**
+   * Record a data change or deletion of a child
+   * @param dataPath path of the child
+   */
+  void onDataChange(String dataPath) {
+    if (dataPath.length() > _path.length() + 1 && dataPath.charAt(_path.length()) == '/') {
+      String childName = dataPath.substring(_path.length() + 1);
+      if (childName.indexOf('/') < 0) {
+        _changedChildNames.add(childName);
+      }
+    }
+  }
+
+  /**
+   * Record a change of the children
+   * @param currentChildNames names of the children after the change
+   */
+  void onChildChange(List<String> currentChildNames) {
+    if (currentChildNames != null) {
+      _currentChildNames.set(new ArrayList<String>(currentChildNames));
+    }
+  }
+
+  /**
+   * Read all the children and subscribe to their data changes
+   * @return child values, or null if a child is bucketized
+   */
+  List<HelixProperty> load() {
+    _changedChildNames.clear();
+    _currentChildNames.set(null);
+    clear();
+
+    List<String> childNames = _baseAccessor.getChildNames(_path, 0);
+    if (childNames == null) {
+      childNames = Collections.emptyList();
+    }
+    for (String childName : childNames) {
+      _zkClient.subscribeDataChanges(childPath(childName), _dataListener);
+    }
+    _loaded = true;
+    if (!read(new HashSet<String>(childNames), new HashSet<String>())) {
+      return null;
+    }
+    return getValues();
+  }
+
+  /**
+   * Read the children that changed since the last read
+   * @param changedChildNames filled with the names of the added, updated and removed children
+   * @return child values, or null if a child is bucketized
+   */
+  List<HelixProperty> refresh(Set<String> changedChildNames) {
+    if (!_loaded) {
+      return load();
+    }
+
+    Set<String> toRead = new HashSet<String>();
+    List<String> currentChildNames = _currentChildNames.getAndSet(null);
+    if (currentChildNames != null) {
+      Set<String> current = new HashSet<String>(currentChildNames);
+      for (String childName : new ArrayList<String>(_entries.keySet())) {
+        if (!current.contains(childName)) {
+          _entries.remove(childName);
+          _zkClient.unsubscribeDataChanges(childPath(childName), _dataListener);
+          changedChildNames.add(childName);
+        }
+      }
+      for (String childName : current) {
+        if (!_entries.containsKey(childName)) {
+          // subscribe before reading, so that no update after the read is missed
+          _zkClient.subscribeDataChanges(childPath(childName), _dataListener);
+          toRead.add(childName);
+        }
+      }
+    }
+
+    for (String childName : _changedChildNames) {
+      _changedChildNames.remove(childName);
+      toRead.add(childName);
+    }
+
+    if (!read(toRead, changedChildNames)) {
+      return null;
+    }
+    return getValues();
+  }
+
+  /**
+   * Drop all values and unsubscribe from the data changes of the children
+   */
+  void clear() {
+    for (String childName : _entries.keySet()) {
+      _zkClient.unsubscribeDataChanges(childPath(childName), _dataListener);
+    }
+    _entries.clear();
+    _loaded = false;
+  }
+
+  private boolean read(Set<String> childNames, Set<String> changedChildNames) {
+    if (childNames.isEmpty()) {
+      return true;
+    }
+    List<String> names = new ArrayList<String>(childNames);
+    List<String> paths = new ArrayList<String>(names.size());
+    for (String childName : names) {
+      paths.add(childPath(childName));
+    }
+    List<Stat> stats = new ArrayList<Stat>();
+    List<ZNRecord> records = _baseAccessor.get(paths, stats, 0);
+
+    for (int i = 0; i < names.size(); i++) {
+      String childName = names.get(i);
+      ZNRecord record = records.get(i);
+      Stat stat = stats.get(i);
+      if (record == null || stat == null) {
+        if (_entries.remove(childName) != null) {
+          changedChildNames.add(childName);
+        }
+        continue;
+      }
+      if (new HelixProperty(record).getBucketSize() > 0) {
+        LOG.info("Bucketized child " + paths.get(i) + ", stop caching children of " + _path);
+        clear();
+        return false;
+      }
+      record.setCreationTime(stat.getCtime());
+      record.setModifiedTime(stat.getMtime());
+      record.setVersion(stat.getVersion());
+      Entry entry = _entries.get(childName);
+      if (entry != null && entry._czxid == stat.getCzxid()
+          && entry._version == stat.getVersion()) {
+        // notified but not changed since the last read
+        continue;
+      }
+      _entries.put(childName,
+          new Entry(stat, HelixProperty.convertToTypedInstance(_typeClass, record)));
+      changedChildNames.add(childName);
+    }
+    return true;
+  }
+
+  private List<HelixProperty> getValues() {
+    List<HelixProperty> values = new ArrayList<HelixProperty>(_entries.size());
+    for (Entry entry : _entries.values()) {
+      values.add(entry._value);
+    }
+    return values;
+  }
+
+  private String childPath(String childName) {
+    return _path + "/" + childName;
+  }
+}
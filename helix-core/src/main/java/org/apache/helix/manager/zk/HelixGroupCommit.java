@@ -19,146 +19,231 @@ package org.apache.helix.manager.zk;
  * under the License.
  */
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 
 import org.I0Itec.zkclient.DataUpdater;
-import org.I0Itec.zkclient.exception.ZkBadVersionException;
-import org.I0Itec.zkclient.exception.ZkNoNodeException;
+import org.apache.helix.BaseDataAccessor;
+import org.apache.helix.monitoring.mbeans.GroupCommitMonitor;
 import org.apache.log4j.Logger;
-import org.apache.zookeeper.data.Stat;
 
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Combines concurrent updates to zookeeper. Keys are hashed into stripes; the first thread that
+ * finds pending updates in a stripe becomes its leader and commits all of them, merging updates of
+ * the same key into one versioned write and writing different keys in one async batch. Other
+ * threads wait on a future instead of polling.
+ */
 public class HelixGroupCommit<T> {
   private static Logger LOG = Logger.getLogger(HelixGroupCommit.class);
 
-  private static class Queue<T> {
-    final AtomicReference<Thread> _running = new AtomicReference<Thread>();
+  /**
+   * Number of stripes keys are hashed into
+   */
+  public static final String NUM_STRIPES = "helix.groupCommit.stripes";
+  public static final int DEFAULT_NUM_STRIPES = 100;
+
+  private static class Stripe<T> {
+    final AtomicBoolean _leading = new AtomicBoolean(false);
     final ConcurrentLinkedQueue<Entry<T>> _pending = new ConcurrentLinkedQueue<Entry<T>>();
   }
 
   private static class Entry<T> {
+    final BaseDataAccessor<T> _accessor;
+    final int _options;
     final String _key;
     final DataUpdater<T> _updater;
-    AtomicBoolean _sent = new AtomicBoolean(false);
-    boolean _isSuccess;
+    final long _submitTime;
+    final SettableFuture<Boolean> _future;
 
-    Entry(String key, DataUpdater<T> updater) {
+    Entry(BaseDataAccessor<T> accessor, int options, String key, DataUpdater<T> updater) {
+      _accessor = accessor;
+      _options = options;
       _key = key;
       _updater = updater;
-      _isSuccess = true;
+      _submitTime = System.currentTimeMillis();
+      _future = SettableFuture.create();
+    }
+  }
+
+  /**
+   * Entries of a batch that can be written with one async call
+   */
+  private static class Group<T> {
+    final BaseDataAccessor<T> _accessor;
+    final int _options;
+    final Map<String, List<Entry<T>>> _entries = new LinkedHashMap<String, List<Entry<T>>>();
+
+    Group(BaseDataAccessor<T> accessor, int options) {
+      _accessor = accessor;
+      _options = options;
     }
   }
 
-  private final Queue<T>[] _queues = new Queue[100];
+  /**
+   * Applies the updaters of all entries of a key in order. Called again on a version conflict.
+   */
+  private static class MergedUpdater<T> implements DataUpdater<T> {
+    final List<Entry<T>> _entries;
+    int _attempts = 0;
+
+    MergedUpdater(List<Entry<T>> entries) {
+      _entries = entries;
+    }
+
+    @Override
+    public T update(T currentData) {
+      _attempts++;
+      T merged = currentData;
+      for (Entry<T> entry : _entries) {
+        merged = entry._updater.update(merged);
+      }
+      return merged;
+    }
+  }
+
+  private final Stripe<T>[] _stripes;
+  private final GroupCommitMonitor _monitor;
 
   public HelixGroupCommit() {
+    this(Integer.getInteger(NUM_STRIPES, DEFAULT_NUM_STRIPES));
+  }
+
+  public HelixGroupCommit(int numStripes) {
+    if (numStripes <= 0) {
+      throw new IllegalArgumentException("numStripes should be positive, was: " + numStripes);
+    }
+    _stripes = new Stripe[numStripes];
     // Don't use Arrays.fill();
-    for (int i = 0; i < _queues.length; ++i) {
-      _queues[i] = new Queue<T>();
+    for (int i = 0; i < _stripes.length; ++i) {
+      _stripes[i] = new Stripe<T>();
     }
+    _monitor = new GroupCommitMonitor();
   }
 
-  private Queue<T> getQueue(String key) {
-    return _queues[(key.hashCode() & Integer.MAX_VALUE) % _queues.length];
+  public GroupCommitMonitor getMonitor() {
+    return _monitor;
+  }
+
+  private Stripe<T> getStripe(String key) {
+    return _stripes[(key.hashCode() & Integer.MAX_VALUE) % _stripes.length];
+  }
+
+  public boolean commit(BaseDataAccessor<T> accessor, int options, String key,
+      DataUpdater<T> updater) {
+    Future<Boolean> future = commitAsync(accessor, options, key, updater);
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      LOG.error("Interrupted while waiting for group commit. path: " + key, e);
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      LOG.error("Fail to group commit. path: " + key, e.getCause());
+    }
+    return false;
   }
 
-  public boolean commit(ZkBaseDataAccessor<T> accessor, int options, String key,
+  /**
+   * Submit an update. If no other thread is committing the stripe of the key, the update and all
+   * other pending updates of the stripe are committed by the calling thread before returning.
+   * @return future of whether the update is written
+   */
+  public Future<Boolean> commitAsync(BaseDataAccessor<T> accessor, int options, String key,
       DataUpdater<T> updater) {
-    Queue<T> queue = getQueue(key);
-    Entry<T> entry = new Entry<T>(key, updater);
-
-    queue._pending.add(entry);
-
-    while (!entry._sent.get()) {
-      if (queue._running.compareAndSet(null, Thread.currentThread())) {
-        ArrayList<Entry<T>> processed = new ArrayList<Entry<T>>();
-        boolean success = true;
-        try {
-          Entry<T> first = queue._pending.peek();
-          if (first == null) {
-            return true;
-          }
-
-          String mergedKey = first._key;
-
-          boolean retry;
-          do {
-            retry = false;
-
-            try {
-              T merged = null;
-
-              Stat readStat = new Stat();
-
-              // to create a new znode, we need set version to -1
-              readStat.setVersion(-1);
-              try {
-                // accessor will fallback to zk if not found in cache
-                merged = accessor.get(mergedKey, readStat, options);
-              } catch (ZkNoNodeException e) {
-                // OK
-              }
-
-              // iterate over processed if we are retrying
-              Iterator<Entry<T>> it = processed.iterator();
-              while (it.hasNext()) {
-                Entry<T> ent = it.next();
-                if (!ent._key.equals(mergedKey)) {
-                  continue;
-                }
-                merged = ent._updater.update(merged);
-                if (LOG.isDebugEnabled()) {
-                  LOG.debug("After merging processed entry. path: " + mergedKey + ", value: " + merged);
-                }
-              }
-
-              // iterate over queue._pending for newly coming requests
-              it = queue._pending.iterator();
-              while (it.hasNext()) {
-                Entry<T> ent = it.next();
-                if (!ent._key.equals(mergedKey)) {
-                  continue;
-                }
-                processed.add(ent);
-                merged = ent._updater.update(merged);
-                if (LOG.isDebugEnabled()) {
-                  LOG.debug("After merging pending entry. path: " + mergedKey + ", value: " + merged);
-                }
-
-                it.remove();
-              }
-              success = accessor.set(mergedKey, merged, readStat.getVersion(), options);
-              if (!success) {
-                LOG.error("Fail to group commit. path: " + mergedKey + ", value: " + merged
-                    + ", version: " + readStat.getVersion());
-              }
-            } catch (ZkBadVersionException e) {
-              retry = true;
-            }
-          } while (retry);
-        } finally {
-          queue._running.set(null);
-          for (Entry<T> e : processed) {
-            synchronized (e) {
-              e._sent.set(true);
-              e._isSuccess = success;
-              e.notify();
-            }
-          }
+    Stripe<T> stripe = getStripe(key);
+    Entry<T> entry = new Entry<T>(accessor, options, key, updater);
+    stripe._pending.add(entry);
+    drain(stripe);
+    return entry._future;
+  }
+
+  private void drain(Stripe<T> stripe) {
+    // an entry added while the leader is committing is picked up by the leader after it
+    // gives up the leadership, so a thread that fails to lead can return right away
+    while (!stripe._pending.isEmpty() && stripe._leading.compareAndSet(false, true)) {
+      try {
+        List<Entry<T>> batch = new ArrayList<Entry<T>>();
+        Entry<T> entry;
+        while ((entry = stripe._pending.poll()) != null) {
+          batch.add(entry);
         }
-      } else {
-        synchronized (entry) {
-          try {
-            entry.wait(10);
-          } catch (InterruptedException e) {
-            e.printStackTrace();
-            return false;
-          }
+        commitBatch(batch);
+      } finally {
+        stripe._leading.set(false);
+      }
+    }
+  }
+
+  private void commitBatch(List<Entry<T>> batch) {
+    List<Group<T>> groups = new ArrayList<Group<T>>();
+    for (Entry<T> entry : batch) {
+      Group<T> group = null;
+      for (Group<T> g : groups) {
+        if (g._accessor == entry._accessor && g._options == entry._options) {
+          group = g;
+          break;
+        }
+      }
+      if (group == null) {
+        group = new Group<T>(entry._accessor, entry._options);
+        groups.add(group);
+      }
+      List<Entry<T>> entries = group._entries.get(entry._key);
+      if (entries == null) {
+        entries = new ArrayList<Entry<T>>();
+        group._entries.put(entry._key, entries);
+      }
+      entries.add(entry);
+    }
+
+    for (Group<T> group : groups) {
+      commitGroup(group);
+    }
+  }
+
+  private void commitGroup(Group<T> group) {
+    List<String> paths = new ArrayList<String>(group._entries.keySet());
+    List<MergedUpdater<T>> mergedUpdaters = new ArrayList<MergedUpdater<T>>();
+    List<DataUpdater<T>> updaters = new ArrayList<DataUpdater<T>>();
+    for (String path : paths) {
+      MergedUpdater<T> updater = new MergedUpdater<T>(group._entries.get(path));
+      mergedUpdaters.add(updater);
+      updaters.add(updater);
+    }
+
+    boolean[] success = null;
+    Exception error = null;
+    try {
+      // async read and versioned write of all paths, retried on version conflicts
+      success = group._accessor.updateChildren(paths, updaters, group._options);
+    } catch (Exception e) {
+      LOG.error("Fail to group commit. paths: " + paths, e);
+      error = e;
+    }
+
+    long now = System.currentTimeMillis();
+    _monitor.addBatch(paths.size());
+    for (int i = 0; i < paths.size(); i++) {
+      MergedUpdater<T> updater = mergedUpdaters.get(i);
+      boolean isSuccess = error == null && success[i];
+      if (error == null && !isSuccess) {
+        LOG.error("Fail to group commit. path: " + paths.get(i));
+      }
+      _monitor.addWrite(updater._entries.size(), Math.max(0, updater._attempts - 1), isSuccess);
+      for (Entry<T> entry : updater._entries) {
+        _monitor.addCommitLatency(now - entry._submitTime);
+        if (error != null) {
+          entry._future.setException(error);
+        } else {
+          entry._future.set(isSuccess);
         }
       }
     }
-    return entry._isSuccess;
   }
 }
@@ -301,6 +301,38 @@ public class ZKHelixDataAccessor implements HelixDataAccessor {
     return t;
   }
 
+  /**
+   * Return a list of property stats, one per key. The stat of a property that does not exist
+   * is null. Stats are much cheaper to read than values, so callers may use them to decide
+   * which properties need to be re-read.
+   * @param keys
+   * @return
+   */
+  public List<HelixProperty.Stat> getPropertyStats(List<PropertyKey> keys) {
+    if (keys == null || keys.size() == 0) {
+      return Collections.emptyList();
+    }
+
+    List<String> paths = new ArrayList<String>();
+    for (PropertyKey key : keys) {
+      paths.add(key.getPath());
+    }
+    Stat[] zkStats = _baseDataAccessor.getStats(paths, 0);
+
+    List<HelixProperty.Stat> propertyStats = new ArrayList<HelixProperty.Stat>();
+    for (int i = 0; i < keys.size(); i++) {
+      Stat zkStat = zkStats[i];
+      HelixProperty.Stat propertyStat = null;
+      if (zkStat != null) {
+        propertyStat =
+            new HelixProperty.Stat(zkStat.getVersion(), zkStat.getCtime(), zkStat.getMtime());
+      }
+      propertyStats.add(propertyStat);
+    }
+
+    return propertyStats;
+  }
+
   @Override
   public boolean removeProperty(PropertyKey key) {
     PropertyType type = key.getType();
@@ -329,9 +361,18 @@ public class ZKHelixDataAccessor implements HelixDataAccessor {
     int options = constructOptions(type);
     List<T> childValues = new ArrayList<T>();
 
-    List<ZNRecord> children = _baseDataAccessor.getChildren(parentPath, null, options);
+    List<Stat> stats = new ArrayList<Stat>();
+    List<ZNRecord> children = _baseDataAccessor.getChildren(parentPath, stats, options);
     if (children != null) {
-      for (ZNRecord record : children) {
+      for (int i = 0; i < children.size(); i++) {
+        ZNRecord record = children.get(i);
+        Stat stat = i < stats.size() ? stats.get(i) : null;
+        if (record != null && stat != null) {
+          record.setCreationTime(stat.getCtime());
+          record.setModifiedTime(stat.getMtime());
+          record.setVersion(stat.getVersion());
+        }
+
         switch (type) {
         case CURRENTSTATES:
         case IDEALSTATES:
@@ -418,6 +459,21 @@ public class ZKHelixDataAccessor implements HelixDataAccessor {
     return _baseDataAccessor.createChildren(paths, records, options);
   }
 
+  /**
+   * Removes multiple children under one parent
+   * @param keys
+   * @return array where true means the child was removed and false means it was not
+   */
+  public boolean[] removeChildren(List<PropertyKey> keys) {
+    int options = -1;
+    List<String> paths = new ArrayList<String>();
+    for (PropertyKey key : keys) {
+      paths.add(key.getPath());
+      options = constructOptions(key.getType());
+    }
+    return _baseDataAccessor.remove(paths, options);
+  }
+
   @Override
   public <T extends HelixProperty> boolean[] setChildren(List<PropertyKey> keys, List<T> children) {
     int options = -1;
@@ -71,6 +71,7 @@ import org.apache.helix.participant.HelixStateMachineEngine;
 import org.apache.helix.participant.StateMachineEngine;
 import org.apache.helix.store.zk.AutoFallbackPropertyStore;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.apache.helix.util.StatusUpdateUtil;
 import org.apache.log4j.Logger;
 import org.apache.zookeeper.Watcher.Event.EventType;
 import org.apache.zookeeper.Watcher.Event.KeeperState;
@@ -84,6 +85,14 @@ public class ZKHelixManager implements HelixManager, IZkStateListener {
   public static final String ALLOW_PARTICIPANT_AUTO_JOIN = "allowParticipantAutoJoin";
   private static final int DEFAULT_CONNECTION_ESTABLISHMENT_RETRY_TIMEOUT = 120000; // Default to 120 sec
 
+  /**
+   * Comma separated property types, e.g. EXTERNALVIEW,CURRENTSTATES, that are written with
+   * {@link ZNRecordBinarySerializer}. Every reader detects the format, so only enable this once all
+   * processes of the cluster run a version that can read binary records.
+   */
+  public static final String BINARY_SERIALIZED_PROPERTY_TYPES =
+      "helix.binarySerializedPropertyTypes";
+
   protected final String _zkAddress;
   private final String _clusterName;
   private final String _instanceName;
@@ -319,6 +328,7 @@ public class ZKHelixManager implements HelixManager, IZkStateListener {
 
     PropertyType type = propertyKey.getType();
 
+    CallbackHandler newHandler;
     synchronized (this) {
       for (CallbackHandler handler : _handlers) {
         // compare property-key path and listener reference
@@ -331,13 +341,28 @@ public class ZKHelixManager implements HelixManager, IZkStateListener {
         }
       }
 
-      CallbackHandler newHandler =
+      newHandler =
           new CallbackHandler(this, _zkclient, propertyKey, listener, eventType, changeType);
 
       _handlers.add(newHandler);
       LOG.info("Added listener: " + listener + " for type: " + type + " to path: "
           + newHandler.getPath());
     }
+
+    // the init callback is queued if the listener is busy, wait for it outside the manager lock
+    // so the listener has seen the initial data when this returns
+    if (!Thread.holdsLock(this)) {
+      try {
+        if (!newHandler.awaitInit()) {
+          LOG.warn("Timed out waiting for the init callback of listener: " + listener
+              + " on path: " + newHandler.getPath());
+        }
+      } catch (InterruptedException e) {
+        LOG.warn("Interrupted while waiting for the init callback of listener: " + listener
+            + " on path: " + newHandler.getPath());
+        Thread.currentThread().interrupt();
+      }
+    }
   }
 
   @Override
@@ -482,8 +507,26 @@ public class ZKHelixManager implements HelixManager, IZkStateListener {
   }
 
   void createClient() throws Exception {
-    PathBasedZkSerializer zkSerializer =
-        ChainedPathZkSerializer.builder(new ZNRecordStreamingSerializer()).build();
+    ChainedPathZkSerializer.Builder serializerBuilder =
+        ChainedPathZkSerializer.builder(new ZNRecordStreamingSerializer());
+    String binaryTypes = System.getProperty(BINARY_SERIALIZED_PROPERTY_TYPES);
+    if (binaryTypes != null && !binaryTypes.trim().isEmpty()) {
+      ZNRecordBinarySerializer binarySerializer = new ZNRecordBinarySerializer();
+      for (String typeName : binaryTypes.split(",")) {
+        try {
+          PropertyType type = PropertyType.valueOf(typeName.trim().toUpperCase());
+          String pathPattern = PropertyPathBuilder.getPathPattern(type, _clusterName);
+          if (pathPattern != null) {
+            LOG.info("Use binary serializer for " + type + " at " + pathPattern);
+            serializerBuilder.serialize(pathPattern, binarySerializer);
+          }
+        } catch (IllegalArgumentException e) {
+          LOG.warn("Ignore unknown property type " + typeName + " in "
+              + BINARY_SERIALIZED_PROPERTY_TYPES);
+        }
+      }
+    }
+    PathBasedZkSerializer zkSerializer = serializerBuilder.build();
 
     _zkclient =
         new ZkClient(_zkAddress, _sessionTimeout, _clientConnectionTimeout, zkSerializer);
@@ -576,6 +619,9 @@ public class ZKHelixManager implements HelixManager, IZkStateListener {
       // TODO reset user defined handlers only
       resetHandlers();
 
+      // write buffered status updates while still connected
+      StatusUpdateUtil.flushStatusUpdates();
+
       if (_leaderElectionHandler != null) {
         _leaderElectionHandler.reset();
       }
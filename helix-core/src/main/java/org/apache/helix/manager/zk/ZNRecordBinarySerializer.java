@@ -0,0 +1,422 @@
+package org.apache.helix.manager.zk;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.I0Itec.zkclient.exception.ZkMarshallingError;
+import org.I0Itec.zkclient.serialize.ZkSerializer;
+import org.apache.helix.HelixException;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.util.GZipCompressionUtil;
+import org.apache.log4j.Logger;
+
+/**
+ * A compact binary encoding of {@link ZNRecord}. All ids, keys and values are written once to a
+ * string dictionary and referred to by index, so the instance and state names repeated in every
+ * partition of an ideal state, external view or current state only take a byte or two each.
+ * Lengths and indexes are varints. Records are compressed under the same rules as the JSON
+ * serializers.<br/>
+ * <br/>
+ * Data that does not start with the binary header is handed to a legacy serializer, so znodes
+ * written as JSON can still be read after switching a path to this serializer. The JSON
+ * serializers in turn recognize the header, so readers can be upgraded before any writer.
+ */
+public class ZNRecordBinarySerializer implements ZkSerializer {
+  private static Logger LOG = Logger.getLogger(ZNRecordBinarySerializer.class);
+
+  // JSON starts with '{' or whitespace and gzip with 0x1f, so a leading 0 can't be mistaken
+  private static final byte[] HEADER = new byte[] {
+      0, 'Z', 'N', 'B'
+  };
+  private static final byte VERSION = 1;
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final ZkSerializer _legacySerializer;
+
+  /**
+   * Create a serializer that reads legacy data with {@link ZNRecordStreamingSerializer}
+   */
+  public ZNRecordBinarySerializer() {
+    this(new ZNRecordStreamingSerializer());
+  }
+
+  /**
+   * @param legacySerializer serializer used to read data not written by this serializer
+   */
+  public ZNRecordBinarySerializer(ZkSerializer legacySerializer) {
+    _legacySerializer = legacySerializer;
+  }
+
+  /**
+   * Check if uncompressed data is in the binary format
+   * @param bytes the data
+   * @return true if the data starts with the binary header
+   */
+  public static boolean isBinary(byte[] bytes) {
+    if (bytes == null || bytes.length < HEADER.length) {
+      return false;
+    }
+    for (int i = 0; i < HEADER.length; i++) {
+      if (bytes[i] != HEADER[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public byte[] serialize(Object data) throws ZkMarshallingError {
+    if (!(data instanceof ZNRecord)) {
+      // null is NOT an instance of any class
+      LOG.error("Input object must be of type ZNRecord but it is " + data
+          + ". Will not write to zk");
+      throw new HelixException("Input object is not of type ZNRecord (was " + data + ")");
+    }
+    ZNRecord record = (ZNRecord) data;
+
+    // apply retention policy
+    int max = getListFieldBound(record);
+    if (max < Integer.MAX_VALUE) {
+      Map<String, List<String>> listMap = record.getListFields();
+      for (String key : listMap.keySet()) {
+        List<String> list = listMap.get(key);
+        if (list.size() > max) {
+          listMap.put(key, list.subList(0, max));
+        }
+      }
+    }
+
+    byte[] serializedBytes;
+    try {
+      serializedBytes = encode(record);
+      // apply compression if needed
+      if (record.getBooleanField("enableCompression", false)
+          || serializedBytes.length > ZNRecord.SIZE_LIMIT) {
+        serializedBytes = GZipCompressionUtil.compress(serializedBytes);
+      }
+    } catch (Exception e) {
+      LOG.error("Exception during data serialization. Will not write to zk. ZNRecord.id: "
+          + record.getId(), e);
+      throw new HelixException(e);
+    }
+    if (serializedBytes.length > ZNRecord.SIZE_LIMIT) {
+      LOG.error("Data size larger than 1M, ZNRecord.id: " + record.getId()
+          + ". Will not write to zk.");
+      throw new HelixException("Data size larger than 1M, ZNRecord.id: " + record.getId());
+    }
+    return serializedBytes;
+  }
+
+  @Override
+  public Object deserialize(byte[] bytes) throws ZkMarshallingError {
+    if (bytes == null || bytes.length == 0) {
+      // reading a parent/null node
+      return null;
+    }
+    try {
+      byte[] data = bytes;
+      if (GZipCompressionUtil.isCompressed(bytes)) {
+        data = GZipCompressionUtil.uncompress(new ByteArrayInputStream(bytes));
+      }
+      if (isBinary(data)) {
+        return decode(data);
+      }
+      return _legacySerializer.deserialize(data);
+    } catch (Exception e) {
+      LOG.error("Exception during deserialization of " + bytes.length + " bytes", e);
+      return null;
+    }
+  }
+
+  /**
+   * Encode a record, without compression
+   * @param record the record
+   * @return the binary data
+   */
+  public static byte[] encode(ZNRecord record) {
+    // collect the dictionary, index 0 is reserved for null
+    Map<String, Integer> dictionary = new HashMap<String, Integer>();
+    List<String> strings = new ArrayList<String>();
+    addString(dictionary, strings, record.getId());
+    for (Map.Entry<String, String> e : record.getSimpleFields().entrySet()) {
+      addString(dictionary, strings, e.getKey());
+      addString(dictionary, strings, e.getValue());
+    }
+    for (Map.Entry<String, List<String>> e : record.getListFields().entrySet()) {
+      addString(dictionary, strings, e.getKey());
+      for (String value : e.getValue()) {
+        addString(dictionary, strings, value);
+      }
+    }
+    for (Map.Entry<String, Map<String, String>> e : record.getMapFields().entrySet()) {
+      addString(dictionary, strings, e.getKey());
+      for (Map.Entry<String, String> mapEntry : e.getValue().entrySet()) {
+        addString(dictionary, strings, mapEntry.getKey());
+        addString(dictionary, strings, mapEntry.getValue());
+      }
+    }
+
+    Output out = new Output(1024);
+    out.writeBytes(HEADER, 0, HEADER.length);
+    out.writeByte(VERSION);
+    out.writeVarInt(strings.size());
+    for (String s : strings) {
+      byte[] utf8 = s.getBytes(UTF8);
+      out.writeVarInt(utf8.length);
+      out.writeBytes(utf8, 0, utf8.length);
+    }
+
+    out.writeVarInt(ref(dictionary, record.getId()));
+    out.writeVarInt(record.getSimpleFields().size());
+    for (Map.Entry<String, String> e : record.getSimpleFields().entrySet()) {
+      out.writeVarInt(ref(dictionary, e.getKey()));
+      out.writeVarInt(ref(dictionary, e.getValue()));
+    }
+    out.writeVarInt(record.getListFields().size());
+    for (Map.Entry<String, List<String>> e : record.getListFields().entrySet()) {
+      out.writeVarInt(ref(dictionary, e.getKey()));
+      out.writeVarInt(e.getValue().size());
+      for (String value : e.getValue()) {
+        out.writeVarInt(ref(dictionary, value));
+      }
+    }
+    out.writeVarInt(record.getMapFields().size());
+    for (Map.Entry<String, Map<String, String>> e : record.getMapFields().entrySet()) {
+      out.writeVarInt(ref(dictionary, e.getKey()));
+      out.writeVarInt(e.getValue().size());
+      for (Map.Entry<String, String> mapEntry : e.getValue().entrySet()) {
+        out.writeVarInt(ref(dictionary, mapEntry.getKey()));
+        out.writeVarInt(ref(dictionary, mapEntry.getValue()));
+      }
+    }
+    byte[] rawPayload = record.getRawPayload();
+    if (rawPayload == null) {
+      out.writeVarInt(0);
+    } else {
+      out.writeVarInt(rawPayload.length);
+      out.writeBytes(rawPayload, 0, rawPayload.length);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Decode uncompressed binary data
+   * @param bytes data starting with the binary header
+   * @return the record
+   * @throws IOException if the data is malformed
+   */
+  public static ZNRecord decode(byte[] bytes) throws IOException {
+    if (!isBinary(bytes)) {
+      throw new IOException("Data does not start with the binary ZNRecord header");
+    }
+    Input in = new Input(bytes, HEADER.length);
+    int version = in.readByte();
+    if (version != VERSION) {
+      throw new IOException("Unsupported binary ZNRecord version: " + version);
+    }
+    int numStrings = in.readVarInt();
+    String[] strings = new String[numStrings + 1];
+    for (int i = 1; i <= numStrings; i++) {
+      int length = in.readVarInt();
+      strings[i] = in.readString(length);
+    }
+
+    String id = in.readRef(strings);
+    if (id == null) {
+      throw new IOException("ZNRecord id field is required!");
+    }
+    ZNRecord record = new ZNRecord(id);
+
+    int numSimpleFields = in.readVarInt();
+    Map<String, String> simpleFields = new HashMap<String, String>();
+    for (int i = 0; i < numSimpleFields; i++) {
+      simpleFields.put(in.readRef(strings), in.readRef(strings));
+    }
+    int numListFields = in.readVarInt();
+    Map<String, List<String>> listFields = new HashMap<String, List<String>>();
+    for (int i = 0; i < numListFields; i++) {
+      String key = in.readRef(strings);
+      int size = in.readVarInt();
+      List<String> list = new ArrayList<String>(size);
+      for (int j = 0; j < size; j++) {
+        list.add(in.readRef(strings));
+      }
+      listFields.put(key, list);
+    }
+    int numMapFields = in.readVarInt();
+    Map<String, Map<String, String>> mapFields = new HashMap<String, Map<String, String>>();
+    for (int i = 0; i < numMapFields; i++) {
+      String key = in.readRef(strings);
+      int size = in.readVarInt();
+      Map<String, String> map = new TreeMap<String, String>();
+      for (int j = 0; j < size; j++) {
+        map.put(in.readRef(strings), in.readRef(strings));
+      }
+      mapFields.put(key, map);
+    }
+    int payloadLength = in.readVarInt();
+    if (payloadLength > 0) {
+      record.setRawPayload(in.readBytes(payloadLength));
+    }
+    record.setSimpleFields(simpleFields);
+    record.setListFields(listFields);
+    record.setMapFields(mapFields);
+    return record;
+  }
+
+  private static int getListFieldBound(ZNRecord record) {
+    int max = Integer.MAX_VALUE;
+    if (record.getSimpleFields().containsKey(ZNRecord.LIST_FIELD_BOUND)) {
+      String maxStr = record.getSimpleField(ZNRecord.LIST_FIELD_BOUND);
+      try {
+        max = Integer.parseInt(maxStr);
+      } catch (Exception e) {
+        LOG.error("IllegalNumberFormat for list field bound: " + maxStr);
+      }
+    }
+    return max;
+  }
+
+  private static void addString(Map<String, Integer> dictionary, List<String> strings, String s) {
+    if (s != null && !dictionary.containsKey(s)) {
+      strings.add(s);
+      dictionary.put(s, strings.size());
+    }
+  }
+
+  private static int ref(Map<String, Integer> dictionary, String s) {
+    return s == null ? 0 : dictionary.get(s);
+  }
+
+  /**
+   * A growable byte buffer with varint support
+   */
+  private static class Output {
+    private byte[] _buf;
+    private int _size;
+
+    Output(int capacity) {
+      _buf = new byte[capacity];
+      _size = 0;
+    }
+
+    void writeByte(int b) {
+      ensureCapacity(1);
+      _buf[_size++] = (byte) b;
+    }
+
+    void writeBytes(byte[] bytes, int offset, int length) {
+      ensureCapacity(length);
+      System.arraycopy(bytes, offset, _buf, _size, length);
+      _size += length;
+    }
+
+    void writeVarInt(int value) {
+      ensureCapacity(5);
+      while ((value & ~0x7F) != 0) {
+        _buf[_size++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      _buf[_size++] = (byte) value;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(_buf, _size);
+    }
+
+    private void ensureCapacity(int extra) {
+      if (_size + extra > _buf.length) {
+        _buf = Arrays.copyOf(_buf, Math.max(_buf.length * 2, _size + extra));
+      }
+    }
+  }
+
+  /**
+   * Reads varints, strings and dictionary references from a byte array
+   */
+  private static class Input {
+    private final byte[] _buf;
+    private int _pos;
+
+    Input(byte[] buf, int pos) {
+      _buf = buf;
+      _pos = pos;
+    }
+
+    int readByte() throws IOException {
+      if (_pos >= _buf.length) {
+        throw new IOException("Unexpected end of binary ZNRecord");
+      }
+      return _buf[_pos++];
+    }
+
+    int readVarInt() throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        int b = readByte();
+        value |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          if (value < 0) {
+            throw new IOException("Negative length or index in binary ZNRecord");
+          }
+          return value;
+        }
+      }
+      throw new IOException("Malformed varint in binary ZNRecord");
+    }
+
+    String readString(int length) throws IOException {
+      checkAvailable(length);
+      String s = new String(_buf, _pos, length, UTF8);
+      _pos += length;
+      return s;
+    }
+
+    byte[] readBytes(int length) throws IOException {
+      checkAvailable(length);
+      byte[] bytes = Arrays.copyOfRange(_buf, _pos, _pos + length);
+      _pos += length;
+      return bytes;
+    }
+
+    String readRef(String[] strings) throws IOException {
+      int index = readVarInt();
+      if (index >= strings.length) {
+        throw new IOException("Invalid string reference " + index + " in binary ZNRecord");
+      }
+      return strings[index];
+    }
+
+    private void checkAvailable(int length) throws IOException {
+      if (length > _buf.length - _pos) {
+        throw new IOException("Unexpected end of binary ZNRecord");
+      }
+    }
+  }
+}
@@ -20,13 +20,10 @@ package org.apache.helix.manager.zk;
  */
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.StringWriter;
+import java.io.PushbackInputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import org.I0Itec.zkclient.serialize.ZkSerializer;
 import org.apache.helix.HelixException;
@@ -35,11 +32,31 @@ import org.apache.helix.util.GZipCompressionUtil;
 import org.apache.log4j.Logger;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectReader;
+import org.codehaus.jackson.map.ObjectWriter;
 import org.codehaus.jackson.map.SerializationConfig;
 
+import com.google.common.io.ByteStreams;
+
 public class ZNRecordSerializer implements ZkSerializer {
   private static Logger logger = Logger.getLogger(ZNRecordSerializer.class);
 
+  // a configured mapper is thread-safe, and so are the reader and writer created from it, so all
+  // serializers share them instead of building a new mapper for every znode
+  private static final ObjectWriter WRITER;
+  private static final ObjectReader READER;
+  static {
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.configure(SerializationConfig.Feature.INDENT_OUTPUT, true);
+    mapper.configure(SerializationConfig.Feature.AUTO_DETECT_FIELDS, true);
+    mapper.configure(SerializationConfig.Feature.CAN_OVERRIDE_ACCESS_MODIFIERS, true);
+    mapper.configure(DeserializationConfig.Feature.AUTO_DETECT_FIELDS, true);
+    mapper.configure(DeserializationConfig.Feature.AUTO_DETECT_SETTERS, true);
+    mapper.configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, true);
+    WRITER = mapper.writer();
+    READER = mapper.reader(ZNRecord.class);
+  }
+
   private static int getListFieldBound(ZNRecord record) {
     int max = Integer.MAX_VALUE;
     if (record.getSimpleFields().containsKey(ZNRecord.LIST_FIELD_BOUND)) {
@@ -77,23 +94,16 @@ public class ZNRecordSerializer implements ZkSerializer {
     }
 
     // do serialization
-    ObjectMapper mapper = new ObjectMapper();
-    SerializationConfig serializationConfig = mapper.getSerializationConfig();
-    serializationConfig.set(SerializationConfig.Feature.INDENT_OUTPUT, true);
-    serializationConfig.set(SerializationConfig.Feature.AUTO_DETECT_FIELDS, true);
-    serializationConfig.set(SerializationConfig.Feature.CAN_OVERRIDE_ACCESS_MODIFIERS, true);
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
     byte[] serializedBytes = null;
     try {
-      mapper.writeValue(baos, data);
-      serializedBytes = baos.toByteArray();
+      serializedBytes = WRITER.writeValueAsBytes(data);
       // apply compression if needed
       if (record.getBooleanField("enableCompression", false) || serializedBytes.length > ZNRecord.SIZE_LIMIT) {
         serializedBytes = GZipCompressionUtil.compress(serializedBytes);
       }
     } catch (Exception e) {
-      logger.error("Exception during data serialization. Will not write to zk. Data (first 1k): "
-          + new String(baos.toByteArray()).substring(0, 1024), e);
+      logger.error("Exception during data serialization. Will not write to zk. ZNRecord.id: "
+          + record.getId(), e);
       throw new HelixException(e);
     }
     if (serializedBytes.length > ZNRecord.SIZE_LIMIT) {
@@ -112,20 +122,28 @@ public class ZNRecordSerializer implements ZkSerializer {
       return null;
     }
 
-    ObjectMapper mapper = new ObjectMapper();
-    ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-
-    DeserializationConfig deserializationConfig = mapper.getDeserializationConfig();
-    deserializationConfig.set(DeserializationConfig.Feature.AUTO_DETECT_FIELDS, true);
-    deserializationConfig.set(DeserializationConfig.Feature.AUTO_DETECT_SETTERS, true);
-    deserializationConfig.set(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, true);
     try {
-      //decompress the data if its already compressed
+      // decompress the data while parsing if it is compressed, otherwise parse the bytes directly
+      ZNRecord zn;
       if (GZipCompressionUtil.isCompressed(bytes)) {
-        byte[] uncompressedBytes = GZipCompressionUtil.uncompress(bais);
-        bais = new ByteArrayInputStream(uncompressedBytes);
+        PushbackInputStream in =
+            new PushbackInputStream(new GZIPInputStream(new ByteArrayInputStream(bytes)), 1);
+        int first = in.read();
+        if (first == 0) {
+          // only binary records start with 0, see ZNRecordBinarySerializer
+          in.unread(first);
+          zn = ZNRecordBinarySerializer.decode(ByteStreams.toByteArray(in));
+        } else {
+          if (first != -1) {
+            in.unread(first);
+          }
+          zn = READER.readValue(in);
+        }
+      } else if (ZNRecordBinarySerializer.isBinary(bytes)) {
+        zn = ZNRecordBinarySerializer.decode(bytes);
+      } else {
+        zn = READER.readValue(bytes);
       }
-      ZNRecord zn = mapper.readValue(bais, ZNRecord.class);
 
       return zn;
     } catch (Exception e) {
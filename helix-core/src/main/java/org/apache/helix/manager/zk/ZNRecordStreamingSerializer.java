@@ -193,10 +193,14 @@ public class ZNRecordStreamingSerializer implements ZkSerializer {
 
     try {
       // decompress the data if its already compressed
+      byte[] uncompressedBytes = bytes;
       if (GZipCompressionUtil.isCompressed(bytes)) {
-        byte[] uncompressedBytes = GZipCompressionUtil.uncompress(bais);
+        uncompressedBytes = GZipCompressionUtil.uncompress(bais);
         bais = new ByteArrayInputStream(uncompressedBytes);
       }
+      if (ZNRecordBinarySerializer.isBinary(uncompressedBytes)) {
+        return ZNRecordBinarySerializer.decode(uncompressedBytes);
+      }
       JsonFactory f = new JsonFactory();
       JsonParser jp = f.createJsonParser(bais);
 
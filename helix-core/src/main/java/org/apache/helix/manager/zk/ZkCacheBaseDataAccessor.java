@@ -753,10 +753,18 @@ public class ZkCacheBaseDataAccessor<T> implements HelixPropertyStore<T> {
         _cacheMap.put(path, _zkCache);
       }
     }
+
+    _groupCommit.getMonitor().init(getGroupCommitName());
+  }
+
+  private String getGroupCommitName() {
+    String root = _chrootPath == null ? "/" : _chrootPath;
+    return root + "@" + Integer.toHexString(System.identityHashCode(this));
   }
 
   @Override
   public void stop() {
+    _groupCommit.getMonitor().reset();
     try {
       _eventLock.lockInterruptibly();
 
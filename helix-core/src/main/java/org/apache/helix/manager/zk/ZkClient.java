@@ -170,6 +170,7 @@ public class ZkClient extends org.I0Itec.zkclient.ZkClient {
 
   public Stat getStat(final String path) {
     long startT = System.nanoTime();
+    ZkIoStats.recordRead();
 
     try {
       Stat stat = retryUntilConnected(new Callable<Stat>() {
@@ -194,6 +195,7 @@ public class ZkClient extends org.I0Itec.zkclient.ZkClient {
   @Override
   protected boolean exists(final String path, final boolean watch) {
     long startT = System.nanoTime();
+    ZkIoStats.recordRead();
 
     try {
       return retryUntilConnected(new Callable<Boolean>() {
@@ -214,6 +216,7 @@ public class ZkClient extends org.I0Itec.zkclient.ZkClient {
   @Override
   protected List<String> getChildren(final String path, final boolean watch) {
     long startT = System.nanoTime();
+    ZkIoStats.recordRead();
 
     try {
       return retryUntilConnected(new Callable<List<String>>() {
@@ -235,6 +238,7 @@ public class ZkClient extends org.I0Itec.zkclient.ZkClient {
     if (data == null) {
       return null;
     }
+    ZkIoStats.recordReadBytes(data.length);
     return (T) _zkSerializer.deserialize(data, path);
   }
 
@@ -243,6 +247,7 @@ public class ZkClient extends org.I0Itec.zkclient.ZkClient {
   @SuppressWarnings("unchecked")
   protected <T extends Object> T readData(final String path, final Stat stat, final boolean watch) {
     long startT = System.nanoTime();
+    ZkIoStats.recordRead();
     try {
       byte[] data = retryUntilConnected(new Callable<byte[]>() {
 
@@ -287,6 +292,7 @@ public class ZkClient extends org.I0Itec.zkclient.ZkClient {
     long startT = System.nanoTime();
     try {
       final byte[] data = serialize(datat, path);
+      ZkIoStats.recordWrite(data);
 
       retryUntilConnected(new Callable<Object>() {
 
@@ -309,6 +315,7 @@ public class ZkClient extends org.I0Itec.zkclient.ZkClient {
     long start = System.nanoTime();
     try {
       final byte[] bytes = _zkSerializer.serialize(datat, path);
+      ZkIoStats.recordWrite(bytes);
       return retryUntilConnected(new Callable<Stat>() {
 
         @Override
@@ -334,6 +341,7 @@ public class ZkClient extends org.I0Itec.zkclient.ZkClient {
     long startT = System.nanoTime();
     try {
       final byte[] bytes = data == null ? null : serialize(data, path);
+      ZkIoStats.recordWrite(bytes);
 
       return retryUntilConnected(new Callable<String>() {
 
@@ -353,6 +361,7 @@ public class ZkClient extends org.I0Itec.zkclient.ZkClient {
   @Override
   public boolean delete(final String path) {
     long startT = System.nanoTime();
+    ZkIoStats.recordWrite(null);
     try {
       try {
         retryUntilConnected(new Callable<Object>() {
@@ -379,6 +388,7 @@ public class ZkClient extends org.I0Itec.zkclient.ZkClient {
   public void asyncCreate(final String path, Object datat, final CreateMode mode,
       final CreateCallbackHandler cb) {
     final byte[] data = (datat == null ? null : serialize(datat, path));
+    ZkIoStats.recordWrite(data);
 
     retryUntilConnected(new Callable<Object>() {
       @Override
@@ -393,6 +403,7 @@ public class ZkClient extends org.I0Itec.zkclient.ZkClient {
   public void asyncSetData(final String path, Object datat, final int version,
       final SetDataCallbackHandler cb) {
     final byte[] data = serialize(datat, path);
+    ZkIoStats.recordWrite(data);
     retryUntilConnected(new Callable<Object>() {
       @Override
       public Object call() throws Exception {
@@ -405,6 +416,7 @@ public class ZkClient extends org.I0Itec.zkclient.ZkClient {
   }
 
   public void asyncGetData(final String path, final GetDataCallbackHandler cb) {
+    ZkIoStats.recordRead();
     retryUntilConnected(new Callable<Object>() {
       @Override
       public Object call() throws Exception {
@@ -415,6 +427,7 @@ public class ZkClient extends org.I0Itec.zkclient.ZkClient {
   }
 
   public void asyncExists(final String path, final ExistsCallbackHandler cb) {
+    ZkIoStats.recordRead();
     retryUntilConnected(new Callable<Object>() {
       @Override
       public Object call() throws Exception {
@@ -427,6 +440,7 @@ public class ZkClient extends org.I0Itec.zkclient.ZkClient {
   }
 
   public void asyncDelete(final String path, final DeleteCallbackHandler cb) {
+    ZkIoStats.recordWrite(null);
     retryUntilConnected(new Callable<Object>() {
       @Override
       public Object call() throws Exception {
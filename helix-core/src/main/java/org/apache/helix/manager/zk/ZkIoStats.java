@@ -0,0 +1,108 @@
+package org.apache.helix.manager.zk;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Per-thread counters of the zookeeper operations issued through {@link ZkClient}. Operations are
+ * counted on the thread that issues them, and bytes read are counted on the thread that
+ * deserializes the data, so the reads and writes of a caller can be told apart from the rest of
+ * the process by comparing two snapshots taken on the caller's thread.
+ */
+public class ZkIoStats {
+  private static final ThreadLocal<ZkIoStats> THREAD_STATS = new ThreadLocal<ZkIoStats>() {
+    @Override
+    protected ZkIoStats initialValue() {
+      return new ZkIoStats();
+    }
+  };
+
+  private long _readCount;
+  private long _readBytes;
+  private long _writeCount;
+  private long _writeBytes;
+
+  public ZkIoStats() {
+    this(0, 0, 0, 0);
+  }
+
+  public ZkIoStats(long readCount, long readBytes, long writeCount, long writeBytes) {
+    _readCount = readCount;
+    _readBytes = readBytes;
+    _writeCount = writeCount;
+    _writeBytes = writeBytes;
+  }
+
+  /**
+   * Get a copy of the counters of the current thread
+   * @return ZkIoStats snapshot
+   */
+  public static ZkIoStats snapshot() {
+    ZkIoStats stats = THREAD_STATS.get();
+    return new ZkIoStats(stats._readCount, stats._readBytes, stats._writeCount, stats._writeBytes);
+  }
+
+  static void recordRead() {
+    THREAD_STATS.get()._readCount++;
+  }
+
+  static void recordReadBytes(int bytes) {
+    THREAD_STATS.get()._readBytes += bytes;
+  }
+
+  static void recordWrite(byte[] data) {
+    ZkIoStats stats = THREAD_STATS.get();
+    stats._writeCount++;
+    if (data != null) {
+      stats._writeBytes += data.length;
+    }
+  }
+
+  /**
+   * Get the operations done between an earlier snapshot and this one
+   * @param earlier the earlier snapshot
+   * @return ZkIoStats difference
+   */
+  public ZkIoStats minus(ZkIoStats earlier) {
+    return new ZkIoStats(_readCount - earlier._readCount, _readBytes - earlier._readBytes,
+        _writeCount - earlier._writeCount, _writeBytes - earlier._writeBytes);
+  }
+
+  public long getReadCount() {
+    return _readCount;
+  }
+
+  public long getReadBytes() {
+    return _readBytes;
+  }
+
+  public long getWriteCount() {
+    return _writeCount;
+  }
+
+  public long getWriteBytes() {
+    return _writeBytes;
+  }
+
+  @Override
+  public String toString() {
+    return "reads: " + _readCount + ", readBytes: " + _readBytes + ", writes: " + _writeCount
+        + ", writeBytes: " + _writeBytes;
+  }
+}
@@ -0,0 +1,157 @@
+package org.apache.helix.messaging;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.helix.Criteria.DataSource;
+import org.apache.helix.ExternalViewChangeListener;
+import org.apache.helix.HelixManager;
+import org.apache.helix.IdealStateChangeListener;
+import org.apache.helix.LiveInstanceChangeListener;
+import org.apache.helix.NotificationContext;
+import org.apache.helix.messaging.CriteriaEvaluator.Rows;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.IdealState;
+import org.apache.helix.model.LiveInstance;
+import org.apache.log4j.Logger;
+
+/**
+ * In-memory copy of the data that {@link CriteriaEvaluator} evaluates criteria against. A listener
+ * is added for a data source the first time it is asked for, and the flattened rows are rebuilt
+ * on every change notification. Until the first notification arrives, or after the listener is
+ * finalized, no rows are returned and the caller reads the data source itself.
+ */
+class CriteriaDataCache implements ExternalViewChangeListener, IdealStateChangeListener,
+    LiveInstanceChangeListener {
+  private static Logger LOG = Logger.getLogger(CriteriaDataCache.class);
+
+  private final HelixManager _manager;
+  private final Set<DataSource> _listenedDataSources = new HashSet<DataSource>();
+
+  private volatile Rows _externalViews;
+  private volatile Rows _idealStates;
+  private volatile Rows _liveInstances;
+  private volatile Set<String> _liveInstanceNames;
+
+  CriteriaDataCache(HelixManager manager) {
+    _manager = manager;
+  }
+
+  HelixManager getManager() {
+    return _manager;
+  }
+
+  /**
+   * Get the flattened rows of a data source
+   * @param dataSource the data source
+   * @return rows, or null if the data source is not cached
+   */
+  Rows getRows(DataSource dataSource) {
+    if (dataSource == null || !listenTo(dataSource)) {
+      return null;
+    }
+    switch (dataSource) {
+    case EXTERNALVIEW:
+      return _externalViews;
+    case IDEALSTATES:
+      return _idealStates;
+    case LIVEINSTANCES:
+      return _liveInstances;
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * Get the names of the live instances
+   * @return instance names, or null if not cached
+   */
+  Set<String> getLiveInstanceNames() {
+    if (!listenTo(DataSource.LIVEINSTANCES)) {
+      return null;
+    }
+    return _liveInstanceNames;
+  }
+
+  private synchronized boolean listenTo(DataSource dataSource) {
+    if (_listenedDataSources.contains(dataSource)) {
+      return true;
+    }
+    if (!_manager.isConnected()) {
+      return false;
+    }
+    try {
+      switch (dataSource) {
+      case EXTERNALVIEW:
+        _manager.addExternalViewChangeListener(this);
+        break;
+      case IDEALSTATES:
+        _manager.addIdealStateChangeListener(this);
+        break;
+      case LIVEINSTANCES:
+        _manager.addLiveInstanceChangeListener(this);
+        break;
+      default:
+        // instances are not watched
+        return false;
+      }
+    } catch (Exception e) {
+      LOG.warn("Fail to add listener for " + dataSource + ", read the data source directly", e);
+      return false;
+    }
+    _listenedDataSources.add(dataSource);
+    return true;
+  }
+
+  @Override
+  public void onExternalViewChange(List<ExternalView> externalViewList,
+      NotificationContext changeContext) {
+    _externalViews = isFinalized(changeContext) ? null : new Rows(externalViewList);
+  }
+
+  @Override
+  public void onIdealStateChange(List<IdealState> idealState, NotificationContext changeContext) {
+    _idealStates = isFinalized(changeContext) ? null : new Rows(idealState);
+  }
+
+  @Override
+  public void onLiveInstanceChange(List<LiveInstance> liveInstances,
+      NotificationContext changeContext) {
+    if (isFinalized(changeContext)) {
+      _liveInstanceNames = null;
+      _liveInstances = null;
+      return;
+    }
+    Set<String> liveInstanceNames = new HashSet<String>();
+    for (LiveInstance liveInstance : liveInstances) {
+      liveInstanceNames.add(liveInstance.getInstanceName());
+    }
+    _liveInstanceNames = Collections.unmodifiableSet(liveInstanceNames);
+    _liveInstances = new Rows(liveInstances);
+  }
+
+  private static boolean isFinalized(NotificationContext changeContext) {
+    return changeContext != null && changeContext.getType() == NotificationContext.Type.FINALIZE;
+  }
+}
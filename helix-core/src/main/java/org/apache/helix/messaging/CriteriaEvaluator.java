@@ -19,10 +19,16 @@ package org.apache.helix.messaging;
  * under the License.
  */
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 import org.apache.helix.Criteria;
@@ -40,6 +46,40 @@ import com.google.common.collect.Sets;
 public class CriteriaEvaluator {
   private static Logger logger = Logger.getLogger(CriteriaEvaluator.class);
 
+  /**
+   * System property to disable the listener-maintained data of
+   * {@link #CriteriaEvaluator(HelixManager)}, so that every evaluation reads the data source
+   */
+  public static final String DATA_CACHE_ENABLED = "helix.criteriaEvaluator.dataCacheEnabled";
+
+  private static final int MAX_CACHED_MATCHERS = 1024;
+
+  // compiled criteria fields, keyed by the SQL like pattern
+  private static final ConcurrentMap<String, FieldMatcher> MATCHERS =
+      new ConcurrentHashMap<String, FieldMatcher>();
+
+  private final CriteriaDataCache _dataCache;
+
+  /**
+   * Create an evaluator that reads the data source on every evaluation
+   */
+  public CriteriaEvaluator() {
+    _dataCache = null;
+  }
+
+  /**
+   * Create an evaluator that evaluates criteria for the given manager against an in-memory copy of
+   * the external views, ideal states and live instances, kept up to date by listeners
+   * @param manager connection to the persisted data
+   */
+  public CriteriaEvaluator(HelixManager manager) {
+    if (Boolean.parseBoolean(System.getProperty(DATA_CACHE_ENABLED, "true"))) {
+      _dataCache = new CriteriaDataCache(manager);
+    } else {
+      _dataCache = null;
+    }
+  }
+
   /**
    * Examine persisted data to match wildcards in {@link Criteria}
    * @param recipientCriteria Criteria specifying the message destinations
@@ -47,33 +87,67 @@ public class CriteriaEvaluator {
    * @return map of evaluated criteria
    */
   public List<Map<String, String>> evaluateCriteria(Criteria recipientCriteria, HelixManager manager) {
-    // get the data
-    HelixDataAccessor accessor = manager.getHelixDataAccessor();
-    PropertyKey.Builder keyBuilder = accessor.keyBuilder();
-
-    List<HelixProperty> properties;
     DataSource dataSource = recipientCriteria.getDataSource();
-    if (dataSource == DataSource.EXTERNALVIEW) {
-      properties = accessor.getChildValues(keyBuilder.externalViews());
-    } else if (dataSource == DataSource.IDEALSTATES) {
-      properties = accessor.getChildValues(keyBuilder.idealStates());
-    } else if (dataSource == DataSource.LIVEINSTANCES) {
-      properties = accessor.getChildValues(keyBuilder.liveInstances());
-    } else if (dataSource == DataSource.INSTANCES) {
-      properties = accessor.getChildValues(keyBuilder.instances());
-    } else {
-      return Lists.newArrayList();
+    Rows rows = null;
+    Set<String> liveParticipants = null;
+    if (_dataCache != null && _dataCache.getManager() == manager) {
+      rows = _dataCache.getRows(dataSource);
+      liveParticipants = _dataCache.getLiveInstanceNames();
     }
 
-    // flatten the data
-    List<ZNRecordRow> allRows = ZNRecordRow.flatten(HelixProperty.convertToList(properties));
+    if (rows == null || liveParticipants == null) {
+      // get the data
+      HelixDataAccessor accessor = manager.getHelixDataAccessor();
+      PropertyKey.Builder keyBuilder = accessor.keyBuilder();
+
+      List<HelixProperty> properties;
+      if (dataSource == DataSource.EXTERNALVIEW) {
+        properties = accessor.getChildValues(keyBuilder.externalViews());
+      } else if (dataSource == DataSource.IDEALSTATES) {
+        properties = accessor.getChildValues(keyBuilder.idealStates());
+      } else if (dataSource == DataSource.LIVEINSTANCES) {
+        properties = accessor.getChildValues(keyBuilder.liveInstances());
+      } else if (dataSource == DataSource.INSTANCES) {
+        properties = accessor.getChildValues(keyBuilder.instances());
+      } else {
+        return Lists.newArrayList();
+      }
+      rows = new Rows(properties);
+      liveParticipants = accessor.getChildValuesMap(keyBuilder.liveInstances()).keySet();
+    }
+    return evaluateCriteria(recipientCriteria, rows, liveParticipants);
+  }
+
+  /**
+   * Match wildcards in {@link Criteria} against flattened data
+   * @param recipientCriteria Criteria specifying the message destinations
+   * @param rows flattened data of the criteria data source
+   * @param liveParticipants names of the live participants
+   * @return map of evaluated criteria
+   */
+  List<Map<String, String>> evaluateCriteria(Criteria recipientCriteria, Rows rows,
+      Set<String> liveParticipants) {
+    FieldMatcher instanceName = getMatcher(recipientCriteria.getInstanceName());
+    FieldMatcher resourceName = getMatcher(recipientCriteria.getResource());
+    FieldMatcher partitionName = getMatcher(recipientCriteria.getPartition());
+    FieldMatcher partitionState = getMatcher(recipientCriteria.getPartitionState());
+
+    // only look at the rows of matching records or instances
+    Collection<ZNRecordRow> candidates;
+    if (!resourceName.matchesAll()) {
+      candidates = rows.select(rows._rowsByRecordId, resourceName);
+    } else if (!instanceName.matchesAll()) {
+      candidates = rows.select(rows._rowsByRecordId, instanceName);
+      candidates.addAll(rows.select(rows._rowsByMapSubKey, instanceName));
+    } else {
+      candidates = rows._rows;
+    }
 
     // save the matches
-    Set<String> liveParticipants = accessor.getChildValuesMap(keyBuilder.liveInstances()).keySet();
     List<ZNRecordRow> result = Lists.newArrayList();
-    for (ZNRecordRow row : allRows) {
+    for (ZNRecordRow row : candidates) {
       // The participant instance name is stored in the return value of either getRecordId() or getMapSubKey()
-      if (rowMatches(recipientCriteria, row) &&
+      if (rowMatches(instanceName, resourceName, partitionName, partitionState, row) &&
           (liveParticipants.contains(row.getRecordId()) || liveParticipants.contains(row.getMapSubKey()))) {
         result.add(row);
       }
@@ -101,20 +175,29 @@ public class CriteriaEvaluator {
 
   /**
    * Check if a given row matches the specified criteria
-   * @param criteria the criteria
    * @param row row of currently persisted data
    * @return true if it matches, false otherwise
    */
-  private boolean rowMatches(Criteria criteria, ZNRecordRow row) {
-    String instanceName = normalizePattern(criteria.getInstanceName());
-    String resourceName = normalizePattern(criteria.getResource());
-    String partitionName = normalizePattern(criteria.getPartition());
-    String partitionState = normalizePattern(criteria.getPartitionState());
-    return (stringMatches(instanceName, Strings.nullToEmpty(row.getMapSubKey())) ||
-            stringMatches(instanceName, Strings.nullToEmpty(row.getRecordId())))
-        && stringMatches(resourceName, Strings.nullToEmpty(row.getRecordId()))
-        && stringMatches(partitionName, Strings.nullToEmpty(row.getMapKey()))
-        && stringMatches(partitionState, Strings.nullToEmpty(row.getMapValue()));
+  private boolean rowMatches(FieldMatcher instanceName, FieldMatcher resourceName,
+      FieldMatcher partitionName, FieldMatcher partitionState, ZNRecordRow row) {
+    return (instanceName.matches(Strings.nullToEmpty(row.getMapSubKey())) ||
+            instanceName.matches(Strings.nullToEmpty(row.getRecordId())))
+        && resourceName.matches(Strings.nullToEmpty(row.getRecordId()))
+        && partitionName.matches(Strings.nullToEmpty(row.getMapKey()))
+        && partitionState.matches(Strings.nullToEmpty(row.getMapValue()));
+  }
+
+  private static FieldMatcher getMatcher(String pattern) {
+    String key = Strings.nullToEmpty(pattern);
+    FieldMatcher matcher = MATCHERS.get(key);
+    if (matcher == null) {
+      matcher = FieldMatcher.compile(key);
+      if (MATCHERS.size() >= MAX_CACHED_MATCHERS) {
+        MATCHERS.clear();
+      }
+      MATCHERS.put(key, matcher);
+    }
+    return matcher;
   }
 
   /**
@@ -122,7 +205,7 @@ public class CriteriaEvaluator {
    * @param pattern SQL like match pattern (i.e. contains '%'s and '_'s)
    * @return Java matches expression (i.e. contains ".*?"s and '.'s)
    */
-  private String normalizePattern(String pattern) {
+  private static String normalizePattern(String pattern) {
     if (pattern == null || pattern.equals("") || pattern.equals("*")) {
       pattern = "%";
     }
@@ -141,13 +224,78 @@ public class CriteriaEvaluator {
   }
 
   /**
-   * Check if a string matches a pattern
-   * @param pattern pattern allowed by Java regex matching
-   * @param value the string to check
-   * @return true if they match, false otherwise
+   * A criteria field compiled once: matches everything, a string without wildcards, or a pattern
    */
-  private boolean stringMatches(String pattern, String value) {
-    Pattern p = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-    return p.matcher(value).matches();
+  static class FieldMatcher {
+    private final String _literal;
+    private final Pattern _pattern;
+
+    private FieldMatcher(String literal, Pattern pattern) {
+      _literal = literal;
+      _pattern = pattern;
+    }
+
+    static FieldMatcher compile(String pattern) {
+      if (pattern.equals("") || pattern.equals("*") || pattern.replace("%", "").isEmpty()) {
+        return new FieldMatcher(null, null);
+      }
+      if (pattern.indexOf('%') < 0 && pattern.indexOf('_') < 0) {
+        return new FieldMatcher(pattern, null);
+      }
+      return new FieldMatcher(null, Pattern.compile(normalizePattern(pattern),
+          Pattern.CASE_INSENSITIVE | Pattern.DOTALL));
+    }
+
+    boolean matchesAll() {
+      return _literal == null && _pattern == null;
+    }
+
+    boolean matches(String value) {
+      if (_literal != null) {
+        return _literal.equalsIgnoreCase(value);
+      }
+      return _pattern == null || _pattern.matcher(value).matches();
+    }
+  }
+
+  /**
+   * Flattened records of a data source, indexed by record id and map sub-key
+   */
+  static class Rows {
+    private final List<ZNRecordRow> _rows;
+    private final Map<String, List<ZNRecordRow>> _rowsByRecordId;
+    private final Map<String, List<ZNRecordRow>> _rowsByMapSubKey;
+
+    Rows(List<? extends HelixProperty> properties) {
+      _rows = ZNRecordRow.flatten(HelixProperty.convertToList(properties));
+      _rowsByRecordId = new HashMap<String, List<ZNRecordRow>>();
+      _rowsByMapSubKey = new HashMap<String, List<ZNRecordRow>>();
+      for (ZNRecordRow row : _rows) {
+        index(_rowsByRecordId, row.getRecordId(), row);
+        index(_rowsByMapSubKey, row.getMapSubKey(), row);
+      }
+    }
+
+    private static void index(Map<String, List<ZNRecordRow>> rowMap, String key, ZNRecordRow row) {
+      key = Strings.nullToEmpty(key);
+      List<ZNRecordRow> rows = rowMap.get(key);
+      if (rows == null) {
+        rows = new ArrayList<ZNRecordRow>();
+        rowMap.put(key, rows);
+      }
+      rows.add(row);
+    }
+
+    private Collection<ZNRecordRow> select(Map<String, List<ZNRecordRow>> rowMap,
+        FieldMatcher matcher) {
+      Set<ZNRecordRow> selected =
+          Collections.newSetFromMap(new IdentityHashMap<ZNRecordRow, Boolean>());
+      for (Map.Entry<String, List<ZNRecordRow>> entry : rowMap.entrySet()) {
+        if (matcher.matches(entry.getKey())) {
+          selected.addAll(entry.getValue());
+        }
+      }
+      return selected;
+    }
   }
 }
@@ -59,7 +59,7 @@ public class DefaultMessagingService implements ClusterMessagingService {
 
   public DefaultMessagingService(HelixManager manager) {
     _manager = manager;
-    _evaluator = new CriteriaEvaluator();
+    _evaluator = new CriteriaEvaluator(manager);
 
     boolean isParticipant = false;
     if (manager.getInstanceType() == InstanceType.PARTICIPANT || manager.getInstanceType() == InstanceType.CONTROLLER_PARTICIPANT) {
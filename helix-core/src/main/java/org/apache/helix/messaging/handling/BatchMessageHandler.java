@@ -24,6 +24,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -35,9 +36,11 @@ import org.apache.helix.HelixManager;
 import org.apache.helix.NotificationContext;
 import org.apache.helix.NotificationContext.MapKey;
 import org.apache.helix.PropertyKey;
+import org.apache.helix.model.ClusterConfig;
 import org.apache.helix.model.CurrentState;
 import org.apache.helix.model.Message;
 import org.apache.helix.model.Message.Attributes;
+import org.apache.helix.model.ResourceConfig;
 import org.apache.log4j.Logger;
 
 public class BatchMessageHandler extends MessageHandler {
@@ -49,6 +52,8 @@ public class BatchMessageHandler extends MessageHandler {
   final List<MessageHandler> _subMessageHandlers;
   final BatchMessageWrapper _batchMsgWrapper;
 
+  static final int DEFAULT_CHUNK_SIZE = 1;
+
   public BatchMessageHandler(Message msg, NotificationContext context, MessageHandlerFactory fty,
       BatchMessageWrapper wrapper, TaskExecutor executor) {
     super(msg, context);
@@ -109,12 +114,21 @@ public class BatchMessageHandler extends MessageHandler {
     if (csUpdateMap != null) {
       Map<PropertyKey, CurrentState> csUpdate = mergeCurStateUpdate(csUpdateMap);
 
-      // TODO: change to use asyncSet
-      for (PropertyKey key : csUpdate.keySet()) {
-        // logger.info("updateCS: " + key);
-        // System.out.println("\tupdateCS: " + key.getPath() + ", " +
-        // curStateMap.get(key));
-        accessor.updateProperty(key, csUpdate.get(key));
+      CurrentStateWriter writer =
+          (CurrentStateWriter) _notificationContext.get(MapKey.CURRENT_STATE_WRITER.toString());
+      if (writer != null) {
+        // submit all updates before waiting so that they are written in parallel
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (PropertyKey key : csUpdate.keySet()) {
+          results.add(writer.submit(accessor, key, csUpdate.get(key)));
+        }
+        for (Future<Boolean> result : results) {
+          CurrentStateWriter.waitFor(result);
+        }
+      } else {
+        for (PropertyKey key : csUpdate.keySet()) {
+          accessor.updateProperty(key, csUpdate.get(key));
+        }
       }
     }
   }
@@ -125,80 +139,127 @@ public class BatchMessageHandler extends MessageHandler {
     HelixTaskResult result = null;
     List<Future<HelixTaskResult>> futures = null;
     List<MessageTask> batchTasks = new ArrayList<MessageTask>();
-
-    synchronized (_batchMsgWrapper) {
-      try {
-        preHandleMessage();
-
-        int exeBatchSize = 1; // TODO: getExeBatchSize from msg
-        List<String> partitionKeys = _message.getPartitionNames();
-        for (int i = 0; i < partitionKeys.size(); i += exeBatchSize) {
-          if (i + exeBatchSize <= partitionKeys.size()) {
-            List<Message> msgs = _subMessages.subList(i, i + exeBatchSize);
-            List<MessageHandler> handlers = _subMessageHandlers.subList(i, i + exeBatchSize);
-            HelixBatchMessageTask batchTask =
-                new HelixBatchMessageTask(_message, msgs, handlers, _notificationContext);
-            batchTasks.add(batchTask);
-
-          } else {
-            List<Message> msgs = _subMessages.subList(i, i + partitionKeys.size());
-            List<MessageHandler> handlers =
-                _subMessageHandlers.subList(i, i + partitionKeys.size());
-
-            HelixBatchMessageTask batchTask =
-                new HelixBatchMessageTask(_message, msgs, handlers, _notificationContext);
-            batchTasks.add(batchTask);
-          }
+    long start = System.currentTimeMillis();
+    _message.setExecuteStartTimeStamp(start);
+
+    // only the start/end callbacks of the wrapper are serialized, sub-messages of batch messages
+    // run concurrently
+    try {
+      if (_batchMsgWrapper != null) {
+        synchronized (_batchMsgWrapper) {
+          preHandleMessage();
         }
+      }
 
-        // invokeAll() is blocking call
-        long timeout = _message.getExecutionTimeout();
-        if (timeout == -1) {
-          timeout = Long.MAX_VALUE;
-        }
-        futures = _executor.invokeAllTasks(batchTasks, timeout, TimeUnit.MILLISECONDS);
-      } catch (Exception e) {
-        LOG.error("fail to execute batchMsg: " + _message.getId(), e);
-        result = new HelixTaskResult();
-        result.setException(e);
-
-        // HelixTask will call onError on this batch-msg-handler
-        // return result;
+      List<String> partitionKeys = _message.getPartitionNames();
+      int exeBatchSize = getExecutionChunkSize(partitionKeys.size());
+      for (int i = 0; i < partitionKeys.size(); i += exeBatchSize) {
+        int end = Math.min(i + exeBatchSize, partitionKeys.size());
+        List<Message> msgs = _subMessages.subList(i, end);
+        List<MessageHandler> handlers = _subMessageHandlers.subList(i, end);
+        HelixBatchMessageTask batchTask =
+            new HelixBatchMessageTask(_message, msgs, handlers, _notificationContext);
+        batchTasks.add(batchTask);
       }
 
-      // combine sub-results to result
-      if (futures != null) {
-        boolean isBatchTaskSucceed = true;
-
-        for (int i = 0; i < futures.size(); i++) {
-          Future<HelixTaskResult> future = futures.get(i);
-          MessageTask subTask = batchTasks.get(i);
-          try {
-            HelixTaskResult subTaskResult = future.get();
-            if (!subTaskResult.isSuccess()) {
-              isBatchTaskSucceed = false;
-            }
-          } catch (InterruptedException e) {
-            isBatchTaskSucceed = false;
-            LOG.error("interrupted in executing batch-msg: " + _message.getId() + ", sub-msg: "
-                + subTask.getTaskId(), e);
-          } catch (ExecutionException e) {
+      // invokeAll() is blocking call
+      long timeout = _message.getExecutionTimeout();
+      if (timeout == -1) {
+        timeout = Long.MAX_VALUE;
+      }
+      futures = _executor.invokeAllTasks(batchTasks, timeout, TimeUnit.MILLISECONDS);
+    } catch (Exception e) {
+      LOG.error("fail to execute batchMsg: " + _message.getId(), e);
+      result = new HelixTaskResult();
+      result.setException(e);
+
+      // HelixTask will call onError on this batch-msg-handler
+      // return result;
+    }
+
+    // combine sub-results to result
+    if (futures != null) {
+      boolean isBatchTaskSucceed = true;
+
+      for (int i = 0; i < futures.size(); i++) {
+        Future<HelixTaskResult> future = futures.get(i);
+        MessageTask subTask = batchTasks.get(i);
+        try {
+          HelixTaskResult subTaskResult = future.get();
+          if (!subTaskResult.isSuccess()) {
             isBatchTaskSucceed = false;
-            LOG.error(
-                "fail to execute batch-msg: " + _message.getId() + ", sub-msg: "
-                    + subTask.getTaskId(), e);
           }
+        } catch (InterruptedException e) {
+          isBatchTaskSucceed = false;
+          LOG.error("interrupted in executing batch-msg: " + _message.getId() + ", sub-msg: "
+              + subTask.getTaskId(), e);
+        } catch (ExecutionException e) {
+          isBatchTaskSucceed = false;
+          LOG.error(
+              "fail to execute batch-msg: " + _message.getId() + ", sub-msg: "
+                  + subTask.getTaskId(), e);
+        } catch (CancellationException e) {
+          isBatchTaskSucceed = false;
+          LOG.error("timeout in executing batch-msg: " + _message.getId() + ", sub-msg: "
+              + subTask.getTaskId(), e);
         }
-        result = new HelixTaskResult();
-        result.setSuccess(isBatchTaskSucceed);
       }
+      result = new HelixTaskResult();
+      result.setSuccess(isBatchTaskSucceed);
+    }
 
-      // pass task-result to post-handle-msg
-      _notificationContext.add(MapKey.HELIX_TASK_RESULT.toString(), result);
+    // pass task-result to post-handle-msg
+    _notificationContext.add(MapKey.HELIX_TASK_RESULT.toString(), result);
+    if (_batchMsgWrapper != null) {
+      synchronized (_batchMsgWrapper) {
+        postHandleMessage();
+      }
+    } else {
       postHandleMessage();
+    }
+
+    LOG.info("batch-msg: " + _message.getId() + ", resource: " + _message.getResourceName()
+        + ", partitions: " + _subMessages.size() + ", tasks: " + batchTasks.size()
+        + ", took: " + (System.currentTimeMillis() - start) + "ms");
+    return result;
+  }
+
+  /**
+   * Get the number of sub-messages handled by each task. The chunk size and the max number of
+   * concurrent tasks are read from the resource config, falling back to the cluster config.
+   */
+  int getExecutionChunkSize(int numPartitions) {
+    int chunkSize = -1;
+    int concurrency = -1;
+    try {
+      HelixDataAccessor accessor = _notificationContext.getManager().getHelixDataAccessor();
+      ResourceConfig resourceConfig =
+          accessor.getProperty(accessor.keyBuilder().resourceConfig(_message.getResourceName()));
+      if (resourceConfig != null) {
+        chunkSize = resourceConfig.getBatchMessageChunkSize();
+        concurrency = resourceConfig.getBatchMessageConcurrency();
+      }
+      if (chunkSize <= 0 || concurrency <= 0) {
+        ClusterConfig clusterConfig = accessor.getProperty(accessor.keyBuilder().clusterConfig());
+        if (clusterConfig != null) {
+          chunkSize = chunkSize > 0 ? chunkSize : clusterConfig.getBatchMessageChunkSize();
+          concurrency = concurrency > 0 ? concurrency : clusterConfig.getBatchMessageConcurrency();
+        }
+      }
+    } catch (Exception e) {
+      LOG.warn("fail to read batch message config for resource: " + _message.getResourceName()
+          + ", use default chunk size", e);
+    }
+    return computeChunkSize(numPartitions, chunkSize, concurrency);
+  }
 
-      return result;
+  static int computeChunkSize(int numPartitions, int chunkSize, int concurrency) {
+    int size = chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE;
+    if (concurrency > 0) {
+      // bound the number of tasks by making chunks larger
+      size = Math.max(size, (numPartitions + concurrency - 1) / concurrency);
     }
+    return size;
   }
 
   @Override
@@ -0,0 +1,328 @@
+package org.apache.helix.messaging.handling;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.I0Itec.zkclient.exception.ZkBadVersionException;
+import org.I0Itec.zkclient.exception.ZkNoNodeException;
+import org.apache.helix.AccessOption;
+import org.apache.helix.BaseDataAccessor;
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.PropertyKey;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.model.CurrentState;
+import org.apache.helix.monitoring.mbeans.CurrentStateWriterMonitor;
+import org.apache.log4j.Logger;
+import org.apache.zookeeper.data.Stat;
+
+/**
+ * Coalesces current state updates of a participant. Deltas for the same current state znode that
+ * arrive within the coalesce window are merged and written with one versioned update. A delta is
+ * never delayed by more than the window, and at most one write per znode is in flight so deltas
+ * are applied in the order they were submitted.
+ */
+public class CurrentStateWriter {
+  private static final Logger LOG = Logger.getLogger(CurrentStateWriter.class);
+
+  /**
+   * Max time in ms a current state update is held back to be merged with later updates
+   */
+  public static final String COALESCE_WINDOW_MS = "helix.currentStateWriter.coalesceWindowMs";
+
+  /**
+   * Number of pending updates of a znode that triggers a write before the window expires
+   */
+  public static final String MAX_BATCH_SIZE = "helix.currentStateWriter.maxBatchSize";
+
+  public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+  private static final int FLUSH_THREADS = 4;
+
+  private final long _windowMs;
+  private final int _maxBatchSize;
+  private final ScheduledThreadPoolExecutor _flusher;
+  private final Object _lock = new Object();
+  private final Map<String, PathQueue> _queues = new HashMap<String, PathQueue>();
+  private volatile CurrentStateWriterMonitor _monitor;
+
+  public CurrentStateWriter(long windowMs, int maxBatchSize) {
+    _windowMs = windowMs;
+    _maxBatchSize = maxBatchSize;
+    _flusher = new ScheduledThreadPoolExecutor(FLUSH_THREADS, new ThreadFactory() {
+      private final AtomicInteger _count = new AtomicInteger(0);
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "CurrentStateWriter-" + _count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  /**
+   * Create a writer from system properties
+   * @return the writer, or null if coalescing is disabled
+   */
+  public static CurrentStateWriter createFromSystemProperties() {
+    long windowMs = Long.getLong(COALESCE_WINDOW_MS, 0L);
+    if (windowMs <= 0) {
+      return null;
+    }
+    int maxBatchSize = Integer.getInteger(MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_SIZE);
+    LOG.info("Coalesce current state updates, window: " + windowMs + "ms, maxBatchSize: "
+        + maxBatchSize);
+    return new CurrentStateWriter(windowMs, maxBatchSize);
+  }
+
+  public void setMonitor(CurrentStateWriterMonitor monitor) {
+    _monitor = monitor;
+  }
+
+  /**
+   * Submit a current state delta without waiting for it to be written
+   * @param accessor
+   * @param key current state key
+   * @param delta
+   * @return future of whether the write containing the delta succeeded
+   */
+  public Future<Boolean> submit(HelixDataAccessor accessor, PropertyKey key, CurrentState delta) {
+    String path = key.getPath();
+    synchronized (_lock) {
+      PathQueue queue = _queues.get(path);
+      if (queue == null) {
+        queue = new PathQueue(path);
+        _queues.put(path, queue);
+      }
+      if (queue._pending == null) {
+        queue._pending = new Batch(accessor, key);
+      }
+      Batch batch = queue._pending;
+      batch._deltas.add(delta);
+
+      if (!queue._flushing) {
+        if (batch._deltas.size() >= _maxBatchSize) {
+          schedule(queue, 0);
+        } else if (!queue._flushScheduled) {
+          schedule(queue, _windowMs);
+        }
+      }
+      return batch._task;
+    }
+  }
+
+  /**
+   * Write a current state delta and wait until it is written
+   * @param accessor
+   * @param key current state key
+   * @param delta
+   * @return true if the write containing the delta succeeded
+   */
+  public boolean write(HelixDataAccessor accessor, PropertyKey key, CurrentState delta) {
+    return waitFor(submit(accessor, key, delta));
+  }
+
+  /**
+   * Wait for a submitted delta to be written
+   * @param future
+   * @return true if the write succeeded
+   */
+  public static boolean waitFor(Future<Boolean> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      LOG.error("Interrupted while waiting for current state update", e);
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      LOG.error("Fail to update current state", e.getCause());
+    } catch (CancellationException e) {
+      LOG.error("Current state update is cancelled", e);
+    }
+    return false;
+  }
+
+  /**
+   * Stop the writer. Updates already scheduled are still written.
+   */
+  public void shutdown() {
+    _flusher.shutdown();
+  }
+
+  // must be called with _lock held
+  private void schedule(final PathQueue queue, long delayMs) {
+    try {
+      _flusher.schedule(new Runnable() {
+        @Override
+        public void run() {
+          flush(queue);
+        }
+      }, delayMs, TimeUnit.MILLISECONDS);
+      queue._flushScheduled = true;
+    } catch (RejectedExecutionException e) {
+      LOG.error("Writer is shutdown, drop current state updates of " + queue._path);
+      queue._pending._task.cancel(false);
+      queue._pending = null;
+      _queues.remove(queue._path);
+    }
+  }
+
+  private void flush(PathQueue queue) {
+    Batch batch;
+    synchronized (_lock) {
+      queue._flushScheduled = false;
+      if (queue._flushing || queue._pending == null) {
+        return;
+      }
+      batch = queue._pending;
+      queue._pending = null;
+      queue._flushing = true;
+    }
+
+    try {
+      batch._task.run();
+    } finally {
+      synchronized (_lock) {
+        queue._flushing = false;
+        Batch next = queue._pending;
+        if (next != null) {
+          long delayMs = 0;
+          if (next._deltas.size() < _maxBatchSize) {
+            delayMs = Math.max(0, next._createTime + _windowMs - System.currentTimeMillis());
+          }
+          schedule(queue, delayMs);
+        } else {
+          _queues.remove(queue._path);
+        }
+      }
+    }
+  }
+
+  private boolean write(Batch batch) {
+    HelixDataAccessor accessor = batch._accessor;
+    BaseDataAccessor<ZNRecord> baseAccessor = accessor.getBaseDataAccessor();
+    boolean success = false;
+    try {
+      if (baseAccessor == null) {
+        success = true;
+        for (CurrentState delta : batch._deltas) {
+          success &= accessor.updateProperty(batch._key, delta);
+        }
+      } else {
+        success = commit(baseAccessor, batch._key, batch._deltas);
+      }
+      return success;
+    } finally {
+      CurrentStateWriterMonitor monitor = _monitor;
+      if (monitor != null) {
+        monitor.addWrite(batch._deltas.size(), System.currentTimeMillis() - batch._createTime,
+            success);
+      }
+    }
+  }
+
+  private boolean commit(BaseDataAccessor<ZNRecord> baseAccessor, PropertyKey key,
+      List<CurrentState> deltas) {
+    String path = key.getPath();
+    int options =
+        key.getType().isPersistent() ? AccessOption.PERSISTENT : AccessOption.EPHEMERAL;
+
+    while (true) {
+      ZNRecord merged = null;
+      Stat readStat = new Stat();
+
+      // to create a new znode, we need set version to -1
+      readStat.setVersion(-1);
+      try {
+        merged = baseAccessor.get(path, readStat, options);
+      } catch (ZkNoNodeException e) {
+        // OK
+      }
+
+      boolean exists = merged != null;
+      if (merged == null) {
+        merged = new ZNRecord(deltas.get(0).getId());
+      }
+      for (CurrentState delta : deltas) {
+        merged.merge(delta.getRecord());
+      }
+
+      try {
+        if (merged.getMapFields().isEmpty()) {
+          return !exists || baseAccessor.remove(path, options);
+        }
+        boolean success = baseAccessor.set(path, merged, readStat.getVersion(), options);
+        if (!success) {
+          LOG.error("Fail to update current state. path: " + path + ", version: "
+              + readStat.getVersion());
+        }
+        return success;
+      } catch (ZkBadVersionException e) {
+        CurrentStateWriterMonitor monitor = _monitor;
+        if (monitor != null) {
+          monitor.incrementVersionConflictCounter();
+        }
+      }
+    }
+  }
+
+  private static class PathQueue {
+    final String _path;
+    Batch _pending;
+    boolean _flushing;
+    boolean _flushScheduled;
+
+    PathQueue(String path) {
+      _path = path;
+    }
+  }
+
+  private class Batch {
+    final HelixDataAccessor _accessor;
+    final PropertyKey _key;
+    final long _createTime;
+    final List<CurrentState> _deltas = new ArrayList<CurrentState>();
+    final FutureTask<Boolean> _task;
+
+    Batch(HelixDataAccessor accessor, PropertyKey key) {
+      _accessor = accessor;
+      _key = key;
+      _createTime = System.currentTimeMillis();
+      _task = new FutureTask<Boolean>(new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          return write(Batch.this);
+        }
+      });
+    }
+  }
+}
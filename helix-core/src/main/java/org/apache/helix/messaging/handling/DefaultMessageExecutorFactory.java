@@ -0,0 +1,77 @@
+package org.apache.helix.messaging.handling;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Default factory of message thread pools. Pools are fixed size and queue tasks FIFO without
+ * bound unless configured otherwise:
+ * <ul>
+ * <li>{@link #QUEUE_CAPACITY} bounds the number of tasks queued per pool. Once the queue of a
+ * pool is full, HelixTaskExecutor leaves new messages for that pool unread until tasks finish.</li>
+ * <li>{@link #PRIORITIZED_QUEUE_ENABLED} orders queued state transitions by the transition
+ * priority of their state model definition and serves resources of a pool round robin.</li>
+ * </ul>
+ */
+public class DefaultMessageExecutorFactory implements MessageExecutorFactory {
+  private static Logger LOG = Logger.getLogger(DefaultMessageExecutorFactory.class);
+
+  public static final String QUEUE_CAPACITY = "helix.taskExecutor.queueCapacity";
+  public static final String PRIORITIZED_QUEUE_ENABLED =
+      "helix.taskExecutor.prioritizedQueueEnabled";
+
+  private final boolean _prioritized;
+  private final int _queueCapacity;
+
+  public DefaultMessageExecutorFactory() {
+    this(Boolean.getBoolean(PRIORITIZED_QUEUE_ENABLED),
+        Integer.getInteger(QUEUE_CAPACITY, Integer.MAX_VALUE));
+  }
+
+  /**
+   * @param prioritized order queued tasks by transition priority and resource
+   * @param queueCapacity max number of tasks queued per pool
+   */
+  public DefaultMessageExecutorFactory(boolean prioritized, int queueCapacity) {
+    if (queueCapacity <= 0) {
+      throw new IllegalArgumentException("Illegal queue capacity: " + queueCapacity);
+    }
+    _prioritized = prioritized;
+    _queueCapacity = queueCapacity;
+  }
+
+  @Override
+  public ExecutorService createExecutor(String poolName, int poolSize) {
+    BlockingQueue<Runnable> queue;
+    if (_prioritized) {
+      queue = new PriorityMessageQueue(_queueCapacity);
+    } else {
+      queue = new LinkedBlockingQueue<Runnable>(_queueCapacity);
+    }
+    LOG.info("Create thread pool: " + poolName + ", size: " + poolSize + ", queueCapacity: "
+        + _queueCapacity + ", prioritized: " + _prioritized);
+    return new MessageThreadPoolExecutor(poolName, poolSize, queue);
+  }
+}
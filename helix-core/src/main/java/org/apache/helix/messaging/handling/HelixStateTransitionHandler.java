@@ -135,8 +135,14 @@ public class HelixStateTransitionHandler extends MessageHandler {
       CurrentState currStateUpdate = new CurrentState(resource);
       currStateUpdate.setDeltaList(deltaList);
 
-      // Update the ZK current state of the node
-      accessor.updateProperty(key, currStateUpdate);
+      // Update the ZK current state of the node. With a coalescing writer the reset is merged
+      // with other updates of the resource, including the update after the transition.
+      CurrentStateWriter writer = getCurrentStateWriter();
+      if (writer != null) {
+        writer.submit(accessor, key, currStateUpdate);
+      } else {
+        accessor.updateProperty(key, currStateUpdate);
+      }
     }
     catch (Exception e)
     {
@@ -245,7 +251,7 @@ public class HelixStateTransitionHandler extends MessageHandler {
               bucketizer.getBucketName(partitionKey));
       if (_message.getAttribute(Attributes.PARENT_MSG_ID) == null) {
         // normal message
-        accessor.updateProperty(key, _currentStateDelta);
+        updateCurrentState(accessor, key, _currentStateDelta);
       } else {
         // sub-message of a batch message
         ConcurrentHashMap<String, CurrentStateUpdate> csUpdateMap =
@@ -263,6 +269,22 @@ public class HelixStateTransitionHandler extends MessageHandler {
     }
   }
 
+  private CurrentStateWriter getCurrentStateWriter() {
+    return (CurrentStateWriter) _notificationContext.get(MapKey.CURRENT_STATE_WRITER.toString());
+  }
+
+  /**
+   * Update the current state, through the coalescing writer if one is set on the context
+   */
+  private boolean updateCurrentState(HelixDataAccessor accessor, PropertyKey key,
+      CurrentState delta) {
+    CurrentStateWriter writer = getCurrentStateWriter();
+    if (writer != null) {
+      return writer.write(accessor, key, delta);
+    }
+    return accessor.updateProperty(key, delta);
+  }
+
   void disablePartition() {
     String instanceName = _manager.getInstanceName();
     String resourceName = _message.getResourceName();
@@ -411,7 +433,7 @@ public class HelixStateTransitionHandler extends MessageHandler {
         if (_message.getFromState().equalsIgnoreCase(HelixDefinedState.ERROR.toString())) {
           disablePartition();
         }
-        accessor.updateProperty(
+        updateCurrentState(accessor,
             keyBuilder.currentState(instanceName, _message.getTgtSessionId(), resourceName),
             currentStateDelta);
       }
@@ -51,6 +51,8 @@ public class HelixTask implements MessageTask {
   volatile boolean _isTimeout = false;
   volatile boolean _isStarted = false;
   volatile boolean _isCancelled = false;
+  // transition priority of the message, lower value is executed first
+  private volatile int _priority = 0;
 
   public HelixTask(Message message, NotificationContext notificationContext,
       MessageHandler handler, HelixTaskExecutor executor) {
@@ -62,6 +64,18 @@ public class HelixTask implements MessageTask {
     _executor = executor;
   }
 
+  /**
+   * Get the priority of this task in a prioritized executor queue, lower value first
+   * @return
+   */
+  public int getPriority() {
+    return _priority;
+  }
+
+  void setPriority(int priority) {
+    _priority = priority;
+  }
+
   @Override
   public HelixTaskResult call() {
     HelixTaskResult taskResult = null;
@@ -197,10 +211,10 @@ public class HelixTask implements MessageTask {
   private void removeMessageFromZk(HelixDataAccessor accessor, Message message) {
     Builder keyBuilder = accessor.keyBuilder();
     if (message.getTgtName().equalsIgnoreCase("controller")) {
-      // TODO: removeProperty returns boolean
-      accessor.removeProperty(keyBuilder.controllerMessage(message.getMsgId()));
+      _executor.removeFinishedMessage(accessor, keyBuilder.controllerMessage(message.getMsgId()));
     } else {
-      accessor.removeProperty(keyBuilder.message(_manager.getInstanceName(), message.getMsgId()));
+      _executor.removeFinishedMessage(accessor,
+          keyBuilder.message(_manager.getInstanceName(), message.getMsgId()));
     }
   }
 
@@ -248,6 +262,10 @@ public class HelixTask implements MessageTask {
         String fromState = message.getFromState();
         String toState = message.getToState();
         String transition = fromState + "--" + toState;
+        if (message.getBatchMessageMode()) {
+          // report the latency of a batch separately from single-partition transitions
+          transition = "Batch." + transition;
+        }
 
         StateTransitionContext cxt =
             new StateTransitionContext(manager.getClusterName(), manager.getInstanceName(),
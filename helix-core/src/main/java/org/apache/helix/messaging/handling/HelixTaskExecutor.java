@@ -24,16 +24,24 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.helix.ConfigAccessor;
 import org.apache.helix.Criteria;
@@ -49,6 +57,7 @@ import org.apache.helix.NotificationContext.Type;
 import org.apache.helix.PropertyKey;
 import org.apache.helix.PropertyKey.Builder;
 import org.apache.helix.controller.GenericHelixController;
+import org.apache.helix.manager.zk.ZKHelixDataAccessor;
 import org.apache.helix.model.ClusterConfig;
 import org.apache.helix.model.CurrentState;
 import org.apache.helix.model.HelixConfigScope;
@@ -57,13 +66,17 @@ import org.apache.helix.model.LiveInstance;
 import org.apache.helix.model.Message;
 import org.apache.helix.model.Message.MessageState;
 import org.apache.helix.model.Message.MessageType;
+import org.apache.helix.model.StateModelDefinition;
 import org.apache.helix.model.builder.HelixConfigScopeBuilder;
 import org.apache.helix.monitoring.ParticipantStatusMonitor;
+import org.apache.helix.monitoring.mbeans.CurrentStateWriterMonitor;
+import org.apache.helix.monitoring.mbeans.MessageExecutorMonitor;
 import org.apache.helix.monitoring.mbeans.MessageQueueMonitor;
 import org.apache.helix.monitoring.mbeans.ParticipantMessageMonitor;
 import org.apache.helix.participant.HelixStateMachineEngine;
 import org.apache.helix.participant.statemachine.StateModel;
 import org.apache.helix.participant.statemachine.StateModelFactory;
+import org.apache.helix.util.HelixUtil;
 import org.apache.helix.util.StatusUpdateUtil;
 import org.apache.log4j.Logger;
 
@@ -111,6 +124,15 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
   private final ParticipantStatusMonitor _monitor;
   public static final String MAX_THREADS = "maxThreads";
 
+  /**
+   * System property naming the {@link MessageExecutorFactory} class creating the thread pools,
+   * {@link DefaultMessageExecutorFactory} if not set
+   */
+  public static final String MESSAGE_EXECUTOR_FACTORY_CLASS =
+      "helix.taskExecutor.executorFactoryClass";
+  static final String BATCH_MESSAGE_POOL_NAME = "BatchMessage";
+  static final String CANCELLATION_POOL_NAME = "Cancellation";
+
   private MessageQueueMonitor _messageQueueMonitor;
   private GenericHelixController _controller;
   private Long _lastSessionSyncTime;
@@ -125,6 +147,29 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
 
   final ConcurrentHashMap<String, String> _messageTaskMap;
   private ExecutorService _cancellationExcutorService;
+  private final MessageExecutorFactory _executorFactory;
+
+  /**
+   * Map of pool name->monitor of the pool, guarded by itself
+   */
+  private final Map<String, MessageExecutorMonitor> _executorMonitors;
+
+  /**
+   * Coalescing writer for current state updates, null if coalescing is disabled
+   */
+  private final CurrentStateWriter _currentStateWriter;
+  private CurrentStateWriterMonitor _currentStateWriterMonitor;
+
+  /**
+   * Map of state model name->state model definition, used to prioritize state transitions
+   */
+  private final ConcurrentHashMap<String, StateModelDefinition> _stateModelDefs;
+
+  /**
+   * Keys of messages of finished tasks waiting to be removed in a batch
+   */
+  private final ConcurrentLinkedQueue<PropertyKey> _finishedMessageKeys;
+  private final ReentrantLock _finishedMessageLock;
 
   /**
    * separate executor for executing batch messages
@@ -145,13 +190,26 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
   }
 
   public HelixTaskExecutor(ParticipantStatusMonitor participantStatusMonitor) {
+    this(participantStatusMonitor, createExecutorFactory());
+  }
+
+  public HelixTaskExecutor(ParticipantStatusMonitor participantStatusMonitor,
+      MessageExecutorFactory executorFactory) {
     _taskMap = new ConcurrentHashMap<String, MessageTaskInfo>();
 
     _hdlrFtyRegistry = new ConcurrentHashMap<String, MsgHandlerFactoryRegistryItem>();
     _executorMap = new ConcurrentHashMap<String, ExecutorService>();
     _messageTaskMap = new ConcurrentHashMap<String, String>();
-    _cancellationExcutorService = Executors.newFixedThreadPool(DEFAULT_CANCELLATION_THREADPOOL_SIZE);
-    _batchMessageExecutorService = Executors.newFixedThreadPool(DEFAULT_PARALLEL_TASKS);
+    _executorFactory = executorFactory;
+    _executorMonitors = new HashMap<String, MessageExecutorMonitor>();
+    _stateModelDefs = new ConcurrentHashMap<String, StateModelDefinition>();
+    _finishedMessageKeys = new ConcurrentLinkedQueue<PropertyKey>();
+    _finishedMessageLock = new ReentrantLock();
+    _currentStateWriter = CurrentStateWriter.createFromSystemProperties();
+    _cancellationExcutorService = _executorFactory
+        .createExecutor(CANCELLATION_POOL_NAME, DEFAULT_CANCELLATION_THREADPOOL_SIZE);
+    _batchMessageExecutorService =
+        _executorFactory.createExecutor(BATCH_MESSAGE_POOL_NAME, DEFAULT_PARALLEL_TASKS);
     _batchMessageThreadpoolChecked = false;
     _resourcesThreadpoolChecked =
         Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
@@ -165,6 +223,21 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
     startMonitorThread();
   }
 
+  private static MessageExecutorFactory createExecutorFactory() {
+    String factoryClassName = System.getProperty(MESSAGE_EXECUTOR_FACTORY_CLASS);
+    if (factoryClassName != null) {
+      try {
+        return MessageExecutorFactory.class.cast(
+            HelixUtil.loadClass(HelixTaskExecutor.class, factoryClassName)
+                .getDeclaredConstructor().newInstance());
+      } catch (Exception e) {
+        LOG.error("Fail to create message executor factory: " + factoryClassName
+            + ", use the default factory", e);
+      }
+    }
+    return new DefaultMessageExecutorFactory();
+  }
+
   @Override
   public void registerMessageHandlerFactory(String type, MessageHandlerFactory factory) {
     registerMessageHandlerFactory(type, factory, DEFAULT_PARALLEL_TASKS);
@@ -182,7 +255,7 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
         new MsgHandlerFactoryRegistryItem(factory, threadpoolSize);
     MsgHandlerFactoryRegistryItem prevItem = _hdlrFtyRegistry.putIfAbsent(type, newItem);
     if (prevItem == null) {
-      ExecutorService newPool = Executors.newFixedThreadPool(threadpoolSize);
+      ExecutorService newPool = _executorFactory.createExecutor(type, threadpoolSize);
       ExecutorService prevExecutor = _executorMap.putIfAbsent(type, newPool);
       if (prevExecutor != null) {
         LOG.warn("Skip creating a new thread pool for type: " + type + ", already existing pool: "
@@ -226,8 +299,8 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
       if (clusterConfig != null && clusterConfig.getBatchStateTransitionMaxThreads() > 0) {
         LOG.info("Customize batch message thread pool with size : " + clusterConfig
             .getBatchStateTransitionMaxThreads());
-        _batchMessageExecutorService =
-            Executors.newFixedThreadPool(clusterConfig.getBatchStateTransitionMaxThreads());
+        _batchMessageExecutorService = _executorFactory.createExecutor(BATCH_MESSAGE_POOL_NAME,
+            clusterConfig.getBatchStateTransitionMaxThreads());
       }
       _batchMessageThreadpoolChecked = true;
     }
@@ -254,7 +327,7 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
       }
       String key = MessageType.STATE_TRANSITION.name() + "." + resourceName;
       if (threadpoolSize > 0) {
-        _executorMap.put(key, Executors.newFixedThreadPool(threadpoolSize));
+        _executorMap.put(key, _executorFactory.createExecutor(key, threadpoolSize));
         LOG.info("Added dedicate threadpool for resource: " + resourceName + " with size: "
             + threadpoolSize);
       } else {
@@ -309,6 +382,123 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
     return executorService;
   }
 
+  /**
+   * Get the priority of a message in a prioritized executor queue, lower value first. State
+   * transitions are ordered by the transition priority list of their state model definition;
+   * transitions not in the list come after those in it.
+   */
+  int getMessagePriority(Message message, HelixDataAccessor accessor) {
+    String stateModelName = message.getStateModelDef();
+    if (!MessageType.STATE_TRANSITION.name().equals(message.getMsgType())
+        || stateModelName == null) {
+      return 0;
+    }
+
+    StateModelDefinition stateModelDef = _stateModelDefs.get(stateModelName);
+    if (stateModelDef == null) {
+      stateModelDef = accessor.getProperty(accessor.keyBuilder().stateModelDef(stateModelName));
+      if (stateModelDef == null) {
+        return 0;
+      }
+      _stateModelDefs.put(stateModelName, stateModelDef);
+    }
+
+    List<String> transitionPriorityList = stateModelDef.getStateTransitionPriorityList();
+    if (transitionPriorityList == null) {
+      return 0;
+    }
+    int priority =
+        transitionPriorityList.indexOf(message.getFromState() + "-" + message.getToState());
+    return priority < 0 ? transitionPriorityList.size() : priority;
+  }
+
+  /**
+   * Check whether the executor of a message can take one more task, and if so reserve it.
+   * Tasks reserved by the current batch of messages are counted as taken.
+   * @param message
+   * @param reservedTasks executor->number of tasks reserved so far
+   * @return false if the queue of the executor is full
+   */
+  private boolean reserveExecutorCapacity(Message message,
+      Map<ExecutorService, Integer> reservedTasks) {
+    ExecutorService executor = findExecutorServiceForMsg(message);
+    if (!(executor instanceof ThreadPoolExecutor)) {
+      return true;
+    }
+
+    ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+    Integer reserved = reservedTasks.get(executor);
+    if (reserved == null) {
+      reserved = 0;
+    }
+    long capacity = (long) pool.getQueue().remainingCapacity()
+        + Math.max(0, pool.getMaximumPoolSize() - pool.getActiveCount());
+    if (capacity - reserved <= 0) {
+      return false;
+    }
+    reservedTasks.put(executor, reserved + 1);
+    return true;
+  }
+
+  /**
+   * Register a monitor for each thread pool not monitored yet, and remove monitors of pools that
+   * were replaced or shut down.
+   */
+  private void updateExecutorMonitors(HelixManager manager) {
+    Map<String, ExecutorService> pools = new HashMap<String, ExecutorService>(_executorMap);
+    pools.put(BATCH_MESSAGE_POOL_NAME, _batchMessageExecutorService);
+    pools.put(CANCELLATION_POOL_NAME, _cancellationExcutorService);
+
+    synchronized (_executorMonitors) {
+      Iterator<Map.Entry<String, MessageExecutorMonitor>> it =
+          _executorMonitors.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<String, MessageExecutorMonitor> entry = it.next();
+        if (pools.get(entry.getKey()) != entry.getValue().getExecutor()) {
+          entry.getValue().reset();
+          it.remove();
+        }
+      }
+
+      for (Map.Entry<String, ExecutorService> entry : pools.entrySet()) {
+        String poolName = entry.getKey();
+        ExecutorService pool = entry.getValue();
+        if (!(pool instanceof ThreadPoolExecutor) || _executorMonitors.containsKey(poolName)) {
+          continue;
+        }
+        MessageExecutorMonitor monitor = new MessageExecutorMonitor(manager.getClusterName(),
+            manager.getInstanceName(), poolName, (ThreadPoolExecutor) pool);
+        monitor.init();
+        if (pool instanceof MessageThreadPoolExecutor) {
+          ((MessageThreadPoolExecutor) pool).setMonitor(monitor);
+        }
+        _executorMonitors.put(poolName, monitor);
+      }
+
+      if (_currentStateWriter != null && _currentStateWriterMonitor == null) {
+        _currentStateWriterMonitor =
+            new CurrentStateWriterMonitor(manager.getClusterName(), manager.getInstanceName());
+        _currentStateWriterMonitor.init();
+        _currentStateWriter.setMonitor(_currentStateWriterMonitor);
+      }
+    }
+  }
+
+  private void resetExecutorMonitors() {
+    synchronized (_executorMonitors) {
+      for (MessageExecutorMonitor monitor : _executorMonitors.values()) {
+        monitor.reset();
+      }
+      _executorMonitors.clear();
+
+      if (_currentStateWriterMonitor != null) {
+        _currentStateWriter.setMonitor(null);
+        _currentStateWriterMonitor.reset();
+        _currentStateWriterMonitor = null;
+      }
+    }
+  }
+
   // ExecutorService impl's in JDK are thread-safe
   @Override
   public List<Future<HelixTaskResult>> invokeAllTasks(List<MessageTask> tasks, long timeout,
@@ -328,12 +518,61 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
       }
     }
 
+    for (MessageTask task : tasks) {
+      if (task instanceof HelixTask) {
+        ((HelixTask) task).setPriority(getMessagePriority(task.getMessage(),
+            task.getNotificationContext().getManager().getHelixDataAccessor()));
+      }
+    }
+
     // TODO: check if any of the task has already been scheduled
 
-    // this is a blocking call
-    List<Future<HelixTaskResult>> futures = exeSvc.invokeAll(tasks, timeout, unit);
+    // this is a blocking call. Sub-tasks are not limited by the queue capacity of the pool: a
+    // sub-task the pool rejects runs in the batch message thread instead of failing the batch
+    List<Future<HelixTaskResult>> futures = new ArrayList<Future<HelixTaskResult>>(tasks.size());
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    boolean done = false;
+    try {
+      for (MessageTask task : tasks) {
+        Future<HelixTaskResult> future;
+        try {
+          future = exeSvc.submit(task);
+        } catch (RejectedExecutionException e) {
+          LOG.info("Queue is full, run sub-task " + task.getTaskId() + " in the batch thread");
+          FutureTask<HelixTaskResult> callerRunsTask = new FutureTask<HelixTaskResult>(task);
+          callerRunsTask.run();
+          future = callerRunsTask;
+        }
+        futures.add(future);
+      }
 
-    return futures;
+      for (Future<HelixTaskResult> future : futures) {
+        if (!future.isDone()) {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            return futures;
+          }
+          try {
+            future.get(remaining, TimeUnit.NANOSECONDS);
+          } catch (CancellationException e) {
+            // reported by the caller
+          } catch (ExecutionException e) {
+            // reported by the caller
+          } catch (TimeoutException e) {
+            return futures;
+          }
+        }
+      }
+      done = true;
+      return futures;
+    } finally {
+      // as ExecutorService#invokeAll, cancel the sub-tasks not done on timeout or interruption
+      if (!done) {
+        for (Future<HelixTaskResult> future : futures) {
+          future.cancel(true);
+        }
+      }
+    }
   }
 
   @Override
@@ -361,6 +600,10 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
     try {
       // Check to see if dedicate thread pool for handling state transition messages is configured or provided.
       updateStateTransitionMessageThreadPool(message, notificationContext.getManager());
+      if (task instanceof HelixTask) {
+        ((HelixTask) task).setPriority(getMessagePriority(message,
+            notificationContext.getManager().getHelixDataAccessor()));
+      }
 
       LOG.info("Scheduling message: " + taskId);
       // System.out.println("sched msg: " + message.getPartitionName() + "-"
@@ -536,6 +779,7 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
     if (_messageQueueMonitor != null) {
       _messageQueueMonitor.reset();
     }
+    resetExecutorMonitors();
 
     for (String msgType : _hdlrFtyRegistry.keySet()) {
       // don't un-register factories, just shutdown all executors
@@ -560,6 +804,7 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
 
     shutdownAndAwaitTermination(_cancellationExcutorService);
     _messageTaskMap.clear();
+    _stateModelDefs.clear();
 
     _lastSessionSyncTime = null;
   }
@@ -574,7 +819,7 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
     // Re-init all existing factories
     for (String msgType : _hdlrFtyRegistry.keySet()) {
       MsgHandlerFactoryRegistryItem item = _hdlrFtyRegistry.get(msgType);
-      ExecutorService newPool = Executors.newFixedThreadPool(item.threadPoolSize());
+      ExecutorService newPool = _executorFactory.createExecutor(msgType, item.threadPoolSize());
       ExecutorService prevPool = _executorMap.putIfAbsent(msgType, newPool);
       if (prevPool != null) {
         // Will happen if we register and call init
@@ -661,13 +906,19 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
     List<CurrentState> metaCurStates = new ArrayList<CurrentState>();
     Set<String> createCurStateNames = new HashSet<String>();
 
+    // tasks reserved on each executor by this batch of messages
+    Map<ExecutorService, Integer> reservedTasks = new HashMap<ExecutorService, Integer>();
+
+    // messages to remove, in one batch after all messages are read
+    List<PropertyKey> removeMsgKeys = new ArrayList<PropertyKey>();
+
     for (Message message : messages) {
       // nop messages are simply removed. It is used to trigger onMessage() in
       // situations such as register a new message handler factory
       if (message.getMsgType().equalsIgnoreCase(MessageType.NO_OP.toString())) {
         LOG.info("Dropping NO-OP message. mid: " + message.getId() + ", from: "
             + message.getMsgSrc());
-        accessor.removeProperty(message.getKey(keyBuilder, instanceName));
+        removeMsgKeys.add(message.getKey(keyBuilder, instanceName));
         _monitor.reportProcessedMessage(message, ParticipantMessageMonitor.ProcessedMessageState.DISCARDED);
         continue;
       }
@@ -681,7 +932,7 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
                 + ", tgtSessionId in message: " + tgtSessionId + ", messageId: "
                 + message.getMsgId();
         LOG.warn(warningMessage);
-        accessor.removeProperty(message.getKey(keyBuilder, instanceName));
+        removeMsgKeys.add(message.getKey(keyBuilder, instanceName));
         _statusUpdateUtil.logWarning(message, HelixStateMachineEngine.class, warningMessage, accessor);
 
         // Proactively send a session sync message from participant to controller
@@ -702,7 +953,7 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
         PropertyKey key = new Builder(manager.getClusterName()).liveInstances();
         List<LiveInstance> liveInstances = manager.getHelixDataAccessor().getChildValues(key);
         _controller.onLiveInstanceChange(liveInstances, changeContext);
-        accessor.removeProperty(message.getKey(keyBuilder, instanceName));
+        removeMsgKeys.add(message.getKey(keyBuilder, instanceName));
         _monitor.reportProcessedMessage(message, ParticipantMessageMonitor.ProcessedMessageState.COMPLETED);
         continue;
       }
@@ -729,19 +980,19 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
             getMessageTarget(message.getResourceName(), message.getPartitionName());
         // State transition message and cancel message are in same batch
         if (stateTransitionHandlers.containsKey(messageTarget)) {
-          if (!isCancelingSameStateTransition(
-              stateTransitionHandlers.get(messageTarget).getMessage(), message)) {
-            removeMessageFromZk(accessor, message, instanceName);
+          Message stateTransitionMessage = stateTransitionHandlers.get(messageTarget).getMessage();
+          if (!isCancelingSameStateTransition(stateTransitionMessage, message)) {
+            removeMsgKeys.add(getMessageKey(keyBuilder, message, instanceName));
             continue;
           }
 
           markReadMessage(message, changeContext, accessor);
-          readMsgs.add(message);
           _monitor.reportProcessedMessage(message,
               ParticipantMessageMonitor.ProcessedMessageState.COMPLETED);
-          removeMessageFromZk(accessor, message, instanceName);
-          removeMessageFromZk(accessor, stateTransitionHandlers.get(messageTarget).getMessage(),
-              instanceName);
+          // both messages are removed, so don't write them back as READ
+          readMsgs.remove(stateTransitionMessage);
+          removeMsgKeys.add(getMessageKey(keyBuilder, message, instanceName));
+          removeMsgKeys.add(getMessageKey(keyBuilder, stateTransitionMessage, instanceName));
           stateTransitionHandlers.remove(messageTarget);
           continue;
         } else {
@@ -755,7 +1006,7 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
             Future<HelixTaskResult> future = _taskMap.get(taskId).getFuture();
 
             if (!isCancelingSameStateTransition(task.getMessage(), message)) {
-              removeMessageFromZk(accessor, message, instanceName);
+              removeMsgKeys.add(getMessageKey(keyBuilder, message, instanceName));
               continue;
             }
 
@@ -764,15 +1015,29 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
               future.cancel(false);
               _monitor.reportProcessedMessage(message,
                   ParticipantMessageMonitor.ProcessedMessageState.COMPLETED);
-              removeMessageFromZk(accessor, message, instanceName);
-              removeMessageFromZk(accessor, stateTransitionMessage,
-                  instanceName);
+              removeMsgKeys.add(getMessageKey(keyBuilder, message, instanceName));
+              removeMsgKeys
+                  .add(getMessageKey(keyBuilder, stateTransitionMessage, instanceName));
               continue;
             }
           }
         }
       }
 
+      // back-pressure: if the queue of the executor is full, leave the message as NEW. It is read
+      // again on the next message change, e.g. when a finished task removes its message
+      try {
+        updateStateTransitionMessageThreadPool(message, manager);
+        if (!reserveExecutorCapacity(message, reservedTasks)) {
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Executor queue is full, defer message: " + message.getMsgId());
+          }
+          continue;
+        }
+      } catch (Exception e) {
+        LOG.error("Failed to check executor capacity for message: " + message.getMsgId(), e);
+      }
+
       // create message handlers, if handlers not found, leave its state as NEW
       try {
         MessageHandler createHandler = createMessageHandler(message, changeContext);
@@ -796,7 +1061,7 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
         _statusUpdateUtil.logError(message, HelixStateMachineEngine.class, e, error, accessor);
 
         message.setMsgState(MessageState.UNPROCESSABLE);
-        accessor.removeProperty(message.getKey(keyBuilder, instanceName));
+        removeMsgKeys.add(message.getKey(keyBuilder, instanceName));
         LOG.error("Message cannot be processed: " + message.getRecord(), e);
         _monitor.reportProcessedMessage(message, ParticipantMessageMonitor.ProcessedMessageState.DISCARDED);
         continue;
@@ -834,6 +1099,15 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
       }
     }
 
+    // batch remove discarded, cancelled and unprocessable messages
+    if (removeMsgKeys.size() > 0) {
+      try {
+        removeMessages(accessor, removeMsgKeys);
+      } catch (Exception e) {
+        LOG.error("fail to remove messages: " + removeMsgKeys, e);
+      }
+    }
+
     // batch create curState meta
     if (createCurStateKeys.size() > 0) {
       try {
@@ -857,6 +1131,8 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
         scheduleTask(task);
       }
     }
+
+    updateExecutorMonitors(manager);
   }
 
   private void markReadMessage(Message message, NotificationContext context,
@@ -886,6 +1162,9 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
     // pass the executor to msg-handler since batch-msg-handler needs task-executor to schedule
     // sub-msgs
     changeContext.add(MapKey.TASK_EXECUTOR.toString(), this);
+    if (_currentStateWriter != null) {
+      changeContext.add(MapKey.CURRENT_STATE_WRITER.toString(), _currentStateWriter);
+    }
     return handlerFactory.createHandler(message, changeContext);
   }
 
@@ -906,14 +1185,51 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
     return String.format("%s_%s", resourceName, partitionName);
   }
 
-  private void removeMessageFromZk(HelixDataAccessor accessor, Message message,
-      String instanceName) {
-    Builder keyBuilder = accessor.keyBuilder();
+  private PropertyKey getMessageKey(Builder keyBuilder, Message message, String instanceName) {
     if (message.getTgtName().equalsIgnoreCase("controller")) {
-      // TODO: removeProperty returns boolean
-      accessor.removeProperty(keyBuilder.controllerMessage(message.getMsgId()));
+      return keyBuilder.controllerMessage(message.getMsgId());
     } else {
-      accessor.removeProperty(keyBuilder.message(instanceName, message.getMsgId()));
+      return keyBuilder.message(instanceName, message.getMsgId());
+    }
+  }
+
+  /**
+   * Remove the message of a finished task. Messages of tasks finishing at the same time are
+   * removed in one batch by the first thread to get the removal lock; the other threads return
+   * as soon as their message is queued.
+   * @param accessor
+   * @param key key of the message to remove
+   */
+  void removeFinishedMessage(HelixDataAccessor accessor, PropertyKey key) {
+    _finishedMessageKeys.add(key);
+    while (!_finishedMessageKeys.isEmpty() && _finishedMessageLock.tryLock()) {
+      try {
+        List<PropertyKey> keys = new ArrayList<PropertyKey>();
+        PropertyKey pendingKey;
+        while ((pendingKey = _finishedMessageKeys.poll()) != null) {
+          keys.add(pendingKey);
+        }
+        if (keys.size() > 0) {
+          removeMessages(accessor, keys);
+        }
+      } catch (Exception e) {
+        LOG.error("Fail to remove messages of finished tasks", e);
+      } finally {
+        _finishedMessageLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Remove the given messages, in one batch if the accessor supports it
+   */
+  private static void removeMessages(HelixDataAccessor accessor, List<PropertyKey> keys) {
+    if (accessor instanceof ZKHelixDataAccessor) {
+      ((ZKHelixDataAccessor) accessor).removeChildren(keys);
+      return;
+    }
+    for (PropertyKey key : keys) {
+      accessor.removeProperty(key);
     }
   }
 
@@ -923,6 +1239,9 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
     _timer.cancel();
 
     reset();
+    if (_currentStateWriter != null) {
+      _currentStateWriter.shutdown();
+    }
     _monitor.shutDown();
     LOG.info("Shutdown HelixTaskExecutor finished");
   }
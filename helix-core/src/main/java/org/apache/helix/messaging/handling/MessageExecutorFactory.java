@@ -0,0 +1,36 @@
+package org.apache.helix.messaging.handling;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates the thread pools HelixTaskExecutor executes messages on. A custom factory can be
+ * plugged in with the system property {@link HelixTaskExecutor#MESSAGE_EXECUTOR_FACTORY_CLASS}.
+ */
+public interface MessageExecutorFactory {
+  /**
+   * Create a thread pool for executing message tasks
+   * @param poolName name of the pool, e.g. the message type it serves
+   * @param poolSize number of threads of the pool
+   * @return
+   */
+  ExecutorService createExecutor(String poolName, int poolSize);
+}
@@ -0,0 +1,141 @@
+package org.apache.helix.messaging.handling;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.helix.model.Message;
+import org.apache.helix.monitoring.mbeans.MessageExecutorMonitor;
+
+/**
+ * Fixed size thread pool for message tasks. Tasks are wrapped with the resource and priority of
+ * their message so that a {@link PriorityMessageQueue} can order them, and the time they wait in
+ * the queue is reported to the monitor of the pool.
+ */
+public class MessageThreadPoolExecutor extends ThreadPoolExecutor {
+  private final String _poolName;
+  private volatile MessageExecutorMonitor _monitor;
+
+  public MessageThreadPoolExecutor(String poolName, int poolSize, BlockingQueue<Runnable> queue) {
+    super(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, queue);
+    _poolName = poolName;
+    setRejectedExecutionHandler(new MonitoredAbortPolicy());
+  }
+
+  public String getPoolName() {
+    return _poolName;
+  }
+
+  /**
+   * Set the monitor queueing delays and rejected tasks are reported to
+   * @param monitor
+   */
+  public void setMonitor(MessageExecutorMonitor monitor) {
+    _monitor = monitor;
+  }
+
+  @Override
+  protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+    return new MessageFutureTask<T>(callable);
+  }
+
+  @Override
+  protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+    return new MessageFutureTask<T>(runnable, value);
+  }
+
+  @Override
+  protected void beforeExecute(Thread t, Runnable r) {
+    super.beforeExecute(t, r);
+    MessageExecutorMonitor monitor = _monitor;
+    if (monitor != null && r instanceof MessageFutureTask) {
+      monitor.addQueueingDelay(
+          System.currentTimeMillis() - ((MessageFutureTask<?>) r).getSubmitTime());
+    }
+  }
+
+  @Override
+  public String toString() {
+    return _poolName + ":" + super.toString();
+  }
+
+  private class MonitoredAbortPolicy implements RejectedExecutionHandler {
+    private final RejectedExecutionHandler _policy = new AbortPolicy();
+
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+      MessageExecutorMonitor monitor = _monitor;
+      if (monitor != null) {
+        monitor.incrementRejectedTaskCounter();
+      }
+      _policy.rejectedExecution(r, executor);
+    }
+  }
+
+  /**
+   * Future of a message task, carrying the resource and priority of the message
+   */
+  static class MessageFutureTask<T> extends FutureTask<T> {
+    private final String _resourceName;
+    private final int _priority;
+    private final long _submitTime;
+
+    MessageFutureTask(Callable<T> callable) {
+      super(callable);
+      String resourceName = null;
+      int priority = 0;
+      if (callable instanceof MessageTask) {
+        Message message = ((MessageTask) callable).getMessage();
+        resourceName = message.getResourceName();
+        if (callable instanceof HelixTask) {
+          priority = ((HelixTask) callable).getPriority();
+        }
+      }
+      _resourceName = resourceName;
+      _priority = priority;
+      _submitTime = System.currentTimeMillis();
+    }
+
+    MessageFutureTask(Runnable runnable, T value) {
+      super(runnable, value);
+      _resourceName = null;
+      _priority = 0;
+      _submitTime = System.currentTimeMillis();
+    }
+
+    String getResourceName() {
+      return _resourceName;
+    }
+
+    int getPriority() {
+      return _priority;
+    }
+
+    long getSubmitTime() {
+      return _submitTime;
+    }
+  }
+}
@@ -0,0 +1,374 @@
+package org.apache.helix.messaging.handling;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.helix.messaging.handling.MessageThreadPoolExecutor.MessageFutureTask;
+
+/**
+ * Bounded blocking queue of message tasks. Tasks of a resource are taken in order of priority
+ * (lower value first), then in order of arrival. Across resources the task with the highest
+ * priority is taken first, and resources whose next tasks have the same priority are served round
+ * robin, so a resource with many pending transitions does not starve the others of a shared pool.
+ */
+class PriorityMessageQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+  private static final String DEFAULT_RESOURCE = "";
+
+  private static final Comparator<Entry> ENTRY_COMPARATOR = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry e1, Entry e2) {
+      if (e1._priority != e2._priority) {
+        return e1._priority < e2._priority ? -1 : 1;
+      }
+      return e1._sequence < e2._sequence ? -1 : (e1._sequence == e2._sequence ? 0 : 1);
+    }
+  };
+
+  private final int _capacity;
+  private final ReentrantLock _lock;
+  private final Condition _notEmpty;
+  private final Condition _notFull;
+
+  // resource -> queued tasks of the resource
+  private final Map<String, PriorityQueue<Entry>> _resourceQueues;
+  // resources with queued tasks, in the order they are served on equal priority
+  private final Set<String> _resourceOrder;
+  private long _sequence;
+  private int _size;
+
+  public PriorityMessageQueue(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Illegal capacity: " + capacity);
+    }
+    _capacity = capacity;
+    _lock = new ReentrantLock();
+    _notEmpty = _lock.newCondition();
+    _notFull = _lock.newCondition();
+    _resourceQueues = new HashMap<String, PriorityQueue<Entry>>();
+    _resourceOrder = new LinkedHashSet<String>();
+    _sequence = 0;
+    _size = 0;
+  }
+
+  @Override
+  public boolean offer(Runnable task) {
+    if (task == null) {
+      throw new NullPointerException();
+    }
+    _lock.lock();
+    try {
+      if (_size >= _capacity) {
+        return false;
+      }
+      enqueue(task);
+      return true;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean offer(Runnable task, long timeout, TimeUnit unit) throws InterruptedException {
+    if (task == null) {
+      throw new NullPointerException();
+    }
+    long nanos = unit.toNanos(timeout);
+    _lock.lockInterruptibly();
+    try {
+      while (_size >= _capacity) {
+        if (nanos <= 0) {
+          return false;
+        }
+        nanos = _notFull.awaitNanos(nanos);
+      }
+      enqueue(task);
+      return true;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(Runnable task) throws InterruptedException {
+    if (task == null) {
+      throw new NullPointerException();
+    }
+    _lock.lockInterruptibly();
+    try {
+      while (_size >= _capacity) {
+        _notFull.await();
+      }
+      enqueue(task);
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable poll() {
+    _lock.lock();
+    try {
+      return _size == 0 ? null : dequeue();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    _lock.lockInterruptibly();
+    try {
+      while (_size == 0) {
+        if (nanos <= 0) {
+          return null;
+        }
+        nanos = _notEmpty.awaitNanos(nanos);
+      }
+      return dequeue();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable take() throws InterruptedException {
+    _lock.lockInterruptibly();
+    try {
+      while (_size == 0) {
+        _notEmpty.await();
+      }
+      return dequeue();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable peek() {
+    _lock.lock();
+    try {
+      String resource = selectResource();
+      return resource == null ? null : _resourceQueues.get(resource).peek()._task;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    _lock.lock();
+    try {
+      return _size;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public int remainingCapacity() {
+    _lock.lock();
+    try {
+      return _capacity - _size;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    if (o == null) {
+      return false;
+    }
+    _lock.lock();
+    try {
+      for (Iterator<String> it = _resourceOrder.iterator(); it.hasNext(); ) {
+        String resource = it.next();
+        PriorityQueue<Entry> queue = _resourceQueues.get(resource);
+        for (Entry entry : queue) {
+          if (entry._task.equals(o)) {
+            queue.remove(entry);
+            if (queue.isEmpty()) {
+              _resourceQueues.remove(resource);
+              it.remove();
+            }
+            _size--;
+            _notFull.signal();
+            return true;
+          }
+        }
+      }
+      return false;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public int drainTo(Collection<? super Runnable> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int drainTo(Collection<? super Runnable> c, int maxElements) {
+    if (c == null) {
+      throw new NullPointerException();
+    }
+    if (c == this) {
+      throw new IllegalArgumentException();
+    }
+    _lock.lock();
+    try {
+      int n = 0;
+      while (n < maxElements && _size > 0) {
+        c.add(dequeue());
+        n++;
+      }
+      return n;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Iterate over a snapshot of the queued tasks, in no particular order
+   */
+  @Override
+  public Iterator<Runnable> iterator() {
+    final List<Runnable> snapshot = new ArrayList<Runnable>();
+    _lock.lock();
+    try {
+      for (PriorityQueue<Entry> queue : _resourceQueues.values()) {
+        for (Entry entry : queue) {
+          snapshot.add(entry._task);
+        }
+      }
+    } finally {
+      _lock.unlock();
+    }
+
+    final Iterator<Runnable> it = snapshot.iterator();
+    return new Iterator<Runnable>() {
+      private Runnable _last;
+
+      @Override
+      public boolean hasNext() {
+        return it.hasNext();
+      }
+
+      @Override
+      public Runnable next() {
+        _last = it.next();
+        return _last;
+      }
+
+      @Override
+      public void remove() {
+        if (_last == null) {
+          throw new IllegalStateException();
+        }
+        PriorityMessageQueue.this.remove(_last);
+        _last = null;
+      }
+    };
+  }
+
+  private void enqueue(Runnable task) {
+    String resource = DEFAULT_RESOURCE;
+    int priority = 0;
+    if (task instanceof MessageFutureTask) {
+      MessageFutureTask<?> messageTask = (MessageFutureTask<?>) task;
+      if (messageTask.getResourceName() != null) {
+        resource = messageTask.getResourceName();
+      }
+      priority = messageTask.getPriority();
+    }
+
+    PriorityQueue<Entry> queue = _resourceQueues.get(resource);
+    if (queue == null) {
+      queue = new PriorityQueue<Entry>(11, ENTRY_COMPARATOR);
+      _resourceQueues.put(resource, queue);
+      _resourceOrder.add(resource);
+    }
+    queue.add(new Entry(task, priority, _sequence++));
+    _size++;
+    _notEmpty.signal();
+  }
+
+  private Runnable dequeue() {
+    String resource = selectResource();
+    PriorityQueue<Entry> queue = _resourceQueues.get(resource);
+    Entry entry = queue.poll();
+
+    // move the resource to the end of the round
+    _resourceOrder.remove(resource);
+    if (queue.isEmpty()) {
+      _resourceQueues.remove(resource);
+    } else {
+      _resourceOrder.add(resource);
+    }
+    _size--;
+    _notFull.signal();
+    return entry._task;
+  }
+
+  /**
+   * Select the first resource in serving order whose next task has the highest priority
+   */
+  private String selectResource() {
+    String selected = null;
+    int selectedPriority = 0;
+    for (String resource : _resourceOrder) {
+      int priority = _resourceQueues.get(resource).peek()._priority;
+      if (selected == null || priority < selectedPriority) {
+        selected = resource;
+        selectedPriority = priority;
+      }
+    }
+    return selected;
+  }
+
+  private static class Entry {
+    private final Runnable _task;
+    private final int _priority;
+    private final long _sequence;
+
+    Entry(Runnable task, int priority, long sequence) {
+      _task = task;
+      _priority = priority;
+      _sequence = sequence;
+    }
+  }
+}
@@ -45,7 +45,10 @@ public class ClusterConfig extends HelixProperty {
     STATE_TRANSITION_THROTTLE_CONFIGS,
     STATE_TRANSITION_CANCELLATION_ENABLED,
     BATCH_STATE_TRANSITION_MAX_THREADS,
-    MAX_CONCURRENT_TASK_PER_INSTANCE
+    BATCH_MESSAGE_CHUNK_SIZE, // number of partitions of a batch message handled by one task
+    BATCH_MESSAGE_CONCURRENCY, // max number of tasks of a batch message executed concurrently
+    MAX_CONCURRENT_TASK_PER_INSTANCE,
+    BEST_POSSIBLE_CALCULATION_THREADS // number of threads to compute best possible states with
   }
   private final static int DEFAULT_MAX_CONCURRENT_TASK_PER_INSTANCE = 40;
 
@@ -147,6 +150,64 @@ public class ClusterConfig extends HelixProperty {
     return _record.getIntField(ClusterConfigProperty.BATCH_STATE_TRANSITION_MAX_THREADS.name(), -1);
   }
 
+  /**
+   * Set the default number of partitions of a batch message handled by one task. It can be
+   * overridden in the resource config.
+   *
+   * @param chunkSize
+   */
+  public void setBatchMessageChunkSize(int chunkSize) {
+    _record.setIntField(ClusterConfigProperty.BATCH_MESSAGE_CHUNK_SIZE.name(), chunkSize);
+  }
+
+  /**
+   * Get the default number of partitions of a batch message handled by one task
+   *
+   * @return the chunk size, or -1 if not set
+   */
+  public int getBatchMessageChunkSize() {
+    return _record.getIntField(ClusterConfigProperty.BATCH_MESSAGE_CHUNK_SIZE.name(), -1);
+  }
+
+  /**
+   * Set the default max number of tasks of a batch message executed concurrently. It can be
+   * overridden in the resource config.
+   *
+   * @param concurrency
+   */
+  public void setBatchMessageConcurrency(int concurrency) {
+    _record.setIntField(ClusterConfigProperty.BATCH_MESSAGE_CONCURRENCY.name(), concurrency);
+  }
+
+  /**
+   * Get the default max number of tasks of a batch message executed concurrently
+   *
+   * @return the concurrency, or -1 if not set
+   */
+  public int getBatchMessageConcurrency() {
+    return _record.getIntField(ClusterConfigProperty.BATCH_MESSAGE_CONCURRENCY.name(), -1);
+  }
+
+  /**
+   * Set the number of threads the controller uses to compute the best possible states of
+   * resources concurrently. A value of 1 or less computes them serially.
+   *
+   * @param threads
+   */
+  public void setBestPossibleCalculationThreads(int threads) {
+    _record.setIntField(ClusterConfigProperty.BEST_POSSIBLE_CALCULATION_THREADS.name(), threads);
+  }
+
+  /**
+   * Get the number of threads the controller uses to compute the best possible states of
+   * resources concurrently.
+   *
+   * @return the number of threads, or -1 if not set
+   */
+  public int getBestPossibleCalculationThreads() {
+    return _record.getIntField(ClusterConfigProperty.BEST_POSSIBLE_CALCULATION_THREADS.name(), -1);
+  }
+
   /**
    * Get maximum allowed running task count on all instances in this cluster.
    * Instance level configuration will override cluster configuration.
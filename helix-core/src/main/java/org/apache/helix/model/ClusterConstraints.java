@@ -19,6 +19,8 @@ package org.apache.helix.model;
  * under the License.
  */
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -140,6 +142,14 @@ public class ClusterConstraints extends HelixProperty {
     return _constraints.get(constraintId);
   }
 
+  /**
+   * get all constraint-items
+   * @return the {@link ConstraintItem}s of these constraints
+   */
+  public Collection<ConstraintItem> getConstraintItems() {
+    return Collections.unmodifiableCollection(_constraints.values());
+  }
+
   /**
    * return a set of constraints that match the attribute pairs
    * @param attributes (constraint scope, constraint string) pairs
@@ -48,7 +48,9 @@ public class ResourceConfig extends HelixProperty {
     RESOURCE_GROUP_NAME,
     RESOURCE_TYPE,
     GROUP_ROUTING_ENABLED,
-    EXTERNAL_VIEW_DISABLED
+    EXTERNAL_VIEW_DISABLED,
+    BATCH_MESSAGE_CHUNK_SIZE,
+    BATCH_MESSAGE_CONCURRENCY
   }
 
   public enum ResourceConfigConstants {
@@ -279,6 +281,38 @@ public class ResourceConfig extends HelixProperty {
     return StateTransitionTimeoutConfig.fromRecord(_record);
   }
 
+  /**
+   * Set the number of partitions of a batch message handled by one task on the participant
+   * @param chunkSize
+   */
+  public void setBatchMessageChunkSize(int chunkSize) {
+    _record.setIntField(ResourceConfigProperty.BATCH_MESSAGE_CHUNK_SIZE.name(), chunkSize);
+  }
+
+  /**
+   * Get the number of partitions of a batch message handled by one task on the participant
+   * @return the chunk size, or -1 if not set
+   */
+  public int getBatchMessageChunkSize() {
+    return _record.getIntField(ResourceConfigProperty.BATCH_MESSAGE_CHUNK_SIZE.name(), -1);
+  }
+
+  /**
+   * Set the max number of tasks of a batch message executed concurrently on the participant
+   * @param concurrency
+   */
+  public void setBatchMessageConcurrency(int concurrency) {
+    _record.setIntField(ResourceConfigProperty.BATCH_MESSAGE_CONCURRENCY.name(), concurrency);
+  }
+
+  /**
+   * Get the max number of tasks of a batch message executed concurrently on the participant
+   * @return the concurrency, or -1 if not set
+   */
+  public int getBatchMessageConcurrency() {
+    return _record.getIntField(ResourceConfigProperty.BATCH_MESSAGE_CONCURRENCY.name(), -1);
+  }
+
   /**
    * Put a set of simple configs.
    *
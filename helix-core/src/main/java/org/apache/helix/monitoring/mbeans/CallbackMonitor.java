@@ -0,0 +1,212 @@
+package org.apache.helix.monitoring.mbeans;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.apache.helix.monitoring.StatCollector;
+import org.apache.log4j.Logger;
+
+public class CallbackMonitor implements CallbackMonitorMBean {
+  private static final Logger LOG = Logger.getLogger(CallbackMonitor.class);
+
+  private final String _clusterName;
+  private final String _listenerName;
+  private final AtomicLong _callbackCounter;
+  private final AtomicLong _receivedCounter;
+  private final AtomicLong _mergedCounter;
+  private final AtomicLong _queueLength;
+  private final AtomicLong _maxQueueLength;
+  private final StatCollector _queueTime;
+  private final StatCollector _callbackLatency;
+
+  /**
+   * @param clusterName
+   * @param listenerName name of the listener, unique in the process
+   */
+  public CallbackMonitor(String clusterName, String listenerName) {
+    _clusterName = clusterName;
+    _listenerName = listenerName;
+    _callbackCounter = new AtomicLong(0);
+    _receivedCounter = new AtomicLong(0);
+    _mergedCounter = new AtomicLong(0);
+    _queueLength = new AtomicLong(0);
+    _maxQueueLength = new AtomicLong(0);
+    _queueTime = new StatCollector();
+    _callbackLatency = new StatCollector();
+  }
+
+  /**
+   * Record a change notification received for the listener
+   */
+  public void increaseReceivedCounter() {
+    _receivedCounter.incrementAndGet();
+  }
+
+  /**
+   * Record a change notification merged into a pending callback
+   */
+  public void increaseMergedCounter() {
+    _mergedCounter.incrementAndGet();
+  }
+
+  /**
+   * Record a callback waiting for the listener
+   */
+  public void increaseQueueLength() {
+    long length = _queueLength.incrementAndGet();
+    long max = _maxQueueLength.get();
+    while (length > max && !_maxQueueLength.compareAndSet(max, length)) {
+      max = _maxQueueLength.get();
+    }
+  }
+
+  /**
+   * Record a waiting callback taken for invocation
+   */
+  public void decreaseQueueLength() {
+    _queueLength.decrementAndGet();
+  }
+
+  /**
+   * Record an invoked callback
+   * @param queueTimeMs time the callback waited before it was invoked
+   * @param latencyMs time the listener took to handle the callback
+   */
+  public void addCallback(long queueTimeMs, long latencyMs) {
+    _callbackCounter.incrementAndGet();
+    synchronized (_queueTime) {
+      _queueTime.addData(queueTimeMs);
+    }
+    synchronized (_callbackLatency) {
+      _callbackLatency.addData(latencyMs);
+    }
+  }
+
+  @Override
+  public long getCallbackCounter() {
+    return _callbackCounter.get();
+  }
+
+  @Override
+  public long getReceivedCounter() {
+    return _receivedCounter.get();
+  }
+
+  @Override
+  public long getMergedCounter() {
+    return _mergedCounter.get();
+  }
+
+  @Override
+  public long getQueueLength() {
+    return _queueLength.get();
+  }
+
+  @Override
+  public long getMaxQueueLength() {
+    return _maxQueueLength.get();
+  }
+
+  @Override
+  public long getMeanQueueTimeMs() {
+    synchronized (_queueTime) {
+      return (long) _queueTime.getMean();
+    }
+  }
+
+  @Override
+  public long getMaxQueueTimeMs() {
+    synchronized (_queueTime) {
+      return _queueTime.getNumDataPoints() == 0 ? 0 : (long) _queueTime.getMax();
+    }
+  }
+
+  @Override
+  public long getMeanCallbackLatencyMs() {
+    synchronized (_callbackLatency) {
+      return (long) _callbackLatency.getMean();
+    }
+  }
+
+  @Override
+  public long getMaxCallbackLatencyMs() {
+    synchronized (_callbackLatency) {
+      return _callbackLatency.getNumDataPoints() == 0 ? 0 : (long) _callbackLatency.getMax();
+    }
+  }
+
+  @Override
+  public long get95CallbackLatencyMs() {
+    synchronized (_callbackLatency) {
+      return (long) _callbackLatency.getPercentile(95);
+    }
+  }
+
+  @Override
+  public String getSensorName() {
+    return ClusterStatusMonitor.CALLBACK_STATUS_KEY + "." + _clusterName + "." + _listenerName;
+  }
+
+  /**
+   * Register this bean with the server
+   */
+  public void init() {
+    try {
+      ObjectName objectName = getObjectName();
+      MBeanServer beanServer = ManagementFactory.getPlatformMBeanServer();
+      if (beanServer.isRegistered(objectName)) {
+        beanServer.unregisterMBean(objectName);
+      }
+      LOG.info("Register MBean: " + objectName);
+      beanServer.registerMBean(this, objectName);
+    } catch (Exception e) {
+      LOG.warn("Could not register CallbackMonitor: " + _listenerName, e);
+    }
+  }
+
+  /**
+   * Remove this bean from the server
+   */
+  public void reset() {
+    try {
+      ObjectName objectName = getObjectName();
+      MBeanServer beanServer = ManagementFactory.getPlatformMBeanServer();
+      if (beanServer.isRegistered(objectName)) {
+        LOG.info("Unregistering " + objectName);
+        beanServer.unregisterMBean(objectName);
+      }
+    } catch (Exception e) {
+      LOG.warn("Could not unregister CallbackMonitor: " + _listenerName, e);
+    }
+  }
+
+  private ObjectName getObjectName() throws MalformedObjectNameException {
+    return new ObjectName(String.format("%s: %s=%s,%s=%s",
+        ClusterStatusMonitor.CALLBACK_DOMAIN, ClusterStatusMonitor.CLUSTER_DN_KEY,
+        ObjectName.quote(_clusterName), ClusterStatusMonitor.CALLBACK_DN_KEY,
+        ObjectName.quote(_listenerName)));
+  }
+}
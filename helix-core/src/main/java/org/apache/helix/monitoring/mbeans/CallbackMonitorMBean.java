@@ -0,0 +1,84 @@
+package org.apache.helix.monitoring.mbeans;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.helix.monitoring.SensorNameProvider;
+
+public interface CallbackMonitorMBean extends SensorNameProvider {
+  /**
+   * Get the number of callbacks invoked on the listener
+   * @return
+   */
+  public long getCallbackCounter();
+
+  /**
+   * Get the number of change notifications received for the listener
+   * @return
+   */
+  public long getReceivedCounter();
+
+  /**
+   * Get the number of change notifications merged into a pending callback in batch mode
+   * @return
+   */
+  public long getMergedCounter();
+
+  /**
+   * Get the number of callbacks waiting for the listener
+   * @return
+   */
+  public long getQueueLength();
+
+  /**
+   * Get the max number of callbacks that waited for the listener at the same time
+   * @return
+   */
+  public long getMaxQueueLength();
+
+  /**
+   * Get the mean time a callback waited before it was invoked
+   * @return
+   */
+  public long getMeanQueueTimeMs();
+
+  /**
+   * Get the max time a callback waited before it was invoked
+   * @return
+   */
+  public long getMaxQueueTimeMs();
+
+  /**
+   * Get the mean time the listener took to handle a callback
+   * @return
+   */
+  public long getMeanCallbackLatencyMs();
+
+  /**
+   * Get the max time the listener took to handle a callback
+   * @return
+   */
+  public long getMaxCallbackLatencyMs();
+
+  /**
+   * Get the 95th percentile of the time the listener took to handle a callback
+   * @return
+   */
+  public long get95CallbackLatencyMs();
+}
@@ -0,0 +1,176 @@
+package org.apache.helix.monitoring.mbeans;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.apache.helix.monitoring.StatCollector;
+import org.apache.log4j.Logger;
+
+public class ClusterEventQueueMonitor implements ClusterEventQueueMonitorMBean {
+  private static final Logger LOG = Logger.getLogger(ClusterEventQueueMonitor.class);
+
+  private final String _clusterName;
+  private final MBeanServer _beanServer;
+  private final StatCollector _eventWaitTime;
+  private final AtomicLong _coalescedEventCounter;
+  private volatile long _eventQueueSize;
+
+  public ClusterEventQueueMonitor(String clusterName) {
+    _clusterName = clusterName;
+    _beanServer = ManagementFactory.getPlatformMBeanServer();
+    _eventWaitTime = new StatCollector();
+    _coalescedEventCounter = new AtomicLong(0);
+    _eventQueueSize = 0;
+  }
+
+  /**
+   * Set the current number of queued events
+   * @param size the event queue size
+   */
+  public void setQueueSize(long size) {
+    _eventQueueSize = size;
+  }
+
+  /**
+   * Record how long an event waited in the queue
+   * @param waitTimeMs time in milliseconds
+   */
+  public void addEventWaitTime(long waitTimeMs) {
+    synchronized (_eventWaitTime) {
+      _eventWaitTime.addData(waitTimeMs);
+    }
+  }
+
+  /**
+   * Record events that were merged into another event
+   * @param count number of coalesced events
+   */
+  public void increaseCoalescedEventCount(long count) {
+    if (count > 0) {
+      _coalescedEventCounter.addAndGet(count);
+    }
+  }
+
+  @Override
+  public long getEventQueueSize() {
+    return _eventQueueSize;
+  }
+
+  @Override
+  public long getMaxEventWaitTimeMs() {
+    synchronized (_eventWaitTime) {
+      return (long) _eventWaitTime.getMax();
+    }
+  }
+
+  @Override
+  public long getMeanEventWaitTimeMs() {
+    synchronized (_eventWaitTime) {
+      return (long) _eventWaitTime.getMean();
+    }
+  }
+
+  @Override
+  public long get95EventWaitTimeMs() {
+    synchronized (_eventWaitTime) {
+      return (long) _eventWaitTime.getPercentile(95);
+    }
+  }
+
+  @Override
+  public long getCoalescedEventCounter() {
+    return _coalescedEventCounter.get();
+  }
+
+  /**
+   * Register this bean with the server
+   */
+  public void init() {
+    try {
+      register(this, getObjectName(getBeanName()));
+    } catch (Exception e) {
+      LOG.error("Fail to register ClusterEventQueueMonitor", e);
+    }
+  }
+
+  /**
+   * Remove this bean from the server
+   */
+  public void reset() {
+    synchronized (_eventWaitTime) {
+      _eventWaitTime.reset();
+    }
+    _coalescedEventCounter.set(0);
+    _eventQueueSize = 0;
+    try {
+      unregister(getObjectName(getBeanName()));
+    } catch (Exception e) {
+      LOG.error("Fail to unregister ClusterEventQueueMonitor", e);
+    }
+  }
+
+  @Override
+  public String getSensorName() {
+    return ClusterStatusMonitor.EVENT_QUEUE_STATUS_KEY + "." + _clusterName;
+  }
+
+  private void register(Object bean, ObjectName name) {
+    try {
+      if (_beanServer.isRegistered(name)) {
+        _beanServer.unregisterMBean(name);
+      }
+    } catch (Exception e) {
+      // OK
+    }
+
+    try {
+      LOG.info("Register MBean: " + name);
+      _beanServer.registerMBean(bean, name);
+    } catch (Exception e) {
+      LOG.warn("Could not register MBean: " + name, e);
+    }
+  }
+
+  private void unregister(ObjectName name) {
+    try {
+      if (_beanServer.isRegistered(name)) {
+        LOG.info("Unregistering " + name.toString());
+        _beanServer.unregisterMBean(name);
+      }
+    } catch (Exception e) {
+      LOG.warn("Could not unregister MBean: " + name, e);
+    }
+  }
+
+  private String getBeanName() {
+    return String.format("%s=%s,%s=%s", ClusterStatusMonitor.CLUSTER_DN_KEY, _clusterName,
+        ClusterStatusMonitor.EVENT_QUEUE_DN_KEY, "controller");
+  }
+
+  public ObjectName getObjectName(String name) throws MalformedObjectNameException {
+    return new ObjectName(String.format("%s: %s", ClusterStatusMonitor.EVENT_QUEUE_DOMAIN, name));
+  }
+}
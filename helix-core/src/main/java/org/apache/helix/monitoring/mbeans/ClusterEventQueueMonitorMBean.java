@@ -0,0 +1,54 @@
+package org.apache.helix.monitoring.mbeans;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.helix.monitoring.SensorNameProvider;
+
+public interface ClusterEventQueueMonitorMBean extends SensorNameProvider {
+  /**
+   * Get the number of events waiting in the controller event queue
+   * @return
+   */
+  public long getEventQueueSize();
+
+  /**
+   * Get the max time an event waited in the queue before being processed
+   * @return
+   */
+  public long getMaxEventWaitTimeMs();
+
+  /**
+   * Get the mean time an event waited in the queue before being processed
+   * @return
+   */
+  public long getMeanEventWaitTimeMs();
+
+  /**
+   * Get the 95th percentile of the time an event waited in the queue before being processed
+   * @return
+   */
+  public long get95EventWaitTimeMs();
+
+  /**
+   * Get the number of events that were merged into another event instead of being processed
+   * @return
+   */
+  public long getCoalescedEventCounter();
+}
@@ -56,13 +56,32 @@ public class ClusterStatusMonitor implements ClusterStatusMonitorMBean {
   private static final Logger LOG = Logger.getLogger(ClusterStatusMonitor.class);
 
   public static final String CLUSTER_STATUS_KEY = "ClusterStatus";
+  // monitors of helix internals have their own domains, apart from the cluster status beans
+  public static final String EVENT_QUEUE_DOMAIN = "HelixEventQueue";
+  public static final String ROUTING_TABLE_DOMAIN = "HelixRoutingTableProvider";
+  public static final String THREAD_POOL_EXECUTOR_DOMAIN = "HelixThreadPoolExecutor";
+  public static final String CURRENT_STATE_WRITER_DOMAIN = "HelixCurrentStateWriter";
+  public static final String GROUP_COMMIT_DOMAIN = "HelixGroupCommit";
+  public static final String CALLBACK_DOMAIN = "HelixCallback";
   static final String MESSAGE_QUEUE_STATUS_KEY = "MessageQueueStatus";
+  static final String EVENT_QUEUE_STATUS_KEY = "EventQueueStatus";
+  static final String ROUTING_TABLE_STATUS_KEY = "RoutingTableStatus";
+  static final String THREAD_POOL_STATUS_KEY = "ThreadPoolStatus";
+  static final String CURRENT_STATE_WRITER_STATUS_KEY = "CurrentStateWriterStatus";
+  static final String GROUP_COMMIT_STATUS_KEY = "GroupCommitStatus";
+  static final String CALLBACK_STATUS_KEY = "CallbackStatus";
   static final String RESOURCE_STATUS_KEY = "ResourceStatus";
   public static final String PARTICIPANT_STATUS_KEY = "ParticipantStatus";
   static final String CLUSTER_DN_KEY = "cluster";
   static final String RESOURCE_DN_KEY = "resourceName";
   static final String INSTANCE_DN_KEY = "instanceName";
   static final String MESSAGE_QUEUE_DN_KEY = "messageQueue";
+  static final String EVENT_QUEUE_DN_KEY = "eventQueue";
+  static final String ROUTING_TABLE_DN_KEY = "routingTable";
+  static final String THREAD_POOL_DN_KEY = "threadPool";
+  static final String CURRENT_STATE_WRITER_DN_KEY = "currentStateWriter";
+  static final String GROUP_COMMIT_DN_KEY = "groupCommit";
+  static final String CALLBACK_DN_KEY = "listener";
   static final String WORKFLOW_TYPE_DN_KEY = "workflowType";
   static final String JOB_TYPE_DN_KEY = "jobType";
   static final String DEFAULT_WORKFLOW_JOB_TYPE = "DEFAULT";
@@ -0,0 +1,200 @@
+package org.apache.helix.monitoring.mbeans;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.apache.helix.monitoring.StatCollector;
+import org.apache.log4j.Logger;
+
+public class CurrentStateWriterMonitor implements CurrentStateWriterMonitorMBean {
+  private static final Logger LOG = Logger.getLogger(CurrentStateWriterMonitor.class);
+
+  private final String _clusterName;
+  private final String _instanceName;
+  private final MBeanServer _beanServer;
+  private final StatCollector _writeLatency;
+  private final AtomicLong _updateCounter;
+  private final AtomicLong _writeCounter;
+  private final AtomicLong _failedWriteCounter;
+  private final AtomicLong _versionConflictCounter;
+  private volatile long _maxBatchSize;
+
+  public CurrentStateWriterMonitor(String clusterName, String instanceName) {
+    _clusterName = clusterName;
+    _instanceName = instanceName;
+    _beanServer = ManagementFactory.getPlatformMBeanServer();
+    _writeLatency = new StatCollector();
+    _updateCounter = new AtomicLong(0);
+    _writeCounter = new AtomicLong(0);
+    _failedWriteCounter = new AtomicLong(0);
+    _versionConflictCounter = new AtomicLong(0);
+    _maxBatchSize = 0;
+  }
+
+  /**
+   * Record a zookeeper write of merged current state updates
+   * @param batchSize number of updates merged into the write
+   * @param latencyMs time from the first update of the batch until the write finished
+   * @param success whether the write succeeded
+   */
+  public void addWrite(int batchSize, long latencyMs, boolean success) {
+    _updateCounter.addAndGet(batchSize);
+    _writeCounter.incrementAndGet();
+    if (!success) {
+      _failedWriteCounter.incrementAndGet();
+    }
+    if (batchSize > _maxBatchSize) {
+      _maxBatchSize = batchSize;
+    }
+    synchronized (_writeLatency) {
+      _writeLatency.addData(latencyMs);
+    }
+  }
+
+  /**
+   * Record a write retried on a version conflict
+   */
+  public void incrementVersionConflictCounter() {
+    _versionConflictCounter.incrementAndGet();
+  }
+
+  @Override
+  public long getUpdateCounter() {
+    return _updateCounter.get();
+  }
+
+  @Override
+  public long getWriteCounter() {
+    return _writeCounter.get();
+  }
+
+  @Override
+  public long getFailedWriteCounter() {
+    return _failedWriteCounter.get();
+  }
+
+  @Override
+  public long getVersionConflictCounter() {
+    return _versionConflictCounter.get();
+  }
+
+  @Override
+  public double getMergeRatio() {
+    long writes = _writeCounter.get();
+    return writes == 0 ? 0 : (double) _updateCounter.get() / writes;
+  }
+
+  @Override
+  public long getMaxBatchSize() {
+    return _maxBatchSize;
+  }
+
+  @Override
+  public long getMaxWriteLatencyMs() {
+    synchronized (_writeLatency) {
+      return _writeLatency.getNumDataPoints() == 0 ? 0 : (long) _writeLatency.getMax();
+    }
+  }
+
+  @Override
+  public long getMeanWriteLatencyMs() {
+    synchronized (_writeLatency) {
+      return (long) _writeLatency.getMean();
+    }
+  }
+
+  @Override
+  public long get95WriteLatencyMs() {
+    synchronized (_writeLatency) {
+      return (long) _writeLatency.getPercentile(95);
+    }
+  }
+
+  /**
+   * Register this bean with the server
+   */
+  public void init() {
+    try {
+      register(this, getObjectName(getBeanName()));
+    } catch (Exception e) {
+      LOG.error("Fail to register CurrentStateWriterMonitor", e);
+    }
+  }
+
+  /**
+   * Remove this bean from the server
+   */
+  public void reset() {
+    try {
+      unregister(getObjectName(getBeanName()));
+    } catch (Exception e) {
+      LOG.error("Fail to unregister CurrentStateWriterMonitor", e);
+    }
+  }
+
+  @Override
+  public String getSensorName() {
+    return ClusterStatusMonitor.CURRENT_STATE_WRITER_STATUS_KEY + "." + _clusterName + "."
+        + _instanceName;
+  }
+
+  private void register(Object bean, ObjectName name) {
+    try {
+      if (_beanServer.isRegistered(name)) {
+        _beanServer.unregisterMBean(name);
+      }
+    } catch (Exception e) {
+      // OK
+    }
+
+    try {
+      LOG.info("Register MBean: " + name);
+      _beanServer.registerMBean(bean, name);
+    } catch (Exception e) {
+      LOG.warn("Could not register MBean: " + name, e);
+    }
+  }
+
+  private void unregister(ObjectName name) {
+    try {
+      if (_beanServer.isRegistered(name)) {
+        LOG.info("Unregistering " + name.toString());
+        _beanServer.unregisterMBean(name);
+      }
+    } catch (Exception e) {
+      LOG.warn("Could not unregister MBean: " + name, e);
+    }
+  }
+
+  private String getBeanName() {
+    return String.format("%s=%s,%s=%s", ClusterStatusMonitor.CLUSTER_DN_KEY, _clusterName,
+        ClusterStatusMonitor.CURRENT_STATE_WRITER_DN_KEY, _instanceName);
+  }
+
+  public ObjectName getObjectName(String name) throws MalformedObjectNameException {
+    return new ObjectName(String.format("%s: %s", ClusterStatusMonitor.CURRENT_STATE_WRITER_DOMAIN, name));
+  }
+}
@@ -0,0 +1,78 @@
+package org.apache.helix.monitoring.mbeans;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.helix.monitoring.SensorNameProvider;
+
+public interface CurrentStateWriterMonitorMBean extends SensorNameProvider {
+  /**
+   * Get the number of current state updates submitted to the writer
+   * @return
+   */
+  public long getUpdateCounter();
+
+  /**
+   * Get the number of zookeeper writes the updates were merged into
+   * @return
+   */
+  public long getWriteCounter();
+
+  /**
+   * Get the number of failed zookeeper writes
+   * @return
+   */
+  public long getFailedWriteCounter();
+
+  /**
+   * Get the number of writes retried because the current state changed concurrently
+   * @return
+   */
+  public long getVersionConflictCounter();
+
+  /**
+   * Get the average number of updates merged into one write
+   * @return
+   */
+  public double getMergeRatio();
+
+  /**
+   * Get the max number of updates merged into one write
+   * @return
+   */
+  public long getMaxBatchSize();
+
+  /**
+   * Get the max time from the first update of a batch until it was written
+   * @return
+   */
+  public long getMaxWriteLatencyMs();
+
+  /**
+   * Get the mean time from the first update of a batch until it was written
+   * @return
+   */
+  public long getMeanWriteLatencyMs();
+
+  /**
+   * Get the 95th percentile of the time from the first update of a batch until it was written
+   * @return
+   */
+  public long get95WriteLatencyMs();
+}
@@ -0,0 +1,193 @@
+package org.apache.helix.monitoring.mbeans;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.apache.helix.monitoring.StatCollector;
+import org.apache.log4j.Logger;
+
+public class GroupCommitMonitor implements GroupCommitMonitorMBean {
+  private static final Logger LOG = Logger.getLogger(GroupCommitMonitor.class);
+
+  private final StatCollector _commitLatency;
+  private final AtomicLong _batchCounter;
+  private final AtomicLong _batchedWriteCounter;
+  private final AtomicLong _writeCounter;
+  private final AtomicLong _failedWriteCounter;
+  private final AtomicLong _updateCounter;
+  private final AtomicLong _retryCounter;
+  private volatile String _name;
+
+  public GroupCommitMonitor() {
+    _commitLatency = new StatCollector();
+    _batchCounter = new AtomicLong(0);
+    _batchedWriteCounter = new AtomicLong(0);
+    _writeCounter = new AtomicLong(0);
+    _failedWriteCounter = new AtomicLong(0);
+    _updateCounter = new AtomicLong(0);
+    _retryCounter = new AtomicLong(0);
+  }
+
+  /**
+   * Record an async batch
+   * @param numWrites number of znodes written in the batch
+   */
+  public void addBatch(int numWrites) {
+    _batchCounter.incrementAndGet();
+    _batchedWriteCounter.addAndGet(numWrites);
+  }
+
+  /**
+   * Record a znode write
+   * @param numUpdates number of updates merged into the write
+   * @param retries number of retries on version conflicts
+   * @param success whether the write succeeded
+   */
+  public void addWrite(int numUpdates, int retries, boolean success) {
+    _writeCounter.incrementAndGet();
+    _updateCounter.addAndGet(numUpdates);
+    _retryCounter.addAndGet(retries);
+    if (!success) {
+      _failedWriteCounter.incrementAndGet();
+    }
+  }
+
+  /**
+   * Record the time from submitting an update until it is committed
+   * @param latencyMs
+   */
+  public void addCommitLatency(long latencyMs) {
+    synchronized (_commitLatency) {
+      _commitLatency.addData(latencyMs);
+    }
+  }
+
+  @Override
+  public long getBatchCounter() {
+    return _batchCounter.get();
+  }
+
+  @Override
+  public double getMeanBatchSize() {
+    long batches = _batchCounter.get();
+    return batches == 0 ? 0 : (double) _batchedWriteCounter.get() / batches;
+  }
+
+  @Override
+  public long getWriteCounter() {
+    return _writeCounter.get();
+  }
+
+  @Override
+  public long getFailedWriteCounter() {
+    return _failedWriteCounter.get();
+  }
+
+  @Override
+  public long getUpdateCounter() {
+    return _updateCounter.get();
+  }
+
+  @Override
+  public double getMergeRatio() {
+    long writes = _writeCounter.get();
+    return writes == 0 ? 0 : (double) _updateCounter.get() / writes;
+  }
+
+  @Override
+  public long getRetryCounter() {
+    return _retryCounter.get();
+  }
+
+  @Override
+  public long getMaxCommitLatencyMs() {
+    synchronized (_commitLatency) {
+      return _commitLatency.getNumDataPoints() == 0 ? 0 : (long) _commitLatency.getMax();
+    }
+  }
+
+  @Override
+  public long getMeanCommitLatencyMs() {
+    synchronized (_commitLatency) {
+      return (long) _commitLatency.getMean();
+    }
+  }
+
+  @Override
+  public long get95CommitLatencyMs() {
+    synchronized (_commitLatency) {
+      return (long) _commitLatency.getPercentile(95);
+    }
+  }
+
+  @Override
+  public String getSensorName() {
+    return ClusterStatusMonitor.GROUP_COMMIT_STATUS_KEY + "." + _name;
+  }
+
+  /**
+   * Register this bean with the server
+   * @param name name of the group commit, e.g. the root path of the accessor using it
+   */
+  public void init(String name) {
+    _name = name;
+    try {
+      ObjectName objectName = getObjectName();
+      MBeanServer beanServer = ManagementFactory.getPlatformMBeanServer();
+      if (beanServer.isRegistered(objectName)) {
+        beanServer.unregisterMBean(objectName);
+      }
+      LOG.info("Register MBean: " + objectName);
+      beanServer.registerMBean(this, objectName);
+    } catch (Exception e) {
+      LOG.warn("Could not register GroupCommitMonitor: " + name, e);
+    }
+  }
+
+  /**
+   * Remove this bean from the server
+   */
+  public void reset() {
+    if (_name == null) {
+      return;
+    }
+    try {
+      ObjectName objectName = getObjectName();
+      MBeanServer beanServer = ManagementFactory.getPlatformMBeanServer();
+      if (beanServer.isRegistered(objectName)) {
+        LOG.info("Unregistering " + objectName);
+        beanServer.unregisterMBean(objectName);
+      }
+    } catch (Exception e) {
+      LOG.warn("Could not unregister GroupCommitMonitor: " + _name, e);
+    }
+  }
+
+  private ObjectName getObjectName() throws MalformedObjectNameException {
+    return new ObjectName(String.format("%s: %s=%s", ClusterStatusMonitor.GROUP_COMMIT_DOMAIN,
+        ClusterStatusMonitor.GROUP_COMMIT_DN_KEY, ObjectName.quote(_name)));
+  }
+}
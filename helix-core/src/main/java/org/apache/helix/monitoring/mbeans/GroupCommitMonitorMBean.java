@@ -0,0 +1,84 @@
+package org.apache.helix.monitoring.mbeans;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.helix.monitoring.SensorNameProvider;
+
+public interface GroupCommitMonitorMBean extends SensorNameProvider {
+  /**
+   * Get the number of async batches committed by group commit leaders
+   * @return
+   */
+  public long getBatchCounter();
+
+  /**
+   * Get the average number of znodes written in one batch
+   * @return
+   */
+  public double getMeanBatchSize();
+
+  /**
+   * Get the number of znode writes
+   * @return
+   */
+  public long getWriteCounter();
+
+  /**
+   * Get the number of failed znode writes
+   * @return
+   */
+  public long getFailedWriteCounter();
+
+  /**
+   * Get the number of updates committed
+   * @return
+   */
+  public long getUpdateCounter();
+
+  /**
+   * Get the average number of updates merged into one znode write
+   * @return
+   */
+  public double getMergeRatio();
+
+  /**
+   * Get the number of znode writes retried because of a version conflict
+   * @return
+   */
+  public long getRetryCounter();
+
+  /**
+   * Get the max time from submitting an update until it is committed
+   * @return
+   */
+  public long getMaxCommitLatencyMs();
+
+  /**
+   * Get the mean time from submitting an update until it is committed
+   * @return
+   */
+  public long getMeanCommitLatencyMs();
+
+  /**
+   * Get the 95th percentile of the time from submitting an update until it is committed
+   * @return
+   */
+  public long get95CommitLatencyMs();
+}
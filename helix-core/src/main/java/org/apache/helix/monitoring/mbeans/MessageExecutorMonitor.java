@@ -0,0 +1,199 @@
+package org.apache.helix.monitoring.mbeans;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.apache.helix.monitoring.StatCollector;
+import org.apache.log4j.Logger;
+
+/**
+ * Gauges of one thread pool a participant uses to execute messages
+ */
+public class MessageExecutorMonitor implements MessageExecutorMonitorMBean {
+  private static final Logger LOG = Logger.getLogger(MessageExecutorMonitor.class);
+
+  private final String _clusterName;
+  private final String _instanceName;
+  private final String _poolName;
+  private final ThreadPoolExecutor _executor;
+  private final MBeanServer _beanServer;
+  private final StatCollector _queueingDelay;
+  private final AtomicLong _rejectedTaskCounter;
+
+  public MessageExecutorMonitor(String clusterName, String instanceName, String poolName,
+      ThreadPoolExecutor executor) {
+    _clusterName = clusterName;
+    _instanceName = instanceName;
+    _poolName = poolName;
+    _executor = executor;
+    _beanServer = ManagementFactory.getPlatformMBeanServer();
+    _queueingDelay = new StatCollector();
+    _rejectedTaskCounter = new AtomicLong(0);
+  }
+
+  /**
+   * Get the thread pool this monitor reports on
+   * @return
+   */
+  public ThreadPoolExecutor getExecutor() {
+    return _executor;
+  }
+
+  /**
+   * Record the time a task waited in the queue before it started
+   * @param delayMs queueing delay in milliseconds
+   */
+  public void addQueueingDelay(long delayMs) {
+    synchronized (_queueingDelay) {
+      _queueingDelay.addData(delayMs);
+    }
+  }
+
+  /**
+   * Record a task rejected by the thread pool
+   */
+  public void incrementRejectedTaskCounter() {
+    _rejectedTaskCounter.incrementAndGet();
+  }
+
+  @Override
+  public long getQueueDepth() {
+    return _executor.getQueue().size();
+  }
+
+  @Override
+  public long getQueueRemainingCapacity() {
+    return _executor.getQueue().remainingCapacity();
+  }
+
+  @Override
+  public long getActiveThreadCount() {
+    return _executor.getActiveCount();
+  }
+
+  @Override
+  public long getPoolSize() {
+    return _executor.getPoolSize();
+  }
+
+  @Override
+  public long getCompletedTaskCount() {
+    return _executor.getCompletedTaskCount();
+  }
+
+  @Override
+  public long getRejectedTaskCount() {
+    return _rejectedTaskCounter.get();
+  }
+
+  @Override
+  public long getMaxQueueingDelayMs() {
+    synchronized (_queueingDelay) {
+      return _queueingDelay.getNumDataPoints() == 0 ? 0 : (long) _queueingDelay.getMax();
+    }
+  }
+
+  @Override
+  public long getMeanQueueingDelayMs() {
+    synchronized (_queueingDelay) {
+      return (long) _queueingDelay.getMean();
+    }
+  }
+
+  @Override
+  public long get95QueueingDelayMs() {
+    synchronized (_queueingDelay) {
+      return (long) _queueingDelay.getPercentile(95);
+    }
+  }
+
+  /**
+   * Register this bean with the server
+   */
+  public void init() {
+    try {
+      register(this, getObjectName(getBeanName()));
+    } catch (Exception e) {
+      LOG.error("Fail to register MessageExecutorMonitor", e);
+    }
+  }
+
+  /**
+   * Remove this bean from the server
+   */
+  public void reset() {
+    try {
+      unregister(getObjectName(getBeanName()));
+    } catch (Exception e) {
+      LOG.error("Fail to unregister MessageExecutorMonitor", e);
+    }
+  }
+
+  @Override
+  public String getSensorName() {
+    return ClusterStatusMonitor.THREAD_POOL_STATUS_KEY + "." + _clusterName + "." + _instanceName
+        + "." + _poolName;
+  }
+
+  private void register(Object bean, ObjectName name) {
+    try {
+      if (_beanServer.isRegistered(name)) {
+        _beanServer.unregisterMBean(name);
+      }
+    } catch (Exception e) {
+      // OK
+    }
+
+    try {
+      LOG.info("Register MBean: " + name);
+      _beanServer.registerMBean(bean, name);
+    } catch (Exception e) {
+      LOG.warn("Could not register MBean: " + name, e);
+    }
+  }
+
+  private void unregister(ObjectName name) {
+    try {
+      if (_beanServer.isRegistered(name)) {
+        LOG.info("Unregistering " + name.toString());
+        _beanServer.unregisterMBean(name);
+      }
+    } catch (Exception e) {
+      LOG.warn("Could not unregister MBean: " + name, e);
+    }
+  }
+
+  private String getBeanName() {
+    return String.format("%s=%s,%s=%s,%s=%s", ClusterStatusMonitor.CLUSTER_DN_KEY, _clusterName,
+        ClusterStatusMonitor.INSTANCE_DN_KEY, _instanceName,
+        ClusterStatusMonitor.THREAD_POOL_DN_KEY, _poolName);
+  }
+
+  public ObjectName getObjectName(String name) throws MalformedObjectNameException {
+    return new ObjectName(String.format("%s: %s", ClusterStatusMonitor.THREAD_POOL_EXECUTOR_DOMAIN, name));
+  }
+}
@@ -0,0 +1,78 @@
+package org.apache.helix.monitoring.mbeans;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.helix.monitoring.SensorNameProvider;
+
+public interface MessageExecutorMonitorMBean extends SensorNameProvider {
+  /**
+   * Get the number of tasks waiting in the queue of the thread pool
+   * @return
+   */
+  public long getQueueDepth();
+
+  /**
+   * Get the number of tasks the queue of the thread pool can still accept
+   * @return
+   */
+  public long getQueueRemainingCapacity();
+
+  /**
+   * Get the number of threads actively executing tasks
+   * @return
+   */
+  public long getActiveThreadCount();
+
+  /**
+   * Get the current number of threads in the thread pool
+   * @return
+   */
+  public long getPoolSize();
+
+  /**
+   * Get the number of tasks the thread pool has completed
+   * @return
+   */
+  public long getCompletedTaskCount();
+
+  /**
+   * Get the number of tasks rejected because the queue of the thread pool was full
+   * @return
+   */
+  public long getRejectedTaskCount();
+
+  /**
+   * Get the max time a task waited in the queue before it started
+   * @return
+   */
+  public long getMaxQueueingDelayMs();
+
+  /**
+   * Get the mean time a task waited in the queue before it started
+   * @return
+   */
+  public long getMeanQueueingDelayMs();
+
+  /**
+   * Get the 95th percentile of the time a task waited in the queue before it started
+   * @return
+   */
+  public long get95QueueingDelayMs();
+}
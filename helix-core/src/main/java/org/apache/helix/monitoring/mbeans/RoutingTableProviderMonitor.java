@@ -0,0 +1,183 @@
+package org.apache.helix.monitoring.mbeans;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.apache.helix.monitoring.StatCollector;
+import org.apache.log4j.Logger;
+
+public class RoutingTableProviderMonitor implements RoutingTableProviderMonitorMBean {
+  private static final Logger LOG = Logger.getLogger(RoutingTableProviderMonitor.class);
+
+  private final String _clusterName;
+  private final String _instanceName;
+  private final MBeanServer _beanServer;
+  private final StatCollector _refreshLatency;
+  private final AtomicLong _refreshCounter;
+  private final AtomicLong _changedResourceCounter;
+  private volatile long _snapshotVersion;
+  private volatile long _resourceCount;
+  private volatile long _lastRefreshLatencyMs;
+
+  public RoutingTableProviderMonitor(String clusterName, String instanceName) {
+    _clusterName = clusterName;
+    _instanceName = instanceName;
+    _beanServer = ManagementFactory.getPlatformMBeanServer();
+    _refreshLatency = new StatCollector();
+    _refreshCounter = new AtomicLong(0);
+    _changedResourceCounter = new AtomicLong(0);
+  }
+
+  /**
+   * Record a routing table refresh
+   * @param snapshotVersion version of the routing table after the refresh
+   * @param resourceCount number of resources in the routing table
+   * @param changedResourceCount number of resources rebuilt by the refresh
+   * @param latencyMs time in milliseconds the refresh took
+   */
+  public void addRefresh(long snapshotVersion, long resourceCount, long changedResourceCount,
+      long latencyMs) {
+    _snapshotVersion = snapshotVersion;
+    _resourceCount = resourceCount;
+    _lastRefreshLatencyMs = latencyMs;
+    _refreshCounter.incrementAndGet();
+    _changedResourceCounter.addAndGet(changedResourceCount);
+    synchronized (_refreshLatency) {
+      _refreshLatency.addData(latencyMs);
+    }
+  }
+
+  @Override
+  public long getSnapshotVersion() {
+    return _snapshotVersion;
+  }
+
+  @Override
+  public long getResourceCount() {
+    return _resourceCount;
+  }
+
+  @Override
+  public long getRefreshCounter() {
+    return _refreshCounter.get();
+  }
+
+  @Override
+  public long getChangedResourceCounter() {
+    return _changedResourceCounter.get();
+  }
+
+  @Override
+  public long getLastRefreshLatencyMs() {
+    return _lastRefreshLatencyMs;
+  }
+
+  @Override
+  public long getMaxRefreshLatencyMs() {
+    synchronized (_refreshLatency) {
+      return (long) _refreshLatency.getMax();
+    }
+  }
+
+  @Override
+  public long getMeanRefreshLatencyMs() {
+    synchronized (_refreshLatency) {
+      return (long) _refreshLatency.getMean();
+    }
+  }
+
+  @Override
+  public long get95RefreshLatencyMs() {
+    synchronized (_refreshLatency) {
+      return (long) _refreshLatency.getPercentile(95);
+    }
+  }
+
+  /**
+   * Register this bean with the server
+   */
+  public void init() {
+    try {
+      register(this, getObjectName(getBeanName()));
+    } catch (Exception e) {
+      LOG.error("Fail to register RoutingTableProviderMonitor", e);
+    }
+  }
+
+  /**
+   * Remove this bean from the server
+   */
+  public void reset() {
+    try {
+      unregister(getObjectName(getBeanName()));
+    } catch (Exception e) {
+      LOG.error("Fail to unregister RoutingTableProviderMonitor", e);
+    }
+  }
+
+  @Override
+  public String getSensorName() {
+    return ClusterStatusMonitor.ROUTING_TABLE_STATUS_KEY + "." + _clusterName + "."
+        + _instanceName;
+  }
+
+  private void register(Object bean, ObjectName name) {
+    try {
+      if (_beanServer.isRegistered(name)) {
+        _beanServer.unregisterMBean(name);
+      }
+    } catch (Exception e) {
+      // OK
+    }
+
+    try {
+      LOG.info("Register MBean: " + name);
+      _beanServer.registerMBean(bean, name);
+    } catch (Exception e) {
+      LOG.warn("Could not register MBean: " + name, e);
+    }
+  }
+
+  private void unregister(ObjectName name) {
+    try {
+      if (_beanServer.isRegistered(name)) {
+        LOG.info("Unregistering " + name.toString());
+        _beanServer.unregisterMBean(name);
+      }
+    } catch (Exception e) {
+      LOG.warn("Could not unregister MBean: " + name, e);
+    }
+  }
+
+  private String getBeanName() {
+    return String.format("%s=%s,%s=%s", ClusterStatusMonitor.CLUSTER_DN_KEY, _clusterName,
+        ClusterStatusMonitor.ROUTING_TABLE_DN_KEY, _instanceName);
+  }
+
+  public ObjectName getObjectName(String name) throws MalformedObjectNameException {
+    return new ObjectName(String.format("%s: %s", ClusterStatusMonitor.ROUTING_TABLE_DOMAIN, name));
+  }
+}
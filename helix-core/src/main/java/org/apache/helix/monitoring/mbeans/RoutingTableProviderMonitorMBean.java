@@ -0,0 +1,72 @@
+package org.apache.helix.monitoring.mbeans;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.helix.monitoring.SensorNameProvider;
+
+public interface RoutingTableProviderMonitorMBean extends SensorNameProvider {
+  /**
+   * Get the version of the current routing table snapshot, increased on each change
+   * @return
+   */
+  public long getSnapshotVersion();
+
+  /**
+   * Get the number of resources in the current routing table snapshot
+   * @return
+   */
+  public long getResourceCount();
+
+  /**
+   * Get the number of routing table refreshes
+   * @return
+   */
+  public long getRefreshCounter();
+
+  /**
+   * Get the number of resources rebuilt in all routing table refreshes
+   * @return
+   */
+  public long getChangedResourceCounter();
+
+  /**
+   * Get the time the last routing table refresh took
+   * @return
+   */
+  public long getLastRefreshLatencyMs();
+
+  /**
+   * Get the max time a routing table refresh took
+   * @return
+   */
+  public long getMaxRefreshLatencyMs();
+
+  /**
+   * Get the mean time a routing table refresh took
+   * @return
+   */
+  public long getMeanRefreshLatencyMs();
+
+  /**
+   * Get the 95th percentile of the time a routing table refresh took
+   * @return
+   */
+  public long get95RefreshLatencyMs();
+}
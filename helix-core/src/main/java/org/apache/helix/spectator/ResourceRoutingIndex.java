@@ -0,0 +1,157 @@
+package org.apache.helix.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.helix.model.InstanceConfig;
+
+/**
+ * Compact, immutable lookup structure for the partitions of one resource, built once per routing
+ * table refresh. States are interned into small ids, and partitions named
+ * "{resourceName}_{partitionNumber}" are addressed by their number in an array instead of being
+ * hashed. The instances of each partition and state are kept as immutable lists sorted by host
+ * and port, so they can be handed out to callers directly.
+ */
+final class ResourceRoutingIndex {
+  // numbered partitions are only put in the array if it stays reasonably dense
+  private static final int MAX_ARRAY_SLOTS_PER_PARTITION = 4;
+  // longer numbers could overflow an int
+  private static final int MAX_PARTITION_NUMBER_DIGITS = 9;
+
+  private final String _partitionPrefix;
+  private final String[] _states;
+  // [partition number][state id], null if there is no such partition
+  private final List<InstanceConfig>[][] _numberedPartitions;
+  private final Map<String, List<InstanceConfig>[]> _namedPartitions;
+
+  @SuppressWarnings("unchecked")
+  ResourceRoutingIndex(String resourceName,
+      Map<String, Map<String, List<InstanceConfig>>> partitionStateMap,
+      Comparator<InstanceConfig> instanceComparator) {
+    _partitionPrefix = resourceName + "_";
+
+    List<String> states = new ArrayList<String>();
+    int maxPartitionNumber = -1;
+    int numNumberedPartitions = 0;
+    for (Map.Entry<String, Map<String, List<InstanceConfig>>> entry : partitionStateMap
+        .entrySet()) {
+      for (String state : entry.getValue().keySet()) {
+        if (!states.contains(state)) {
+          states.add(state.intern());
+        }
+      }
+      int partitionNumber = parsePartitionNumber(entry.getKey());
+      if (partitionNumber >= 0) {
+        maxPartitionNumber = Math.max(maxPartitionNumber, partitionNumber);
+        numNumberedPartitions++;
+      }
+    }
+    _states = states.toArray(new String[states.size()]);
+
+    int arraySize = 0;
+    if (maxPartitionNumber >= 0
+        && maxPartitionNumber < numNumberedPartitions * MAX_ARRAY_SLOTS_PER_PARTITION) {
+      arraySize = maxPartitionNumber + 1;
+    }
+    _numberedPartitions = new List[arraySize][];
+    _namedPartitions = new HashMap<String, List<InstanceConfig>[]>();
+    for (Map.Entry<String, Map<String, List<InstanceConfig>>> entry : partitionStateMap
+        .entrySet()) {
+      List<InstanceConfig>[] partition = new List[_states.length];
+      for (Map.Entry<String, List<InstanceConfig>> stateEntry : entry.getValue().entrySet()) {
+        InstanceConfig[] instances =
+            stateEntry.getValue().toArray(new InstanceConfig[stateEntry.getValue().size()]);
+        Arrays.sort(instances, instanceComparator);
+        partition[getStateId(stateEntry.getKey())] =
+            Collections.unmodifiableList(Arrays.asList(instances));
+      }
+      int partitionNumber = parsePartitionNumber(entry.getKey());
+      if (partitionNumber >= 0 && partitionNumber < arraySize) {
+        _numberedPartitions[partitionNumber] = partition;
+      } else {
+        _namedPartitions.put(entry.getKey(), partition);
+      }
+    }
+  }
+
+  /**
+   * Get the instances of a partition in a state
+   * @return an immutable list sorted by host and port, or null if no instance is in the state
+   */
+  List<InstanceConfig> get(String partitionName, String state) {
+    List<InstanceConfig>[] partition;
+    int partitionNumber = parsePartitionNumber(partitionName);
+    if (partitionNumber >= 0 && partitionNumber < _numberedPartitions.length) {
+      partition = _numberedPartitions[partitionNumber];
+    } else {
+      partition = _namedPartitions.get(partitionName);
+    }
+    if (partition == null) {
+      return null;
+    }
+    int stateId = getStateId(state);
+    return stateId < 0 ? null : partition[stateId];
+  }
+
+  private int getStateId(String state) {
+    for (int i = 0; i < _states.length; i++) {
+      if (_states[i] == state) {
+        return i;
+      }
+    }
+    for (int i = 0; i < _states.length; i++) {
+      if (_states[i].equals(state)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Parse the number of a partition named "{resourceName}_{partitionNumber}"
+   * @return the partition number, or -1 if the partition is not named so, or if the number is
+   *         not in its canonical form, e.g. has leading zeros
+   */
+  private int parsePartitionNumber(String partitionName) {
+    int start = _partitionPrefix.length();
+    int numDigits = partitionName.length() - start;
+    if (numDigits <= 0 || numDigits > MAX_PARTITION_NUMBER_DIGITS
+        || !partitionName.startsWith(_partitionPrefix)
+        || (numDigits > 1 && partitionName.charAt(start) == '0')) {
+      return -1;
+    }
+    int partitionNumber = 0;
+    for (int i = start; i < partitionName.length(); i++) {
+      char c = partitionName.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      partitionNumber = partitionNumber * 10 + (c - '0');
+    }
+    return partitionNumber;
+  }
+}
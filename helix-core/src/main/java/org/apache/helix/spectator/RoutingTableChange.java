@@ -0,0 +1,172 @@
+package org.apache.helix.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.helix.model.InstanceConfig;
+
+/**
+ * The difference between two versions of the routing table of a {@link RoutingTableProvider}.
+ * Only resources with added or removed instances are included.
+ */
+public class RoutingTableChange {
+  private final long _snapshotVersion;
+  private final Map<String, ResourceChange> _resourceChanges;
+
+  RoutingTableChange(long snapshotVersion, Map<String, ResourceChange> resourceChanges) {
+    _snapshotVersion = snapshotVersion;
+    _resourceChanges = Collections.unmodifiableMap(resourceChanges);
+  }
+
+  /**
+   * Get the version of the routing table snapshot after the change
+   * @return the snapshot version
+   */
+  public long getSnapshotVersion() {
+    return _snapshotVersion;
+  }
+
+  /**
+   * Get the changes of each changed resource
+   * @return map of resource name to resource change
+   */
+  public Map<String, ResourceChange> getResourceChanges() {
+    return _resourceChanges;
+  }
+
+  /**
+   * Get the change of a resource
+   * @param resourceName
+   * @return the change, or null if the resource did not change
+   */
+  public ResourceChange getResourceChange(String resourceName) {
+    return _resourceChanges.get(resourceName);
+  }
+
+  @Override
+  public String toString() {
+    return "RoutingTableChange {version=" + _snapshotVersion + ", resources="
+        + _resourceChanges.keySet() + "}";
+  }
+
+  /**
+   * The instances added to and removed from the partitions of a resource, for each state. An
+   * instance whose config changed, e.g. its host or port, is both removed and added.
+   */
+  public static class ResourceChange {
+    private final String _resourceName;
+    // partition -> state -> instances
+    private final Map<String, Map<String, Set<InstanceConfig>>> _addedInstances;
+    private final Map<String, Map<String, Set<InstanceConfig>>> _removedInstances;
+
+    ResourceChange(String resourceName) {
+      _resourceName = resourceName;
+      _addedInstances = new HashMap<String, Map<String, Set<InstanceConfig>>>();
+      _removedInstances = new HashMap<String, Map<String, Set<InstanceConfig>>>();
+    }
+
+    public String getResourceName() {
+      return _resourceName;
+    }
+
+    /**
+     * Get the partitions with added or removed instances
+     * @return set of partition names
+     */
+    public Set<String> getChangedPartitions() {
+      Set<String> partitions = new HashSet<String>(_addedInstances.keySet());
+      partitions.addAll(_removedInstances.keySet());
+      return partitions;
+    }
+
+    /**
+     * Get the instances that entered each state, per partition
+     * @return map of partition to state to instances
+     */
+    public Map<String, Map<String, Set<InstanceConfig>>> getAddedInstances() {
+      return _addedInstances;
+    }
+
+    /**
+     * Get the instances that left each state, per partition
+     * @return map of partition to state to instances
+     */
+    public Map<String, Map<String, Set<InstanceConfig>>> getRemovedInstances() {
+      return _removedInstances;
+    }
+
+    /**
+     * Get the instances that entered a state of a partition
+     * @return set of instances, empty if none
+     */
+    public Set<InstanceConfig> getAddedInstances(String partitionName, String state) {
+      return get(_addedInstances, partitionName, state);
+    }
+
+    /**
+     * Get the instances that left a state of a partition
+     * @return set of instances, empty if none
+     */
+    public Set<InstanceConfig> getRemovedInstances(String partitionName, String state) {
+      return get(_removedInstances, partitionName, state);
+    }
+
+    boolean isEmpty() {
+      return _addedInstances.isEmpty() && _removedInstances.isEmpty();
+    }
+
+    void addInstance(String partitionName, String state, InstanceConfig config) {
+      put(_addedInstances, partitionName, state, config);
+    }
+
+    void removeInstance(String partitionName, String state, InstanceConfig config) {
+      put(_removedInstances, partitionName, state, config);
+    }
+
+    private static Set<InstanceConfig> get(Map<String, Map<String, Set<InstanceConfig>>> map,
+        String partitionName, String state) {
+      Map<String, Set<InstanceConfig>> stateMap = map.get(partitionName);
+      if (stateMap == null || !stateMap.containsKey(state)) {
+        return Collections.emptySet();
+      }
+      return stateMap.get(state);
+    }
+
+    private static void put(Map<String, Map<String, Set<InstanceConfig>>> map,
+        String partitionName, String state, InstanceConfig config) {
+      Map<String, Set<InstanceConfig>> stateMap = map.get(partitionName);
+      if (stateMap == null) {
+        stateMap = new HashMap<String, Set<InstanceConfig>>();
+        map.put(partitionName, stateMap);
+      }
+      Set<InstanceConfig> instances = stateMap.get(state);
+      if (instances == null) {
+        instances = new HashSet<InstanceConfig>();
+        stateMap.put(state, instances);
+      }
+      instances.add(config);
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package org.apache.helix.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Interface to implement to be notified of changes to the routing table of a
+ * {@link RoutingTableProvider}
+ */
+public interface RoutingTableChangeListener {
+
+  /**
+   * Invoked on the notification thread of the routing table provider after a refresh changes
+   * the routing table. Changes are delivered one at a time, in the order of the snapshot versions.
+   * @param change the instances added to and removed from each changed resource
+   * @param context the context the listener is registered with
+   */
+  public void onRoutingTableChange(RoutingTableChange change, Object context);
+
+}
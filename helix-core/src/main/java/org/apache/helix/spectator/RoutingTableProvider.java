@@ -20,32 +20,125 @@ package org.apache.helix.spectator;
  */
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.helix.ConfigChangeListener;
 import org.apache.helix.ExternalViewChangeListener;
 import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.HelixManager;
 import org.apache.helix.NotificationContext;
 import org.apache.helix.PropertyKey.Builder;
+import org.apache.helix.ZNRecord;
 import org.apache.helix.model.ExternalView;
 import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.monitoring.mbeans.RoutingTableProviderMonitor;
+import org.apache.helix.spectator.RoutingTableChange.ResourceChange;
 import org.apache.log4j.Logger;
 
+/**
+ * Keeps a routing table of resource partitions to the instances serving them, built from the
+ * external views and instance configs of a cluster.
+ * <p>
+ * The routing table is an immutable snapshot that readers get without locking. A refresh copies
+ * the current snapshot and only rebuilds the resources whose external view has a new znode
+ * version, reusing the cached external views and instance configs for everything else.
+ * <p>
+ * With the routing index enabled, each resource also gets a {@link ResourceRoutingIndex} at
+ * refresh time, which speeds up {@link #getInstancesForResource(String, String, String)} and
+ * makes it return immutable lists sorted by host and port.
+ * <p>
+ * {@link RoutingTableChangeListener}s get the instances added to and removed from each changed
+ * resource after every refresh. The change is computed once per refresh and delivered to all
+ * listeners on a notification thread, so slow listeners do not hold up refreshes.
+ */
 public class RoutingTableProvider implements ExternalViewChangeListener, ConfigChangeListener {
   private static final Logger logger = Logger.getLogger(RoutingTableProvider.class);
+
+  /**
+   * Whether routing table providers created with the default constructor build a routing index
+   */
+  public static final String ROUTING_INDEX_ENABLED = "helix.routingTable.indexEnabled";
+
   private final AtomicReference<RoutingTable> _routingTableRef;
+  private final boolean _routingIndexEnabled;
+
+  // guards the caches below, which are only used to build new routing table snapshots
+  private final Object _refreshLock = new Object();
+  // null until the external views are read for the first time
+  private Map<String, ExternalView> _externalViewCache;
+  private final Map<String, InstanceConfig> _instanceConfigCache;
+  // whether instance configs are kept up-to-date by config change callbacks
+  private boolean _instanceConfigListened;
+  private final Map<String, String> _resourceToGroup;
+  private final Map<String, Set<String>> _groupToResources;
+  private RoutingTableProviderMonitor _monitor;
+  private final Map<RoutingTableChangeListener, Object> _changeListeners;
+  private ThreadPoolExecutor _notificationExecutor;
 
   public RoutingTableProvider() {
+    this(Boolean.getBoolean(ROUTING_INDEX_ENABLED));
+  }
+
+  /**
+   * @param routingIndexEnabled whether to build a routing index for partition lookups
+   */
+  public RoutingTableProvider(boolean routingIndexEnabled) {
     _routingTableRef = new AtomicReference<RoutingTableProvider.RoutingTable>(new RoutingTable());
+    _routingIndexEnabled = routingIndexEnabled;
+    _instanceConfigCache = new HashMap<String, InstanceConfig>();
+    _resourceToGroup = new HashMap<String, String>();
+    _groupToResources = new HashMap<String, Set<String>>();
+    _changeListeners = new LinkedHashMap<RoutingTableChangeListener, Object>();
+  }
 
+  /**
+   * Add a listener to be notified of routing table changes. The listener first gets a change
+   * that adds the whole current routing table.
+   * @param listener
+   * @param context passed back to the listener on each change
+   */
+  public void addRoutingTableChangeListener(RoutingTableChangeListener listener, Object context) {
+    synchronized (_refreshLock) {
+      _changeListeners.put(listener, context);
+      RoutingTable routingTable = _routingTableRef.get();
+      RoutingTableChange change =
+          computeChange(new RoutingTable(routingTable.getVersion()), routingTable,
+              routingTable.resourceInfoMap.keySet());
+      notifyListeners(Collections.singletonMap(listener, context), change);
+    }
+  }
+
+  /**
+   * Remove a routing table change listener
+   * @param listener
+   */
+  public void removeRoutingTableChangeListener(RoutingTableChangeListener listener) {
+    synchronized (_refreshLock) {
+      _changeListeners.remove(listener);
+    }
+  }
+
+  /**
+   * returns the version of the current routing table snapshot, which increases each time the
+   * routing table changes
+   * @return the snapshot version
+   */
+  public long getSnapshotVersion() {
+    return _routingTableRef.get().getVersion();
   }
 
   /**
@@ -78,9 +171,13 @@ public class RoutingTableProvider implements ExternalViewChangeListener, ConfigC
     RoutingTable _routingTable = _routingTableRef.get();
     ResourceInfo resourceInfo = _routingTable.get(resourceName);
     if (resourceInfo != null) {
-      PartitionInfo keyInfo = resourceInfo.get(partitionName);
-      if (keyInfo != null) {
-        instanceList = keyInfo.get(state);
+      if (resourceInfo.routingIndex != null) {
+        instanceList = resourceInfo.routingIndex.get(partitionName, state);
+      } else {
+        PartitionInfo keyInfo = resourceInfo.get(partitionName);
+        if (keyInfo != null) {
+          instanceList = keyInfo.get(state);
+        }
       }
     }
     if (instanceList == null) {
@@ -242,11 +339,25 @@ public class RoutingTableProvider implements ExternalViewChangeListener, ConfigC
     // session has expired clean up the routing table
     if (changeContext.getType() == NotificationContext.Type.FINALIZE) {
       logger.info("Resetting the routing table. ");
-      RoutingTable newRoutingTable = new RoutingTable();
-      _routingTableRef.set(newRoutingTable);
+      reset();
       return;
     }
-    refresh(externalViewList, changeContext);
+
+    synchronized (_refreshLock) {
+      long startTime = System.currentTimeMillis();
+      HelixDataAccessor accessor = changeContext.getManager().getHelixDataAccessor();
+      boolean instanceConfigChanged = false;
+      if (!_instanceConfigListened) {
+        instanceConfigChanged =
+            updateInstanceConfigs(accessor.<InstanceConfig> getChildValues(accessor.keyBuilder()
+                .instanceConfigs()));
+      }
+      Set<String> changedResources = updateExternalViews(externalViewList);
+      if (instanceConfigChanged) {
+        changedResources.addAll(_externalViewCache.keySet());
+      }
+      refresh(changedResources, changeContext, startTime);
+    }
   }
 
   @Override
@@ -254,54 +365,344 @@ public class RoutingTableProvider implements ExternalViewChangeListener, ConfigC
     // session has expired clean up the routing table
     if (changeContext.getType() == NotificationContext.Type.FINALIZE) {
       logger.info("Resetting the routing table. ");
-      RoutingTable newRoutingTable = new RoutingTable();
-      _routingTableRef.set(newRoutingTable);
+      reset();
       return;
     }
 
-    HelixDataAccessor accessor = changeContext.getManager().getHelixDataAccessor();
-    Builder keyBuilder = accessor.keyBuilder();
-    List<ExternalView> externalViewList = accessor.getChildValues(keyBuilder.externalViews());
-    refresh(externalViewList, changeContext);
+    synchronized (_refreshLock) {
+      long startTime = System.currentTimeMillis();
+      _instanceConfigListened = true;
+      boolean instanceConfigChanged = updateInstanceConfigs(configs);
+      Set<String> changedResources;
+      if (_externalViewCache == null) {
+        HelixDataAccessor accessor = changeContext.getManager().getHelixDataAccessor();
+        Builder keyBuilder = accessor.keyBuilder();
+        List<ExternalView> externalViewList = accessor.getChildValues(keyBuilder.externalViews());
+        changedResources = updateExternalViews(externalViewList);
+      } else if (instanceConfigChanged) {
+        // an instance config may be referred by any resource
+        changedResources = new HashSet<String>(_externalViewCache.keySet());
+      } else {
+        return;
+      }
+      refresh(changedResources, changeContext, startTime);
+    }
+  }
+
+  private void reset() {
+    synchronized (_refreshLock) {
+      _externalViewCache = null;
+      _instanceConfigCache.clear();
+      _instanceConfigListened = false;
+      _resourceToGroup.clear();
+      _groupToResources.clear();
+      if (_monitor != null) {
+        _monitor.reset();
+        _monitor = null;
+      }
+      RoutingTable oldRoutingTable = _routingTableRef.get();
+      RoutingTable newRoutingTable = new RoutingTable(oldRoutingTable.getVersion() + 1);
+      _routingTableRef.set(newRoutingTable);
+      if (!_changeListeners.isEmpty()) {
+        notifyListeners(_changeListeners, computeChange(oldRoutingTable, newRoutingTable,
+            oldRoutingTable.resourceInfoMap.keySet()));
+      }
+    }
+  }
+
+  /**
+   * Check if a record read from zookeeper is the same version as a cached one. Records not read
+   * from zookeeper have no creation time and are always considered as changed
+   */
+  private static boolean isSameVersion(ZNRecord cached, ZNRecord record) {
+    return record.getCreationTime() != 0 && cached.getCreationTime() == record.getCreationTime()
+        && cached.getVersion() == record.getVersion();
   }
 
-  private void refresh(List<ExternalView> externalViewList, NotificationContext changeContext) {
-    HelixDataAccessor accessor = changeContext.getManager().getHelixDataAccessor();
-    Builder keyBuilder = accessor.keyBuilder();
+  /**
+   * Replace the cached instance configs, keeping the cached objects for unchanged configs
+   * @return true if any instance config is added, removed or changed
+   */
+  private boolean updateInstanceConfigs(List<InstanceConfig> configs) {
+    Map<String, InstanceConfig> newConfigs = new HashMap<String, InstanceConfig>();
+    boolean changed = false;
+    if (configs != null) {
+      for (InstanceConfig config : configs) {
+        InstanceConfig cached = _instanceConfigCache.get(config.getId());
+        if (cached != null && isSameVersion(cached.getRecord(), config.getRecord())) {
+          newConfigs.put(config.getId(), cached);
+        } else {
+          newConfigs.put(config.getId(), config);
+          changed = true;
+        }
+      }
+    }
+    // without changed configs, the new configs are a subset of the cached ones
+    changed = changed || newConfigs.size() != _instanceConfigCache.size();
+    _instanceConfigCache.clear();
+    _instanceConfigCache.putAll(newConfigs);
+    return changed;
+  }
 
-    List<InstanceConfig> configList = accessor.getChildValues(keyBuilder.instanceConfigs());
-    Map<String, InstanceConfig> instanceConfigMap = new HashMap<String, InstanceConfig>();
-    for (InstanceConfig config : configList) {
-      instanceConfigMap.put(config.getId(), config);
+  /**
+   * Replace the cached external views
+   * @return the names of resources whose external view is added, removed or changed
+   */
+  private Set<String> updateExternalViews(List<ExternalView> externalViewList) {
+    Map<String, ExternalView> oldExternalViews = _externalViewCache;
+    if (oldExternalViews == null) {
+      oldExternalViews = Collections.emptyMap();
     }
-    RoutingTable newRoutingTable = new RoutingTable();
+    Map<String, ExternalView> newExternalViews = new HashMap<String, ExternalView>();
+    Set<String> changedResources = new HashSet<String>();
     if (externalViewList != null) {
       for (ExternalView extView : externalViewList) {
         String resourceName = extView.getId();
-        for (String partitionName : extView.getPartitionSet()) {
-          Map<String, String> stateMap = extView.getStateMap(partitionName);
-          for (String instanceName : stateMap.keySet()) {
-            String currentState = stateMap.get(instanceName);
-            if (instanceConfigMap.containsKey(instanceName)) {
-              InstanceConfig instanceConfig = instanceConfigMap.get(instanceName);
-              if (extView.isGroupRoutingEnabled()) {
-                newRoutingTable.addEntry(resourceName, extView.getResourceGroupName(),
-                    extView.getInstanceGroupTag(), partitionName, currentState, instanceConfig);
-              } else {
-                newRoutingTable.addEntry(resourceName, partitionName, currentState, instanceConfig);
+        ExternalView cached = oldExternalViews.get(resourceName);
+        // bucketized external views may change without a new version of the parent znode
+        if (cached != null && extView.getBucketSize() == 0
+            && isSameVersion(cached.getRecord(), extView.getRecord())) {
+          newExternalViews.put(resourceName, cached);
+        } else {
+          newExternalViews.put(resourceName, extView);
+          changedResources.add(resourceName);
+        }
+      }
+    }
+    for (String resourceName : oldExternalViews.keySet()) {
+      if (!newExternalViews.containsKey(resourceName)) {
+        changedResources.add(resourceName);
+      }
+    }
+    _externalViewCache = newExternalViews;
+    return changedResources;
+  }
+
+  /**
+   * Publish a new routing table snapshot with the given resources rebuilt from the cache
+   */
+  private void refresh(Collection<String> changedResources, NotificationContext changeContext,
+      long startTime) {
+    if (!changedResources.isEmpty()) {
+      RoutingTable newRoutingTable = new RoutingTable(_routingTableRef.get());
+      Set<String> changedGroups = new HashSet<String>();
+      for (String resourceName : changedResources) {
+        newRoutingTable.removeResource(resourceName);
+        String oldGroup = _resourceToGroup.remove(resourceName);
+        if (oldGroup != null) {
+          _groupToResources.get(oldGroup).remove(resourceName);
+          changedGroups.add(oldGroup);
+        }
+
+        ExternalView extView = _externalViewCache.get(resourceName);
+        if (extView == null) {
+          continue;
+        }
+        newRoutingTable.putResource(resourceName, buildResourceInfo(extView));
+        if (extView.isGroupRoutingEnabled()) {
+          String groupName = extView.getResourceGroupName();
+          _resourceToGroup.put(resourceName, groupName);
+          Set<String> groupResources = _groupToResources.get(groupName);
+          if (groupResources == null) {
+            groupResources = new HashSet<String>();
+            _groupToResources.put(groupName, groupResources);
+          }
+          groupResources.add(resourceName);
+          changedGroups.add(groupName);
+        }
+      }
+
+      for (String groupName : changedGroups) {
+        Set<String> groupResources = _groupToResources.get(groupName);
+        if (groupResources == null || groupResources.isEmpty()) {
+          _groupToResources.remove(groupName);
+          newRoutingTable.removeResourceGroup(groupName);
+          continue;
+        }
+        ResourceGroupInfo resourceGroupInfo = new ResourceGroupInfo();
+        for (String resourceName : groupResources) {
+          addToResourceGroup(resourceGroupInfo, _externalViewCache.get(resourceName));
+        }
+        newRoutingTable.putResourceGroup(groupName, resourceGroupInfo);
+      }
+      RoutingTable oldRoutingTable = _routingTableRef.get();
+      _routingTableRef.set(newRoutingTable);
+      if (!_changeListeners.isEmpty()) {
+        notifyListeners(_changeListeners,
+            computeChange(oldRoutingTable, newRoutingTable, changedResources));
+      }
+    }
+
+    RoutingTable routingTable = _routingTableRef.get();
+    long latency = System.currentTimeMillis() - startTime;
+    if (logger.isDebugEnabled()) {
+      logger.debug("Refreshed " + changedResources.size() + " resources of routing table version "
+          + routingTable.getVersion() + " in " + latency + " ms");
+    }
+    RoutingTableProviderMonitor monitor = getMonitor(changeContext);
+    if (monitor != null) {
+      monitor.addRefresh(routingTable.getVersion(), routingTable.getResourceCount(),
+          changedResources.size(), latency);
+    }
+  }
+
+  /**
+   * Compute the instances added to and removed from the given resources between two routing
+   * tables
+   */
+  private static RoutingTableChange computeChange(RoutingTable oldRoutingTable,
+      RoutingTable newRoutingTable, Collection<String> resourceNames) {
+    Map<String, ResourceChange> resourceChanges = new HashMap<String, ResourceChange>();
+    for (String resourceName : resourceNames) {
+      ResourceInfo oldResourceInfo = oldRoutingTable.get(resourceName);
+      ResourceInfo newResourceInfo = newRoutingTable.get(resourceName);
+      ResourceChange resourceChange = new ResourceChange(resourceName);
+      if (oldResourceInfo != null) {
+        for (Map.Entry<String, PartitionInfo> entry : oldResourceInfo.partitionInfoMap.entrySet()) {
+          String partitionName = entry.getKey();
+          PartitionInfo newPartitionInfo =
+              newResourceInfo == null ? null : newResourceInfo.get(partitionName);
+          for (Map.Entry<String, List<InstanceConfig>> stateEntry : entry.getValue().stateInfoMap
+              .entrySet()) {
+            List<InstanceConfig> newInstances =
+                newPartitionInfo == null ? null : newPartitionInfo.get(stateEntry.getKey());
+            for (InstanceConfig config : stateEntry.getValue()) {
+              if (!containsSameConfig(newInstances, config)) {
+                resourceChange.removeInstance(partitionName, stateEntry.getKey(), config);
               }
-            } else {
-              logger.error("Invalid instance name." + instanceName
-                  + " .Not found in /cluster/configs/. instanceName: ");
             }
           }
         }
       }
+      if (newResourceInfo != null) {
+        for (Map.Entry<String, PartitionInfo> entry : newResourceInfo.partitionInfoMap.entrySet()) {
+          String partitionName = entry.getKey();
+          PartitionInfo oldPartitionInfo =
+              oldResourceInfo == null ? null : oldResourceInfo.get(partitionName);
+          for (Map.Entry<String, List<InstanceConfig>> stateEntry : entry.getValue().stateInfoMap
+              .entrySet()) {
+            List<InstanceConfig> oldInstances =
+                oldPartitionInfo == null ? null : oldPartitionInfo.get(stateEntry.getKey());
+            for (InstanceConfig config : stateEntry.getValue()) {
+              if (!containsSameConfig(oldInstances, config)) {
+                resourceChange.addInstance(partitionName, stateEntry.getKey(), config);
+              }
+            }
+          }
+        }
+      }
+      if (!resourceChange.isEmpty()) {
+        resourceChanges.put(resourceName, resourceChange);
+      }
     }
-    _routingTableRef.set(newRoutingTable);
+    return new RoutingTableChange(newRoutingTable.getVersion(), resourceChanges);
   }
 
+  private static boolean containsSameConfig(List<InstanceConfig> instances, InstanceConfig config) {
+    if (instances == null) {
+      return false;
+    }
+    for (InstanceConfig instance : instances) {
+      if (instance.getId().equals(config.getId())) {
+        return instance == config || instance.getRecord().equals(config.getRecord());
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Deliver a change to listeners on the notification thread
+   */
+  private void notifyListeners(Map<RoutingTableChangeListener, Object> listeners,
+      final RoutingTableChange change) {
+    if (change.getResourceChanges().isEmpty()) {
+      return;
+    }
+    final Map<RoutingTableChangeListener, Object> listenersToNotify =
+        new LinkedHashMap<RoutingTableChangeListener, Object>(listeners);
+    if (_notificationExecutor == null) {
+      _notificationExecutor =
+          new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+              new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                  Thread thread = new Thread(r, "RoutingTableChangeNotifier");
+                  thread.setDaemon(true);
+                  return thread;
+                }
+              });
+      // the notification thread exits when idle
+      _notificationExecutor.allowCoreThreadTimeOut(true);
+    }
+    _notificationExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        for (Map.Entry<RoutingTableChangeListener, Object> entry : listenersToNotify.entrySet()) {
+          try {
+            entry.getKey().onRoutingTableChange(change, entry.getValue());
+          } catch (Exception e) {
+            logger.error("Exception while notifying " + entry.getKey() + " of " + change, e);
+          }
+        }
+      }
+    });
+  }
+
+  private RoutingTableProviderMonitor getMonitor(NotificationContext changeContext) {
+    if (_monitor == null) {
+      HelixManager manager = changeContext.getManager();
+      if (manager == null) {
+        return null;
+      }
+      _monitor =
+          new RoutingTableProviderMonitor(manager.getClusterName(), manager.getInstanceName());
+      _monitor.init();
+    }
+    return _monitor;
+  }
+
+  private ResourceInfo buildResourceInfo(ExternalView extView) {
+    ResourceInfo resourceInfo = new ResourceInfo();
+    for (String partitionName : extView.getPartitionSet()) {
+      Map<String, String> stateMap = extView.getStateMap(partitionName);
+      for (String instanceName : stateMap.keySet()) {
+        String currentState = stateMap.get(instanceName);
+        InstanceConfig instanceConfig = _instanceConfigCache.get(instanceName);
+        if (instanceConfig != null) {
+          resourceInfo.addEntry(partitionName, currentState, instanceConfig);
+        } else {
+          logger.error("Invalid instance name." + instanceName
+              + " .Not found in /cluster/configs/. instanceName: ");
+        }
+      }
+    }
+    if (_routingIndexEnabled) {
+      resourceInfo.buildRoutingIndex(extView.getId());
+    }
+    return resourceInfo;
+  }
+
+  private void addToResourceGroup(ResourceGroupInfo resourceGroupInfo, ExternalView extView) {
+    String resourceTag = extView.getInstanceGroupTag();
+    for (String partitionName : extView.getPartitionSet()) {
+      Map<String, String> stateMap = extView.getStateMap(partitionName);
+      for (String instanceName : stateMap.keySet()) {
+        InstanceConfig instanceConfig = _instanceConfigCache.get(instanceName);
+        if (instanceConfig != null) {
+          resourceGroupInfo.addEntry(resourceTag, partitionName, stateMap.get(instanceName),
+              instanceConfig);
+        }
+      }
+    }
+  }
+
+  /**
+   * A snapshot of the routing table. A snapshot is not changed once published; refreshes copy
+   * the maps and replace the changed resources and resource groups.
+   */
   class RoutingTable {
+    private final long version;
+
     // mapping a resourceName to the ResourceInfo
     private final Map<String, ResourceInfo> resourceInfoMap;
 
@@ -309,32 +710,47 @@ public class RoutingTableProvider implements ExternalViewChangeListener, ConfigC
     private final Map<String, ResourceGroupInfo> resourceGroupInfoMap;
 
     public RoutingTable() {
-      resourceInfoMap = new HashMap<String, ResourceInfo>();
-      resourceGroupInfoMap = new HashMap<String, ResourceGroupInfo>();
+      this(0);
     }
 
-    public void addEntry(String resourceName, String partitionName, String state,
-        InstanceConfig config) {
-      if (!resourceInfoMap.containsKey(resourceName)) {
-        resourceInfoMap.put(resourceName, new ResourceInfo());
-      }
-      ResourceInfo resourceInfo = resourceInfoMap.get(resourceName);
-      resourceInfo.addEntry(partitionName, state, config);
+    RoutingTable(long version) {
+      this.version = version;
+      resourceInfoMap = new HashMap<String, ResourceInfo>();
+      resourceGroupInfoMap = new HashMap<String, ResourceGroupInfo>();
     }
 
     /**
-     * add an entry with a resource with resourceGrouping enabled.
+     * Create the next version of a routing table, sharing its unchanged resources
      */
-    public void addEntry(String resourceName, String resourceGroupName, String resourceTag,
-        String partitionName, String state, InstanceConfig config) {
-      addEntry(resourceName, partitionName, state, config);
+    RoutingTable(RoutingTable routingTable) {
+      version = routingTable.version + 1;
+      resourceInfoMap = new HashMap<String, ResourceInfo>(routingTable.resourceInfoMap);
+      resourceGroupInfoMap =
+          new HashMap<String, ResourceGroupInfo>(routingTable.resourceGroupInfoMap);
+    }
 
-      if (!resourceGroupInfoMap.containsKey(resourceGroupName)) {
-        resourceGroupInfoMap.put(resourceGroupName, new ResourceGroupInfo());
-      }
+    long getVersion() {
+      return version;
+    }
+
+    int getResourceCount() {
+      return resourceInfoMap.size();
+    }
 
-      ResourceGroupInfo resourceGroupInfo = resourceGroupInfoMap.get(resourceGroupName);
-      resourceGroupInfo.addEntry(resourceTag, partitionName, state, config);
+    void putResource(String resourceName, ResourceInfo resourceInfo) {
+      resourceInfoMap.put(resourceName, resourceInfo);
+    }
+
+    void removeResource(String resourceName) {
+      resourceInfoMap.remove(resourceName);
+    }
+
+    void putResourceGroup(String resourceGroupName, ResourceGroupInfo resourceGroupInfo) {
+      resourceGroupInfoMap.put(resourceGroupName, resourceGroupInfo);
+    }
+
+    void removeResourceGroup(String resourceGroupName) {
+      resourceGroupInfoMap.remove(resourceGroupName);
     }
 
     ResourceInfo get(String resourceName) {
@@ -378,6 +794,8 @@ public class RoutingTableProvider implements ExternalViewChangeListener, ConfigC
     Map<String, PartitionInfo> partitionInfoMap;
     // stores the Set of Instances in a given state
     Map<String, Set<InstanceConfig>> stateInfoMap;
+    // optional index for partition lookups, built once all entries are added
+    ResourceRoutingIndex routingIndex;
 
     public ResourceInfo() {
       partitionInfoMap = new HashMap<String, RoutingTableProvider.PartitionInfo>();
@@ -404,6 +822,16 @@ public class RoutingTableProvider implements ExternalViewChangeListener, ConfigC
       return instanceSet;
     }
 
+    void buildRoutingIndex(String resourceName) {
+      Map<String, Map<String, List<InstanceConfig>>> partitionStateMap =
+          new HashMap<String, Map<String, List<InstanceConfig>>>();
+      for (Map.Entry<String, PartitionInfo> entry : partitionInfoMap.entrySet()) {
+        partitionStateMap.put(entry.getKey(), entry.getValue().stateInfoMap);
+      }
+      routingIndex =
+          new ResourceRoutingIndex(resourceName, partitionStateMap, INSTANCE_CONFIG_COMPARATOR);
+    }
+
     PartitionInfo get(String stateUnitKey) {
       return partitionInfoMap.get(stateUnitKey);
     }
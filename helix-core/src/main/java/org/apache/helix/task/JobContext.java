@@ -35,8 +35,19 @@ import com.google.common.collect.Sets;
 /**
  * Provides a typed interface to the context information stored by {@link TaskRebalancer} in the
  * Helix property store.
+ * <p>
+ * Per-partition state is stored either as one map field per partition, or in columnar format as a
+ * single compressed simple field (see {@link #setColumnarFormat(boolean)}). The accessors behave
+ * the same for both; in columnar format the columns are only decoded on first access.
  */
 public class JobContext extends HelixProperty {
+  /**
+   * Set to true to have the controller store job contexts in columnar format, converting existing
+   * contexts as their jobs are rebalanced. Set to false to convert them back. Contexts in either
+   * format can always be read.
+   */
+  public static final String COLUMNAR_FORMAT_ENABLED = "helix.task.columnarJobContextEnabled";
+
   private enum ContextProperties {
     START_TIME,
     STATE,
@@ -46,13 +57,79 @@ public class JobContext extends HelixProperty {
     TASK_ID,
     ASSIGNED_PARTICIPANT,
     NEXT_RETRY_TIME,
-    INFO
+    INFO,
+    PARTITION_COLUMNS
   }
 
+  private JobContextColumns _columns;
+  private boolean _columnsDirty;
+
   public JobContext(ZNRecord record) {
     super(record);
   }
 
+  /**
+   * Get the backing ZNRecord, with any pending changes to the partition columns encoded into it
+   * @return ZNRecord object associated with this context
+   */
+  @Override
+  public ZNRecord getRecord() {
+    if (_columnsDirty) {
+      _record.setSimpleField(ContextProperties.PARTITION_COLUMNS.name(), _columns.encode());
+      _columnsDirty = false;
+    }
+    return _record;
+  }
+
+  @Override
+  public String toString() {
+    return getRecord().toString();
+  }
+
+  /**
+   * @return true if the per-partition state is stored in columnar format
+   */
+  public boolean isColumnarFormat() {
+    return columns() != null;
+  }
+
+  /**
+   * Convert the per-partition state to or from columnar format. Only the attributes accessible
+   * through this class are kept when converting to columnar format.
+   * @param columnar true to store the partitions as columns, false to store one map field each
+   */
+  public void setColumnarFormat(boolean columnar) {
+    if (columnar == isColumnarFormat()) {
+      return;
+    }
+    if (columnar) {
+      JobContextColumns columns = new JobContextColumns();
+      for (int p : getPartitionSet()) {
+        columns.setState(p, getPartitionState(p));
+        columns.setNumAttempts(p, getPartitionNumAttempts(p));
+        columns.setStartTime(p, getPartitionStartTime(p));
+        columns.setFinishTime(p, getPartitionFinishTime(p));
+        columns.setNextRetryTime(p, getNextRetryTime(p));
+        columns.setTarget(p, getTargetForPartition(p));
+        columns.setTaskId(p, getTaskIdForPartition(p));
+        columns.setAssignedParticipant(p, getAssignedParticipant(p));
+        columns.setInfo(p, getPartitionInfo(p));
+      }
+      _record.getMapFields().clear();
+      _columns = columns;
+      _columnsDirty = true;
+    } else {
+      Map<String, Map<String, String>> mapFields = new TreeMap<String, Map<String, String>>();
+      for (int p : _columns.getPartitions()) {
+        mapFields.put(String.valueOf(p), getMapField(p));
+      }
+      _columns = null;
+      _columnsDirty = false;
+      _record.getSimpleFields().remove(ContextProperties.PARTITION_COLUMNS.name());
+      _record.setMapFields(mapFields);
+    }
+  }
+
   public void setStartTime(long t) {
     _record.setSimpleField(ContextProperties.START_TIME.toString(), String.valueOf(t));
   }
@@ -88,11 +165,18 @@ public class JobContext extends HelixProperty {
   }
 
   public void setPartitionState(int p, TaskPartitionState s) {
+    if (columns() != null) {
+      _columnsDirty |= _columns.setState(p, s);
+      return;
+    }
     Map<String, String> map = getMapField(p, true);
     map.put(ContextProperties.STATE.toString(), s.name());
   }
 
   public TaskPartitionState getPartitionState(int p) {
+    if (columns() != null) {
+      return _columns.getState(p);
+    }
     Map<String, String> map = getMapField(p);
     if (map == null) {
       return null;
@@ -106,6 +190,10 @@ public class JobContext extends HelixProperty {
   }
 
   public void setPartitionNumAttempts(int p, int n) {
+    if (columns() != null) {
+      _columnsDirty |= _columns.setNumAttempts(p, n);
+      return;
+    }
     Map<String, String> map = getMapField(p, true);
     map.put(ContextProperties.NUM_ATTEMPTS.toString(), String.valueOf(n));
   }
@@ -121,6 +209,9 @@ public class JobContext extends HelixProperty {
   }
 
   public int getPartitionNumAttempts(int p) {
+    if (columns() != null) {
+      return _columns.getNumAttempts(p);
+    }
     Map<String, String> map = getMapField(p);
     if (map == null) {
       return -1;
@@ -133,11 +224,18 @@ public class JobContext extends HelixProperty {
   }
 
   public void setPartitionStartTime(int p, long t) {
+    if (columns() != null) {
+      _columnsDirty |= _columns.setStartTime(p, t);
+      return;
+    }
     Map<String, String> map = getMapField(p, true);
     map.put(ContextProperties.START_TIME.toString(), String.valueOf(t));
   }
 
   public long getPartitionStartTime(int p) {
+    if (columns() != null) {
+      return _columns.getStartTime(p);
+    }
     Map<String, String> map = getMapField(p);
     if (map == null) {
       return WorkflowContext.UNSTARTED;
@@ -150,11 +248,18 @@ public class JobContext extends HelixProperty {
   }
 
   public void setPartitionFinishTime(int p, long t) {
+    if (columns() != null) {
+      _columnsDirty |= _columns.setFinishTime(p, t);
+      return;
+    }
     Map<String, String> map = getMapField(p, true);
     map.put(ContextProperties.FINISH_TIME.toString(), String.valueOf(t));
   }
 
   public long getPartitionFinishTime(int p) {
+    if (columns() != null) {
+      return _columns.getFinishTime(p);
+    }
     Map<String, String> map = getMapField(p);
     if (map == null) {
       return WorkflowContext.UNFINISHED;
@@ -167,27 +272,53 @@ public class JobContext extends HelixProperty {
   }
 
   public void setPartitionTarget(int p, String targetPName) {
+    if (columns() != null) {
+      _columnsDirty |= _columns.setTarget(p, targetPName);
+      return;
+    }
     Map<String, String> map = getMapField(p, true);
     map.put(ContextProperties.TARGET.toString(), targetPName);
   }
 
   public String getTargetForPartition(int p) {
+    if (columns() != null) {
+      return _columns.getTarget(p);
+    }
     Map<String, String> map = getMapField(p);
     return (map != null) ? map.get(ContextProperties.TARGET.toString()) : null;
   }
 
   public void setPartitionInfo(int p, String info) {
+    if (columns() != null) {
+      _columnsDirty |= _columns.setInfo(p, info);
+      return;
+    }
     Map<String, String> map = getMapField(p, true);
     map.put(ContextProperties.INFO.toString(), info);
   }
 
   public String getPartitionInfo(int p) {
+    if (columns() != null) {
+      return _columns.getInfo(p);
+    }
     Map<String, String> map = getMapField(p);
     return (map != null) ? map.get(ContextProperties.INFO.toString()) : null;
   }
 
   public Map<String, List<Integer>> getPartitionsByTarget() {
     Map<String, List<Integer>> result = Maps.newHashMap();
+    if (columns() != null) {
+      for (int pId : _columns.getPartitions()) {
+        String target = _columns.getTarget(pId);
+        if (target != null) {
+          if (!result.containsKey(target)) {
+            result.put(target, Lists.<Integer> newArrayList());
+          }
+          result.get(target).add(pId);
+        }
+      }
+      return result;
+    }
     for (Map.Entry<String, Map<String, String>> mapField : _record.getMapFields().entrySet()) {
       Integer pId = Integer.parseInt(mapField.getKey());
       Map<String, String> map = mapField.getValue();
@@ -207,6 +338,9 @@ public class JobContext extends HelixProperty {
   }
 
   public Set<Integer> getPartitionSet() {
+    if (columns() != null) {
+      return Sets.newHashSet(_columns.getPartitions());
+    }
     Set<Integer> partitions = Sets.newHashSet();
     for (String pName : _record.getMapFields().keySet()) {
       partitions.add(Integer.valueOf(pName));
@@ -215,17 +349,33 @@ public class JobContext extends HelixProperty {
   }
 
   public void setTaskIdForPartition(int p, String taskId) {
+    if (columns() != null) {
+      _columnsDirty |= _columns.setTaskId(p, taskId);
+      return;
+    }
     Map<String, String> map = getMapField(p, true);
     map.put(ContextProperties.TASK_ID.toString(), taskId);
   }
 
   public String getTaskIdForPartition(int p) {
+    if (columns() != null) {
+      return _columns.getTaskId(p);
+    }
     Map<String, String> map = getMapField(p);
     return (map != null) ? map.get(ContextProperties.TASK_ID.toString()) : null;
   }
 
   public Map<String, Integer> getTaskIdPartitionMap() {
     Map<String, Integer> partitionMap = new HashMap<String, Integer>();
+    if (columns() != null) {
+      for (int pId : _columns.getPartitions()) {
+        String taskId = _columns.getTaskId(pId);
+        if (taskId != null) {
+          partitionMap.put(taskId, pId);
+        }
+      }
+      return partitionMap;
+    }
     for (Map.Entry<String, Map<String, String>> mapField : _record.getMapFields().entrySet()) {
       Integer pId = Integer.parseInt(mapField.getKey());
       Map<String, String> map = mapField.getValue();
@@ -237,21 +387,35 @@ public class JobContext extends HelixProperty {
   }
 
   public void setAssignedParticipant(int p, String participantName) {
+    if (columns() != null) {
+      _columnsDirty |= _columns.setAssignedParticipant(p, participantName);
+      return;
+    }
     Map<String, String> map = getMapField(p, true);
     map.put(ContextProperties.ASSIGNED_PARTICIPANT.toString(), participantName);
   }
 
   public String getAssignedParticipant(int p) {
+    if (columns() != null) {
+      return _columns.getAssignedParticipant(p);
+    }
     Map<String, String> map = getMapField(p);
     return (map != null) ? map.get(ContextProperties.ASSIGNED_PARTICIPANT.toString()) : null;
   }
 
   public void setNextRetryTime(int p, long t) {
+    if (columns() != null) {
+      _columnsDirty |= _columns.setNextRetryTime(p, t);
+      return;
+    }
     Map<String, String> map = getMapField(p, true);
     map.put(ContextProperties.NEXT_RETRY_TIME.toString(), String.valueOf(t));
   }
 
   public long getNextRetryTime(int p) {
+    if (columns() != null) {
+      return _columns.getNextRetryTime(p);
+    }
     Map<String, String> map = getMapField(p);
     if (map == null) {
       return -1;
@@ -264,15 +428,58 @@ public class JobContext extends HelixProperty {
   }
 
   /**
-   * Get MapField for the given partition.
+   * Get MapField for the given partition. In columnar format this is a copy built from the columns,
+   * so changes to it are not reflected in the context.
    *
    * @param p
    * @return mapField for the partition, NULL if the partition has not scheduled yet.
    */
   public Map<String, String> getMapField(int p) {
+    if (columns() != null) {
+      return _columns.contains(p) ? toMapField(p) : null;
+    }
     return getMapField(p, false);
   }
 
+  private Map<String, String> toMapField(int p) {
+    Map<String, String> map = new TreeMap<String, String>();
+    putIfSet(map, ContextProperties.STATE, _columns.getState(p));
+    if (_columns.getNumAttempts(p) != -1) {
+      putIfSet(map, ContextProperties.NUM_ATTEMPTS, _columns.getNumAttempts(p));
+    }
+    if (_columns.getStartTime(p) != WorkflowContext.UNSTARTED) {
+      putIfSet(map, ContextProperties.START_TIME, _columns.getStartTime(p));
+    }
+    if (_columns.getFinishTime(p) != WorkflowContext.UNFINISHED) {
+      putIfSet(map, ContextProperties.FINISH_TIME, _columns.getFinishTime(p));
+    }
+    if (_columns.getNextRetryTime(p) != -1) {
+      putIfSet(map, ContextProperties.NEXT_RETRY_TIME, _columns.getNextRetryTime(p));
+    }
+    putIfSet(map, ContextProperties.TARGET, _columns.getTarget(p));
+    putIfSet(map, ContextProperties.TASK_ID, _columns.getTaskId(p));
+    putIfSet(map, ContextProperties.ASSIGNED_PARTICIPANT, _columns.getAssignedParticipant(p));
+    putIfSet(map, ContextProperties.INFO, _columns.getInfo(p));
+    return map;
+  }
+
+  private static void putIfSet(Map<String, String> map, ContextProperties key, Object value) {
+    if (value != null) {
+      map.put(key.name(), value.toString());
+    }
+  }
+
+  // decodes the partition columns on first use; null if the context is not in columnar format
+  private JobContextColumns columns() {
+    if (_columns == null) {
+      String encoded = _record.getSimpleField(ContextProperties.PARTITION_COLUMNS.name());
+      if (encoded != null) {
+        _columns = JobContextColumns.decode(encoded);
+      }
+    }
+    return _columns;
+  }
+
   private Map<String, String> getMapField(int p, boolean createIfNotPresent) {
     String pStr = String.valueOf(p);
     Map<String, String> map = _record.getMapField(pStr);
@@ -0,0 +1,410 @@
+package org.apache.helix.task;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.helix.HelixException;
+import org.apache.helix.util.GZipCompressionUtil;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+
+/**
+ * Per-partition job context state held as one primitive array per attribute, indexed by partition
+ * id. Serialized column by column as delta-encoded varints and compressed into a single blob, so a
+ * context with tens of thousands of tasks is parsed once instead of as one map field per partition.
+ */
+final class JobContextColumns {
+  private static final int FORMAT_VERSION = 1;
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int NO_STRING = -1;
+
+  private final BitSet _partitions = new BitSet();
+  // TaskPartitionState ordinal + 1, 0 if unset; new states must be appended to the enum
+  private byte[] _states = new byte[INITIAL_CAPACITY];
+  private int[] _numAttempts = newIntColumn(INITIAL_CAPACITY);
+  private long[] _startTimes = newLongColumn(INITIAL_CAPACITY, WorkflowContext.UNSTARTED);
+  private long[] _finishTimes = newLongColumn(INITIAL_CAPACITY, WorkflowContext.UNFINISHED);
+  private long[] _nextRetryTimes = newLongColumn(INITIAL_CAPACITY, -1);
+  private final StringColumn _targets = new StringColumn(INITIAL_CAPACITY);
+  private final StringColumn _taskIds = new StringColumn(INITIAL_CAPACITY);
+  private final StringColumn _participants = new StringColumn(INITIAL_CAPACITY);
+  private final StringColumn _infos = new StringColumn(INITIAL_CAPACITY);
+
+  boolean contains(int p) {
+    return p >= 0 && _partitions.get(p);
+  }
+
+  int size() {
+    return _partitions.cardinality();
+  }
+
+  /**
+   * @return ids of all partitions that have any state, in increasing order
+   */
+  List<Integer> getPartitions() {
+    List<Integer> partitions = Lists.newArrayListWithCapacity(size());
+    for (int p = _partitions.nextSetBit(0); p >= 0; p = _partitions.nextSetBit(p + 1)) {
+      partitions.add(p);
+    }
+    return partitions;
+  }
+
+  TaskPartitionState getState(int p) {
+    return contains(p) && _states[p] > 0 ? TaskPartitionState.values()[_states[p] - 1] : null;
+  }
+
+  boolean setState(int p, TaskPartitionState state) {
+    byte value = (byte) (state != null ? state.ordinal() + 1 : 0);
+    if (contains(p) && _states[p] == value) {
+      return false;
+    }
+    add(p);
+    _states[p] = value;
+    return true;
+  }
+
+  int getNumAttempts(int p) {
+    return contains(p) ? _numAttempts[p] : -1;
+  }
+
+  boolean setNumAttempts(int p, int n) {
+    if (contains(p) && _numAttempts[p] == n) {
+      return false;
+    }
+    add(p);
+    _numAttempts[p] = n;
+    return true;
+  }
+
+  long getStartTime(int p) {
+    return contains(p) ? _startTimes[p] : WorkflowContext.UNSTARTED;
+  }
+
+  boolean setStartTime(int p, long t) {
+    if (contains(p) && _startTimes[p] == t) {
+      return false;
+    }
+    add(p);
+    _startTimes[p] = t;
+    return true;
+  }
+
+  long getFinishTime(int p) {
+    return contains(p) ? _finishTimes[p] : WorkflowContext.UNFINISHED;
+  }
+
+  boolean setFinishTime(int p, long t) {
+    if (contains(p) && _finishTimes[p] == t) {
+      return false;
+    }
+    add(p);
+    _finishTimes[p] = t;
+    return true;
+  }
+
+  long getNextRetryTime(int p) {
+    return contains(p) ? _nextRetryTimes[p] : -1;
+  }
+
+  boolean setNextRetryTime(int p, long t) {
+    if (contains(p) && _nextRetryTimes[p] == t) {
+      return false;
+    }
+    add(p);
+    _nextRetryTimes[p] = t;
+    return true;
+  }
+
+  String getTarget(int p) {
+    return contains(p) ? _targets.get(p) : null;
+  }
+
+  boolean setTarget(int p, String target) {
+    add(p);
+    return _targets.set(p, target);
+  }
+
+  String getTaskId(int p) {
+    return contains(p) ? _taskIds.get(p) : null;
+  }
+
+  boolean setTaskId(int p, String taskId) {
+    add(p);
+    return _taskIds.set(p, taskId);
+  }
+
+  String getAssignedParticipant(int p) {
+    return contains(p) ? _participants.get(p) : null;
+  }
+
+  boolean setAssignedParticipant(int p, String participant) {
+    add(p);
+    return _participants.set(p, participant);
+  }
+
+  String getInfo(int p) {
+    return contains(p) ? _infos.get(p) : null;
+  }
+
+  boolean setInfo(int p, String info) {
+    add(p);
+    return _infos.set(p, info);
+  }
+
+  /**
+   * @return the columns gzip-compressed and base64-encoded, so they fit in a simple field
+   */
+  String encode() {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(FORMAT_VERSION);
+      List<Integer> partitions = getPartitions();
+      writeVarLong(out, partitions.size());
+      int prev = -1;
+      for (int p : partitions) {
+        writeVarLong(out, p - prev);
+        prev = p;
+      }
+      for (int p : partitions) {
+        out.writeByte(_states[p]);
+      }
+      for (int p : partitions) {
+        writeVarLong(out, _numAttempts[p]);
+      }
+      writeLongs(out, _startTimes, partitions);
+      writeLongs(out, _finishTimes, partitions);
+      writeLongs(out, _nextRetryTimes, partitions);
+      _targets.write(out, partitions);
+      _taskIds.write(out, partitions);
+      _participants.write(out, partitions);
+      _infos.write(out, partitions);
+      out.close();
+      return Base64.encodeBase64String(GZipCompressionUtil.compress(bytes.toByteArray()));
+    } catch (IOException e) {
+      throw new HelixException("Failed to encode job context columns", e);
+    }
+  }
+
+  static JobContextColumns decode(String encoded) {
+    JobContextColumns columns = new JobContextColumns();
+    try {
+      byte[] bytes =
+          GZipCompressionUtil.uncompress(new ByteArrayInputStream(Base64.decodeBase64(encoded)));
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+      int version = in.readInt();
+      if (version != FORMAT_VERSION) {
+        throw new HelixException("Unsupported job context columns version: " + version);
+      }
+      int[] partitions = new int[(int) readVarLong(in)];
+      int prev = -1;
+      for (int i = 0; i < partitions.length; i++) {
+        partitions[i] = prev + (int) readVarLong(in);
+        prev = partitions[i];
+        columns.add(partitions[i]);
+      }
+      for (int p : partitions) {
+        columns._states[p] = in.readByte();
+      }
+      for (int p : partitions) {
+        columns._numAttempts[p] = (int) readVarLong(in);
+      }
+      readLongs(in, columns._startTimes, partitions);
+      readLongs(in, columns._finishTimes, partitions);
+      readLongs(in, columns._nextRetryTimes, partitions);
+      columns._targets.read(in, partitions);
+      columns._taskIds.read(in, partitions);
+      columns._participants.read(in, partitions);
+      columns._infos.read(in, partitions);
+    } catch (IOException e) {
+      throw new HelixException("Failed to decode job context columns", e);
+    }
+    return columns;
+  }
+
+  private void add(int p) {
+    if (p < 0) {
+      throw new IllegalArgumentException("Invalid partition id: " + p);
+    }
+    if (_partitions.get(p)) {
+      return;
+    }
+    if (p >= _states.length) {
+      int capacity = Math.max(p + 1, _states.length * 2);
+      _states = Arrays.copyOf(_states, capacity);
+      _numAttempts = grow(_numAttempts, capacity, -1);
+      _startTimes = grow(_startTimes, capacity, WorkflowContext.UNSTARTED);
+      _finishTimes = grow(_finishTimes, capacity, WorkflowContext.UNFINISHED);
+      _nextRetryTimes = grow(_nextRetryTimes, capacity, -1);
+      _targets.grow(capacity);
+      _taskIds.grow(capacity);
+      _participants.grow(capacity);
+      _infos.grow(capacity);
+    }
+    _partitions.set(p);
+  }
+
+  private static int[] newIntColumn(int capacity) {
+    return grow(new int[0], capacity, -1);
+  }
+
+  private static long[] newLongColumn(int capacity, long absent) {
+    return grow(new long[0], capacity, absent);
+  }
+
+  private static int[] grow(int[] column, int capacity, int absent) {
+    int[] grown = Arrays.copyOf(column, capacity);
+    Arrays.fill(grown, column.length, capacity, absent);
+    return grown;
+  }
+
+  private static long[] grow(long[] column, int capacity, long absent) {
+    long[] grown = Arrays.copyOf(column, capacity);
+    Arrays.fill(grown, column.length, capacity, absent);
+    return grown;
+  }
+
+  // timestamps of neighbouring partitions are close, so each is written as a delta to the previous
+  private static void writeLongs(DataOutputStream out, long[] column, List<Integer> partitions)
+      throws IOException {
+    long prev = 0;
+    for (int p : partitions) {
+      writeVarLong(out, column[p] - prev);
+      prev = column[p];
+    }
+  }
+
+  private static void readLongs(DataInputStream in, long[] column, int[] partitions)
+      throws IOException {
+    long prev = 0;
+    for (int p : partitions) {
+      column[p] = prev + readVarLong(in);
+      prev = column[p];
+    }
+  }
+
+  // zigzag varint, so the small and -1 values that dominate the columns take a byte each
+  private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+    long zigzag = (value << 1) ^ (value >> 63);
+    while ((zigzag & ~0x7FL) != 0) {
+      out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+      zigzag >>>= 7;
+    }
+    out.writeByte((int) zigzag);
+  }
+
+  private static long readVarLong(DataInputStream in) throws IOException {
+    long zigzag = 0;
+    for (int shift = 0;; shift += 7) {
+      byte b = in.readByte();
+      zigzag |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        break;
+      }
+    }
+    return (zigzag >>> 1) ^ -(zigzag & 1);
+  }
+
+  /**
+   * Dictionary-encoded string attribute; targets, task ids and participants repeat a lot.
+   */
+  private static class StringColumn {
+    private final List<String> _values = Lists.newArrayList();
+    private final Map<String, Integer> _index = new HashMap<String, Integer>();
+    private int[] _refs;
+
+    StringColumn(int capacity) {
+      _refs = newIntColumn(capacity);
+    }
+
+    String get(int p) {
+      return _refs[p] != NO_STRING ? _values.get(_refs[p]) : null;
+    }
+
+    boolean set(int p, String value) {
+      int ref = NO_STRING;
+      if (value != null) {
+        Integer existing = _index.get(value);
+        if (existing == null) {
+          existing = _values.size();
+          _values.add(value);
+          _index.put(value, existing);
+        }
+        ref = existing;
+      }
+      if (_refs[p] == ref) {
+        return false;
+      }
+      _refs[p] = ref;
+      return true;
+    }
+
+    void grow(int capacity) {
+      _refs = JobContextColumns.grow(_refs, capacity, NO_STRING);
+    }
+
+    // only values still referenced are written, so replaced values do not accumulate
+    void write(DataOutputStream out, List<Integer> partitions) throws IOException {
+      Map<Integer, Integer> remapped = new HashMap<Integer, Integer>();
+      List<String> values = Lists.newArrayList();
+      for (int p : partitions) {
+        if (_refs[p] != NO_STRING && !remapped.containsKey(_refs[p])) {
+          remapped.put(_refs[p], values.size());
+          values.add(_values.get(_refs[p]));
+        }
+      }
+      writeVarLong(out, values.size());
+      for (String value : values) {
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+      }
+      for (int p : partitions) {
+        writeVarLong(out, _refs[p] != NO_STRING ? remapped.get(_refs[p]) : NO_STRING);
+      }
+    }
+
+    void read(DataInputStream in, int[] partitions) throws IOException {
+      int numValues = (int) readVarLong(in);
+      for (int i = 0; i < numValues; i++) {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        String value = new String(bytes, Charsets.UTF_8);
+        _index.put(value, _values.size());
+        _values.add(value);
+      }
+      for (int p : partitions) {
+        _refs[p] = (int) readVarLong(in);
+      }
+    }
+  }
+}
@@ -31,7 +31,6 @@ import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
-import org.apache.helix.AccessOption;
 import org.apache.helix.HelixDataAccessor;
 import org.apache.helix.PropertyKey;
 import org.apache.helix.ZNRecord;
@@ -46,7 +45,6 @@ import org.apache.helix.model.Resource;
 import org.apache.helix.model.ResourceAssignment;
 import org.apache.log4j.Logger;
 
-import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
 
@@ -60,16 +58,15 @@ public class JobRebalancer extends TaskRebalancer {
   private static TaskAssignmentCalculator _genericTaskAssignmentCal =
       new GenericTaskAssignmentCalculator();
 
-  private static final String PREV_RA_NODE = "PreviousResourceAssignment";
-
   @Override
   public ResourceAssignment computeBestPossiblePartitionState(ClusterDataCache clusterData,
       IdealState taskIs, Resource resource, CurrentStateOutput currStateOutput) {
     final String jobName = resource.getResourceName();
     LOG.debug("Computer Best Partition for job: " + jobName);
+    _taskDataCache = clusterData.getTaskDataCache();
 
     // Fetch job configuration
-    JobConfig jobCfg = TaskUtil.getJobCfg(_manager, jobName);
+    JobConfig jobCfg = _taskDataCache.getJobConfig(jobName);
     if (jobCfg == null) {
       LOG.error("Job configuration is NULL for " + jobName);
       return buildEmptyAssignment(jobName, currStateOutput);
@@ -77,13 +74,13 @@ public class JobRebalancer extends TaskRebalancer {
     String workflowResource = jobCfg.getWorkflow();
 
     // Fetch workflow configuration and context
-    WorkflowConfig workflowCfg = TaskUtil.getWorkflowCfg(_manager, workflowResource);
+    WorkflowConfig workflowCfg = _taskDataCache.getWorkflowConfig(workflowResource);
     if (workflowCfg == null) {
       LOG.error("Workflow configuration is NULL for " + jobName);
       return buildEmptyAssignment(jobName, currStateOutput);
     }
 
-    WorkflowContext workflowCtx = TaskUtil.getWorkflowContext(_manager, workflowResource);
+    WorkflowContext workflowCtx = getWorkflowContext(workflowResource);
     if (workflowCtx == null) {
       LOG.error("Workflow context is NULL for " + jobName);
       return buildEmptyAssignment(jobName, currStateOutput);
@@ -122,11 +119,13 @@ public class JobRebalancer extends TaskRebalancer {
     }
 
     // Fetch any existing context information from the property store.
-    JobContext jobCtx = TaskUtil.getJobContext(_manager, jobName);
+    JobContext jobCtx = getJobContext(jobName);
     if (jobCtx == null) {
       jobCtx = new JobContext(new ZNRecord(TaskUtil.TASK_CONTEXT_KW));
       jobCtx.setStartTime(System.currentTimeMillis());
     }
+    // New and existing contexts are moved to the configured format; written below if converted
+    jobCtx.setColumnarFormat(Boolean.getBoolean(JobContext.COLUMNAR_FORMAT_ENABLED));
 
     // Grab the old assignment, or an empty one if it doesn't exist
     ResourceAssignment prevAssignment = getPrevResourceAssignment(jobName);
@@ -160,9 +159,9 @@ public class JobRebalancer extends TaskRebalancer {
       accessor.setProperty(propertyKey, taskIs);
     }
 
-    // Update rebalancer context, previous ideal state.
-    TaskUtil.setJobContext(_manager, jobName, jobCtx);
-    TaskUtil.setWorkflowContext(_manager, workflowResource, workflowCtx);
+    // Update rebalancer context, previous ideal state. Only what changed is written.
+    setJobContext(jobName, jobCtx);
+    setWorkflowContext(workflowResource, workflowCtx);
     setPrevResourceAssignment(jobName, newAssignment);
 
     LOG.debug("Job " + jobName + " new assignment " + Arrays
@@ -180,7 +179,7 @@ public class JobRebalancer extends TaskRebalancer {
         if (jobName.equals(currentJobName)) {
           continue;
         }
-        JobContext jobContext = TaskUtil.getJobContext(_manager, jobName);
+        JobContext jobContext = getJobContext(jobName);
         if (jobContext == null) {
           continue;
         }
@@ -560,10 +559,8 @@ public class JobRebalancer extends TaskRebalancer {
    * @return {@link ResourceAssignment} instance, or null if no assignment is available
    */
   private ResourceAssignment getPrevResourceAssignment(String resourceName) {
-    ZNRecord r = _manager.getHelixPropertyStore()
-        .get(Joiner.on("/").join(TaskConstants.REBALANCER_CONTEXT_ROOT, resourceName, PREV_RA_NODE),
-            null, AccessOption.PERSISTENT);
-    return r != null ? new ResourceAssignment(r) : null;
+    return _taskDataCache.getPrevResourceAssignment(resourceName,
+        _manager.getHelixPropertyStore());
   }
 
   /**
@@ -574,9 +571,8 @@ public class JobRebalancer extends TaskRebalancer {
    */
   private void setPrevResourceAssignment(String resourceName,
       ResourceAssignment ra) {
-    _manager.getHelixPropertyStore()
-        .set(Joiner.on("/").join(TaskConstants.REBALANCER_CONTEXT_ROOT, resourceName, PREV_RA_NODE),
-            ra.getRecord(), AccessOption.PERSISTENT);
+    _taskDataCache.updatePrevResourceAssignment(resourceName, ra,
+        _manager.getHelixPropertyStore());
   }
 
   /**
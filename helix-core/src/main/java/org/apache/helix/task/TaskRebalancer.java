@@ -32,6 +32,7 @@ import org.apache.helix.controller.rebalancer.internal.MappingCalculator;
 import org.apache.helix.controller.rebalancer.util.RebalanceScheduler;
 import org.apache.helix.controller.stages.ClusterDataCache;
 import org.apache.helix.controller.stages.CurrentStateOutput;
+import org.apache.helix.controller.stages.TaskDataCache;
 import org.apache.helix.model.IdealState;
 import org.apache.helix.model.Partition;
 import org.apache.helix.model.Resource;
@@ -52,6 +53,8 @@ public abstract class TaskRebalancer implements Rebalancer, MappingCalculator {
   protected HelixManager _manager;
   protected static RebalanceScheduler _scheduledRebalancer = new RebalanceScheduler();
   protected ClusterStatusMonitor _clusterStatusMonitor;
+  // task configs and contexts of the pipeline run, set by computeBestPossiblePartitionState()
+  protected TaskDataCache _taskDataCache;
 
   @Override public void init(HelixManager manager) {
     _manager = manager;
@@ -84,7 +87,7 @@ public abstract class TaskRebalancer implements Rebalancer, MappingCalculator {
             if (ctx.getJobState(jobToFail) == TaskState.IN_PROGRESS) {
               ctx.setJobState(jobToFail, TaskState.ABORTED);
               _clusterStatusMonitor
-                  .updateJobCounters(TaskUtil.getJobCfg(_manager, jobToFail), TaskState.ABORTED);
+                  .updateJobCounters(_taskDataCache.getJobConfig(jobToFail), TaskState.ABORTED);
             }
           }
           return true;
@@ -171,7 +174,7 @@ public abstract class TaskRebalancer implements Rebalancer, MappingCalculator {
 
     // If there is parent job failed, schedule the job only when ignore dependent
     // job failure enabled
-    JobConfig jobConfig = TaskUtil.getJobCfg(_manager, job);
+    JobConfig jobConfig = _taskDataCache.getJobConfig(job);
     if (failedCount > 0 && !jobConfig.isIgnoreDependentJobFailure()) {
       markJobFailed(job, null, workflowCfg, workflowCtx);
       LOG.debug(
@@ -239,7 +242,7 @@ public abstract class TaskRebalancer implements Rebalancer, MappingCalculator {
 
   protected void scheduleJobCleanUp(String jobName, WorkflowConfig workflowConfig,
       long currentTime) {
-    JobConfig jobConfig = TaskUtil.getJobCfg(_manager, jobName);
+    JobConfig jobConfig = _taskDataCache.getJobConfig(jobName);
     long currentScheduledTime =
         _scheduledRebalancer.getRebalanceTime(workflowConfig.getWorkflowId()) == -1
             ? Long.MAX_VALUE
@@ -262,6 +265,23 @@ public abstract class TaskRebalancer implements Rebalancer, MappingCalculator {
     return (startTime == null || startTime.getTime() <= System.currentTimeMillis());
   }
 
+  protected JobContext getJobContext(String job) {
+    return _taskDataCache.getJobContext(job, _manager.getHelixPropertyStore());
+  }
+
+  protected void setJobContext(String job, JobContext jobContext) {
+    _taskDataCache.updateJobContext(job, jobContext, _manager.getHelixPropertyStore());
+  }
+
+  protected WorkflowContext getWorkflowContext(String workflow) {
+    return _taskDataCache.getWorkflowContext(workflow, _manager.getHelixPropertyStore());
+  }
+
+  protected void setWorkflowContext(String workflow, WorkflowContext workflowContext) {
+    _taskDataCache.updateWorkflowContext(workflow, workflowContext,
+        _manager.getHelixPropertyStore());
+  }
+
   /**
    * Cleans up IdealState and external view associated with a job/workflow resource.
    */
@@ -50,15 +50,16 @@ public class WorkflowRebalancer extends TaskRebalancer {
       IdealState taskIs, Resource resource, CurrentStateOutput currStateOutput) {
     final String workflow = resource.getResourceName();
     LOG.debug("Computer Best Partition for workflow: " + workflow);
+    _taskDataCache = clusterData.getTaskDataCache();
 
     // Fetch workflow configuration and context
-    WorkflowConfig workflowCfg = TaskUtil.getWorkflowCfg(_manager, workflow);
+    WorkflowConfig workflowCfg = _taskDataCache.getWorkflowConfig(workflow);
     if (workflowCfg == null) {
       LOG.warn("Workflow configuration is NULL for " + workflow);
       return buildEmptyAssignment(workflow, currStateOutput);
     }
 
-    WorkflowContext workflowCtx = TaskUtil.getWorkflowContext(_manager, workflow);
+    WorkflowContext workflowCtx = getWorkflowContext(workflow);
     // Initialize workflow context if needed
     if (workflowCtx == null) {
       workflowCtx = new WorkflowContext(new ZNRecord(TaskUtil.WORKFLOW_CONTEXT_KW));
@@ -84,7 +85,7 @@ public class WorkflowRebalancer extends TaskRebalancer {
     if (workflowCtx.getFinishTime() == WorkflowContext.UNFINISHED
         && isWorkflowFinished(workflowCtx, workflowCfg)) {
       workflowCtx.setFinishTime(currentTime);
-      TaskUtil.setWorkflowContext(_manager, workflow, workflowCtx);
+      setWorkflowContext(workflow, workflowCtx);
     }
 
     if (workflowCtx.getFinishTime() != WorkflowContext.UNFINISHED) {
@@ -122,7 +123,7 @@ public class WorkflowRebalancer extends TaskRebalancer {
 
     cleanExpiredJobs(workflowCfg, workflowCtx);
 
-    TaskUtil.setWorkflowContext(_manager, workflow, workflowCtx);
+    setWorkflowContext(workflow, workflowCtx);
     return buildEmptyAssignment(workflow, currStateOutput);
   }
 
@@ -154,7 +155,7 @@ public class WorkflowRebalancer extends TaskRebalancer {
 
       // check ancestor job status
       if (isJobReadyToSchedule(job, workflowCfg, workflowCtx)) {
-        JobConfig jobConfig = TaskUtil.getJobCfg(_manager, job);
+        JobConfig jobConfig = _taskDataCache.getJobConfig(job);
         // Since the start time is calculated base on the time of completion of parent jobs for this
         // job, the calculated start time should only be calculate once. Persist the calculated time
         // in WorkflowContext znode.
@@ -176,7 +177,7 @@ public class WorkflowRebalancer extends TaskRebalancer {
           calculatedStartTime = Math.max(calculatedStartTime, jobConfig.getExecutionStart());
           startTimeMap.put(job, String.valueOf(calculatedStartTime));
           workflowCtx.getRecord().setMapField(START_TIME_KEY, startTimeMap);
-          TaskUtil.setWorkflowContext(_manager, jobConfig.getWorkflow(), workflowCtx);
+          setWorkflowContext(jobConfig.getWorkflow(), workflowCtx);
         }
 
         // Time is not ready. Set a trigger and update the start time.
@@ -241,6 +242,7 @@ public class WorkflowRebalancer extends TaskRebalancer {
       }
     }
     accessor.setProperty(keyBuilder.resourceConfig(jobResource), resourceConfig);
+    _taskDataCache.updateJobConfig(jobResource, new JobConfig(resourceConfig));
 
     // Push out new ideal state based on number of target partitions
     IdealStateBuilder builder = new CustomModeISBuilder(jobResource);
@@ -299,7 +301,7 @@ public class WorkflowRebalancer extends TaskRebalancer {
         // Skip scheduling this workflow again if the previous run (if any) is still active
         String lastScheduled = workflowCtx.getLastScheduledSingleWorkflow();
         if (lastScheduled != null) {
-          WorkflowContext lastWorkflowCtx = TaskUtil.getWorkflowContext(_manager, lastScheduled);
+          WorkflowContext lastWorkflowCtx = getWorkflowContext(lastScheduled);
           if (lastWorkflowCtx != null
               && lastWorkflowCtx.getFinishTime() == WorkflowContext.UNFINISHED) {
             LOG.info("Skip scheduling since last schedule has not completed yet " + lastScheduled);
@@ -334,7 +336,7 @@ public class WorkflowRebalancer extends TaskRebalancer {
           }
           // Persist workflow start regardless of success to avoid retrying and failing
           workflowCtx.setLastScheduledSingleWorkflow(newWorkflowName);
-          TaskUtil.setWorkflowContext(_manager, workflow, workflowCtx);
+          setWorkflowContext(workflow, workflowCtx);
         }
 
         // Change the time to trigger the pipeline to that of the next run
@@ -460,6 +462,7 @@ public class WorkflowRebalancer extends TaskRebalancer {
 
       // delete workflow config
       PropertyKey workflowCfgKey = TaskUtil.getWorkflowConfigKey(accessor, workflow);
+      _taskDataCache.removeConfig(workflow);
       if (accessor.getProperty(workflowCfgKey) != null) {
         if (!accessor.removeProperty(workflowCfgKey)) {
           LOG.error(String.format(
@@ -469,6 +472,7 @@ public class WorkflowRebalancer extends TaskRebalancer {
       }
       // Delete workflow context
       LOG.info("Removing workflow context: " + workflow);
+      _taskDataCache.removeContext(workflow);
       if (!TaskUtil.removeWorkflowContext(_manager, workflow)) {
         LOG.error(String.format(
             "Error occurred while trying to clean up workflow %s. Aborting further clean up steps.",
@@ -522,9 +526,14 @@ public class WorkflowRebalancer extends TaskRebalancer {
     };
     accessor.getBaseDataAccessor().update(workflowKey.getPath(), dagRemover,
         AccessOption.PERSISTENT);
+    WorkflowConfig workflowConfig = TaskUtil.getWorkflowCfg(accessor, workflow);
+    if (workflowConfig != null) {
+      _taskDataCache.updateWorkflowConfig(workflow, workflowConfig);
+    }
 
     // Delete job configs.
     PropertyKey cfgKey = TaskUtil.getWorkflowConfigKey(accessor, job);
+    _taskDataCache.removeConfig(job);
     if (accessor.getProperty(cfgKey) != null) {
       if (!accessor.removeProperty(cfgKey)) {
         LOG.error(String.format(
@@ -535,6 +544,7 @@ public class WorkflowRebalancer extends TaskRebalancer {
 
     // Delete job context
     // For recurring workflow, it's OK if the node doesn't exist.
+    _taskDataCache.removeContext(job);
     if (!TaskUtil.removeJobContext(_manager, job)) {
       LOG.warn(String.format("Error occurred while trying to clean up job %s.", job));
     }
@@ -552,8 +562,8 @@ public class WorkflowRebalancer extends TaskRebalancer {
     Map<String, TaskState> jobStates = workflowContext.getJobStates();
     long newTimeToClean = Long.MAX_VALUE;
     for (String job : workflowConfig.getJobDag().getAllNodes()) {
-      JobConfig jobConfig = TaskUtil.getJobCfg(_manager, job);
-      JobContext jobContext = TaskUtil.getJobContext(_manager, job);
+      JobConfig jobConfig = _taskDataCache.getJobConfig(job);
+      JobContext jobContext = getJobContext(job);
       // There is no ABORTED state for JobQueue Job. The job will die with workflow
       if (jobContext != null && jobStates.containsKey(job) && (
           jobStates.get(job) == TaskState.COMPLETED || jobStates.get(job) == TaskState.FAILED)) {
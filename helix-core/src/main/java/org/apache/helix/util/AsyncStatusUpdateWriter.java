@@ -0,0 +1,180 @@
+package org.apache.helix.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.I0Itec.zkclient.DataUpdater;
+import org.apache.helix.AccessOption;
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.PropertyKey;
+import org.apache.helix.PropertyType;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.ZNRecordUpdater;
+import org.apache.helix.model.StatusUpdate;
+import org.apache.log4j.Logger;
+
+/**
+ * Buffers status update records and writes them in batches. Records for the same path are merged
+ * in memory, so that the several status updates logged while handling one message end up in a
+ * single write. Pending records are flushed every flush interval by a daemon thread; when the
+ * number of pending records reaches the limit, new records are dropped until the next flush.
+ */
+class AsyncStatusUpdateWriter {
+  private static final Logger LOG = Logger.getLogger(AsyncStatusUpdateWriter.class);
+
+  private final long _flushIntervalMs;
+  private final int _maxPendingRecords;
+
+  private final Object _lock = new Object();
+  private Map<HelixDataAccessor, Map<String, PendingUpdate>> _pendingUpdates =
+      new HashMap<HelixDataAccessor, Map<String, PendingUpdate>>();
+  private int _numPendingRecords = 0;
+  private long _numDroppedRecords = 0;
+
+  private ScheduledExecutorService _flushExecutor;
+
+  private static class PendingUpdate {
+    final PropertyKey _key;
+    final ZNRecord _record;
+
+    PendingUpdate(PropertyKey key, ZNRecord record) {
+      _key = key;
+      _record = record;
+    }
+  }
+
+  AsyncStatusUpdateWriter(long flushIntervalMs, int maxPendingRecords) {
+    _flushIntervalMs = flushIntervalMs;
+    _maxPendingRecords = maxPendingRecords;
+  }
+
+  /**
+   * Start the daemon thread that flushes pending records periodically
+   */
+  synchronized void start() {
+    if (_flushExecutor != null) {
+      return;
+    }
+    _flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "StatusUpdateWriter");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    _flushExecutor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        flush();
+      }
+    }, _flushIntervalMs, _flushIntervalMs, TimeUnit.MILLISECONDS);
+    LOG.info("Write status updates every " + _flushIntervalMs + " ms, max pending records: "
+        + _maxPendingRecords);
+  }
+
+  /**
+   * Buffer a status update record
+   * @return false if the record is dropped because too many records are pending
+   */
+  boolean add(HelixDataAccessor accessor, PropertyKey key, ZNRecord record) {
+    synchronized (_lock) {
+      if (_numPendingRecords >= _maxPendingRecords) {
+        _numDroppedRecords++;
+        return false;
+      }
+      Map<String, PendingUpdate> updates = _pendingUpdates.get(accessor);
+      if (updates == null) {
+        updates = new LinkedHashMap<String, PendingUpdate>();
+        _pendingUpdates.put(accessor, updates);
+      }
+      String path = key.getPath();
+      PendingUpdate update = updates.get(path);
+      if (update == null) {
+        updates.put(path, new PendingUpdate(key, record));
+      } else {
+        update._record.merge(record);
+      }
+      _numPendingRecords++;
+      return true;
+    }
+  }
+
+  int getNumPendingRecords() {
+    synchronized (_lock) {
+      return _numPendingRecords;
+    }
+  }
+
+  /**
+   * Write all pending records, one batch per accessor
+   */
+  void flush() {
+    Map<HelixDataAccessor, Map<String, PendingUpdate>> pendingUpdates;
+    long numDroppedRecords;
+    synchronized (_lock) {
+      if (_numPendingRecords == 0 && _numDroppedRecords == 0) {
+        return;
+      }
+      pendingUpdates = _pendingUpdates;
+      numDroppedRecords = _numDroppedRecords;
+      _pendingUpdates = new HashMap<HelixDataAccessor, Map<String, PendingUpdate>>();
+      _numPendingRecords = 0;
+      _numDroppedRecords = 0;
+    }
+
+    if (numDroppedRecords > 0) {
+      LOG.warn("Dropped " + numDroppedRecords + " status updates, more than "
+          + _maxPendingRecords + " records were pending");
+    }
+
+    for (Map.Entry<HelixDataAccessor, Map<String, PendingUpdate>> entry : pendingUpdates
+        .entrySet()) {
+      HelixDataAccessor accessor = entry.getKey();
+      List<String> paths = new ArrayList<String>();
+      List<DataUpdater<ZNRecord>> updaters = new ArrayList<DataUpdater<ZNRecord>>();
+      try {
+        for (PendingUpdate update : entry.getValue().values()) {
+          if (update._key.getType() == PropertyType.STATUSUPDATES) {
+            // participant status updates are left to the accessor, which may not persist them
+            accessor.updateProperty(update._key, new StatusUpdate(update._record));
+          } else {
+            paths.add(update._key.getPath());
+            updaters.add(new ZNRecordUpdater(update._record));
+          }
+        }
+        if (!paths.isEmpty()) {
+          accessor.updateChildren(paths, updaters, AccessOption.PERSISTENT);
+        }
+      } catch (Exception e) {
+        LOG.error("Exception while writing " + entry.getValue().size() + " status updates", e);
+      }
+    }
+  }
+}
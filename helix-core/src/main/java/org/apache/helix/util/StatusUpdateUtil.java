@@ -52,6 +52,75 @@ import org.apache.log4j.Logger;
 public class StatusUpdateUtil {
   static Logger _logger = Logger.getLogger(StatusUpdateUtil.class);
 
+  /**
+   * If true, status updates other than errors are buffered and written in batches by a background
+   * thread instead of on the message handling thread
+   */
+  public static final String ASYNC_STATUS_UPDATE_ENABLED = "helix.statusUpdate.asyncEnabled";
+  public static final String STATUS_UPDATE_FLUSH_INTERVAL_MS = "helix.statusUpdate.flushIntervalMs";
+  public static final String STATUS_UPDATE_MAX_PENDING_RECORDS =
+      "helix.statusUpdate.maxPendingRecords";
+  /**
+   * The least severe {@link Level} of status updates that are recorded, e.g. HELIX_WARNING to
+   * skip informational status updates
+   */
+  public static final String STATUS_UPDATE_LEVEL = "helix.statusUpdate.level";
+
+  private static final long DEFAULT_FLUSH_INTERVAL_MS = 100;
+  private static final int DEFAULT_MAX_PENDING_RECORDS = 10000;
+
+  private static AsyncStatusUpdateWriter _sharedWriter;
+
+  private final Level _level;
+  private final AsyncStatusUpdateWriter _writer;
+
+  public StatusUpdateUtil() {
+    this(getConfiguredLevel(),
+        Boolean.getBoolean(ASYNC_STATUS_UPDATE_ENABLED) ? getSharedWriter() : null);
+  }
+
+  StatusUpdateUtil(Level level, AsyncStatusUpdateWriter writer) {
+    _level = level;
+    _writer = writer;
+  }
+
+  private static Level getConfiguredLevel() {
+    String level = System.getProperty(STATUS_UPDATE_LEVEL);
+    if (level == null) {
+      return Level.HELIX_INFO;
+    }
+    try {
+      return Level.valueOf(level);
+    } catch (IllegalArgumentException e) {
+      _logger.warn("Invalid " + STATUS_UPDATE_LEVEL + ": " + level + ", record all status updates");
+      return Level.HELIX_INFO;
+    }
+  }
+
+  private static synchronized AsyncStatusUpdateWriter getSharedWriter() {
+    if (_sharedWriter == null) {
+      _sharedWriter =
+          new AsyncStatusUpdateWriter(Long.getLong(STATUS_UPDATE_FLUSH_INTERVAL_MS,
+              DEFAULT_FLUSH_INTERVAL_MS), Integer.getInteger(STATUS_UPDATE_MAX_PENDING_RECORDS,
+              DEFAULT_MAX_PENDING_RECORDS));
+      _sharedWriter.start();
+    }
+    return _sharedWriter;
+  }
+
+  /**
+   * Write the status updates buffered in asynchronous mode
+   */
+  public static void flushStatusUpdates() {
+    AsyncStatusUpdateWriter writer;
+    synchronized (StatusUpdateUtil.class) {
+      writer = _sharedWriter;
+    }
+    if (writer != null) {
+      writer.flush();
+    }
+  }
+
   public static class Transition implements Comparable<Transition> {
     private final String _msgID;
     private final long _timeStamp;
@@ -327,6 +396,9 @@ public class StatusUpdateUtil {
    */
   public void logMessageStatusUpdateRecord(Message message, Level level, Class classInfo,
       String additionalInfo, HelixDataAccessor accessor) {
+    if (level.ordinal() > _level.ordinal()) {
+      return;
+    }
     try {
       ZNRecord record = createMessageStatusUpdateRecord(message, level, classInfo, additionalInfo);
       publishStatusUpdateRecord(record, message, level, accessor);
@@ -387,9 +459,8 @@ public class StatusUpdateUtil {
     if (!_recordedMessages.containsKey(message.getMsgId())) {
       // TODO instanceName of a controller might be any string
       if (instanceName.equalsIgnoreCase("Controller")) {
-        accessor.updateProperty(
-            keyBuilder.controllerTaskStatus(statusUpdateSubPath, statusUpdateKey),
-            new StatusUpdate(createMessageLogRecord(message)));
+        updateStatus(accessor, keyBuilder.controllerTaskStatus(statusUpdateSubPath,
+            statusUpdateKey), createMessageLogRecord(message), level);
 
       } else {
 
@@ -405,16 +476,15 @@ public class StatusUpdateUtil {
           _logger.trace("StatusUpdate path:" + propertyKey.getPath() + ", updates:"
               + statusUpdateRecord);
         }
-        accessor.updateProperty(propertyKey, new StatusUpdate(statusUpdateRecord));
+        updateStatus(accessor, propertyKey, statusUpdateRecord, level);
 
       }
       _recordedMessages.put(message.getMsgId(), message.getMsgId());
     }
 
     if (instanceName.equalsIgnoreCase("Controller")) {
-      accessor.updateProperty(
-          keyBuilder.controllerTaskStatus(statusUpdateSubPath, statusUpdateKey), new StatusUpdate(
-              record));
+      updateStatus(accessor, keyBuilder.controllerTaskStatus(statusUpdateSubPath, statusUpdateKey),
+          record, level);
     } else {
 
       PropertyKey propertyKey =
@@ -425,7 +495,7 @@ public class StatusUpdateUtil {
       if (_logger.isTraceEnabled()) {
         _logger.trace("StatusUpdate path:" + propertyKey.getPath() + ", updates:" + record);
       }
-      accessor.updateProperty(propertyKey, new StatusUpdate(record));
+      updateStatus(accessor, propertyKey, record, level);
     }
 
     // If the error level is ERROR, also write the record to "ERROR" ZNode
@@ -434,6 +504,19 @@ public class StatusUpdateUtil {
     }
   }
 
+  /**
+   * Merge a status update record into the status update ZNode. Errors are always written right
+   * away, other records are buffered if asynchronous status updates are enabled
+   */
+  private void updateStatus(HelixDataAccessor accessor, PropertyKey key, ZNRecord record,
+      Level level) {
+    if (_writer == null || level == Level.HELIX_ERROR) {
+      accessor.updateProperty(key, new StatusUpdate(record));
+    } else {
+      _writer.add(accessor, key, record);
+    }
+  }
+
   private String getStatusUpdateKey(Message message) {
     if (message.getMsgType().equalsIgnoreCase(MessageType.STATE_TRANSITION.name())) {
       return message.getPartitionName();
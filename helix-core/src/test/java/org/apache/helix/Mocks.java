@@ -32,6 +32,7 @@ import org.I0Itec.zkclient.IZkChildListener;
 import org.I0Itec.zkclient.IZkDataListener;
 import org.apache.helix.PropertyKey.Builder;
 import org.apache.helix.healthcheck.ParticipantHealthReportCollector;
+import org.apache.helix.manager.zk.ZKHelixDataAccessor;
 import org.apache.helix.messaging.AsyncCallback;
 import org.apache.helix.messaging.handling.HelixTaskExecutor;
 import org.apache.helix.messaging.handling.HelixTaskResult;
@@ -463,9 +464,11 @@ public class Mocks {
 
   }
 
-  public static class MockAccessor implements HelixDataAccessor {
+  // extends the zookeeper accessor so that the batch operations it adds are used with the mock
+  public static class MockAccessor extends ZKHelixDataAccessor {
     private final String _clusterName;
     Map<String, ZNRecord> data = new HashMap<String, ZNRecord>();
+    Map<String, Integer> versions = new HashMap<String, Integer>();
     private final Builder _propertyKeyBuilder;
 
     public MockAccessor() {
@@ -473,6 +476,7 @@ public class Mocks {
     }
 
     public MockAccessor(String clusterName) {
+      super(clusterName, new MockBaseDataAccessor());
       _clusterName = clusterName;
       _propertyKeyBuilder = new PropertyKey.Builder(_clusterName);
     }
@@ -503,9 +507,15 @@ public class Mocks {
     public boolean setProperty(PropertyKey key, HelixProperty value) {
       String path = key.getPath();
       data.put(path, value.getRecord());
+      bumpVersion(path);
       return true;
     }
 
+    private void bumpVersion(String path) {
+      Integer version = versions.get(path);
+      versions.put(path, version == null ? 0 : version + 1);
+    }
+
     @Override
     public <T extends HelixProperty> boolean updateProperty(PropertyKey key, T value) {
       return updateProperty(key, new ZNRecordUpdater(value.getRecord()) , value);
@@ -543,6 +553,7 @@ public class Mocks {
         }
       }
 
+      bumpVersion(path);
       return true;
     }
 
@@ -558,9 +569,25 @@ public class Mocks {
       String path = key.getPath(); // PropertyPathBuilder.getPath(type,
       // _clusterName, keys);
       data.remove(path);
+      versions.remove(path);
       return true;
     }
 
+    @Override
+    public List<HelixProperty.Stat> getPropertyStats(List<PropertyKey> keys) {
+      List<HelixProperty.Stat> stats = new ArrayList<HelixProperty.Stat>();
+      for (PropertyKey key : keys) {
+        String path = key.getPath();
+        HelixProperty.Stat stat = null;
+        if (data.containsKey(path)) {
+          Integer version = versions.get(path);
+          stat = new HelixProperty.Stat(version == null ? 0 : version, 0, 0);
+        }
+        stats.add(stat);
+      }
+      return stats;
+    }
+
     @Override
     public List<String> getChildNames(PropertyKey propertyKey) {
       List<String> child = new ArrayList<String>();
@@ -616,8 +643,20 @@ public class Mocks {
 
     @Override
     public <T extends HelixProperty> boolean[] setChildren(List<PropertyKey> keys, List<T> children) {
-      // TODO Auto-generated method stub
-      return null;
+      boolean[] success = new boolean[keys.size()];
+      for (int i = 0; i < keys.size(); i++) {
+        success[i] = setProperty(keys.get(i), children.get(i));
+      }
+      return success;
+    }
+
+    @Override
+    public boolean[] removeChildren(List<PropertyKey> keys) {
+      boolean[] success = new boolean[keys.size()];
+      for (int i = 0; i < keys.size(); i++) {
+        success[i] = removeProperty(keys.get(i));
+      }
+      return success;
     }
 
     @Override
@@ -19,12 +19,21 @@ package org.apache.helix;
  * under the License.
  */
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.helix.BaseDataAccessor;
 import org.apache.helix.GroupCommit;
 import org.apache.helix.ZNRecord;
+import org.apache.helix.ZNRecordDelta;
+import org.testng.Assert;
+import org.testng.annotations.Test;
 
 public class TestGroupCommit {
   // @Test
@@ -41,6 +50,105 @@ public class TestGroupCommit {
     System.out.println(accessor.get("test", null, 0).getSimpleFields().size());
   }
 
+  @Test
+  public void testMergeConcurrentCommits() throws Exception {
+    final AtomicInteger numSets = new AtomicInteger();
+    final CountDownLatch firstSetStarted = new CountDownLatch(1);
+    final CountDownLatch blockFirstSet = new CountDownLatch(1);
+    final BaseDataAccessor<ZNRecord> accessor = new Mocks.MockBaseDataAccessor() {
+      @Override
+      public boolean set(String path, ZNRecord record, int options) {
+        if (numSets.incrementAndGet() == 1) {
+          firstSetStarted.countDown();
+          try {
+            blockFirstSet.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return super.set(path, record, options);
+      }
+    };
+    final GroupCommit commit = new GroupCommit(1);
+    int numCommits = 20;
+    final AtomicInteger numSuccesses = new AtomicInteger();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < numCommits; i++) {
+      final ZNRecord record = new ZNRecord("test");
+      record.setSimpleField("test_id" + i, "" + i);
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          if (commit.commit(accessor, 0, "test", record)) {
+            numSuccesses.incrementAndGet();
+          }
+        }
+      });
+    }
+
+    // the first commit blocks in its write while the others are queued behind it
+    threads.get(0).start();
+    firstSetStarted.await();
+    for (Thread thread : threads.subList(1, numCommits)) {
+      thread.start();
+      // a committer that is not the leader waits on its future
+      while (thread.getState() != Thread.State.WAITING) {
+        Thread.sleep(1);
+      }
+    }
+    blockFirstSet.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    // every update is written, and the updates queued behind a write are merged into one
+    Assert.assertEquals(numSuccesses.get(), numCommits);
+    Assert.assertEquals(accessor.get("test", null, 0).getSimpleFields().size(), numCommits);
+    Assert.assertEquals(numSets.get(), 2);
+  }
+
+  @Test
+  public void testRemoveIfEmpty() {
+    final List<String> removed = new ArrayList<String>();
+    BaseDataAccessor<ZNRecord> accessor = new Mocks.MockBaseDataAccessor() {
+      @Override
+      public boolean remove(String path, int options) {
+        removed.add(path);
+        return true;
+      }
+    };
+    GroupCommit commit = new GroupCommit();
+    ZNRecord record = new ZNRecord("test");
+    record.setMapField("partition_0", new HashMap<String, String>());
+    Assert.assertTrue(commit.commit(accessor, 0, "test", record, true));
+    Assert.assertTrue(removed.isEmpty());
+
+    record = new ZNRecord("test");
+    record.setSimpleField("key", "value");
+    Assert.assertTrue(commit.commit(accessor, 0, "empty", record, true));
+    Assert.assertEquals(removed.size(), 1);
+    Assert.assertEquals(removed.get(0), "empty");
+  }
+
+  @Test
+  public void testDeltaOnMissingRecord() {
+    BaseDataAccessor<ZNRecord> accessor = new Mocks.MockBaseDataAccessor();
+    GroupCommit commit = new GroupCommit();
+
+    // a subtract delta, as written for a dropped partition, must not bring back the partition
+    ZNRecord record = new ZNRecord("test");
+    record.setSimpleField("key", "value");
+    record.setMapField("partition_0", new HashMap<String, String>());
+    record.getMapField("partition_0").put("state", "DROPPED");
+    ZNRecordDelta delta = new ZNRecordDelta(record, ZNRecordDelta.MergeOperation.SUBTRACT);
+    delta.getRecord().getSimpleFields().clear();
+    record.setDeltaList(Collections.singletonList(delta));
+    Assert.assertTrue(commit.commit(accessor, 0, "missing", record));
+    ZNRecord merged = accessor.get("missing", null, 0);
+    Assert.assertNotNull(merged);
+    Assert.assertNull(merged.getMapField("partition_0"));
+  }
+
 }
 
 class MyClass implements Runnable {
@@ -50,4 +50,14 @@ public class TestPropertyPathBuilder {
     AssertJUnit.assertEquals(actual, "/test_cluster/CONTROLLER/MESSAGES");
 
   }
+
+  @Test
+  public void testGetPathPattern() {
+    AssertJUnit.assertEquals(
+        PropertyPathBuilder.getPathPattern(PropertyType.EXTERNALVIEW, "test_cluster"),
+        "/test_cluster/EXTERNALVIEW");
+    AssertJUnit.assertEquals(
+        PropertyPathBuilder.getPathPattern(PropertyType.CURRENTSTATES, "test_cluster"),
+        "/test_cluster/INSTANCES/*/CURRENTSTATES");
+  }
 }
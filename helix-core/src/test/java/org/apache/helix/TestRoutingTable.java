@@ -20,21 +20,29 @@ package org.apache.helix;
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.helix.Mocks.MockAccessor;
 import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.ExternalView.ExternalViewProperty;
 import org.apache.helix.model.HelixConfigScope.ConfigScopeProperty;
 import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.spectator.RoutingTableChange;
+import org.apache.helix.spectator.RoutingTableChange.ResourceChange;
+import org.apache.helix.spectator.RoutingTableChangeListener;
 import org.apache.helix.spectator.RoutingTableProvider;
 import org.testng.AssertJUnit;
 import org.testng.annotations.BeforeClass;
@@ -254,6 +262,184 @@ public class TestRoutingTable {
 
   }
 
+  @Test()
+  public void testIncrementalRefresh() {
+    RoutingTableProvider routingTable = new RoutingTableProvider();
+    List<InstanceConfig> configs = new ArrayList<InstanceConfig>();
+    for (String instanceName : new String[] {
+        "localhost_8900", "localhost_8901"
+    }) {
+      InstanceConfig config = new InstanceConfig(instanceName);
+      config.setHostName("localhost");
+      config.setPort(instanceName.split("_")[1]);
+      setVersion(config.getRecord(), 0);
+      configs.add(config);
+    }
+    routingTable.onConfigChange(configs, changeContext);
+
+    ZNRecord record0 = new ZNRecord("TESTDB0");
+    add(record0, "TESTDB0_0", "localhost_8900", "MASTER");
+    setVersion(record0, 0);
+    ZNRecord record1 = new ZNRecord("TESTDB1");
+    add(record1, "TESTDB1_0", "localhost_8901", "MASTER");
+    record1.setSimpleField(ExternalViewProperty.GROUP_ROUTING_ENABLED.name(), "true");
+    record1.setSimpleField(ExternalViewProperty.RESOURCE_GROUP_NAME.name(), "TESTDB");
+    record1.setSimpleField(ExternalViewProperty.INSTANCE_GROUP_TAG.name(), "TAG");
+    setVersion(record1, 0);
+    List<ExternalView> externalViewList = new ArrayList<ExternalView>();
+    externalViewList.add(new ExternalView(record0));
+    externalViewList.add(new ExternalView(record1));
+    routingTable.onExternalViewChange(externalViewList, changeContext);
+    long version = routingTable.getSnapshotVersion();
+    List<InstanceConfig> instances0 = routingTable.getInstances("TESTDB0", "TESTDB0_0", "MASTER");
+    List<InstanceConfig> instances1 = routingTable.getInstances("TESTDB1", "TESTDB1_0", "MASTER");
+    AssertJUnit.assertEquals(instances0.size(), 1);
+    AssertJUnit.assertEquals(instances1.size(), 1);
+    AssertJUnit.assertEquals(
+        routingTable.getInstancesForResourceGroup("TESTDB", "TESTDB1_0", "MASTER").size(), 1);
+
+    // unchanged versions are not rebuilt
+    routingTable.onExternalViewChange(externalViewList, changeContext);
+    AssertJUnit.assertEquals(routingTable.getSnapshotVersion(), version);
+
+    // only the changed resource is rebuilt, instance configs are reused
+    add(record1, "TESTDB1_0", "localhost_8900", "MASTER");
+    setVersion(record1, 1);
+    externalViewList.set(1, new ExternalView(record1));
+    routingTable.onExternalViewChange(externalViewList, changeContext);
+    AssertJUnit.assertEquals(routingTable.getSnapshotVersion(), version + 1);
+    AssertJUnit.assertSame(routingTable.getInstances("TESTDB0", "TESTDB0_0", "MASTER"),
+        instances0);
+    AssertJUnit.assertEquals(routingTable.getInstances("TESTDB1", "TESTDB1_0", "MASTER").size(),
+        2);
+    AssertJUnit.assertSame(routingTable.getInstances("TESTDB1", "TESTDB1_0", "MASTER").get(0),
+        instances1.get(0));
+    AssertJUnit.assertEquals(
+        routingTable.getInstancesForResourceGroup("TESTDB", "TESTDB1_0", "MASTER").size(), 2);
+
+    // unchanged instance configs do not trigger a refresh
+    routingTable.onConfigChange(configs, changeContext);
+    AssertJUnit.assertEquals(routingTable.getSnapshotVersion(), version + 1);
+
+    // removed resources and resource groups are purged
+    externalViewList.remove(1);
+    routingTable.onExternalViewChange(externalViewList, changeContext);
+    AssertJUnit.assertEquals(routingTable.getInstances("TESTDB1", "TESTDB1_0", "MASTER").size(),
+        0);
+    AssertJUnit.assertEquals(
+        routingTable.getInstancesForResourceGroup("TESTDB", "TESTDB1_0", "MASTER").size(), 0);
+    AssertJUnit.assertSame(routingTable.getInstances("TESTDB0", "TESTDB0_0", "MASTER"),
+        instances0);
+  }
+
+  @Test()
+  public void testRoutingIndex() {
+    RoutingTableProvider indexedRoutingTable = new RoutingTableProvider(true);
+    RoutingTableProvider routingTable = new RoutingTableProvider(false);
+    ZNRecord record = new ZNRecord("TESTDB");
+    String[] partitions = new String[] {
+        "TESTDB_0", "TESTDB_1", "TESTDB_01", "TESTDB_x", "TESTDB_1000000", "OTHER_2"
+    };
+    for (int i = 0; i < partitions.length; i++) {
+      add(record, partitions[i], "localhost_8901", i % 2 == 0 ? "MASTER" : "SLAVE");
+      add(record, partitions[i], "localhost_8900", "SLAVE");
+    }
+    List<ExternalView> externalViewList = new ArrayList<ExternalView>();
+    externalViewList.add(new ExternalView(record));
+    indexedRoutingTable.onExternalViewChange(externalViewList, changeContext);
+    routingTable.onExternalViewChange(externalViewList, changeContext);
+
+    List<String> lookups = new ArrayList<String>(Arrays.asList(partitions));
+    lookups.addAll(Arrays.asList("TESTDB_2", "TESTDB_00", "TESTDB_", "TESTDB"));
+    for (String partition : lookups) {
+      for (String state : new String[] {
+          "MASTER", "SLAVE", "OFFLINE"
+      }) {
+        List<InstanceConfig> indexed =
+            indexedRoutingTable.getInstancesForResource("TESTDB", partition, state);
+        AssertJUnit.assertEquals(new HashSet<InstanceConfig>(indexed), new HashSet<InstanceConfig>(
+            routingTable.getInstancesForResource("TESTDB", partition, state)));
+      }
+    }
+
+    // indexed lists are sorted and immutable
+    List<InstanceConfig> instances =
+        indexedRoutingTable.getInstancesForResource("TESTDB", "TESTDB_1", "SLAVE");
+    AssertJUnit.assertEquals(instances.size(), 2);
+    AssertJUnit.assertEquals(instances.get(0).getPort(), "8900");
+    AssertJUnit.assertEquals(instances.get(1).getPort(), "8901");
+    try {
+      instances.clear();
+      AssertJUnit.fail("Routing index should not be modifiable");
+    } catch (UnsupportedOperationException e) {
+      // OK
+    }
+  }
+
+  @Test()
+  public void testRoutingTableChangeListener() throws Exception {
+    RoutingTableProvider routingTable = new RoutingTableProvider();
+    ZNRecord record = new ZNRecord("TESTDB");
+    add(record, "TESTDB_0", "localhost_8900", "MASTER");
+    List<ExternalView> externalViewList = new ArrayList<ExternalView>();
+    externalViewList.add(new ExternalView(record));
+    routingTable.onExternalViewChange(externalViewList, changeContext);
+
+    final BlockingQueue<RoutingTableChange> changes = new LinkedBlockingQueue<RoutingTableChange>();
+    RoutingTableChangeListener listener = new RoutingTableChangeListener() {
+      @Override
+      public void onRoutingTableChange(RoutingTableChange change, Object context) {
+        AssertJUnit.assertEquals(context, "context");
+        changes.add(change);
+      }
+    };
+    routingTable.addRoutingTableChangeListener(listener, "context");
+
+    // the current routing table is delivered first
+    RoutingTableChange change = changes.poll(10, TimeUnit.SECONDS);
+    ResourceChange resourceChange = change.getResourceChange("TESTDB");
+    AssertJUnit.assertEquals(resourceChange.getAddedInstances("TESTDB_0", "MASTER").size(), 1);
+    AssertJUnit.assertTrue(resourceChange.getRemovedInstances().isEmpty());
+
+    // a master hand-off
+    add(record, "TESTDB_0", "localhost_8900", "SLAVE");
+    add(record, "TESTDB_0", "localhost_8901", "MASTER");
+    add(record, "TESTDB_1", "localhost_8901", "SLAVE");
+    externalViewList.set(0, new ExternalView(record));
+    routingTable.onExternalViewChange(externalViewList, changeContext);
+    change = changes.poll(10, TimeUnit.SECONDS);
+    AssertJUnit.assertEquals(change.getSnapshotVersion(), routingTable.getSnapshotVersion());
+    resourceChange = change.getResourceChange("TESTDB");
+    AssertJUnit.assertEquals(resourceChange.getChangedPartitions(),
+        new HashSet<String>(Arrays.asList("TESTDB_0", "TESTDB_1")));
+    AssertJUnit.assertEquals(resourceChange.getRemovedInstances("TESTDB_0", "MASTER").iterator()
+        .next().getInstanceName(), "localhost_8900");
+    AssertJUnit.assertEquals(resourceChange.getAddedInstances("TESTDB_0", "SLAVE").iterator()
+        .next().getInstanceName(), "localhost_8900");
+    AssertJUnit.assertEquals(resourceChange.getAddedInstances("TESTDB_0", "MASTER").iterator()
+        .next().getInstanceName(), "localhost_8901");
+    AssertJUnit.assertEquals(resourceChange.getAddedInstances("TESTDB_1", "SLAVE").size(), 1);
+
+    // no change is delivered if the routing table is the same
+    routingTable.onExternalViewChange(externalViewList, changeContext);
+    externalViewList.clear();
+    routingTable.onExternalViewChange(externalViewList, changeContext);
+    change = changes.poll(10, TimeUnit.SECONDS);
+    resourceChange = change.getResourceChange("TESTDB");
+    AssertJUnit.assertTrue(resourceChange.getAddedInstances().isEmpty());
+    AssertJUnit.assertEquals(resourceChange.getRemovedInstances().size(), 2);
+
+    routingTable.removeRoutingTableChangeListener(listener);
+    externalViewList.add(new ExternalView(record));
+    routingTable.onExternalViewChange(externalViewList, changeContext);
+    AssertJUnit.assertNull(changes.poll(100, TimeUnit.MILLISECONDS));
+  }
+
+  private void setVersion(ZNRecord record, int version) {
+    record.setCreationTime(1);
+    record.setVersion(version);
+  }
+
   private void add(ZNRecord record, String stateUnitKey, String instanceName, String state) {
     Map<String, String> stateUnitKeyMap = record.getMapField(stateUnitKey);
     if (stateUnitKeyMap == null) {
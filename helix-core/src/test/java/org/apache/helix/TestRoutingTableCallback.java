@@ -0,0 +1,100 @@
+package org.apache.helix;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Date;
+import java.util.List;
+
+import org.apache.helix.PropertyKey.Builder;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.spectator.RoutingTableProvider;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestRoutingTableCallback extends ZkUnitTestBase {
+
+  @Test
+  public void testIncrementalRefreshOnCallback() throws Exception {
+    String className = TestHelper.getTestClassName();
+    String methodName = TestHelper.getTestMethodName();
+    String clusterName = className + "_" + methodName;
+
+    System.out.println("START " + clusterName + " at " + new Date(System.currentTimeMillis()));
+
+    TestHelper.setupCluster(clusterName, ZK_ADDR, 12918, // participant port
+        "localhost", // participant name prefix
+        "TestDB", // resource name prefix
+        2, // resources
+        1, // partitions per resource
+        2, // number of nodes
+        1, // replicas
+        "MasterSlave", false); // do rebalance
+
+    HelixManager manager =
+        HelixManagerFactory.getZKHelixManager(clusterName, "localhost", InstanceType.SPECTATOR,
+            ZK_ADDR);
+    manager.connect();
+    HelixDataAccessor accessor = manager.getHelixDataAccessor();
+    Builder keyBuilder = accessor.keyBuilder();
+
+    accessor.setProperty(keyBuilder.externalView("TestDB0"),
+        newExternalView("TestDB0", "localhost_12918"));
+    accessor.setProperty(keyBuilder.externalView("TestDB1"),
+        newExternalView("TestDB1", "localhost_12918"));
+
+    RoutingTableProvider routingTable = new RoutingTableProvider();
+    manager.addConfigChangeListener(routingTable);
+    manager.addExternalViewChangeListener(routingTable);
+
+    List<InstanceConfig> instances0 = routingTable.getInstances("TestDB0", "TestDB0_0", "MASTER");
+    List<InstanceConfig> instances1 = routingTable.getInstances("TestDB1", "TestDB1_0", "MASTER");
+    Assert.assertEquals(instances0.size(), 1);
+    Assert.assertEquals(instances1.size(), 1);
+
+    // only the external view written is rebuilt
+    long version = routingTable.getSnapshotVersion();
+    accessor.setProperty(keyBuilder.externalView("TestDB1"),
+        newExternalView("TestDB1", "localhost_12919"));
+    for (int i = 0; i < 100 && routingTable.getSnapshotVersion() == version; i++) {
+      Thread.sleep(100);
+    }
+    Assert.assertEquals(routingTable.getSnapshotVersion(), version + 1);
+    Assert.assertEquals(routingTable.getInstances("TestDB1", "TestDB1_0", "MASTER").get(0)
+        .getInstanceName(), "localhost_12919");
+    Assert.assertSame(routingTable.getInstances("TestDB0", "TestDB0_0", "MASTER"), instances0);
+
+    // the instance configs read on the callback are the same versions, so nothing is rebuilt
+    NotificationContext context = new NotificationContext(manager);
+    context.setType(NotificationContext.Type.CALLBACK);
+    routingTable.onConfigChange(
+        accessor.<InstanceConfig> getChildValues(keyBuilder.instanceConfigs()), context);
+    Assert.assertEquals(routingTable.getSnapshotVersion(), version + 1);
+
+    manager.disconnect();
+    System.out.println("END " + clusterName + " at " + new Date(System.currentTimeMillis()));
+  }
+
+  private ExternalView newExternalView(String resourceName, String instanceName) {
+    ExternalView externalView = new ExternalView(resourceName);
+    externalView.setState(resourceName + "_0", instanceName, "MASTER");
+    return externalView;
+  }
+}
@@ -0,0 +1,113 @@
+package org.apache.helix.controller.pipeline;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.UUID;
+
+import org.apache.helix.controller.stages.ClusterEvent;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestPipelineProfiler {
+
+  @Test
+  public void testLatencyHistogram() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Assert.assertEquals(histogram.getValueAtPercentile(99), 0);
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000);
+    }
+    Assert.assertEquals(histogram.getCount(), 1000);
+    Assert.assertEquals(histogram.getMin(), 1000);
+    Assert.assertEquals(histogram.getMax(), 1000000);
+    assertWithinPercent(histogram.getValueAtPercentile(50), 500000, 4);
+    assertWithinPercent(histogram.getValueAtPercentile(99), 990000, 4);
+    Assert.assertEquals(histogram.getValueAtPercentile(100), 1000000);
+
+    // every value falls into a bucket that covers it, small values are exact
+    for (int value = 0; value < 1000; value++) {
+      long upperBound = LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(value));
+      Assert.assertTrue(upperBound >= value);
+    }
+    Assert.assertEquals(LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(17)), 17);
+    Assert.assertTrue(LatencyHistogram.bucketIndex(Long.MAX_VALUE) >= 0);
+
+    histogram.reset();
+    Assert.assertEquals(histogram.getCount(), 0);
+  }
+
+  @Test
+  public void testStageProfiling() throws Exception {
+    String clusterName = "TestPipelineProfiler_" + UUID.randomUUID();
+    PipelineProfiler profiler = new PipelineProfiler(clusterName);
+    Pipeline pipeline = new Pipeline();
+    pipeline.addStage(new AbstractBaseStage() {
+      @Override
+      public String getStageName() {
+        return "SleepStage";
+      }
+
+      @Override
+      public void process(ClusterEvent event) throws Exception {
+        Thread.sleep(5);
+      }
+    });
+    ClusterEvent event = new ClusterEvent("testEvent");
+    event.addAttribute("PipelineProfiler", profiler);
+    pipeline.handle(event);
+    pipeline.handle(event);
+
+    PipelineProfile profile = profiler.getStageProfiles().get("SleepStage");
+    Assert.assertEquals(profile.getCount(), 2);
+    Assert.assertTrue(profile.getMaxLatencyUs() >= 5000);
+    Assert.assertEquals(profile.getZkReadCount(), 0);
+
+    StringWriter writer = new StringWriter();
+    profiler.writeCsv(writer);
+    String[] lines = writer.toString().split("\n");
+    Assert.assertEquals(lines.length, 2);
+    Assert.assertTrue(lines[1].contains(",stage,SleepStage,2,"));
+
+    // dumps are rolled over
+    File dir = new File(System.getProperty("java.io.tmpdir"), clusterName);
+    Assert.assertTrue(dir.mkdirs());
+    File file = new File(dir, "profile.csv");
+    for (int i = 0; i < 3; i++) {
+      profiler.dump(file, 2);
+    }
+    Assert.assertTrue(file.exists());
+    Assert.assertTrue(new File(dir, "profile.csv.1").exists());
+    Assert.assertFalse(new File(dir, "profile.csv.2").exists());
+    for (File f : dir.listFiles()) {
+      f.delete();
+    }
+    dir.delete();
+
+    profiler.reset();
+    Assert.assertTrue(profiler.getStageProfiles().isEmpty());
+  }
+
+  private static void assertWithinPercent(long actual, long expected, int percent) {
+    Assert.assertTrue(Math.abs(actual - expected) <= expected * percent / 100, "expected "
+        + expected + " but got " + actual);
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.helix.controller.stages;
  */
 
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.helix.controller.stages.AttributeName;
@@ -27,6 +28,7 @@ import org.apache.helix.controller.stages.BestPossibleStateCalcStage;
 import org.apache.helix.controller.stages.BestPossibleStateOutput;
 import org.apache.helix.controller.stages.CurrentStateOutput;
 import org.apache.helix.controller.stages.ReadClusterDataStage;
+import org.apache.helix.model.ClusterConfig;
 import org.apache.helix.model.Partition;
 import org.apache.helix.model.Resource;
 import org.apache.helix.model.IdealState.RebalanceMode;
@@ -67,4 +69,48 @@ public class TestBestPossibleStateCalcStage extends BaseStageTest {
     System.out.println("END TestBestPossibleStateCalcStage at "
         + new Date(System.currentTimeMillis()));
   }
+
+  @Test
+  public void testConcurrentComputation() {
+    String[] resources = new String[] {
+        "testResourceName_A", "testResourceName_B", "testResourceName_C"
+    };
+    setupIdealState(5, resources, 10, 1, RebalanceMode.SEMI_AUTO);
+    setupLiveInstances(5);
+    setupStateModel();
+
+    ClusterConfig clusterConfig = new ClusterConfig(manager.getClusterName());
+    clusterConfig.setBestPossibleCalculationThreads(3);
+    accessor.setProperty(accessor.keyBuilder().clusterConfig(), clusterConfig);
+
+    Map<String, Resource> resourceMap = new HashMap<String, Resource>();
+    for (String resourceName : resources) {
+      Resource resource = new Resource(resourceName);
+      resource.setStateModelDefRef("MasterSlave");
+      for (int p = 0; p < 10; p++) {
+        resource.addPartition(resourceName + "_" + p);
+      }
+      resourceMap.put(resourceName, resource);
+    }
+    CurrentStateOutput currentStateOutput = new CurrentStateOutput();
+    event.addAttribute(AttributeName.RESOURCES.name(), resourceMap);
+    event.addAttribute(AttributeName.CURRENT_STATE.name(), currentStateOutput);
+
+    ReadClusterDataStage stage1 = new ReadClusterDataStage();
+    runStage(event, stage1);
+    BestPossibleStateCalcStage stage2 = new BestPossibleStateCalcStage();
+    runStage(event, stage2);
+    stage2.release();
+
+    BestPossibleStateOutput output =
+        event.getAttribute(AttributeName.BEST_POSSIBLE_STATE.name());
+    for (String resourceName : resources) {
+      for (int p = 0; p < 10; p++) {
+        Partition partition = new Partition(resourceName + "_" + p);
+        AssertJUnit.assertEquals("MASTER",
+            output.getInstanceStateMap(resourceName, partition).get("localhost_" + (p + 1) % 5));
+      }
+      AssertJUnit.assertNotNull(output.getPreferenceLists(resourceName));
+    }
+  }
 }
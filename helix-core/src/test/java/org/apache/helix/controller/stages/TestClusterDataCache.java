@@ -0,0 +1,156 @@
+package org.apache.helix.controller.stages;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.helix.HelixConstants.ChangeType;
+import org.apache.helix.PropertyKey.Builder;
+import org.apache.helix.model.ClusterConfig;
+import org.apache.helix.model.CurrentState;
+import org.apache.helix.model.Message;
+import org.apache.helix.model.ResourceConfig;
+import org.apache.helix.model.StateModelDefinition;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestClusterDataCache extends BaseStageTest {
+
+  @Test
+  public void testIncrementalCurrentStateRefresh() {
+    setupLiveInstances(2);
+    Builder keyBuilder = accessor.keyBuilder();
+
+    CurrentState curState0 = new CurrentState("testResourceName");
+    curState0.setSessionId("session_0");
+    curState0.setState("testResourceName_0", "SLAVE");
+    accessor.setProperty(keyBuilder.currentState("localhost_0", "session_0", "testResourceName"),
+        curState0);
+
+    CurrentState curState1 = new CurrentState("testResourceName");
+    curState1.setSessionId("session_1");
+    curState1.setState("testResourceName_0", "SLAVE");
+    accessor.setProperty(keyBuilder.currentState("localhost_1", "session_1", "testResourceName"),
+        curState1);
+
+    ClusterDataCache cache = new ClusterDataCache();
+    cache.refresh(accessor);
+    CurrentState cached0 = cache.getCurrentState("localhost_0", "session_0").get("testResourceName");
+    CurrentState cached1 = cache.getCurrentState("localhost_1", "session_1").get("testResourceName");
+    Assert.assertEquals(cached0.getState("testResourceName_0"), "SLAVE");
+    Assert.assertEquals(cached1.getState("testResourceName_0"), "SLAVE");
+
+    // change only the current state on localhost_0
+    curState0.setState("testResourceName_0", "MASTER");
+    accessor.setProperty(keyBuilder.currentState("localhost_0", "session_0", "testResourceName"),
+        curState0);
+    cache.notifyDataChange(ChangeType.CURRENT_STATE);
+    cache.refresh(accessor);
+
+    CurrentState refreshed0 =
+        cache.getCurrentState("localhost_0", "session_0").get("testResourceName");
+    CurrentState refreshed1 =
+        cache.getCurrentState("localhost_1", "session_1").get("testResourceName");
+    Assert.assertEquals(refreshed0.getState("testResourceName_0"), "MASTER");
+    // unchanged current state should be served from the cache without re-reading
+    Assert.assertSame(refreshed1, cached1);
+
+    // messages are listed on every refresh, so a message sent by the controller is seen before
+    // its change notification arrives
+    Message message = new Message(Message.MessageType.STATE_TRANSITION, "msg1");
+    message.setFromState("SLAVE");
+    message.setToState("OFFLINE");
+    message.setResourceName("testResourceName");
+    message.setPartitionName("testResourceName_0");
+    message.setTgtName("localhost_1");
+    message.setTgtSessionId("session_1");
+    accessor.setProperty(keyBuilder.message("localhost_1", message.getId()), message);
+    cache.refresh(accessor);
+    Assert.assertTrue(cache.getMessages("localhost_1").containsKey("msg1"));
+
+    // the participant updates its current state before it removes the message, so a removed
+    // message re-reads current states even if the current state change is not notified yet
+    CurrentState newCurState1 = new CurrentState("testResourceName");
+    newCurState1.setSessionId("session_1");
+    newCurState1.setState("testResourceName_0", "OFFLINE");
+    accessor.setProperty(keyBuilder.currentState("localhost_1", "session_1", "testResourceName"),
+        newCurState1);
+    accessor.removeProperty(keyBuilder.message("localhost_1", message.getId()));
+    cache.refresh(accessor);
+    Assert.assertTrue(cache.getMessages("localhost_1").isEmpty());
+    Assert.assertEquals(cache.getCurrentState("localhost_1", "session_1").get("testResourceName")
+        .getState("testResourceName_0"), "OFFLINE");
+    cached1 = cache.getCurrentState("localhost_1", "session_1").get("testResourceName");
+
+    // a full refresh re-reads everything
+    cache.requireFullRefresh();
+    cache.refresh(accessor);
+    Assert.assertNotSame(cache.getCurrentState("localhost_1", "session_1").get("testResourceName"),
+        cached1);
+
+    // removed current states are purged from the cache
+    accessor.removeProperty(keyBuilder.currentState("localhost_0", "session_0", "testResourceName"));
+    cache.notifyDataChange(ChangeType.CURRENT_STATE);
+    cache.refresh(accessor);
+    Assert.assertTrue(cache.getCurrentState("localhost_0", "session_0").isEmpty());
+  }
+
+  @Test
+  public void testSelectiveRefresh() {
+    setupLiveInstances(1);
+    setupStateModel();
+    Builder keyBuilder = accessor.keyBuilder();
+
+    ClusterDataCache cache = new ClusterDataCache();
+    cache.refresh(accessor);
+    StateModelDefinition stateModelDef = cache.getStateModelDef("MasterSlave");
+    Assert.assertNotNull(stateModelDef);
+    Assert.assertNull(cache.getResourceConfig("testResourceName"));
+
+    CurrentState curState = new CurrentState("testResourceName");
+    curState.setSessionId("session_0");
+    curState.setState("testResourceName_0", "SLAVE");
+    accessor.setProperty(keyBuilder.currentState("localhost_0", "session_0", "testResourceName"),
+        curState);
+
+    // current states are only reloaded when notified
+    cache.refresh(accessor);
+    Assert.assertTrue(cache.getCurrentState("localhost_0", "session_0").isEmpty());
+    cache.notifyDataChange(ChangeType.CURRENT_STATE);
+    cache.refresh(accessor);
+    Assert.assertEquals(cache.getCurrentState("localhost_0", "session_0").get("testResourceName")
+        .getState("testResourceName_0"), "SLAVE");
+
+    // resource configs and the cluster config are not watched, so they are checked on every
+    // refresh, and unchanged ones are served from the cache
+    accessor.setProperty(keyBuilder.resourceConfig("testResourceName"),
+        new ResourceConfig("testResourceName"));
+    ClusterConfig clusterConfig = new ClusterConfig(manager.getClusterName());
+    clusterConfig.getRecord().setSimpleField("IdealStateRule!rule", "REBALANCE_MODE=FULL_AUTO");
+    accessor.setProperty(keyBuilder.clusterConfig(), clusterConfig);
+    cache.refresh(accessor);
+    Assert.assertNotNull(cache.getResourceConfig("testResourceName"));
+    Assert.assertEquals(cache.getIdealStateRules().get("IdealStateRule!rule").get("REBALANCE_MODE"),
+        "FULL_AUTO");
+    Assert.assertSame(cache.getStateModelDef("MasterSlave"), stateModelDef);
+
+    accessor.removeProperty(keyBuilder.resourceConfig("testResourceName"));
+    cache.refresh(accessor);
+    Assert.assertNull(cache.getResourceConfig("testResourceName"));
+  }
+}
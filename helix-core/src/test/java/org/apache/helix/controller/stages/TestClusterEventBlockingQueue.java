@@ -19,15 +19,21 @@ package org.apache.helix.controller.stages;
  * under the License.
  */
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import org.apache.helix.monitoring.mbeans.ClusterEventQueueMonitor;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -78,6 +84,60 @@ public class TestClusterEventBlockingQueue {
     Assert.assertEquals(queue.size(), 0);
   }
 
+  @Test
+  public void testPriorityAndCoalescing() throws Exception {
+    Map<String, Integer> priorities = ImmutableMap.of("high", 1, "low", -1);
+    ClusterEventBlockingQueue queue = new ClusterEventBlockingQueue(0, priorities);
+    Map<String, Set<String>> rules =
+        ImmutableMap.<String, Set<String>> of("high", ImmutableSet.of("low"));
+    queue.setCoalescingRules(rules);
+    ClusterEventQueueMonitor monitor = new ClusterEventQueueMonitor("testCluster");
+    queue.setMonitor(monitor);
+
+    queue.put(new ClusterEvent("low"));
+    queue.put(new ClusterEvent("normal"));
+    queue.put(new ClusterEvent("normal"));
+    queue.put(new ClusterEvent("high"));
+    Assert.assertEquals(queue.size(), 3);
+    Assert.assertEquals(monitor.getEventQueueSize(), 3);
+    Assert.assertEquals(queue.peek().getName(), "high");
+
+    // the high priority event is taken first and absorbs the low priority event
+    ListeningExecutorService service =
+        MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+    ClusterEvent taken = safeTake(queue, service);
+    Assert.assertEquals(taken.getName(), "high");
+    List<String> coalesced = taken.getAttribute(AttributeName.COALESCED_EVENTS.toString());
+    Assert.assertEquals(coalesced.size(), 1);
+    Assert.assertEquals(coalesced.get(0), "low");
+    Assert.assertEquals(queue.size(), 1);
+    Assert.assertEquals(safeTake(queue, service).getName(), "normal");
+    Assert.assertTrue(queue.isEmpty());
+    Assert.assertEquals(monitor.getEventQueueSize(), 0);
+    // one same-named event and one absorbed event
+    Assert.assertEquals(monitor.getCoalescedEventCounter(), 2);
+    service.shutdown();
+  }
+
+  @Test
+  public void testBatchWindow() throws Exception {
+    final long batchWindowMs = 200;
+    ClusterEventBlockingQueue queue =
+        new ClusterEventBlockingQueue(batchWindowMs, ImmutableMap.of("event2", 1));
+    long startTime = System.currentTimeMillis();
+    queue.put(new ClusterEvent("event1"));
+
+    // an event arriving within the window is still taken according to its priority
+    queue.put(new ClusterEvent("event2"));
+    ListeningExecutorService service =
+        MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+    ClusterEvent taken = safeTake(queue, service);
+    Assert.assertTrue(System.currentTimeMillis() - startTime >= batchWindowMs);
+    Assert.assertEquals(taken.getName(), "event2");
+    Assert.assertEquals(safeTake(queue, service).getName(), "event1");
+    service.shutdown();
+  }
+
   private ClusterEvent safeTake(final ClusterEventBlockingQueue queue,
       final ListeningExecutorService service) throws InterruptedException, ExecutionException,
       TimeoutException {
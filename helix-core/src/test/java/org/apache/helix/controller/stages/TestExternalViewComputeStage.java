@@ -0,0 +1,78 @@
+package org.apache.helix.controller.stages;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.helix.HelixConstants.ChangeType;
+import org.apache.helix.PropertyKey.Builder;
+import org.apache.helix.model.CurrentState;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.IdealState.RebalanceMode;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestExternalViewComputeStage extends BaseStageTest {
+
+  @Test
+  public void testRecomputeOnlyChangedResources() {
+    String[] resources = new String[] {
+        "testResourceName_A", "testResourceName_B"
+    };
+    setupIdealState(2, resources, 1, 1, RebalanceMode.SEMI_AUTO);
+    setupLiveInstances(2);
+    setupStateModel();
+    setCurrentState("testResourceName_A", "SLAVE");
+    setCurrentState("testResourceName_B", "SLAVE");
+
+    ClusterDataCache cache = new ClusterDataCache();
+    event.addAttribute("ClusterDataCache", cache);
+    runPipeline();
+
+    ExternalView viewA = cache.getExternalViews().get("testResourceName_A");
+    ExternalView viewB = cache.getExternalViews().get("testResourceName_B");
+    Assert.assertEquals(viewA.getStateMap("testResourceName_A_0").get("localhost_0"), "SLAVE");
+    Assert.assertEquals(viewB.getStateMap("testResourceName_B_0").get("localhost_0"), "SLAVE");
+
+    // only the current state of resource A changes
+    setCurrentState("testResourceName_A", "MASTER");
+    cache.notifyDataChange(ChangeType.CURRENT_STATE);
+    runPipeline();
+
+    Assert.assertEquals(cache.getExternalViews().get("testResourceName_A")
+        .getStateMap("testResourceName_A_0").get("localhost_0"), "MASTER");
+    Assert.assertSame(cache.getExternalViews().get("testResourceName_B"), viewB);
+  }
+
+  private void setCurrentState(String resourceName, String state) {
+    Builder keyBuilder = accessor.keyBuilder();
+    CurrentState curState = new CurrentState(resourceName);
+    curState.setSessionId("session_0");
+    curState.setStateModelDefRef("MasterSlave");
+    curState.setState(resourceName + "_0", state);
+    accessor.setProperty(keyBuilder.currentState("localhost_0", "session_0", resourceName),
+        curState);
+  }
+
+  private void runPipeline() {
+    runStage(event, new ReadClusterDataStage());
+    runStage(event, new ResourceComputationStage());
+    runStage(event, new CurrentStateComputationStage());
+    runStage(event, new ExternalViewComputeStage());
+  }
+}
@@ -0,0 +1,129 @@
+package org.apache.helix.controller.stages;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.helix.TestHelper;
+import org.apache.helix.model.ClusterConstraints;
+import org.apache.helix.model.ClusterConstraints.ConstraintAttribute;
+import org.apache.helix.model.ClusterConstraints.ConstraintType;
+import org.apache.helix.model.ConstraintItem;
+import org.apache.helix.model.Message;
+import org.apache.helix.model.Message.MessageType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestMessageConstraintIndex {
+
+  @Test
+  public void testThrottleSameAsUnindexed() {
+    ClusterConstraints constraint = new ClusterConstraints(ConstraintType.MESSAGE_CONSTRAINT);
+    addConstraint(constraint, "constraint0", "100", ConstraintAttribute.MESSAGE_TYPE,
+        "STATE_TRANSITION");
+    addConstraint(constraint, "constraint1", "20", ConstraintAttribute.MESSAGE_TYPE,
+        "STATE_TRANSITION", ConstraintAttribute.INSTANCE, ".*");
+    addConstraint(constraint, "constraint2", "14", ConstraintAttribute.MESSAGE_TYPE,
+        "STATE_TRANSITION", ConstraintAttribute.INSTANCE, "localhost_1");
+    addConstraint(constraint, "constraint3", "16", ConstraintAttribute.MESSAGE_TYPE,
+        "STATE_TRANSITION", ConstraintAttribute.TRANSITION, "OFFLINE-SLAVE",
+        ConstraintAttribute.RESOURCE, ".*");
+    addConstraint(constraint, "constraint4", "12", ConstraintAttribute.MESSAGE_TYPE,
+        "STATE_TRANSITION", ConstraintAttribute.TRANSITION, "OFFLINE-SLAVE",
+        ConstraintAttribute.RESOURCE, "TestDB_1");
+    addConstraint(constraint, "constraint5", "1", ConstraintAttribute.MESSAGE_TYPE,
+        "STATE_TRANSITION", ConstraintAttribute.PARTITION, "TestDB_0_[0-3]",
+        ConstraintAttribute.INSTANCE, ".*");
+    addConstraint(constraint, "constraint6", "ANY", ConstraintAttribute.MESSAGE_TYPE,
+        "STATE_TRANSITION", ConstraintAttribute.RESOURCE, "TestDB_2");
+
+    List<Message> pendingMessages = createMessages("pending", 3, 2, "OFFLINE", "SLAVE");
+    List<Message> newMessages = createMessages("new", 3, 4, "OFFLINE", "SLAVE");
+    newMessages.addAll(createMessages("new", 3, 4, "SLAVE", "MASTER"));
+
+    MessageThrottleStage stage = new MessageThrottleStage();
+    Map<String, Integer> throttleMap = new HashMap<String, Integer>();
+    stage.throttle(throttleMap, constraint, pendingMessages, false);
+    List<Message> expected = stage.throttle(throttleMap, constraint, newMessages, true);
+
+    MessageConstraintIndex.Counters counters = stage.getConstraintIndex(constraint).newCounters();
+    stage.throttle(counters, pendingMessages, false);
+    List<Message> actual = stage.throttle(counters, newMessages, true);
+
+    Assert.assertTrue(expected.size() > 0 && expected.size() < newMessages.size());
+    Assert.assertEquals(actual, expected);
+
+    // the compiled index is reused until the constraints change
+    Assert.assertSame(stage.getConstraintIndex(constraint), stage.getConstraintIndex(constraint));
+  }
+
+  @Test
+  public void testSelectMostSpecificConstraint() {
+    ClusterConstraints constraint = new ClusterConstraints(ConstraintType.MESSAGE_CONSTRAINT);
+    addConstraint(constraint, "constraint0", "1", ConstraintAttribute.MESSAGE_TYPE,
+        "STATE_TRANSITION", ConstraintAttribute.INSTANCE, ".*");
+    addConstraint(constraint, "constraint1", "3", ConstraintAttribute.MESSAGE_TYPE,
+        "STATE_TRANSITION", ConstraintAttribute.INSTANCE, "localhost_0");
+
+    MessageThrottleStage stage = new MessageThrottleStage();
+    MessageConstraintIndex.Counters counters = stage.getConstraintIndex(constraint).newCounters();
+    List<Message> messages = createMessages("msg", 2, 4, "OFFLINE", "SLAVE");
+    List<Message> selected = stage.throttle(counters, messages, true);
+
+    // localhost_0 is limited by the more specific constraint1, localhost_1 by constraint0
+    int numInstance0 = 0;
+    for (Message message : selected) {
+      if (message.getTgtName().equals("localhost_0")) {
+        numInstance0++;
+      }
+    }
+    Assert.assertEquals(numInstance0, 3);
+    Assert.assertEquals(selected.size(), 4);
+  }
+
+  private void addConstraint(ClusterConstraints constraint, String constraintId, String value,
+      Object... attributes) {
+    Map<ConstraintAttribute, String> attributeMap = new HashMap<ConstraintAttribute, String>();
+    for (int i = 0; i < attributes.length; i += 2) {
+      attributeMap.put((ConstraintAttribute) attributes[i], (String) attributes[i + 1]);
+    }
+    constraint.addConstraintItem(constraintId, new ConstraintItem(attributeMap, value));
+  }
+
+  private List<Message> createMessages(String prefix, int numInstances, int numPartitions,
+      String fromState, String toState) {
+    List<Message> messages = new ArrayList<Message>();
+    for (int r = 0; r < 3; r++) {
+      String resourceName = "TestDB_" + r;
+      for (int p = 0; p < numPartitions; p++) {
+        for (int i = 0; i < numInstances; i++) {
+          String msgId = prefix + "-" + resourceName + "-" + p + "-" + i + "-" + toState;
+          messages.add(TestHelper.createMessage(msgId, fromState, toState, "localhost_" + i,
+              resourceName, resourceName + "_" + p));
+        }
+      }
+    }
+    Assert.assertEquals(messages.get(0).getMsgType(), MessageType.STATE_TRANSITION.name());
+    return messages;
+  }
+}
@@ -23,6 +23,7 @@ import java.util.Date;
 import java.util.List;
 
 import org.apache.helix.HelixAdmin;
+import org.apache.helix.HelixConstants.ChangeType;
 import org.apache.helix.HelixDataAccessor;
 import org.apache.helix.HelixManager;
 import org.apache.helix.PropertyKey.Builder;
@@ -111,6 +112,8 @@ public class TestRebalancePipeline extends ZkUnitTestBase {
     // message, make sure controller should not send S->M until removal is done
     setCurrentState(clusterName, "localhost_0", resourceName, resourceName + "_0", "session_1",
         "SLAVE");
+    ClusterDataCache cache = event.getAttribute("ClusterDataCache");
+    cache.notifyDataChange(ChangeType.CURRENT_STATE);
 
     runPipeline(event, dataRefresh);
     runPipeline(event, rebalancePipeline);
@@ -365,6 +368,8 @@ public class TestRebalancePipeline extends ZkUnitTestBase {
     });
     setCurrentState(clusterName, "localhost_0", resourceName, resourceName + "_0", "session_0",
         "SLAVE");
+    ClusterDataCache cache = event.getAttribute("ClusterDataCache");
+    cache.notifyDataChange(ChangeType.CURRENT_STATE);
 
     runPipeline(event, dataRefresh);
     runPipeline(event, rebalancePipeline);
@@ -0,0 +1,93 @@
+package org.apache.helix.controller.stages;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Date;
+
+import org.apache.helix.AccessOption;
+import org.apache.helix.TestHelper;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.ZkUnitTestBase;
+import org.apache.helix.manager.zk.ZkBaseDataAccessor;
+import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.apache.helix.task.JobContext;
+import org.apache.helix.task.TaskConstants;
+import org.apache.helix.task.TaskPartitionState;
+import org.apache.helix.task.TaskUtil;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestTaskDataCache extends ZkUnitTestBase {
+
+  @Test
+  public void testOnlyWriteChangedContexts() {
+    String className = TestHelper.getTestClassName();
+    String methodName = TestHelper.getTestMethodName();
+    String testName = className + "_" + methodName;
+
+    System.out.println("START " + testName + " at " + new Date(System.currentTimeMillis()));
+
+    ZkHelixPropertyStore<ZNRecord> store =
+        new ZkHelixPropertyStore<ZNRecord>(new ZkBaseDataAccessor<ZNRecord>(_gZkClient), "/"
+            + testName, null);
+    String contextPath = TaskConstants.REBALANCER_CONTEXT_ROOT + "/job/" + TaskUtil.CONTEXT_NODE;
+    JobContext jobContext = new JobContext(new ZNRecord(TaskUtil.TASK_CONTEXT_KW));
+    jobContext.setPartitionState(0, TaskPartitionState.RUNNING);
+    store.set(contextPath, jobContext.getRecord(), AccessOption.PERSISTENT);
+
+    TaskDataCache cache = new TaskDataCache();
+    cache.refresh(null);
+    JobContext cached = cache.getJobContext("job", store);
+    Assert.assertEquals(cached.getPartitionState(0), TaskPartitionState.RUNNING);
+
+    // modifying the context returned does not modify the cache
+    cached.setPartitionState(0, TaskPartitionState.COMPLETED);
+    Assert.assertEquals(cache.getJobContext("job", store).getPartitionState(0),
+        TaskPartitionState.RUNNING);
+
+    // an unchanged context is not written
+    int version = store.getStat(contextPath, AccessOption.PERSISTENT).getVersion();
+    cache.updateJobContext("job", cache.getJobContext("job", store), store);
+    Assert.assertEquals(store.getStat(contextPath, AccessOption.PERSISTENT).getVersion(), version);
+
+    // a changed context is written
+    cache.updateJobContext("job", cached, store);
+    Assert.assertEquals(store.getStat(contextPath, AccessOption.PERSISTENT).getVersion(),
+        version + 1);
+    Assert.assertEquals(new JobContext(store.get(contextPath, null, AccessOption.PERSISTENT))
+        .getPartitionState(0), TaskPartitionState.COMPLETED);
+
+    // changes by others are read on the next refresh
+    jobContext.setPartitionState(0, TaskPartitionState.ERROR);
+    store.set(contextPath, jobContext.getRecord(), AccessOption.PERSISTENT);
+    Assert.assertEquals(cache.getJobContext("job", store).getPartitionState(0),
+        TaskPartitionState.COMPLETED);
+    cache.refresh(null);
+    Assert.assertEquals(cache.getJobContext("job", store).getPartitionState(0),
+        TaskPartitionState.ERROR);
+
+    // removed contexts are dropped on the next refresh
+    store.remove(TaskConstants.REBALANCER_CONTEXT_ROOT + "/job", AccessOption.PERSISTENT);
+    cache.refresh(null);
+    Assert.assertNull(cache.getJobContext("job", store));
+
+    System.out.println("END " + testName + " at " + new Date(System.currentTimeMillis()));
+  }
+}
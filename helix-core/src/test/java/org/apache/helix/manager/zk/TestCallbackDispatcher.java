@@ -0,0 +1,176 @@
+package org.apache.helix.manager.zk;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.helix.manager.zk.CallbackDispatcher.ListenerQueue;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestCallbackDispatcher {
+
+  @Test
+  public void testCallbacksOfListenerRunInOrder() throws Exception {
+    ListenerQueue queue = CallbackDispatcher.getQueue(new Object());
+    final List<Integer> invoked = Collections.synchronizedList(new ArrayList<Integer>());
+    final AtomicInteger running = new AtomicInteger(0);
+    final AtomicInteger maxRunning = new AtomicInteger(0);
+    final CountDownLatch done = new CountDownLatch(100);
+    for (int i = 0; i < 100; i++) {
+      final int callback = i;
+      queue.submit(new Runnable() {
+        @Override
+        public void run() {
+          maxRunning.set(Math.max(maxRunning.get(), running.incrementAndGet()));
+          invoked.add(callback);
+          running.decrementAndGet();
+          done.countDown();
+        }
+      });
+    }
+    Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals(maxRunning.get(), 1);
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(invoked.get(i).intValue(), i);
+    }
+  }
+
+  @Test
+  public void testSlowListenerDoesNotBlockOthers() throws Exception {
+    ListenerQueue slowQueue = CallbackDispatcher.getQueue(new Object());
+    ListenerQueue fastQueue = CallbackDispatcher.getQueue(new Object());
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch fastDone = new CountDownLatch(1);
+    slowQueue.submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    fastQueue.submit(new Runnable() {
+      @Override
+      public void run() {
+        fastDone.countDown();
+      }
+    });
+    Assert.assertTrue(fastDone.await(10, TimeUnit.SECONDS));
+    release.countDown();
+  }
+
+  @Test
+  public void testRunOrSubmit() throws Exception {
+    final ListenerQueue queue = CallbackDispatcher.getQueue(new Object());
+    final Thread caller = Thread.currentThread();
+    final AtomicInteger invokedInline = new AtomicInteger(0);
+
+    // an idle listener runs on the caller thread
+    queue.runOrSubmit(new Runnable() {
+      @Override
+      public void run() {
+        if (Thread.currentThread() == caller) {
+          invokedInline.incrementAndGet();
+        }
+      }
+    });
+    Assert.assertEquals(invokedInline.get(), 1);
+
+    // a busy listener queues the callback instead of blocking the caller
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<String> invoked = Collections.synchronizedList(new ArrayList<String>());
+    final CountDownLatch done = new CountDownLatch(1);
+    queue.submit(new Runnable() {
+      @Override
+      public void run() {
+        started.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        invoked.add("callback");
+      }
+    });
+    Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+    queue.runOrSubmit(new Runnable() {
+      @Override
+      public void run() {
+        invoked.add("finalize");
+        done.countDown();
+      }
+    });
+    Assert.assertTrue(invoked.isEmpty());
+    Assert.assertEquals(queue.size(), 1);
+    release.countDown();
+    Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals(invoked.get(0), "callback");
+    Assert.assertEquals(invoked.get(1), "finalize");
+  }
+
+  @Test
+  public void testIsCallbackThread() throws Exception {
+    final ListenerQueue queue = CallbackDispatcher.getQueue(new Object());
+    final AtomicInteger inCallback = new AtomicInteger(0);
+    final CountDownLatch done = new CountDownLatch(1);
+    Assert.assertFalse(queue.isCallbackThread());
+    queue.submit(new Runnable() {
+      @Override
+      public void run() {
+        if (queue.isCallbackThread()) {
+          inCallback.incrementAndGet();
+        }
+        done.countDown();
+      }
+    });
+    Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals(inCallback.get(), 1);
+    Assert.assertFalse(queue.isCallbackThread());
+  }
+
+  @Test
+  public void testIsDispatcherThread() throws Exception {
+    final ListenerQueue queue = CallbackDispatcher.getQueue(new Object());
+    final AtomicInteger onDispatcher = new AtomicInteger(0);
+    final CountDownLatch done = new CountDownLatch(1);
+    Assert.assertFalse(CallbackDispatcher.isDispatcherThread());
+    queue.submit(new Runnable() {
+      @Override
+      public void run() {
+        // a callback of one listener runs on a dispatcher thread shared with other listeners
+        if (CallbackDispatcher.isDispatcherThread()) {
+          onDispatcher.incrementAndGet();
+        }
+        done.countDown();
+      }
+    });
+    Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals(onDispatcher.get(), 1);
+  }
+}
@@ -0,0 +1,111 @@
+package org.apache.helix.manager.zk;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.helix.BatchMode;
+import org.apache.helix.ExternalViewChangeListener;
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.HelixManager;
+import org.apache.helix.HelixManagerFactory;
+import org.apache.helix.InstanceType;
+import org.apache.helix.NotificationContext;
+import org.apache.helix.PropertyKey;
+import org.apache.helix.TestHelper;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.ZkUnitTestBase;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.monitoring.mbeans.ClusterStatusMonitor;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestCallbackHandlerBatchMode extends ZkUnitTestBase {
+  @BatchMode(windowMs = 500)
+  static class BatchedExternalViewListener implements ExternalViewChangeListener {
+    final AtomicInteger _numCallbacks = new AtomicInteger(0);
+    volatile int _numExternalViews = 0;
+
+    @Override
+    public void onExternalViewChange(List<ExternalView> externalViewList,
+        NotificationContext changeContext) {
+      if (changeContext.getType() == NotificationContext.Type.CALLBACK) {
+        _numCallbacks.incrementAndGet();
+      }
+      _numExternalViews = externalViewList.size();
+    }
+  }
+
+  @Test
+  public void testMergeChangesInWindow() throws Exception {
+    String className = TestHelper.getTestClassName();
+    String methodName = TestHelper.getTestMethodName();
+    String clusterName = className + "_" + methodName;
+    int numResources = 20;
+
+    System.out.println("START " + clusterName + " at " + new Date(System.currentTimeMillis()));
+
+    TestHelper.setupEmptyCluster(_gZkClient, clusterName);
+    HelixManager manager =
+        HelixManagerFactory.getZKHelixManager(clusterName, "spectator", InstanceType.SPECTATOR,
+            ZK_ADDR);
+    manager.connect();
+    BatchedExternalViewListener listener = new BatchedExternalViewListener();
+    manager.addExternalViewChangeListener(listener);
+
+    HelixDataAccessor accessor =
+        new ZKHelixDataAccessor(clusterName, new ZkBaseDataAccessor<ZNRecord>(_gZkClient));
+    PropertyKey.Builder keyBuilder = accessor.keyBuilder();
+    for (int i = 0; i < numResources; i++) {
+      accessor.setProperty(keyBuilder.externalView("TestDB" + i), new ExternalView("TestDB" + i));
+    }
+
+    long deadline = System.currentTimeMillis() + 10 * 1000;
+    while (listener._numExternalViews < numResources && System.currentTimeMillis() < deadline) {
+      Thread.sleep(100);
+    }
+    Assert.assertEquals(listener._numExternalViews, numResources);
+    // changes within the window are merged into one callback
+    Assert.assertTrue(listener._numCallbacks.get() < numResources,
+        "callbacks: " + listener._numCallbacks.get());
+
+    MBeanServer beanServer = ManagementFactory.getPlatformMBeanServer();
+    Set<ObjectName> names =
+        beanServer.queryNames(new ObjectName(ClusterStatusMonitor.CALLBACK_DOMAIN
+            + ": cluster=" + ObjectName.quote(clusterName) + ",*"), null);
+    long merged = 0;
+    for (ObjectName name : names) {
+      if (name.getKeyProperty("listener") != null) {
+        merged += (Long) beanServer.getAttribute(name, "MergedCounter");
+      }
+    }
+    Assert.assertTrue(merged > 0);
+
+    manager.disconnect();
+    System.out.println("END " + clusterName + " at " + new Date(System.currentTimeMillis()));
+  }
+}
@@ -0,0 +1,115 @@
+package org.apache.helix.manager.zk;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.I0Itec.zkclient.IZkDataListener;
+import org.apache.helix.AccessOption;
+import org.apache.helix.BaseDataAccessor;
+import org.apache.helix.HelixProperty;
+import org.apache.helix.TestHelper;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.ZkUnitTestBase;
+import org.apache.helix.model.ExternalView;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestChildValueCache extends ZkUnitTestBase {
+  class NoopDataListener implements IZkDataListener {
+    @Override
+    public void handleDataChange(String dataPath, Object data) {
+    }
+
+    @Override
+    public void handleDataDeleted(String dataPath) {
+    }
+  }
+
+  @Test
+  public void testReadOnlyChangedChildren() {
+    String className = TestHelper.getTestClassName();
+    String methodName = TestHelper.getTestMethodName();
+    String testName = className + "_" + methodName;
+
+    System.out.println("START " + testName + " at " + new Date(System.currentTimeMillis()));
+
+    String parentPath = String.format("/%s/EXTERNALVIEW", testName);
+    BaseDataAccessor<ZNRecord> accessor = new ZkBaseDataAccessor<ZNRecord>(_gZkClient);
+    for (int i = 0; i < 3; i++) {
+      accessor.set(parentPath + "/TestDB" + i, new ZNRecord("TestDB" + i),
+          AccessOption.PERSISTENT);
+    }
+
+    ChildValueCache cache =
+        new ChildValueCache(_gZkClient, parentPath, ExternalView.class, new NoopDataListener());
+    List<HelixProperty> values = cache.load();
+    Assert.assertEquals(values.size(), 3);
+    Assert.assertTrue(values.get(0) instanceof ExternalView);
+
+    // update one child
+    ZNRecord record = new ZNRecord("TestDB1");
+    record.setSimpleField("key", "value");
+    accessor.set(parentPath + "/TestDB1", record, AccessOption.PERSISTENT);
+    cache.onDataChange(parentPath + "/TestDB1");
+    // a notification without a change
+    cache.onDataChange(parentPath + "/TestDB2");
+    Set<String> changed = new HashSet<String>();
+    List<HelixProperty> refreshed = cache.refresh(changed);
+    Assert.assertEquals(changed, new HashSet<String>(Arrays.asList("TestDB1")));
+    Assert.assertSame(refreshed.get(0), values.get(0));
+    Assert.assertSame(refreshed.get(2), values.get(2));
+    Assert.assertEquals(refreshed.get(1).getRecord().getSimpleField("key"), "value");
+
+    // add and remove children
+    accessor.set(parentPath + "/TestDB3", new ZNRecord("TestDB3"), AccessOption.PERSISTENT);
+    accessor.remove(parentPath + "/TestDB0", 0);
+    cache.onChildChange(_gZkClient.getChildren(parentPath));
+    changed.clear();
+    refreshed = cache.refresh(changed);
+    Assert.assertEquals(changed, new HashSet<String>(Arrays.asList("TestDB0", "TestDB3")));
+    Assert.assertEquals(refreshed.size(), 3);
+    Assert.assertEquals(refreshed.get(2).getId(), "TestDB3");
+
+    // a child deleted and created again has the same version, but is read again
+    ZNRecord recreated = new ZNRecord("TestDB2");
+    recreated.setSimpleField("key", "recreated");
+    accessor.remove(parentPath + "/TestDB2", 0);
+    accessor.set(parentPath + "/TestDB2", recreated, AccessOption.PERSISTENT);
+    cache.onDataChange(parentPath + "/TestDB2");
+    changed.clear();
+    refreshed = cache.refresh(changed);
+    Assert.assertEquals(changed, new HashSet<String>(Arrays.asList("TestDB2")));
+    Assert.assertEquals(refreshed.get(1).getRecord().getSimpleField("key"), "recreated");
+
+    // bucketized children are not cached
+    HelixProperty bucketized = new HelixProperty("TestDB4");
+    bucketized.setBucketSize(10);
+    accessor.set(parentPath + "/TestDB4", bucketized.getRecord(), AccessOption.PERSISTENT);
+    cache.onChildChange(_gZkClient.getChildren(parentPath));
+    Assert.assertNull(cache.refresh(new HashSet<String>()));
+
+    System.out.println("END " + testName + " at " + new Date(System.currentTimeMillis()));
+  }
+}
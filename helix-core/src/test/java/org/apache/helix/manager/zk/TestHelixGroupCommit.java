@@ -0,0 +1,184 @@
+package org.apache.helix.manager.zk;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import org.I0Itec.zkclient.DataUpdater;
+import org.apache.helix.AccessOption;
+import org.apache.helix.Mocks;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.monitoring.mbeans.GroupCommitMonitor;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestHelixGroupCommit {
+
+  @Test
+  public void testCombineUpdates() throws Exception {
+    final InMemoryAccessor accessor = new InMemoryAccessor();
+    final HelixGroupCommit<ZNRecord> groupCommit = new HelixGroupCommit<ZNRecord>(1);
+
+    // the first commit blocks in zookeeper while others are submitted
+    CountDownLatch blockFirstWrite = new CountDownLatch(1);
+    accessor._blockFirstWrite = blockFirstWrite;
+    Thread leader = new Thread() {
+      @Override
+      public void run() {
+        groupCommit.commit(accessor, AccessOption.PERSISTENT, "/a", new Increment());
+      }
+    };
+    leader.start();
+    accessor._firstWriteStarted.await();
+
+    List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+    for (String path : new String[] {
+        "/a", "/b", "/a", "/c", "/b"
+    }) {
+      futures.add(groupCommit.commitAsync(accessor, AccessOption.PERSISTENT, path,
+          new Increment()));
+    }
+    for (Future<Boolean> future : futures) {
+      Assert.assertFalse(future.isDone());
+    }
+
+    blockFirstWrite.countDown();
+    for (Future<Boolean> future : futures) {
+      Assert.assertTrue(future.get());
+    }
+    leader.join();
+
+    Assert.assertEquals(accessor._records.get("/a").getIntField("count", 0), 3);
+    Assert.assertEquals(accessor._records.get("/b").getIntField("count", 0), 2);
+    Assert.assertEquals(accessor._records.get("/c").getIntField("count", 0), 1);
+
+    // the pending updates are committed by the leader with one async batch of 3 paths
+    Assert.assertEquals(accessor._batchSizes.size(), 2);
+    Assert.assertEquals(accessor._batchSizes.get(1).intValue(), 3);
+
+    GroupCommitMonitor monitor = groupCommit.getMonitor();
+    Assert.assertEquals(monitor.getBatchCounter(), 2);
+    Assert.assertEquals(monitor.getWriteCounter(), 4);
+    Assert.assertEquals(monitor.getUpdateCounter(), 6);
+    Assert.assertEquals(monitor.getRetryCounter(), 0);
+  }
+
+  @Test
+  public void testConcurrentCommits() throws Exception {
+    final InMemoryAccessor accessor = new InMemoryAccessor();
+    final HelixGroupCommit<ZNRecord> groupCommit = new HelixGroupCommit<ZNRecord>(4);
+    final int numThreads = 8;
+    final int numCommits = 50;
+
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < numThreads; i++) {
+      final String path = "/" + (i % 3);
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < numCommits; j++) {
+            Assert.assertTrue(
+                groupCommit.commit(accessor, AccessOption.PERSISTENT, path, new Increment()));
+          }
+        }
+      };
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    int total = 0;
+    for (ZNRecord record : accessor._records.values()) {
+      total += record.getIntField("count", 0);
+    }
+    Assert.assertEquals(total, numThreads * numCommits);
+    Assert.assertEquals(groupCommit.getMonitor().getUpdateCounter(), numThreads * numCommits);
+  }
+
+  @Test
+  public void testRetryOnVersionConflict() throws Exception {
+    InMemoryAccessor accessor = new InMemoryAccessor();
+    HelixGroupCommit<ZNRecord> groupCommit = new HelixGroupCommit<ZNRecord>(1);
+
+    accessor._conflicts = 1;
+    Assert.assertTrue(
+        groupCommit.commit(accessor, AccessOption.PERSISTENT, "/a", new Increment()));
+    Assert.assertEquals(accessor._records.get("/a").getIntField("count", 0), 1);
+    Assert.assertEquals(groupCommit.getMonitor().getRetryCounter(), 1);
+  }
+
+  private static class Increment implements DataUpdater<ZNRecord> {
+    @Override
+    public ZNRecord update(ZNRecord currentData) {
+      ZNRecord record = currentData == null ? new ZNRecord("test") : new ZNRecord(currentData);
+      record.setIntField("count", record.getIntField("count", 0) + 1);
+      return record;
+    }
+  }
+
+  /**
+   * Applies updates in memory the way ZkBaseDataAccessor does, updaters are called again on a
+   * version conflict
+   */
+  private static class InMemoryAccessor extends Mocks.MockBaseDataAccessor {
+    final Map<String, ZNRecord> _records = new HashMap<String, ZNRecord>();
+    final List<Integer> _batchSizes = new ArrayList<Integer>();
+    final CountDownLatch _firstWriteStarted = new CountDownLatch(1);
+    volatile CountDownLatch _blockFirstWrite;
+    int _conflicts = 0;
+
+    @Override
+    public boolean[] updateChildren(List<String> paths, List<DataUpdater<ZNRecord>> updaters,
+        int options) {
+      _firstWriteStarted.countDown();
+      CountDownLatch block = _blockFirstWrite;
+      if (block != null) {
+        _blockFirstWrite = null;
+        try {
+          block.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      synchronized (this) {
+        _batchSizes.add(paths.size());
+        boolean[] success = new boolean[paths.size()];
+        for (int i = 0; i < paths.size(); i++) {
+          ZNRecord record = updaters.get(i).update(_records.get(paths.get(i)));
+          while (_conflicts > 0) {
+            _conflicts--;
+            record = updaters.get(i).update(_records.get(paths.get(i)));
+          }
+          _records.put(paths.get(i), record);
+          success[i] = true;
+        }
+        return success;
+      }
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package org.apache.helix.manager.zk;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.I0Itec.zkclient.serialize.ZkSerializer;
+import org.apache.helix.ZNRecord;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestZNRecordBinarySerializer {
+
+  private static ZNRecord createExternalView(int numPartitions) {
+    ZNRecord record = new ZNRecord("TestDB");
+    record.setSimpleField("STATE_MODEL_DEF_REF", "MasterSlave");
+    for (int p = 0; p < numPartitions; p++) {
+      Map<String, String> stateMap = new HashMap<String, String>();
+      for (int r = 0; r < 3; r++) {
+        stateMap.put("localhost_" + (12000 + (p + r) % 20), r == 0 ? "MASTER" : "SLAVE");
+      }
+      record.setMapField("TestDB_" + p, stateMap);
+      record.setListField("TestDB_" + p, Arrays.asList("localhost_12000", "localhost_12001"));
+    }
+    return record;
+  }
+
+  @Test
+  public void testRoundTrip() {
+    ZNRecordBinarySerializer serializer = new ZNRecordBinarySerializer();
+    ZNRecord record = createExternalView(100);
+    record.setSimpleField("nullValue", null);
+    record.setRawPayload(new byte[] {
+        1, 2, 3
+    });
+    byte[] bytes = serializer.serialize(record);
+    Assert.assertTrue(ZNRecordBinarySerializer.isBinary(bytes));
+    ZNRecord result = (ZNRecord) serializer.deserialize(bytes);
+    Assert.assertEquals(result, record);
+    Assert.assertNull(result.getSimpleField("nullValue"));
+    Assert.assertEquals(result.getRawPayload(), record.getRawPayload());
+
+    // compressed records are still detected after decompression
+    record.setSimpleField("enableCompression", "true");
+    bytes = serializer.serialize(record);
+    Assert.assertFalse(ZNRecordBinarySerializer.isBinary(bytes));
+    Assert.assertEquals(serializer.deserialize(bytes), record);
+
+    // the binary format is much smaller than JSON
+    ZNRecord view = createExternalView(1000);
+    int binarySize = serializer.serialize(view).length;
+    int jsonSize = new ZNRecordStreamingSerializer().serialize(view).length;
+    Assert.assertTrue(binarySize * 3 < jsonSize, "binary: " + binarySize + ", json: " + jsonSize);
+  }
+
+  @Test
+  public void testFormatDetection() {
+    ZNRecord record = createExternalView(10);
+    ZkSerializer binarySerializer = new ZNRecordBinarySerializer();
+    ZkSerializer[] jsonSerializers = new ZkSerializer[] {
+        new ZNRecordSerializer(), new ZNRecordStreamingSerializer()
+    };
+    for (String compression : new String[] {
+        "false", "true"
+    }) {
+      record.setSimpleField("enableCompression", compression);
+      byte[] binary = binarySerializer.serialize(record);
+      for (ZkSerializer jsonSerializer : jsonSerializers) {
+        // legacy JSON is read by the binary serializer, and binary by the JSON serializers
+        Assert.assertEquals(binarySerializer.deserialize(jsonSerializer.serialize(record)), record);
+        Assert.assertEquals(jsonSerializer.deserialize(binary), record);
+      }
+    }
+
+    // malformed data is not returned
+    byte[] truncated = Arrays.copyOf(binarySerializer.serialize(createExternalView(10)), 20);
+    Assert.assertNull(binarySerializer.deserialize(truncated));
+  }
+
+  @Test
+  public void testChainedSerializerWithWildcard() {
+    ZkSerializer binarySerializer = new ZNRecordBinarySerializer();
+    PathBasedZkSerializer serializer =
+        ChainedPathZkSerializer.builder(new ZNRecordStreamingSerializer())
+            .serialize("/cluster/INSTANCES/*/CURRENTSTATES", binarySerializer).build();
+    ZNRecord record = createExternalView(10);
+    Assert.assertTrue(ZNRecordBinarySerializer.isBinary(serializer.serialize(record,
+        "/cluster/INSTANCES/localhost_12000/CURRENTSTATES/session/TestDB")));
+    Assert.assertFalse(ZNRecordBinarySerializer.isBinary(serializer.serialize(record,
+        "/cluster/INSTANCES/localhost_12000/MESSAGES/msg")));
+    Assert.assertFalse(ZNRecordBinarySerializer.isBinary(serializer.serialize(record,
+        "/cluster/EXTERNALVIEW/TestDB")));
+  }
+}
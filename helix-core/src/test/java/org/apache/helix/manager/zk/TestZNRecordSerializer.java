@@ -1,9 +1,16 @@
 package org.apache.helix.manager.zk;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.helix.ZNRecord;
 import org.apache.log4j.Logger;
@@ -124,4 +131,40 @@ public class TestZNRecordSerializer {
       runId = runId + 1;
     }
   }
+
+  /**
+   * The serializer shares one mapper across threads, make sure concurrent use doesn't mix records
+   */
+  @Test
+  public void testConcurrentSerialization() throws Exception {
+    final ZNRecordSerializer serializer = new ZNRecordSerializer();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+    for (int i = 0; i < 64; i++) {
+      final int id = i;
+      futures.add(executor.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() {
+          ZNRecord record = new ZNRecord("record_" + id);
+          record.setSimpleField("id", Integer.toString(id));
+          for (int p = 0; p < 100; p++) {
+            record.setListField("partition_" + p, Arrays.asList("host_" + id, "host_" + p));
+          }
+          if (id % 2 == 0) {
+            record.setSimpleField("enableCompression", "true");
+          }
+          for (int k = 0; k < 20; k++) {
+            if (!record.equals(serializer.deserialize(serializer.serialize(record)))) {
+              return false;
+            }
+          }
+          return true;
+        }
+      }));
+    }
+    for (Future<Boolean> future : futures) {
+      Assert.assertTrue(future.get());
+    }
+    executor.shutdown();
+  }
 }
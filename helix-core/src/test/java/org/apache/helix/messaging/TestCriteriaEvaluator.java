@@ -0,0 +1,210 @@
+package org.apache.helix.messaging;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.helix.Criteria;
+import org.apache.helix.Criteria.DataSource;
+import org.apache.helix.ExternalViewChangeListener;
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.HelixProperty;
+import org.apache.helix.InstanceType;
+import org.apache.helix.LiveInstanceChangeListener;
+import org.apache.helix.Mocks;
+import org.apache.helix.NotificationContext;
+import org.apache.helix.PropertyKey;
+import org.apache.helix.PropertyKey.Builder;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.LiveInstance;
+import org.apache.helix.tools.DefaultIdealStateCalculator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestCriteriaEvaluator {
+  class CountingAccessor extends Mocks.MockAccessor {
+    final AtomicInteger _numReads = new AtomicInteger();
+
+    CountingAccessor(String clusterName) {
+      super(clusterName);
+    }
+
+    @Override
+    public <T extends HelixProperty> List<T> getChildValues(PropertyKey propertyKey) {
+      _numReads.incrementAndGet();
+      return super.getChildValues(propertyKey);
+    }
+  }
+
+  class ListeningManager extends Mocks.MockManager {
+    final CountingAccessor _accessor = new CountingAccessor("TestCriteriaEvaluator");
+    final List<ExternalViewChangeListener> _externalViewListeners =
+        new ArrayList<ExternalViewChangeListener>();
+    final List<LiveInstanceChangeListener> _liveInstanceListeners =
+        new ArrayList<LiveInstanceChangeListener>();
+
+    @Override
+    public boolean isConnected() {
+      return true;
+    }
+
+    @Override
+    public HelixDataAccessor getHelixDataAccessor() {
+      return _accessor;
+    }
+
+    @Override
+    public void addExternalViewChangeListener(ExternalViewChangeListener listener) {
+      _externalViewListeners.add(listener);
+      notifyExternalViewChange(NotificationContext.Type.INIT);
+    }
+
+    @Override
+    public void addLiveInstanceChangeListener(LiveInstanceChangeListener listener) {
+      _liveInstanceListeners.add(listener);
+      notifyLiveInstanceChange(NotificationContext.Type.INIT);
+    }
+
+    void notifyExternalViewChange(NotificationContext.Type type) {
+      NotificationContext context = new NotificationContext(this);
+      context.setType(type);
+      List<ExternalView> externalViews =
+          _accessor.getChildValues(_accessor.keyBuilder().externalViews());
+      for (ExternalViewChangeListener listener : _externalViewListeners) {
+        listener.onExternalViewChange(externalViews, context);
+      }
+    }
+
+    void notifyLiveInstanceChange(NotificationContext.Type type) {
+      NotificationContext context = new NotificationContext(this);
+      context.setType(type);
+      List<LiveInstance> liveInstances =
+          _accessor.getChildValues(_accessor.keyBuilder().liveInstances());
+      for (LiveInstanceChangeListener listener : _liveInstanceListeners) {
+        listener.onLiveInstanceChange(liveInstances, context);
+      }
+    }
+  }
+
+  @Test
+  public void testCachedEvaluationSameAsUncached() {
+    ListeningManager manager = createManager();
+    CriteriaEvaluator uncached = new CriteriaEvaluator();
+    CriteriaEvaluator cached = new CriteriaEvaluator(manager);
+
+    String[][] criteriaFields = new String[][] {
+        // instance, resource, partition, partition state
+        {
+            "%", "DB", "%", ""
+        }, {
+            "*", "DB", "*", "MASTER"
+        }, {
+            "localhost_12920", "DB", "%", "slave"
+        }, {
+            "localhost\\_%", "", "", ""
+        }, {
+            "localhost_1291_", "db", "DB_1%", ""
+        }, {
+            "LOCALHOST_12918", "", "", ""
+        }, {
+            "%", "", "", "MASTER"
+        }, {
+            "localhost_12918", "DB_", "%", ""
+        }
+    };
+    for (DataSource dataSource : new DataSource[] {
+        DataSource.EXTERNALVIEW, DataSource.LIVEINSTANCES
+    }) {
+      for (String[] fields : criteriaFields) {
+        Criteria criteria = createCriteria(dataSource, fields);
+        List<Map<String, String>> expected = uncached.evaluateCriteria(criteria, manager);
+        List<Map<String, String>> actual = cached.evaluateCriteria(criteria, manager);
+        Assert.assertEquals(new HashSet<Map<String, String>>(actual),
+            new HashSet<Map<String, String>>(expected), criteria.toString());
+        Assert.assertEquals(actual.size(), expected.size());
+      }
+    }
+    Assert.assertEquals(cached.evaluateCriteria(createCriteria(DataSource.EXTERNALVIEW,
+        criteriaFields[0]), manager).size(), 200);
+  }
+
+  @Test
+  public void testCachedEvaluationFollowsChanges() {
+    ListeningManager manager = createManager();
+    CriteriaEvaluator evaluator = new CriteriaEvaluator(manager);
+    Criteria criteria = createCriteria(DataSource.EXTERNALVIEW, new String[] {
+        "%", "DB", "%", ""
+    });
+    Assert.assertEquals(evaluator.evaluateCriteria(criteria, manager).size(), 200);
+
+    // later evaluations are served from memory
+    int numReads = manager._accessor._numReads.get();
+    Assert.assertEquals(evaluator.evaluateCriteria(criteria, manager).size(), 200);
+    Assert.assertEquals(manager._accessor._numReads.get(), numReads);
+
+    // an instance goes offline
+    Builder keyBuilder = manager._accessor.keyBuilder();
+    manager._accessor.removeProperty(keyBuilder.liveInstance("localhost_12918"));
+    manager.notifyLiveInstanceChange(NotificationContext.Type.CALLBACK);
+    int numLiveRows = new CriteriaEvaluator().evaluateCriteria(criteria, manager).size();
+    Assert.assertTrue(numLiveRows < 200);
+    Assert.assertEquals(evaluator.evaluateCriteria(criteria, manager).size(), numLiveRows);
+
+    // the data source is read directly once the listener is finalized
+    manager.notifyExternalViewChange(NotificationContext.Type.FINALIZE);
+    numReads = manager._accessor._numReads.get();
+    Assert.assertEquals(evaluator.evaluateCriteria(criteria, manager).size(), numLiveRows);
+    Assert.assertTrue(manager._accessor._numReads.get() > numReads);
+  }
+
+  private ListeningManager createManager() {
+    ListeningManager manager = new ListeningManager();
+    HelixDataAccessor accessor = manager.getHelixDataAccessor();
+    Builder keyBuilder = accessor.keyBuilder();
+    List<String> instances = new ArrayList<String>();
+    for (int i = 0; i < 5; i++) {
+      String instance = "localhost_" + (12918 + i);
+      instances.add(instance);
+      LiveInstance liveInstance = new LiveInstance(instance);
+      liveInstance.setSessionId("session_" + i);
+      accessor.setProperty(keyBuilder.liveInstance(instance), liveInstance);
+    }
+    ExternalView externalView =
+        new ExternalView(DefaultIdealStateCalculator.calculateIdealState(instances, 50, 3, "DB",
+            "MASTER", "SLAVE"));
+    accessor.setProperty(keyBuilder.externalView("DB"), externalView);
+    return manager;
+  }
+
+  private Criteria createCriteria(DataSource dataSource, String[] fields) {
+    Criteria criteria = new Criteria();
+    criteria.setRecipientInstanceType(InstanceType.PARTICIPANT);
+    criteria.setDataSource(dataSource);
+    criteria.setInstanceName(fields[0]);
+    criteria.setResource(fields[1]);
+    criteria.setPartition(fields[2]);
+    criteria.setPartitionState(fields[3]);
+    return criteria;
+  }
+}
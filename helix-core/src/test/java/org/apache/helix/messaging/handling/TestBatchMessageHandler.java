@@ -0,0 +1,146 @@
+package org.apache.helix.messaging.handling;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.Mocks;
+import org.apache.helix.NotificationContext;
+import org.apache.helix.model.ClusterConfig;
+import org.apache.helix.model.Message;
+import org.apache.helix.model.Message.MessageType;
+import org.apache.helix.model.ResourceConfig;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestBatchMessageHandler {
+  private static final String RESOURCE = "TestDB";
+
+  @Test
+  public void testComputeChunkSize() {
+    Assert.assertEquals(BatchMessageHandler.computeChunkSize(512, -1, -1), 1);
+    Assert.assertEquals(BatchMessageHandler.computeChunkSize(512, 16, -1), 16);
+    // concurrency bounds the number of tasks
+    Assert.assertEquals(BatchMessageHandler.computeChunkSize(512, -1, 8), 64);
+    Assert.assertEquals(BatchMessageHandler.computeChunkSize(10, -1, 3), 4);
+    Assert.assertEquals(BatchMessageHandler.computeChunkSize(10, 8, 3), 8);
+  }
+
+  @Test
+  public void testConfiguredChunkSize() throws Exception {
+    Mocks.MockManager manager = new Mocks.MockManager("cluster");
+    HelixDataAccessor accessor = manager.getHelixDataAccessor();
+    ClusterConfig clusterConfig = new ClusterConfig("cluster");
+    clusterConfig.setBatchMessageChunkSize(2);
+    accessor.setProperty(accessor.keyBuilder().clusterConfig(), clusterConfig);
+
+    RecordingTaskExecutor executor = new RecordingTaskExecutor();
+    try {
+      // chunk size from the cluster config
+      BatchMessageHandler handler = createHandler(manager, executor, 10);
+      Assert.assertTrue(handler.handleMessage().isSuccess());
+      Assert.assertEquals(executor._taskSizes, listOf(2, 2, 2, 2, 2));
+
+      // the resource config overrides the cluster config
+      ResourceConfig resourceConfig = new ResourceConfig(RESOURCE);
+      resourceConfig.setBatchMessageChunkSize(4);
+      accessor.setProperty(accessor.keyBuilder().resourceConfig(RESOURCE), resourceConfig);
+      executor._taskSizes.clear();
+      handler = createHandler(manager, executor, 10);
+      Assert.assertTrue(handler.handleMessage().isSuccess());
+      Assert.assertEquals(executor._taskSizes, listOf(4, 4, 2));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static List<Integer> listOf(Integer... sizes) {
+    List<Integer> list = new ArrayList<Integer>();
+    Collections.addAll(list, sizes);
+    return list;
+  }
+
+  private BatchMessageHandler createHandler(Mocks.MockManager manager, TaskExecutor executor,
+      int numPartitions) {
+    Message message =
+        new Message(MessageType.STATE_TRANSITION.name(), UUID.randomUUID().toString());
+    message.setResourceName(RESOURCE);
+    message.setBatchMessageMode(true);
+    message.setExecutionTimeout(-1);
+    for (int i = 0; i < numPartitions; i++) {
+      message.addPartitionName(RESOURCE + "_" + i);
+    }
+
+    NotificationContext context = new NotificationContext(manager);
+    return new BatchMessageHandler(message, context, new SuccessHandlerFactory(),
+        new BatchMessageWrapper(), executor);
+  }
+
+  private static class RecordingTaskExecutor extends HelixTaskExecutor {
+    final List<Integer> _taskSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+    @Override
+    public List<Future<HelixTaskResult>> invokeAllTasks(List<MessageTask> tasks, long timeout,
+        TimeUnit unit) throws InterruptedException {
+      for (MessageTask task : tasks) {
+        _taskSizes.add(((HelixBatchMessageTask) task)._handlers.size());
+      }
+      return super.invokeAllTasks(tasks, timeout, unit);
+    }
+  }
+
+  private static class SuccessHandlerFactory implements MessageHandlerFactory {
+    @Override
+    public MessageHandler createHandler(Message message, NotificationContext context) {
+      return new MessageHandler(message, context) {
+        @Override
+        public HelixTaskResult handleMessage() {
+          HelixTaskResult result = new HelixTaskResult();
+          result.setSuccess(true);
+          return result;
+        }
+
+        @Override
+        public void onError(Exception e, ErrorCode code, ErrorType type) {
+        }
+      };
+    }
+
+    @Override
+    public String getMessageType() {
+      return MessageType.STATE_TRANSITION.name();
+    }
+
+    @Override
+    public List<String> getMessageTypes() {
+      return Collections.singletonList(MessageType.STATE_TRANSITION.name());
+    }
+
+    @Override
+    public void reset() {
+    }
+  }
+}
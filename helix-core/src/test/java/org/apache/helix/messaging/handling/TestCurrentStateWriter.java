@@ -0,0 +1,190 @@
+package org.apache.helix.messaging.handling;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.I0Itec.zkclient.exception.ZkBadVersionException;
+import org.apache.helix.BaseDataAccessor;
+import org.apache.helix.Mocks;
+import org.apache.helix.PropertyKey;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.ZNRecordDelta;
+import org.apache.helix.ZNRecordDelta.MergeOperation;
+import org.apache.helix.model.CurrentState;
+import org.apache.helix.monitoring.mbeans.CurrentStateWriterMonitor;
+import org.apache.zookeeper.data.Stat;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestCurrentStateWriter {
+  private static final String RESOURCE = "TestDB";
+
+  @Test
+  public void testCoalesceUpdates() {
+    VersionedBaseDataAccessor baseAccessor = new VersionedBaseDataAccessor();
+    MockAccessor accessor = new MockAccessor(baseAccessor);
+    PropertyKey key = accessor.keyBuilder().currentState("localhost_12918", "session_0", RESOURCE);
+    CurrentStateWriter writer = new CurrentStateWriter(200, 1000);
+    CurrentStateWriterMonitor monitor = new CurrentStateWriterMonitor("cluster", "localhost_12918");
+    writer.setMonitor(monitor);
+
+    List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+    for (int i = 0; i < 10; i++) {
+      CurrentState delta = new CurrentState(RESOURCE);
+      delta.setState(RESOURCE + "_" + i, "SLAVE");
+      results.add(writer.submit(accessor, key, delta));
+    }
+    for (Future<Boolean> result : results) {
+      Assert.assertTrue(CurrentStateWriter.waitFor(result));
+    }
+
+    // all updates within the window are merged into one write
+    Assert.assertEquals(baseAccessor._setCount, 1);
+    ZNRecord record = baseAccessor._records.get(key.getPath());
+    Assert.assertEquals(record.getMapFields().size(), 10);
+    Assert.assertEquals(monitor.getUpdateCounter(), 10);
+    Assert.assertEquals(monitor.getWriteCounter(), 1);
+    Assert.assertEquals(monitor.getMergeRatio(), 10.0, 0.001);
+
+    // an update submitted after the write goes into a new version
+    CurrentState delta = new CurrentState(RESOURCE);
+    delta.setState(RESOURCE + "_0", "MASTER");
+    Assert.assertTrue(writer.write(accessor, key, delta));
+    Assert.assertEquals(baseAccessor._setCount, 2);
+    Assert.assertEquals(baseAccessor._records.get(key.getPath()).getMapField(RESOURCE + "_0")
+        .get("CURRENT_STATE"), "MASTER");
+    writer.shutdown();
+  }
+
+  @Test
+  public void testMergeDeltasInOrder() {
+    VersionedBaseDataAccessor baseAccessor = new VersionedBaseDataAccessor();
+    MockAccessor accessor = new MockAccessor(baseAccessor);
+    PropertyKey key = accessor.keyBuilder().currentState("localhost_12918", "session_0", RESOURCE);
+    CurrentStateWriter writer = new CurrentStateWriter(200, 1000);
+
+    CurrentState add = new CurrentState(RESOURCE);
+    add.setState(RESOURCE + "_0", "OFFLINE");
+    Future<Boolean> addResult = writer.submit(accessor, key, add);
+
+    // drop the partition right after it was added
+    ZNRecord rec = new ZNRecord(RESOURCE);
+    rec.getMapFields().put(RESOURCE + "_0", null);
+    List<ZNRecordDelta> deltaList = new ArrayList<ZNRecordDelta>();
+    deltaList.add(new ZNRecordDelta(rec, MergeOperation.SUBTRACT));
+    CurrentState drop = new CurrentState(RESOURCE);
+    drop.setDeltaList(deltaList);
+    Future<Boolean> dropResult = writer.submit(accessor, key, drop);
+
+    Assert.assertTrue(CurrentStateWriter.waitFor(addResult));
+    Assert.assertTrue(CurrentStateWriter.waitFor(dropResult));
+
+    // the empty current state is never written
+    Assert.assertEquals(baseAccessor._setCount, 0);
+    Assert.assertNull(baseAccessor._records.get(key.getPath()));
+    writer.shutdown();
+  }
+
+  @Test
+  public void testRetryOnVersionConflict() {
+    VersionedBaseDataAccessor baseAccessor = new VersionedBaseDataAccessor();
+    MockAccessor accessor = new MockAccessor(baseAccessor);
+    PropertyKey key = accessor.keyBuilder().currentState("localhost_12918", "session_0", RESOURCE);
+    CurrentStateWriter writer = new CurrentStateWriter(10, 1000);
+    CurrentStateWriterMonitor monitor = new CurrentStateWriterMonitor("cluster", "localhost_12918");
+    writer.setMonitor(monitor);
+
+    CurrentState delta = new CurrentState(RESOURCE);
+    delta.setState(RESOURCE + "_0", "SLAVE");
+    Assert.assertTrue(writer.write(accessor, key, delta));
+
+    // another writer changes the current state between read and write
+    baseAccessor._conflicts = 1;
+    delta = new CurrentState(RESOURCE);
+    delta.setState(RESOURCE + "_1", "SLAVE");
+    Assert.assertTrue(writer.write(accessor, key, delta));
+
+    Assert.assertEquals(monitor.getVersionConflictCounter(), 1);
+    Assert.assertEquals(baseAccessor._records.get(key.getPath()).getMapFields().size(), 2);
+    writer.shutdown();
+  }
+
+  private static class MockAccessor extends Mocks.MockAccessor {
+    private final BaseDataAccessor<ZNRecord> _baseAccessor;
+
+    MockAccessor(BaseDataAccessor<ZNRecord> baseAccessor) {
+      super("cluster");
+      _baseAccessor = baseAccessor;
+    }
+
+    @Override
+    public BaseDataAccessor getBaseDataAccessor() {
+      return _baseAccessor;
+    }
+  }
+
+  /**
+   * Keeps records with versions and rejects writes with a stale version
+   */
+  private static class VersionedBaseDataAccessor extends Mocks.MockBaseDataAccessor {
+    final Map<String, ZNRecord> _records = new HashMap<String, ZNRecord>();
+    final Map<String, Integer> _versions = new HashMap<String, Integer>();
+    int _setCount = 0;
+    int _conflicts = 0;
+
+    @Override
+    public synchronized ZNRecord get(String path, Stat stat, int options) {
+      ZNRecord record = _records.get(path);
+      if (record == null) {
+        return null;
+      }
+      stat.setVersion(_versions.get(path));
+      return new ZNRecord(record);
+    }
+
+    @Override
+    public synchronized boolean set(String path, ZNRecord record, int expectVersion,
+        int options) {
+      Integer version = _versions.get(path);
+      if (_conflicts > 0) {
+        _conflicts--;
+        throw new ZkBadVersionException();
+      }
+      if (expectVersion != -1 && (version == null || version != expectVersion)) {
+        throw new ZkBadVersionException();
+      }
+      _records.put(path, record);
+      _versions.put(path, version == null ? 0 : version + 1);
+      _setCount++;
+      return true;
+    }
+
+    @Override
+    public synchronized boolean remove(String path, int options) {
+      _versions.remove(path);
+      return _records.remove(path) != null;
+    }
+  }
+}
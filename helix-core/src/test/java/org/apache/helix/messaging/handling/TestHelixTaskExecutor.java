@@ -23,15 +23,22 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.helix.HelixDataAccessor;
 import org.apache.helix.HelixException;
 import org.apache.helix.HelixManager;
 import org.apache.helix.Mocks;
 import org.apache.helix.NotificationContext;
+import org.apache.helix.PropertyKey;
 import org.apache.helix.messaging.DefaultMessagingService;
 import org.apache.helix.model.Message;
 import org.apache.helix.model.Message.MessageState;
+import org.apache.helix.model.Message.MessageType;
+import org.apache.helix.monitoring.ParticipantStatusMonitor;
 import org.testng.Assert;
 import org.testng.AssertJUnit;
 import org.testng.annotations.Test;
@@ -294,6 +301,77 @@ public class TestHelixTaskExecutor {
     System.out.println("END TestCMTaskExecutor.testNormalMsgExecution()");
   }
 
+  @Test()
+  public void testBoundedExecutorBackPressure() throws InterruptedException {
+    HelixTaskExecutor executor = new HelixTaskExecutor(new ParticipantStatusMonitor(false, null),
+        new DefaultMessageExecutorFactory(true, 2));
+    HelixManager manager = new MockClusterManager();
+
+    TestMessageHandlerFactory factory = new TestMessageHandlerFactory();
+    for (String type : factory.getMessageTypes()) {
+      executor.registerMessageHandlerFactory(type, factory, 1);
+    }
+
+    NotificationContext changeContext = new NotificationContext(manager);
+    List<Message> msgList = new ArrayList<Message>();
+    int nMsgs = 5;
+    for (int i = 0; i < nMsgs; i++) {
+      Message msg = new Message(factory.getMessageTypes().get(0), UUID.randomUUID().toString());
+      msg.setTgtSessionId(manager.getSessionId());
+      msg.setTgtName("Localhost_1123");
+      msg.setSrcName("127.101.1.23_2234");
+      msg.setCorrelationId(UUID.randomUUID().toString());
+      msgList.add(msg);
+    }
+    executor.onMessage("someInstance", msgList, changeContext);
+
+    // one thread and two queued tasks, the rest of the messages are left unread
+    List<Message> unreadMsgs = new ArrayList<Message>();
+    for (Message msg : msgList) {
+      if (msg.getMsgState() == MessageState.NEW) {
+        unreadMsgs.add(msg);
+      }
+    }
+    AssertJUnit.assertEquals(nMsgs - 3, unreadMsgs.size());
+
+    Thread.sleep(1000);
+    AssertJUnit.assertEquals(3, factory._processedMsgIds.size());
+
+    // deferred messages are processed on the next message change
+    executor.onMessage("someInstance", unreadMsgs, changeContext);
+    Thread.sleep(1000);
+    AssertJUnit.assertEquals(nMsgs, factory._processedMsgIds.size());
+    executor.shutdown();
+  }
+
+  @Test()
+  public void testBatchSubTasksOnBoundedExecutor() throws Exception {
+    HelixTaskExecutor executor = new HelixTaskExecutor(new ParticipantStatusMonitor(false, null),
+        new DefaultMessageExecutorFactory(false, 1));
+    HelixManager manager = new MockClusterManager();
+
+    TestMessageHandlerFactory factory = new TestMessageHandlerFactory();
+    for (String type : factory.getMessageTypes()) {
+      executor.registerMessageHandlerFactory(type, factory, 1);
+    }
+
+    // more sub-tasks than the pool can run and queue, none is rejected
+    NotificationContext changeContext = new NotificationContext(manager);
+    List<MessageTask> tasks = new ArrayList<MessageTask>();
+    int nTasks = 5;
+    for (int i = 0; i < nTasks; i++) {
+      Message msg = createMessage(factory.getMessageTypes().get(0), manager.getSessionId());
+      tasks.add(new SleepingTask(msg, changeContext));
+    }
+    List<Future<HelixTaskResult>> futures =
+        executor.invokeAllTasks(tasks, 10, TimeUnit.SECONDS);
+    AssertJUnit.assertEquals(nTasks, futures.size());
+    for (Future<HelixTaskResult> future : futures) {
+      AssertJUnit.assertTrue(future.get().isSuccess());
+    }
+    executor.shutdown();
+  }
+
   @Test()
   public void testUnknownTypeMsgExecution() throws InterruptedException {
     HelixTaskExecutor executor = new HelixTaskExecutor();
@@ -433,6 +511,126 @@ public class TestHelixTaskExecutor {
     System.out.println("END TestCMTaskExecutor.testCreateHandlerException()");
   }
 
+  @Test()
+  public void testBatchedMessageRemoval() throws InterruptedException {
+    HelixTaskExecutor executor = new HelixTaskExecutor();
+    final RemovalRecordingAccessor accessor = new RemovalRecordingAccessor();
+    HelixManager manager = new MockClusterManager() {
+      @Override
+      public HelixDataAccessor getHelixDataAccessor() {
+        return accessor;
+      }
+    };
+
+    TestMessageHandlerFactory factory = new TestMessageHandlerFactory();
+    for (String type : factory.getMessageTypes()) {
+      executor.registerMessageHandlerFactory(type, factory);
+    }
+
+    NotificationContext changeContext = new NotificationContext(manager);
+    List<Message> msgList = new ArrayList<Message>();
+    for (int i = 0; i < 2; i++) {
+      msgList.add(createMessage(MessageType.NO_OP.name(), manager.getSessionId()));
+      msgList.add(createMessage(factory.getMessageTypes().get(0), "otherSession"));
+    }
+    Message exceptionMsg = createMessage(factory.getMessageTypes().get(0), manager.getSessionId());
+    exceptionMsg.setMsgSubType("EXCEPTION");
+    msgList.add(exceptionMsg);
+    int nMsgs = 3;
+    for (int i = 0; i < nMsgs; i++) {
+      msgList.add(createMessage(factory.getMessageTypes().get(0), manager.getSessionId()));
+    }
+
+    executor.onMessage("someInstance", msgList, changeContext);
+
+    // no-op, session mismatched and unprocessable messages are removed in one batch
+    AssertJUnit.assertEquals(0, accessor._numRemoves);
+    AssertJUnit.assertEquals(1, accessor._numBatchRemoves);
+    AssertJUnit.assertEquals(5, accessor._removedKeys.size());
+
+    Thread.sleep(1000);
+    AssertJUnit.assertEquals(nMsgs, factory._processedMsgIds.size());
+    // messages of finished tasks are removed through the batch api as well
+    AssertJUnit.assertEquals(0, accessor._numRemoves);
+    AssertJUnit.assertEquals(5 + nMsgs, accessor._removedKeys.size());
+    executor.shutdown();
+  }
+
+  private Message createMessage(String msgType, String tgtSessionId) {
+    Message msg = new Message(msgType, UUID.randomUUID().toString());
+    msg.setTgtSessionId(tgtSessionId);
+    msg.setTgtName("Localhost_1123");
+    msg.setSrcName("127.101.1.23_2234");
+    return msg;
+  }
+
+  /**
+   * Task that succeeds after a short sleep
+   */
+  private static class SleepingTask implements MessageTask {
+    private final Message _message;
+    private final NotificationContext _context;
+
+    SleepingTask(Message message, NotificationContext context) {
+      _message = message;
+      _context = context;
+    }
+
+    @Override
+    public HelixTaskResult call() throws Exception {
+      Thread.sleep(100);
+      HelixTaskResult result = new HelixTaskResult();
+      result.setSuccess(true);
+      return result;
+    }
+
+    @Override
+    public String getTaskId() {
+      return _message.getId();
+    }
+
+    @Override
+    public Message getMessage() {
+      return _message;
+    }
+
+    @Override
+    public NotificationContext getNotificationContext() {
+      return _context;
+    }
+
+    @Override
+    public void onTimeout() {
+    }
+
+    @Override
+    public boolean cancel() {
+      return false;
+    }
+  }
+
+  /**
+   * Counts single and batch removals
+   */
+  private static class RemovalRecordingAccessor extends Mocks.MockAccessor {
+    volatile int _numRemoves = 0;
+    volatile int _numBatchRemoves = 0;
+    final List<PropertyKey> _removedKeys = new CopyOnWriteArrayList<PropertyKey>();
+
+    @Override
+    public boolean removeProperty(PropertyKey key) {
+      _numRemoves++;
+      return super.removeProperty(key);
+    }
+
+    @Override
+    public boolean[] removeChildren(List<PropertyKey> keys) {
+      _numBatchRemoves++;
+      _removedKeys.addAll(keys);
+      return new boolean[keys.size()];
+    }
+  }
+
   @Test()
   public void testTaskCancellation() throws InterruptedException {
     HelixTaskExecutor executor = new HelixTaskExecutor();
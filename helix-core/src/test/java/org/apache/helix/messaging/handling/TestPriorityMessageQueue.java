@@ -0,0 +1,115 @@
+package org.apache.helix.messaging.handling;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.helix.Mocks;
+import org.apache.helix.NotificationContext;
+import org.apache.helix.messaging.handling.MessageThreadPoolExecutor.MessageFutureTask;
+import org.apache.helix.model.Message;
+import org.apache.helix.model.Message.MessageType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestPriorityMessageQueue {
+  private final NotificationContext _context = new NotificationContext(new Mocks.MockManager());
+
+  @Test
+  public void testPriorityOrdering() {
+    PriorityMessageQueue queue = new PriorityMessageQueue(10);
+    Runnable low = createTask("TestDB", 2);
+    Runnable high = createTask("TestDB", 0);
+    Runnable medium = createTask("TestDB", 1);
+    Runnable high2 = createTask("TestDB", 0);
+    queue.offer(low);
+    queue.offer(high);
+    queue.offer(medium);
+    queue.offer(high2);
+
+    Assert.assertEquals(queue.size(), 4);
+    Assert.assertSame(queue.peek(), high);
+    Assert.assertSame(queue.poll(), high);
+    // same priority is taken in order of arrival
+    Assert.assertSame(queue.poll(), high2);
+    Assert.assertSame(queue.poll(), medium);
+    Assert.assertSame(queue.poll(), low);
+    Assert.assertNull(queue.poll());
+  }
+
+  @Test
+  public void testResourceFairness() {
+    PriorityMessageQueue queue = new PriorityMessageQueue(10);
+    Runnable a1 = createTask("TestDB_A", 0);
+    Runnable a2 = createTask("TestDB_A", 0);
+    Runnable a3 = createTask("TestDB_A", 0);
+    Runnable b1 = createTask("TestDB_B", 0);
+    Runnable b2 = createTask("TestDB_B", 0);
+    Runnable c1 = createTask("TestDB_C", 1);
+    for (Runnable task : new Runnable[] { a1, a2, a3, b1, b2, c1 }) {
+      queue.offer(task);
+    }
+
+    // resources with tasks of the same priority are served round robin, lower priority last
+    List<Runnable> order = new ArrayList<Runnable>();
+    queue.drainTo(order);
+    Assert.assertEquals(order.size(), 6);
+    Assert.assertSame(order.get(0), a1);
+    Assert.assertSame(order.get(1), b1);
+    Assert.assertSame(order.get(2), a2);
+    Assert.assertSame(order.get(3), b2);
+    Assert.assertSame(order.get(4), a3);
+    Assert.assertSame(order.get(5), c1);
+    Assert.assertEquals(queue.size(), 0);
+  }
+
+  @Test
+  public void testBoundedCapacity() throws InterruptedException {
+    PriorityMessageQueue queue = new PriorityMessageQueue(2);
+    Runnable t1 = createTask("TestDB", 0);
+    Runnable t2 = createTask("TestDB", 0);
+    Runnable t3 = createTask("TestDB", 0);
+    Assert.assertTrue(queue.offer(t1));
+    Assert.assertTrue(queue.offer(t2));
+    Assert.assertEquals(queue.remainingCapacity(), 0);
+    Assert.assertFalse(queue.offer(t3));
+    Assert.assertFalse(queue.offer(t3, 10, TimeUnit.MILLISECONDS));
+
+    Assert.assertTrue(queue.remove(t1));
+    Assert.assertFalse(queue.remove(t1));
+    Assert.assertEquals(queue.remainingCapacity(), 1);
+    Assert.assertTrue(queue.offer(t3));
+    Assert.assertSame(queue.take(), t2);
+    Assert.assertSame(queue.take(), t3);
+    Assert.assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+  }
+
+  private Runnable createTask(String resourceName, int priority) {
+    Message message =
+        new Message(MessageType.STATE_TRANSITION.name(), UUID.randomUUID().toString());
+    message.setResourceName(resourceName);
+    HelixTask task = new HelixTask(message, _context, null, null);
+    task.setPriority(priority);
+    return new MessageFutureTask<HelixTaskResult>(task);
+  }
+}
@@ -0,0 +1,115 @@
+package org.apache.helix.task;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.helix.ZNRecord;
+import org.apache.helix.manager.zk.ZNRecordSerializer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestJobContextColumnarFormat {
+
+  @Test
+  public void testConversion() {
+    JobContext ctx = new JobContext(new ZNRecord(TaskUtil.TASK_CONTEXT_KW));
+    ctx.setStartTime(100L);
+    ctx.setPartitionState(0, TaskPartitionState.COMPLETED);
+    ctx.setPartitionNumAttempts(0, 2);
+    ctx.setPartitionStartTime(0, 10L);
+    ctx.setPartitionFinishTime(0, 20L);
+    ctx.setAssignedParticipant(0, "localhost_0");
+    ctx.setPartitionTarget(0, "TestDB_0");
+    ctx.setTaskIdForPartition(3, "task3");
+    ctx.setNextRetryTime(3, 30L);
+    ctx.setPartitionInfo(3, "info");
+    Map<String, String> legacyMap0 = ctx.getMapField(0);
+    Map<String, String> legacyMap3 = ctx.getMapField(3);
+
+    ctx.setColumnarFormat(true);
+    Assert.assertTrue(ctx.isColumnarFormat());
+    Assert.assertTrue(ctx.getRecord().getMapFields().isEmpty());
+    Assert.assertEquals(ctx.getMapField(0), legacyMap0);
+    Assert.assertEquals(ctx.getMapField(3), legacyMap3);
+    Assert.assertNull(ctx.getMapField(1));
+
+    // read back from the record as another reader would
+    JobContext read = new JobContext(new ZNRecord(ctx.getRecord()));
+    Assert.assertEquals(read.getStartTime(), 100L);
+    Assert.assertEquals(read.getPartitionState(0), TaskPartitionState.COMPLETED);
+    Assert.assertEquals(read.getPartitionNumAttempts(0), 2);
+    Assert.assertEquals(read.getPartitionStartTime(0), 10L);
+    Assert.assertEquals(read.getPartitionFinishTime(0), 20L);
+    Assert.assertEquals(read.getAssignedParticipant(0), "localhost_0");
+    Assert.assertEquals(read.getPartitionState(3), null);
+    Assert.assertEquals(read.getPartitionNumAttempts(3), -1);
+    Assert.assertEquals(read.getNextRetryTime(3), 30L);
+    Assert.assertEquals(read.getPartitionInfo(3), "info");
+    Assert.assertEquals(read.getPartitionSet(), ctx.getPartitionSet());
+    Assert.assertEquals(read.getPartitionsByTarget().get("TestDB_0"), Arrays.asList(0));
+    Assert.assertEquals(read.getTaskIdPartitionMap().get("task3"), Integer.valueOf(3));
+
+    // changes are encoded into the record when it is next read
+    read.setPartitionState(3, TaskPartitionState.RUNNING);
+    read.incrementNumAttempts(3);
+    JobContext updated = new JobContext(new ZNRecord(read.getRecord()));
+    Assert.assertEquals(updated.getPartitionState(3), TaskPartitionState.RUNNING);
+    Assert.assertEquals(updated.getPartitionNumAttempts(3), 1);
+
+    // setting unchanged values leaves the record as is
+    String encoded = read.getRecord().getSimpleField("PARTITION_COLUMNS");
+    read.setPartitionState(3, TaskPartitionState.RUNNING);
+    Assert.assertSame(read.getRecord().getSimpleField("PARTITION_COLUMNS"), encoded);
+
+    // and back to one map field per partition
+    updated.setColumnarFormat(false);
+    Assert.assertFalse(updated.isColumnarFormat());
+    Assert.assertNull(updated.getRecord().getSimpleField("PARTITION_COLUMNS"));
+    Assert.assertEquals(updated.getRecord().getMapField("0"), legacyMap0);
+    Assert.assertEquals(updated.getPartitionState(3), TaskPartitionState.RUNNING);
+  }
+
+  @Test
+  public void testLargeJob() {
+    int numTasks = 50000;
+    JobContext legacy = new JobContext(new ZNRecord(TaskUtil.TASK_CONTEXT_KW));
+    for (int p = 0; p < numTasks; p++) {
+      legacy.setPartitionState(p, TaskPartitionState.COMPLETED);
+      legacy.setPartitionNumAttempts(p, 1);
+      legacy.setPartitionStartTime(p, 1460000000000L + p);
+      legacy.setPartitionFinishTime(p, 1460000001000L + p);
+      legacy.setAssignedParticipant(p, "localhost_" + (p % 100));
+      legacy.setTaskIdForPartition(p, "task_" + p);
+    }
+    JobContext columnar = new JobContext(new ZNRecord(legacy.getRecord()));
+    columnar.setColumnarFormat(true);
+
+    ZNRecordSerializer serializer = new ZNRecordSerializer();
+    byte[] columnarBytes = serializer.serialize(columnar.getRecord());
+    Assert.assertTrue(columnarBytes.length < serializer.serialize(legacy.getRecord()).length);
+    Assert.assertTrue(columnarBytes.length < ZNRecord.SIZE_LIMIT);
+
+    JobContext read = new JobContext((ZNRecord) serializer.deserialize(columnarBytes));
+    Assert.assertEquals(read.getPartitionSet().size(), numTasks);
+    Assert.assertEquals(read.getMapField(numTasks - 1), legacy.getMapField(numTasks - 1));
+  }
+}
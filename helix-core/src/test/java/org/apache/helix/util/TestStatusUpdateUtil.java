@@ -0,0 +1,129 @@
+package org.apache.helix.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.I0Itec.zkclient.DataUpdater;
+import org.apache.helix.HelixProperty;
+import org.apache.helix.Mocks.MockAccessor;
+import org.apache.helix.PropertyKey;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.model.Message;
+import org.apache.helix.model.Message.MessageType;
+import org.apache.helix.util.StatusUpdateUtil.Level;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestStatusUpdateUtil {
+
+  /**
+   * Counts single updates and records the batched ones
+   */
+  private static class RecordingAccessor extends MockAccessor {
+    int _numUpdates = 0;
+    int _numBatches = 0;
+    final Map<String, ZNRecord> _batchedRecords = new HashMap<String, ZNRecord>();
+
+    @Override
+    public <T extends HelixProperty> boolean updateProperty(PropertyKey key,
+        DataUpdater<ZNRecord> updater, T value) {
+      _numUpdates++;
+      return super.updateProperty(key, updater, value);
+    }
+
+    @Override
+    public <T extends HelixProperty> boolean[] updateChildren(List<String> paths,
+        List<DataUpdater<ZNRecord>> updaters, int options) {
+      _numBatches++;
+      for (int i = 0; i < paths.size(); i++) {
+        String path = paths.get(i);
+        _batchedRecords.put(path, updaters.get(i).update(_batchedRecords.get(path)));
+      }
+      return new boolean[paths.size()];
+    }
+  }
+
+  private static Message createMessage(String tgtName) {
+    Message message = new Message(MessageType.STATE_TRANSITION, "msg_" + tgtName);
+    message.setTgtName(tgtName);
+    message.setTgtSessionId("session_0");
+    message.setResourceName("TestDB");
+    message.setPartitionName("TestDB_0");
+    message.setFromState("OFFLINE");
+    message.setToState("SLAVE");
+    return message;
+  }
+
+  @Test
+  public void testAsyncStatusUpdates() {
+    RecordingAccessor accessor = new RecordingAccessor();
+    AsyncStatusUpdateWriter writer = new AsyncStatusUpdateWriter(100, 100);
+    StatusUpdateUtil statusUpdateUtil = new StatusUpdateUtil(Level.HELIX_INFO, writer);
+
+    Message participantMessage = createMessage("localhost_12918");
+    Message controllerMessage = createMessage("Controller");
+    for (int i = 0; i < 3; i++) {
+      statusUpdateUtil.logInfo(participantMessage, TestStatusUpdateUtil.class, "info " + i,
+          accessor);
+      statusUpdateUtil.logInfo(controllerMessage, TestStatusUpdateUtil.class, "info " + i,
+          accessor);
+    }
+    Assert.assertEquals(accessor._numUpdates, 0);
+    Assert.assertEquals(writer.getNumPendingRecords(), 8);
+
+    // records are merged per path, participant status updates still go through the accessor
+    writer.flush();
+    Assert.assertEquals(writer.getNumPendingRecords(), 0);
+    Assert.assertEquals(accessor._numUpdates, 1);
+    Assert.assertEquals(accessor._numBatches, 1);
+    String controllerPath =
+        accessor.keyBuilder().controllerTaskStatus("TestDB", "TestDB_0").getPath();
+    ZNRecord record = accessor._batchedRecords.get(controllerPath);
+    // 1 record of the message and 3 status updates
+    Assert.assertEquals(record.getMapFields().size(), 4);
+
+    // errors are written right away
+    statusUpdateUtil.logError(participantMessage, TestStatusUpdateUtil.class, "error", accessor);
+    Assert.assertEquals(accessor._numUpdates, 3);
+    Assert.assertEquals(writer.getNumPendingRecords(), 0);
+  }
+
+  @Test
+  public void testStatusUpdateLimits() {
+    RecordingAccessor accessor = new RecordingAccessor();
+    StatusUpdateUtil statusUpdateUtil = new StatusUpdateUtil(Level.HELIX_WARNING, null);
+    Message message = createMessage("localhost_12918");
+    statusUpdateUtil.logInfo(message, TestStatusUpdateUtil.class, "info", accessor);
+    Assert.assertEquals(accessor._numUpdates, 0);
+    statusUpdateUtil.logWarning(message, TestStatusUpdateUtil.class, "warning", accessor);
+    Assert.assertEquals(accessor._numUpdates, 2);
+
+    AsyncStatusUpdateWriter writer = new AsyncStatusUpdateWriter(100, 2);
+    PropertyKey key = accessor.keyBuilder().controllerTaskStatus("TestDB", "TestDB_0");
+    Assert.assertTrue(writer.add(accessor, key, new ZNRecord("0")));
+    Assert.assertTrue(writer.add(accessor, key, new ZNRecord("1")));
+    Assert.assertFalse(writer.add(accessor, key, new ZNRecord("2")));
+    writer.flush();
+    Assert.assertTrue(writer.add(accessor, key, new ZNRecord("3")));
+  }
+}
@@ -22,10 +22,11 @@ package org.apache.helix.filestore;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import org.apache.helix.NotificationContext;
 import org.apache.helix.ZNRecord;
-import org.apache.helix.model.ExternalView;
 import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.spectator.RoutingTableChange;
+import org.apache.helix.spectator.RoutingTableChange.ResourceChange;
+import org.apache.helix.spectator.RoutingTableChangeListener;
 import org.apache.helix.spectator.RoutingTableProvider;
 
 public class Replicator extends RoutingTableProvider {
@@ -51,7 +52,12 @@ public class Replicator extends RoutingTableProvider {
     this.partition = partition;
     isReplicationInitiated = new AtomicBoolean(false);
     isReplicationStarted = new AtomicBoolean(false);
-
+    addRoutingTableChangeListener(new RoutingTableChangeListener() {
+      @Override
+      public void onRoutingTableChange(RoutingTableChange change, Object context) {
+        onPartitionChange(change);
+      }
+    }, null);
   }
 
   public void start() throws Exception {
@@ -124,10 +130,14 @@ public class Replicator extends RoutingTableProvider {
     isReplicationInitiated.set(false);
   }
 
-  @Override
-  public void onExternalViewChange(List<ExternalView> viewList, NotificationContext context) {
-    super.onExternalViewChange(viewList, context);
-
+  /**
+   * Look for a new master only when the instances of the replicated partition change
+   */
+  private void onPartitionChange(RoutingTableChange change) {
+    ResourceChange resourceChange = change.getResourceChange(resourceName);
+    if (resourceChange == null || !resourceChange.getChangedPartitions().contains(partition)) {
+      return;
+    }
     if (isReplicationInitiated.get()) {
       try {
         start();